@@ -36,8 +36,10 @@ import com.salesforce.dataloader.action.visitor.IVisitor;
 import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.AsyncDataWriter;
 import com.salesforce.dataloader.dao.DataAccessObject;
 import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.dao.SpooledDataReader;
 import com.salesforce.dataloader.dao.csv.CSVFileWriter;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
@@ -129,6 +131,7 @@ abstract class AbstractAction implements IAction {
             while (!getMonitor().isCanceled() && visit()) {}
 
             flush();
+            flushStatusWriters();
             // need to close up here for sync message.
             closeAll();
 
@@ -149,14 +152,46 @@ abstract class AbstractAction implements IAction {
         }
     }
 
-    private void closeAll() {
-        getDao().close();
+    /* rows written asynchronously have to be in the status files before the operation is reported as done */
+    private void flushStatusWriters() throws DataAccessObjectException {
         if (writeStatus()) {
-            getSuccessWriter().close();
-            getErrorWriter().close();
+            for (final DataWriter writer : new DataWriter[] { getSuccessWriter(), getErrorWriter() }) {
+                if (writer instanceof AsyncDataWriter) ((AsyncDataWriter)writer).flush();
+            }
         }
     }
 
+    private void closeAll() {
+        closeAll(getDao(), writeStatus() ? new DataWriter[] { getSuccessWriter(), getErrorWriter() }
+                : new DataWriter[0]);
+    }
+
+    /**
+     * Closes the data access object and the status writers, all of them even if one fails to close, such as a writer
+     * that can't commit its output. The first failure is thrown once they are all closed.
+     */
+    static void closeAll(DataAccessObject dao, DataWriter... statusWriters) {
+        RuntimeException error = null;
+        try {
+            dao.close();
+            if (dao instanceof SpooledDataReader) ((SpooledDataReader)dao).deleteSpool();
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        for (final DataWriter writer : statusWriters) {
+            try {
+                writer.close();
+            } catch (RuntimeException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) throw error;
+    }
+
     protected Config getConfig() {
         return getController().getConfig();
     }
@@ -214,7 +249,7 @@ abstract class AbstractAction implements IAction {
         if (filename == null || filename.length() == 0)
             throw new DataAccessObjectInitializationException(getMessage("errorMissingErrorFile"));
         // TODO: Make sure that specific DAO is not mentioned: use DataReader, DataWriter, or DataAccessObject
-        return new CSVFileWriter(filename, getConfig());
+        return createStatusWriter(new CSVFileWriter(filename, getConfig()), "errorWriter");
     }
 
     /**
@@ -226,7 +261,16 @@ abstract class AbstractAction implements IAction {
         if (filename == null || filename.length() == 0)
             throw new DataAccessObjectInitializationException(getMessage("errorMissingSuccessFile"));
         // TODO: Make sure that specific DAO is not mentioned: use DataReader, DataWriter, or DataAccessObject
-        return new CSVFileWriter(filename, getConfig());
+        return createStatusWriter(new CSVFileWriter(filename, getConfig()), "successWriter");
+    }
+
+    /**
+     * With {@link Config#ASYNC_STATUS_OUTPUT} set, status rows are written on a thread of their own so that the
+     * operation does not wait for the status files between batches.
+     */
+    private DataWriter createStatusWriter(DataWriter writer, String name) {
+        if (!getConfig().getBoolean(Config.ASYNC_STATUS_OUTPUT)) return writer;
+        return new AsyncDataWriter(writer, Thread.currentThread().getName() + "-" + name);
     }
 
     private void openErrorWriter(List<String> headers) throws OperationException {
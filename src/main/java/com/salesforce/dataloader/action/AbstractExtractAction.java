@@ -37,6 +37,7 @@ import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
 import com.salesforce.dataloader.dao.*;
+import com.salesforce.dataloader.dao.parquet.ParquetFileWriter;
 import com.salesforce.dataloader.exception.*;
 import com.salesforce.dataloader.mapping.SOQLMapper;
 
@@ -68,8 +69,10 @@ abstract class AbstractExtractAction extends AbstractAction {
     protected void checkDao(DataAccessObject dao) throws DataAccessObjectInitializationException {
         if (!(dao instanceof DataWriter)) {
             final String errMsg = getMessage("errorWrongDao", getConfig().getString(Config.DAO_TYPE),
-                    DataAccessObjectFactory.CSV_WRITE_TYPE + " or " + DataAccessObjectFactory.DATABASE_WRITE_TYPE + " or "
-                    + DataAccessObjectFactory.BLOB_WRITE_TYPE,
+                    DataAccessObjectFactory.CSV_WRITE_TYPE + ", " + DataAccessObjectFactory.CSV_STREAM_WRITE_TYPE + ", "
+                    + DataAccessObjectFactory.PARQUET_WRITE_TYPE + ", " + DataAccessObjectFactory.JSONL_WRITE_TYPE + ", "
+                    + DataAccessObjectFactory.DATABASE_WRITE_TYPE
+                    + " or " + DataAccessObjectFactory.BLOB_WRITE_TYPE,
                     getConfig().getString(Config.OPERATION));
             getLogger().fatal(errMsg);
             throw new DataAccessObjectInitializationException(errMsg);
@@ -156,6 +159,11 @@ abstract class AbstractExtractAction extends AbstractAction {
     protected void initOperation() throws DataAccessObjectInitializationException, OperationException {
         // get columns that will be output from the query and open the outputs
         final List<String> daoColumns = getDaoColumns();
+        if (getDao() instanceof ParquetFileWriter) {
+            // typed columns
+            ((ParquetFileWriter)getDao()).setColumnFields(((SOQLMapper)getController().getMapper())
+                    .getDaoColumnFields());
+        }
         getDao().setColumnNames(daoColumns);
     }
 
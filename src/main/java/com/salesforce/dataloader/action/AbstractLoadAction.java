@@ -63,7 +63,9 @@ abstract class AbstractLoadAction extends AbstractAction {
     protected void checkDao(DataAccessObject dao) throws DataAccessObjectInitializationException {
         if (!(dao instanceof DataReader)) {
             final String errMsg = getMessage("errorWrongDao", getConfig().getString(Config.DAO_TYPE),
-                    DataAccessObjectFactory.CSV_READ_TYPE + " or " + DataAccessObjectFactory.DATABASE_READ_TYPE,
+                    DataAccessObjectFactory.CSV_READ_TYPE + ", " + DataAccessObjectFactory.CSV_STREAM_READ_TYPE + ", "
+                    + DataAccessObjectFactory.PARQUET_READ_TYPE + ", " + DataAccessObjectFactory.JSONL_READ_TYPE + " or "
+                    + DataAccessObjectFactory.DATABASE_READ_TYPE,
                     getConfig().getString(Config.OPERATION));
             getLogger().fatal(errMsg);
             throw new DataAccessObjectInitializationException(errMsg);
@@ -31,6 +31,7 @@ import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.controller.Controller;
 import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.dao.DeferredDataWriter;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
 import com.salesforce.dataloader.exception.ExtractException;
@@ -42,9 +43,12 @@ import com.sforce.async.AsyncApiException;
 import com.sforce.soap.partner.fault.ApiFault;
 import com.sforce.ws.ConnectionException;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Superclass for all query visitors
@@ -59,6 +63,8 @@ abstract class AbstractQueryVisitor extends AbstractVisitor implements IQueryVis
     private final List<Row> batchRows;
     private final List<String> batchIds;
     private final int batchSize;
+    // the ids of the rows handed to a deferred writer and not yet written
+    private final Map<Row, String> deferredIds = new IdentityHashMap<Row, String>();
 
     public AbstractQueryVisitor(Controller controller, ILoaderProgress monitor, DataWriter queryWriter,
             DataWriter successWriter, DataWriter errorWriter) {
@@ -122,10 +128,17 @@ abstract class AbstractQueryVisitor extends AbstractVisitor implements IQueryVis
         if (!this.batchRows.isEmpty()) {
             writeBatch();
         }
+        if (getQueryWriter() instanceof DeferredDataWriter && !getProgressMonitor().isCanceled()) {
+            writeDeferredResults(((DeferredDataWriter)getQueryWriter()).getResults(true));
+        }
     }
 
     private void writeBatch() throws DataAccessObjectException {
         if (getProgressMonitor().isCanceled()) return;
+        if (getQueryWriter() instanceof DeferredDataWriter) {
+            writeDeferredBatch((DeferredDataWriter)getQueryWriter());
+            return;
+        }
         try {
             if (getQueryWriter().writeRowList(this.batchRows)) {
                 writeSuccesses();
@@ -146,6 +159,52 @@ abstract class AbstractQueryVisitor extends AbstractVisitor implements IQueryVis
         }
     }
 
+    /**
+     * Hands the batch to the writer, and writes the status of the rows it has finished writing since.
+     */
+    private void writeDeferredBatch(DeferredDataWriter writer) throws DataAccessObjectException {
+        try {
+            final Iterator<String> ids = this.batchIds.iterator();
+            for (final Row row : this.batchRows) {
+                this.deferredIds.put(row, ids.next());
+            }
+            writer.writeRowList(new ArrayList<Row>(this.batchRows));
+        } catch (final DataAccessObjectInitializationException ex) {
+            throw ex;
+        } catch (final DataAccessObjectException ex) {
+            for (final Row row : this.batchRows) {
+                this.deferredIds.remove(row);
+            }
+            writeErrors(Messages.getMessage(getClass(), "statusErrorNotWrittenException",
+                    getConfig().getString(Config.DAO_NAME), ex.getMessage()));
+            getProgressMonitor().worked(this.batchRows.size());
+        } finally {
+            this.batchRows.clear();
+            this.batchIds.clear();
+        }
+        writeDeferredResults(writer.getResults(false));
+    }
+
+    private void writeDeferredResults(List<DeferredDataWriter.Result> results) throws DataAccessObjectException {
+        if (results.isEmpty()) return;
+        final String msg = Messages.getMessage(getClass(), "statusItemQueried");
+        for (final DeferredDataWriter.Result result : results) {
+            final String errorMessage = result.isSuccess() ? null : Messages.getMessage(getClass(),
+                    "statusErrorNotWrittenException", getConfig().getString(Config.DAO_NAME),
+                    result.getErrorMessage());
+            for (final Row row : result.getRows()) {
+                final String id = this.deferredIds.remove(row);
+                if (errorMessage == null) {
+                    writeSuccess(row, id, msg);
+                } else {
+                    writeError(row, errorMessage);
+                }
+            }
+            getProgressMonitor().worked(result.getRows().size());
+        }
+        getProgressMonitor().setSubTask(getRateCalculator().calculateSubTask(getNumberOfRows(), getNumberErrors()));
+    }
+
     private void writeSuccesses() throws DataAccessObjectException {
         final String msg = Messages.getMessage(getClass(), "statusItemQueried");
         final Iterator<String> ids = this.batchIds.iterator();
@@ -47,6 +47,7 @@ import com.sforce.async.CSVReader;
 import com.sforce.async.ConcurrencyMode;
 import com.sforce.async.ContentType;
 import com.sforce.async.JobInfo;
+import com.sforce.async.JobStateEnum;
 import com.sforce.async.OperationEnum;
 
 class BulkApiVisitorUtil {
@@ -116,6 +117,23 @@ class BulkApiVisitorUtil {
         this.jobInfo = job;
     }
 
+    /**
+     * Continues with a job created by an earlier run that was stopped, provided the job is still open or closed but
+     * not aborted.
+     *
+     * @return false if the job can't be continued
+     */
+    boolean reattachJob(String jobId) throws AsyncApiException {
+        final JobInfo job = this.client.getJobStatus(jobId);
+        if (job.getState() != JobStateEnum.Open && job.getState() != JobStateEnum.Closed) {
+            logger.info(Messages.getMessage(getClass(), "logJobNotReattached", jobId, job.getState()));
+            return false;
+        }
+        logger.info(Messages.getMessage(getClass(), "logJobReattached", jobId, job.getState()));
+        this.jobInfo = job;
+        return true;
+    }
+
     private static final NumberFormat FILE_NUM_FMT;
     static {
         final NumberFormat fmt = NumberFormat.getIntegerInstance();
@@ -169,7 +187,8 @@ class BulkApiVisitorUtil {
     }
 
     void closeJob() throws AsyncApiException {
-        this.jobInfo = this.client.closeJob(getJobId());
+        // a reattached job may have been closed already
+        if (this.jobInfo.getState() != JobStateEnum.Closed) this.jobInfo = this.client.closeJob(getJobId());
         updateJobStatus();
         awaitJobCompletion();
     }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Serializes Bulk API batch CSV straight into a reusable UTF-8 byte buffer. Every value is written quoted, the header
+ * is encoded once per distinct column list, and a batch is handed off as soon as it reaches either the byte or the
+ * record limit.
+ * 
+ * @since 35.0
+ */
+class BulkCsvSerializer {
+
+    private static final byte[] LINE_SEPARATOR = System.getProperty("line.separator").getBytes();
+
+    /* Range where the proleptic calendar used below matches GregorianCalendar and years have four digits */
+    private static final long GREGORIAN_CUTOVER_MILLIS = -12219292800000L; // 1582-10-15T00:00:00Z
+    private static final long YEAR_10000_MILLIS = 253402300800000L; // 10000-01-01T00:00:00Z
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private static final ThreadLocal<DateFormat> DATE_FMT = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            final DateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+            fmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return fmt;
+        }
+    };
+
+    private final int maxBatchBytes;
+    private final int maxBatchRecords;
+
+    private byte[] buf = new byte[8192];
+    private int size;
+    private int rowStart;
+    private int records;
+    private boolean firstColumn;
+
+    private List<String> headerColumns;
+    private byte[] header;
+
+    // "yyyy-MM-ddT" of the last day a timestamp was written for; a load's dates tend to cluster
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private final byte[] cachedDayPrefix = new byte[11];
+
+    BulkCsvSerializer(int maxBatchBytes, int maxBatchRecords) {
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchRecords = maxBatchRecords;
+    }
+
+    /**
+     * Sets the columns of the batch header. The header is only re-encoded when the columns change, and takes effect
+     * with the next batch.
+     */
+    void setHeader(List<String> columns) {
+        if (columns.equals(this.headerColumns)) return;
+        final int mark = this.size;
+        boolean first = true;
+        for (String column : columns) {
+            if (!first) put((byte)',');
+            first = false;
+            putUtf8(column.replace(':', '.'), false);
+        }
+        put(LINE_SEPARATOR);
+        this.header = Arrays.copyOfRange(this.buf, mark, this.size);
+        this.size = mark;
+        this.headerColumns = columns;
+    }
+
+    List<String> getHeaderColumns() {
+        return this.headerColumns;
+    }
+
+    int getRecordCount() {
+        return this.records;
+    }
+
+    void startRow() {
+        if (this.records == 0 && this.size == 0) put(this.header);
+        this.rowStart = this.size;
+        this.firstColumn = true;
+    }
+
+    /** Separates the next column, for columns that are left empty */
+    void skipColumn() {
+        if (!this.firstColumn) put((byte)',');
+        this.firstColumn = false;
+    }
+
+    void writeValue(String value) {
+        skipColumn();
+        put((byte)'"');
+        putUtf8(value, true);
+        put((byte)'"');
+    }
+
+    /** Writes the timestamp in GMT, in the same format as yyyy-MM-dd'T'HH:mm:ss.SSS'Z' */
+    void writeTimestamp(Calendar value) {
+        final long millis = value.getTimeInMillis();
+        if (millis < GREGORIAN_CUTOVER_MILLIS || millis >= YEAR_10000_MILLIS) {
+            writeValue(DATE_FMT.get().format(value.getTime()));
+            return;
+        }
+        final long epochDay = Math.floorDiv(millis, MILLIS_PER_DAY);
+        if (epochDay != this.cachedEpochDay) {
+            final LocalDate day = LocalDate.ofEpochDay(epochDay);
+            putDigits(this.cachedDayPrefix, 0, day.getYear(), 4);
+            this.cachedDayPrefix[4] = '-';
+            putDigits(this.cachedDayPrefix, 5, day.getMonthValue(), 2);
+            this.cachedDayPrefix[7] = '-';
+            putDigits(this.cachedDayPrefix, 8, day.getDayOfMonth(), 2);
+            this.cachedDayPrefix[10] = 'T';
+            this.cachedEpochDay = epochDay;
+        }
+        final int millisOfDay = (int)(millis - epochDay * MILLIS_PER_DAY);
+        skipColumn();
+        ensureCapacity(26);
+        final byte[] b = this.buf;
+        int pos = this.size;
+        b[pos++] = '"';
+        System.arraycopy(this.cachedDayPrefix, 0, b, pos, 11);
+        pos += 11;
+        putDigits(b, pos, millisOfDay / 3600000, 2);
+        b[pos + 2] = ':';
+        putDigits(b, pos + 3, millisOfDay / 60000 % 60, 2);
+        b[pos + 5] = ':';
+        putDigits(b, pos + 6, millisOfDay / 1000 % 60, 2);
+        b[pos + 8] = '.';
+        putDigits(b, pos + 9, millisOfDay % 1000, 3);
+        b[pos + 12] = 'Z';
+        b[pos + 13] = '"';
+        this.size = pos + 14;
+    }
+
+    /**
+     * Ends the current row.
+     * 
+     * @return true if the batch is ready to be sent: it has the maximum number of records, or has grown past the byte
+     *         limit
+     */
+    boolean endRow() {
+        put(LINE_SEPARATOR);
+        this.records++;
+        return this.records >= this.maxBatchRecords || this.size > this.maxBatchBytes;
+    }
+
+    /**
+     * Number of records in the batch that {@link #takeBatch()} returns next. When the last row pushed the batch past
+     * the byte limit, that row is held back for the following batch.
+     */
+    int getBatchRecordCount() {
+        return holdsBackLastRow() ? this.records - 1 : this.records;
+    }
+
+    /** Hands off the completed batch and resets the buffer for the next one */
+    InputStream takeBatch() {
+        final InputStream batch;
+        if (holdsBackLastRow()) {
+            final byte[] lastRow = Arrays.copyOfRange(this.buf, this.rowStart, this.size);
+            batch = new ByteArrayInputStream(Arrays.copyOf(this.buf, this.rowStart));
+            this.size = 0;
+            this.records = 0;
+            startRow();
+            put(lastRow);
+            this.records = 1;
+        } else {
+            batch = new ByteArrayInputStream(Arrays.copyOf(this.buf, this.size));
+            this.size = 0;
+            this.records = 0;
+        }
+        return batch;
+    }
+
+    private boolean holdsBackLastRow() {
+        return this.size > this.maxBatchBytes && this.records > 1;
+    }
+
+    /* Encodes the value as UTF-8, doubling double quotes if escapeQuotes is set. Unpaired surrogates become '?'. */
+    private void putUtf8(String value, boolean escapeQuotes) {
+        final int len = value.length();
+        // no char takes more than three bytes, including an escaped quote
+        ensureCapacity(len * 3);
+        final byte[] b = this.buf;
+        int pos = this.size;
+        for (int i = 0; i < len; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' && escapeQuotes) b[pos++] = '"';
+                b[pos++] = (byte)c;
+            } else if (c < 0x800) {
+                b[pos++] = (byte)(0xc0 | (c >> 6));
+                b[pos++] = (byte)(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, value.charAt(++i));
+                b[pos++] = (byte)(0xf0 | (cp >> 18));
+                b[pos++] = (byte)(0x80 | ((cp >> 12) & 0x3f));
+                b[pos++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+                b[pos++] = (byte)(0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                b[pos++] = '?';
+            } else {
+                b[pos++] = (byte)(0xe0 | (c >> 12));
+                b[pos++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+                b[pos++] = (byte)(0x80 | (c & 0x3f));
+            }
+        }
+        this.size = pos;
+    }
+
+    private static void putDigits(byte[] b, int pos, int value, int width) {
+        for (int i = pos + width - 1; i >= pos; i--) {
+            b[i] = (byte)('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private void put(byte c) {
+        ensureCapacity(1);
+        this.buf[this.size++] = c;
+    }
+
+    private void put(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, this.buf, this.size, bytes.length);
+        this.size += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        final int needed = this.size + extra;
+        if (needed > this.buf.length) {
+            this.buf = Arrays.copyOf(this.buf, Math.max(needed, this.buf.length * 2));
+        }
+    }
+}
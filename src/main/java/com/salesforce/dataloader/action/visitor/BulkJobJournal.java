@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Records the Bulk API job of a load and its batches as they are created, so that a load stopped by a crash can
+ * reattach to the job instead of uploading every batch again.
+ * <p>
+ * The first line names the job and the load it belongs to, and every other line a batch id and its number of rows, in
+ * the order the batches were created. Each line is forced to disk before the next batch is created; a line cut off
+ * by a crash is ignored when the journal is read back.
+ *
+ * @since 35.0
+ */
+class BulkJobJournal {
+
+    private static final Logger logger = Logger.getLogger(BulkJobJournal.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SEPARATOR = "\t";
+
+    private final File file;
+    private final String loadKey;
+    private FileOutputStream out;
+
+    /** A batch read back from the journal */
+    static class Batch {
+        final String batchId;
+        final int numRows;
+
+        Batch(String batchId, int numRows) {
+            this.batchId = batchId;
+            this.numRows = numRows;
+        }
+    }
+
+    /**
+     * @param loadKey
+     *            describes the load, such as its operation, object and input; a job is only reattached to a load with
+     *            the same key
+     */
+    BulkJobJournal(File file, String loadKey) {
+        this.file = file;
+        this.loadKey = loadKey.replace(SEPARATOR, " ").replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * @return the id of the job recorded for this load, or null if there is none
+     */
+    String readJobId() throws IOException {
+        final List<String[]> lines = readLines();
+        if (lines.isEmpty()) return null;
+        final String[] header = lines.get(0);
+        if (header.length != 3 || !"job".equals(header[0]) || !this.loadKey.equals(header[2])) {
+            logger.info("Bulk API job journal " + this.file + " is for another load, ignoring it");
+            return null;
+        }
+        return header[1];
+    }
+
+    /**
+     * @return the batches recorded for the job, in the order they were created
+     */
+    List<Batch> readBatches() throws IOException {
+        final List<String[]> lines = readLines();
+        if (lines.isEmpty()) return Collections.emptyList();
+        final List<Batch> batches = new ArrayList<Batch>();
+        for (String[] line : lines.subList(1, lines.size())) {
+            if (line.length == 3 && "batch".equals(line[0])) {
+                try {
+                    batches.add(new Batch(line[1], Integer.parseInt(line[2])));
+                } catch (NumberFormatException e) {
+                    // cut off by a crash
+                }
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * Starts recording a new job, replacing whatever was recorded before.
+     */
+    void startJob(String jobId) throws IOException {
+        close();
+        this.out = new FileOutputStream(this.file);
+        append("job", jobId, this.loadKey);
+    }
+
+    /**
+     * Continues recording the batches of a job read back with {@link #readJobId()}.
+     */
+    void continueJob() throws IOException {
+        close();
+        this.out = new FileOutputStream(this.file, true);
+        // start after a line cut off by a crash, rather than appending to it
+        append();
+    }
+
+    void addBatch(String batchId, int numRows) throws IOException {
+        append("batch", batchId, String.valueOf(numRows));
+    }
+
+    /**
+     * Deletes the journal, once the results of the job have been written.
+     */
+    void delete() throws IOException {
+        close();
+        if (this.file.exists() && !this.file.delete()) throw new IOException("Could not delete " + this.file);
+    }
+
+    void close() throws IOException {
+        if (this.out == null) return;
+        try {
+            this.out.close();
+        } finally {
+            this.out = null;
+        }
+    }
+
+    private void append(String... values) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        for (String value : values) {
+            if (line.length() > 0) line.append(SEPARATOR);
+            line.append(value);
+        }
+        // complete lines end with a separator, which tells them apart from a line cut off by a crash
+        if (values.length > 0) line.append(SEPARATOR);
+        line.append('\n');
+        this.out.write(line.toString().getBytes(UTF8));
+        this.out.getChannel().force(false);
+    }
+
+    private List<String[]> readLines() throws IOException {
+        if (!this.file.isFile()) return Collections.emptyList();
+        final List<String[]> lines = new ArrayList<String[]>();
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), UTF8));
+        try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.endsWith(SEPARATOR)) lines.add(line.substring(0, line.length() - 1).split(SEPARATOR, -1));
+            }
+        } finally {
+            in.close();
+        }
+        return lines;
+    }
+}
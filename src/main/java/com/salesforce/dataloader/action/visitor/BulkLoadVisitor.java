@@ -26,12 +26,9 @@
 
 package com.salesforce.dataloader.action.visitor;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
@@ -39,7 +36,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TimeZone;
 import java.util.TreeSet;
 
 import org.apache.commons.beanutils.DynaBean;
@@ -83,17 +79,23 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
     private static final String SKIP_BATCH_ID = "SKIP";
 
     private final boolean isDelete;
-    private static final DateFormat DATE_FMT;
-
-    static {
-        DATE_FMT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-        DATE_FMT.setTimeZone(TimeZone.getTimeZone("GMT"));
-    }
     private final BulkApiVisitorUtil jobUtil;
+    private final BulkCsvSerializer serializer = new BulkCsvSerializer(Config.MAX_BULK_API_BATCH_BYTES,
+            Config.MAX_BULK_API_BATCH_SIZE);
+
+    // mapped columns of the batch header, worked out with the first batch of the job
+    private List<String> mappedColumns;
+    private Set<String> mappedColumnSet;
 
     // This keeps track of all the batches we send in order so that we know whats what when processsing results
     private final List<BatchData> allBatchesInOrder = new ArrayList<BatchData>();
 
+    // records the job and its batches so that a stopped load can reattach to the job, null when not recording
+    private BulkJobJournal jobJournal;
+    // batches of a reattached job whose rows have not been read again yet
+    private final ArrayDeque<BulkJobJournal.Batch> uploadedBatches = new ArrayDeque<BulkJobJournal.Batch>();
+    private int uploadedRowsSkipped;
+
     /** DataLoader uses this to help match batch results from SFDC to the rows in our input */
     private class BatchData {
         final String batchId;
@@ -125,21 +127,77 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
         super(controller, monitor, successWriter, errorWriter);
         this.isDelete = getController().getConfig().getOperationInfo().isDelete();
         this.jobUtil = new BulkApiVisitorUtil(getController(), getProgressMonitor(), getRateCalculator());
+        this.jobJournal = createJobJournal();
+    }
+
+    /**
+     * The job journal is kept next to the last run file, for the load's operation, object, input and starting row.
+     * An input file's size and modification time are part of the key, so that a changed file starts a new job.
+     */
+    private BulkJobJournal createJobJournal() {
+        final Config cfg = getConfig();
+        final String lastRunFile = cfg.getLastRunFilename();
+        if (!cfg.getBoolean(Config.BULK_API_REATTACH_JOB) || !cfg.getBoolean(Config.ENABLE_LAST_RUN_OUTPUT)
+                || lastRunFile == null) return null;
+        final String daoName = cfg.getString(Config.DAO_NAME);
+        String loadKey = cfg.getString(Config.OPERATION) + " " + cfg.getString(Config.ENTITY) + " " + daoName
+                + " from row " + cfg.getString(Config.LOAD_ROW_TO_START_AT);
+        final File input = new File(daoName);
+        if (input.isFile()) {
+            loadKey += " size " + input.length() + " modified " + input.lastModified();
+        }
+        return new BulkJobJournal(new File(lastRunFile + ".bulkjob"), loadKey);
     }
 
     @Override
     protected void loadBatch() throws DataAccessObjectException, OperationException {
         try {
-            if (!this.jobUtil.hasJob()) this.jobUtil.createJob(getConfig());
+            if (!this.jobUtil.hasJob()) startJob();
             createBatches();
             clearArrays();
         } catch (final AsyncApiException e) {
             handleException(e);
-        } catch (final IOException e) {
-            handleException(e);
         }
     }
 
+    /**
+     * Reattaches to the job recorded by an earlier run of the same load that was stopped, if there is one, or creates
+     * a new job. Rows that were uploaded in the batches of a reattached job are not uploaded again.
+     */
+    private void startJob() throws AsyncApiException {
+        if (this.jobJournal != null) {
+            try {
+                final String jobId = this.jobJournal.readJobId();
+                if (jobId != null && this.jobUtil.reattachJob(jobId)) {
+                    this.uploadedBatches.addAll(this.jobJournal.readBatches());
+                    this.jobJournal.continueJob();
+                    return;
+                }
+            } catch (IOException e) {
+                stopJobJournal(e);
+            }
+        }
+        this.jobUtil.createJob(getConfig());
+        if (this.jobJournal != null) {
+            try {
+                this.jobJournal.startJob(this.jobUtil.getJobId());
+            } catch (IOException e) {
+                stopJobJournal(e);
+            }
+        }
+    }
+
+    /* a journal that misses batches would upload them again after a reattach, so stop using it altogether */
+    private void stopJobJournal(IOException e) {
+        logger.warn("Failed to record the Bulk API job, the load will not be able to reattach to it", e);
+        try {
+            this.jobJournal.delete();
+        } catch (IOException deleteError) {
+            logger.warn("Failed to delete the Bulk API job journal", deleteError);
+        }
+        this.jobJournal = null;
+    }
+
     /**
      * Throws a load exception
      */
@@ -161,119 +219,116 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
         return null;
     }
 
-    private void createBatches() throws OperationException, IOException, AsyncApiException {
-        final ByteArrayOutputStream os = new ByteArrayOutputStream();
-        final PrintStream out = new PrintStream(os, true, Config.BULK_API_ENCODING);
-        doOneBatch(out, os, this.dynaArray);
-    }
-
-    private void doOneBatch(PrintStream out, ByteArrayOutputStream os, List<DynaBean> rows) throws OperationException,
-            AsyncApiException {
-        int recordsInBatch = 0;
+    private void createBatches() throws OperationException, AsyncApiException {
         final List<String> userColumns = getController().getDao().getColumnNames();
-        List<String> headerColumns = null;
-        for (int i = 0; i < rows.size(); i++) {
-            final DynaBean row = rows.get(i);
-
-            if (recordsInBatch == 0) {
-                headerColumns = addHeader(out, os, row, userColumns);
-            }
-            writeRow(row, out, os, recordsInBatch, headerColumns);
-            recordsInBatch++;
-
-            if (os.size() > Config.MAX_BULK_API_BATCH_BYTES) {
-                createBatch(os, recordsInBatch); // resets outputstream
-                recordsInBatch = 0;
+        for (final DynaBean row : this.dynaArray) {
+            if (skipUploadedRow()) continue;
+            if (this.serializer.getRecordCount() == 0) {
+                this.serializer.setHeader(getHeaderColumns(row, userColumns));
             }
+            writeRow(row, this.serializer.getHeaderColumns());
+            if (this.serializer.endRow()) createBatch();
         }
-        if (recordsInBatch > 0) createBatch(os, recordsInBatch);
+        if (this.serializer.getRecordCount() > 0) createBatch();
         this.jobUtil.periodicCheckStatus();
     }
 
-    private void writeRow(DynaBean row, PrintStream out, ByteArrayOutputStream os, int recordsInBatch,
-            List<String> header) throws LoadException {
-        boolean notFirst = false;
+    /**
+     * Rows are read again in the same order after a reattach, so the rows of the batches uploaded before take the
+     * place of those batches.
+     *
+     * @return true if the row was uploaded in a batch of the reattached job
+     */
+    private boolean skipUploadedRow() {
+        final BulkJobJournal.Batch batch = this.uploadedBatches.peek();
+        if (batch == null) return false;
+        if (++this.uploadedRowsSkipped == batch.numRows) {
+            this.uploadedBatches.poll();
+            this.uploadedRowsSkipped = 0;
+            this.allBatchesInOrder.add(new BatchData(batch.batchId, batch.numRows));
+        }
+        return true;
+    }
+
+    private void writeRow(DynaBean row, List<String> header) throws LoadException {
+        this.serializer.startRow();
         for (final String column : header) {
-            if (notFirst) {
-                out.print(',');
-            } else {
-                notFirst = true;
-            }
-            writeSingleColumn(out, column, row.get(column));
+            writeSingleColumn(column, row.get(column));
         }
-        out.println();
     }
 
-    private void writeSingleColumn(PrintStream out, String fieldName, Object fieldValue) throws LoadException {
+    private void writeSingleColumn(String fieldName, Object fieldValue) throws LoadException {
         if (fieldValue != null) {
-            Object col = fieldValue;
             if (fieldValue instanceof NACalendarValue) {
-                col = fieldValue.toString();
+                this.serializer.writeValue(fieldValue.toString());
             } else if (fieldValue instanceof Calendar) {
-                col = DATE_FMT.format(((Calendar) fieldValue).getTime());
+                this.serializer.writeTimestamp((Calendar)fieldValue);
             } else if (fieldValue instanceof byte[]) {
                 if (!getController().attachmentsEnabled())
                     throw new LoadException(Messages.getMessage("FinishPage", "cannotMapBase64ForBulkApi", fieldName));
-                col = this.jobUtil.addAttachment((byte[])fieldValue);
+                this.serializer.writeValue(this.jobUtil.addAttachment((byte[])fieldValue));
+            } else {
+                this.serializer.writeValue(fieldValue.toString());
             }
-            writeColumnToCsv(out, col);
         } else {
             // all null values should be ignored when using bulk API
+            this.serializer.skipColumn();
             getLogger().warn(Messages.getMessage(getClass(), "noFieldVal", fieldName));
         }
     }
 
-    private void writeColumnToCsv(PrintStream out, Object val) {
-        out.print('"');
-        out.print(val.toString().replace("\"", "\"\""));
-        out.print('"');
-    }
-
-    private List<String> addHeader(PrintStream out, ByteArrayOutputStream os, DynaBean row, List<String> columns)
-            throws LoadException {
-        boolean first = true;
-        final List<String> cols = new ArrayList<String>();
-        final Set<String> addedCols = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
-        for (final String userColumn : columns) {
-            final String sfdcColumn = getMapper().getMapping(userColumn);
-            // if the column is not mapped, don't send it
-            if (sfdcColumn == null || sfdcColumn.length() == 0) {
-                // TODO: we should make it more obvious to users when we omit a column
-                getLogger().warn("Cannot find mapping for column: " + userColumn + ".  Omitting column");
-                continue;
+    /**
+     * The header is made of the mapped columns, which are worked out once per job, followed by any other field with a
+     * value in the first row of the batch (e.g. constants).
+     */
+    private List<String> getHeaderColumns(DynaBean row, List<String> userColumns) throws LoadException {
+        if (this.mappedColumns == null) {
+            final List<String> cols = new ArrayList<String>();
+            final Set<String> addedCols = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+            for (final String userColumn : userColumns) {
+                final String sfdcColumn = getMapper().getMapping(userColumn);
+                // if the column is not mapped, don't send it
+                if (sfdcColumn == null || sfdcColumn.length() == 0) {
+                    // TODO: we should make it more obvious to users when we omit a column
+                    getLogger().warn("Cannot find mapping for column: " + userColumn + ".  Omitting column");
+                    continue;
+                }
+                // TODO we don't really need to be this strict about a delete CSV file.. as long as the IDS are there
+                if (this.isDelete && (!cols.isEmpty() || !"id".equalsIgnoreCase(sfdcColumn)))
+                    throw new LoadException(Messages.getMessage(getClass(), "deleteCsvError"));
+                cols.add(sfdcColumn);
+                addedCols.add(sfdcColumn);
             }
-            // TODO we don't really need to be this strict about a delete CSV file.. as long as the IDS are there
-            if (this.isDelete && (!first || !"id".equalsIgnoreCase(sfdcColumn)))
-                throw new LoadException(Messages.getMessage(getClass(), "deleteCsvError"));
-            addFieldToHeader(out, sfdcColumn, cols, addedCols, first);
-            if (first) first = false;
+            this.mappedColumns = Collections.unmodifiableList(cols);
+            this.mappedColumnSet = addedCols;
         }
+        List<String> cols = this.mappedColumns;
+        Set<String> addedCols = this.mappedColumnSet;
         for (DynaProperty dynaProperty : row.getDynaClass().getDynaProperties()) {
             final String name = dynaProperty.getName();
             if (row.get(name) != null && !addedCols.contains(name)) {
-                addFieldToHeader(out, name, cols, addedCols, first);
+                if (cols == this.mappedColumns) {
+                    cols = new ArrayList<String>(this.mappedColumns);
+                    addedCols = new TreeSet<String>(this.mappedColumnSet);
+                }
+                cols.add(name);
+                addedCols.add(name);
             }
         }
-        out.println();
-        return Collections.unmodifiableList(cols);
-    }
-
-    private static void addFieldToHeader(PrintStream out, String sfdcColumn, List<String> cols, Set<String> addedCols,
-            boolean first) {
-        if (!first) {
-            out.print(',');
-        }
-        out.print(sfdcColumn.replace(':', '.'));
-        cols.add(sfdcColumn);
-        addedCols.add(sfdcColumn);
+        return cols == this.mappedColumns ? cols : Collections.unmodifiableList(cols);
     }
 
-    private void createBatch(ByteArrayOutputStream os, int numRecords) throws AsyncApiException {
-        if (numRecords <= 0) return;
-        final byte[] request = os.toByteArray();
-        os.reset();
-        BatchInfo bi = this.jobUtil.createBatch(new ByteArrayInputStream(request, 0, request.length));
+    private void createBatch() throws AsyncApiException {
+        final int numRecords = this.serializer.getBatchRecordCount();
+        BatchInfo bi = this.jobUtil.createBatch(this.serializer.takeBatch());
         this.allBatchesInOrder.add(new BatchData(bi.getId(), numRecords));
+        if (this.jobJournal != null) {
+            try {
+                this.jobJournal.addBatch(bi.getId(), numRecords);
+            } catch (IOException e) {
+                stopJobJournal(e);
+            }
+        }
     }
 
     @Override
@@ -290,6 +345,14 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
             } catch (AsyncApiException e) {
                 throw new LoadException("Failed to get batch results", e);
             }
+            // the results are written, there is nothing left to reattach to
+            if (this.jobJournal != null) {
+                try {
+                    this.jobJournal.delete();
+                } catch (IOException e) {
+                    logger.warn("Failed to delete the Bulk API job journal", e);
+                }
+            }
         }
     }
 
@@ -394,7 +457,7 @@ public class BulkLoadVisitor extends DAOLoadVisitor {
     private DataReader resetDAO() throws DataAccessObjectInitializationException, LoadException {
         final DataReader dataReader = (DataReader)getController().getDao();
         dataReader.close();
-        // TODO: doing this causes sql to be executed twice, for sql we should cache results in a local file
+        // database readers run their query again, unless they keep their rows with Config.DAO_READ_SPOOL
         dataReader.open();
         // when re-opening the dao we need to start at the same row in the input
         DAORowUtil.get().skipRowToStartOffset(getConfig(), dataReader, getProgressMonitor(), true);
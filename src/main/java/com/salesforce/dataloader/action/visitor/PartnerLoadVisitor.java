@@ -78,10 +78,8 @@ public abstract class PartnerLoadVisitor extends DAOLoadVisitor {
             // if there's a problem getting last batch row, start at the beginning
             currentProcessed = 0;
         }
-        currentProcessed += results.length;
-        getConfig().setValue(LastRun.LAST_LOAD_BATCH_ROW, currentProcessed);
         try {
-            getConfig().saveLastRun();
+            getConfig().checkpointLastRun(currentProcessed, results.length);
         } catch (IOException e) {
             String errMsg = Messages.getString("LoadAction.errorLastRun");
             getLogger().error(errMsg, e);
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.config;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Append-only journal of the load batches processed since the last run file was last saved. Appending one short line
+ * per batch is much cheaper than storing the whole last run file, and a crash can at worst cut off the line being
+ * written, which is then ignored when the journal is read back.
+ * <p>
+ * Each line holds the batch number, the first row of the batch, its number of rows and a checksum of those. Lines are
+ * handed to the operating system as they are appended and forced to disk according to the sync interval: on every
+ * append when it is 0, at most once per interval when it is positive, so that batches in between are committed
+ * together, and only on close when it is negative.
+ *
+ * @since 35.0
+ */
+class CheckpointJournal implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(CheckpointJournal.class);
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final File file;
+    private FileOutputStream out;
+    private int batchNumber;
+    private long lastSync;
+    private boolean unsynced;
+
+    /** A batch read back from the journal */
+    static class Entry {
+        final int batchNumber;
+        final int firstRow;
+        final int rows;
+
+        Entry(int batchNumber, int firstRow, int rows) {
+            this.batchNumber = batchNumber;
+            this.firstRow = firstRow;
+            this.rows = rows;
+        }
+
+        /**
+         * @return the number of rows processed once the batch was done
+         */
+        int getLastRow() {
+            return this.firstRow + this.rows;
+        }
+    }
+
+    CheckpointJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the last complete entry in the journal, or null if there is none
+     */
+    Entry readLast() throws IOException {
+        if (!this.file.isFile()) return null;
+        Entry last = null;
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), ASCII));
+        try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                final Entry entry = parse(line);
+                if (entry == null) {
+                    logger.warn("Ignoring incomplete checkpoint in " + this.file + ": " + line);
+                } else {
+                    last = entry;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (last != null) this.batchNumber = last.batchNumber;
+        return last;
+    }
+
+    /**
+     * Appends a batch to the journal, and forces it to disk if the sync interval has passed.
+     */
+    void append(int firstRow, int rows, long syncIntervalMillis) throws IOException {
+        if (this.out == null) open();
+        final String fields = ++this.batchNumber + "," + firstRow + "," + rows;
+        this.out.write((fields + "," + checksum(fields) + "\n").getBytes(ASCII));
+        this.unsynced = true;
+        final long now = System.currentTimeMillis();
+        if (syncIntervalMillis == 0 || syncIntervalMillis > 0 && now - this.lastSync >= syncIntervalMillis) {
+            sync();
+            this.lastSync = now;
+        }
+    }
+
+    private void open() throws IOException {
+        final boolean cutOff = this.file.length() > 0 && !endsWithNewLine();
+        this.out = new FileOutputStream(this.file, true);
+        // start after a line cut off by a crash, rather than appending to it
+        if (cutOff) this.out.write('\n');
+    }
+
+    private boolean endsWithNewLine() throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(this.file, "r");
+        try {
+            in.seek(in.length() - 1);
+            return in.read() == '\n';
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Empties the journal, once what it recorded has been saved elsewhere.
+     */
+    void clear() throws IOException {
+        close();
+        if (this.file.exists() && !this.file.delete()) {
+            throw new IOException("Could not delete " + this.file);
+        }
+        this.batchNumber = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.out == null) return;
+        try {
+            sync();
+        } finally {
+            this.out.close();
+            this.out = null;
+        }
+    }
+
+    private void sync() throws IOException {
+        if (!this.unsynced) return;
+        this.out.getChannel().force(false);
+        this.unsynced = false;
+    }
+
+    private static Entry parse(String line) {
+        final String[] values = line.split(",");
+        if (values.length != 4) return null;
+        try {
+            final String fields = values[0] + "," + values[1] + "," + values[2];
+            if (Long.parseLong(values[3]) != checksum(fields)) return null;
+            return new Entry(Integer.parseInt(values[0]), Integer.parseInt(values[1]), Integer.parseInt(values[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long checksum(String fields) {
+        final CRC32 crc = new CRC32();
+        crc.update(fields.getBytes(ASCII));
+        return crc.getValue();
+    }
+}
@@ -73,9 +73,13 @@ public class Config {
     public static final int MAX_BULK_API_BATCH_BYTES = 10000000;
     public static final int MAX_BULK_API_BATCH_SIZE = 10000;
     public static final int DEFAULT_BULK_API_BATCH_SIZE = 2000;
+    public static final int DEFAULT_LAST_RUN_SYNC_MILLIS = 1000;
+    public static final long DEFAULT_PARQUET_ROW_GROUP_SIZE = 64 * 1024 * 1024;
     public static final long DEFAULT_BULK_API_CHECK_STATUS_INTERVAL = 5000L;
 	public static final String DEFAULT_ENDPOINT_URL = "https://login.salesforce.com";
     public static final int DEFAULT_UPLOAD_LINES = 200;
+    public static final int DEFAULT_AZURE_BLOCK_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_AZURE_UPLOAD_THREADS = 4;
 	
 	/*
 	 * Issue #59 - Dataloader will not read all the database rows to get a total count
@@ -144,6 +148,7 @@ public class Config {
     public static final String BULK_API_SERIAL_MODE = "sfdc.bulkApiSerialMode";
     public static final String BULK_API_CHECK_STATUS_INTERVAL = "sfdc.bulkApiCheckStatusInterval";
     public static final String BULK_API_ZIP_CONTENT = "sfdc.bulkApiZipContent";
+    public static final String BULK_API_REATTACH_JOB = "sfdc.bulkApiReattachJob";
     public static final String WIRE_OUTPUT  = "sfdc.wireOutput";
     public static final String TIMEZONE = "sfdc.timezone";
 
@@ -182,7 +187,9 @@ public class Config {
     public static final String ENABLE_EXTRACT_STATUS_OUTPUT = "process.enableExtractStatusOutput"; //$NON-NLS-1$
     public static final String ENABLE_LAST_RUN_OUTPUT = "process.enableLastRunOutput"; //$NON-NLS-1$
     public static final String LAST_RUN_OUTPUT_DIR = "process.lastRunOutputDirectory"; //$NON-NLS-1$
+    public static final String LAST_RUN_SYNC_MILLIS = "process.lastRunSyncMillis"; //$NON-NLS-1$
     public static final String OUTPUT_ERROR = "process.outputError"; //$NON-NLS-1$
+    public static final String ASYNC_STATUS_OUTPUT = "process.asyncStatusOutput"; //$NON-NLS-1$
     public static final String LOAD_ROW_TO_START_AT = "process.loadRowToStartAt"; //$NON-NLS-1$
     public static final String INITIAL_LAST_RUN_DATE = "process.initialLastRunDate";
     public static final String ENCRYPTION_KEY_FILE = "process.encryptionKeyFile"; //$NON-NLS-1$
@@ -191,7 +198,26 @@ public class Config {
     public static final String DAO_TYPE = "dataAccess.type"; //$NON-NLS-1$
     public static final String DAO_NAME = "dataAccess.name"; //$NON-NLS-1$
     public static final String DAO_READ_BATCH_SIZE = "dataAccess.readBatchSize";
+    /**
+     * JDBC fetch size of the database reader, without the {@link #MAX_DAO_READ_BATCH_SIZE} limit of the read batch size
+     * it replaces. A negative value streams the rows one by one, the way MySQL drivers do with a fetch size of
+     * {@link Integer#MIN_VALUE}. When 0, the read batch size is used.
+     */
+    public static final String DAO_READ_FETCH_SIZE = "dataAccess.readFetchSize";
+    /**
+     * When true, a database reader keeps the rows it reads in a local file, and reads them from the file when it is
+     * opened again with the same parameters, instead of running the query again.
+     */
+    public static final String DAO_READ_SPOOL = "dataAccess.readSpool";
     public static final String DAO_WRITE_BATCH_SIZE = "dataAccess.writeBatchSize";
+    /**
+     * Number of connections a database writer writes on at once. When 0, rows are written on the calling thread.
+     */
+    public static final String DAO_WRITE_THREADS = "dataAccess.writeThreads";
+    /**
+     * Number of rows each connection of a database writer writes between commits, see {@link #DAO_WRITE_THREADS}.
+     */
+    public static final String DAO_WRITE_COMMIT_INTERVAL = "dataAccess.writeCommitInterval";
     public static final String DAO_SKIP_TOTAL_COUNT = "dataAccess.skipTotalCount";
 
     /*
@@ -201,11 +227,29 @@ public class Config {
      */
     public static final String READ_UTF8 = "dataAccess.readUTF8"; //$NON-NLS-1$
     public static final String WRITE_UTF8 = "dataAccess.writeUTF8"; //$NON-NLS-1$
+    public static final String CSV_READ_MAPPED = "dataAccess.csvReadMapped"; //$NON-NLS-1$
+    public static final String CSV_READ_THREADS = "dataAccess.csvReadThreads"; //$NON-NLS-1$
+    public static final String CSV_ROW_INDEX = "dataAccess.csvRowIndex"; //$NON-NLS-1$
+    public static final String CSV_WRITE_QUOTE_ALL = "dataAccess.csvWriteQuoteAll"; //$NON-NLS-1$
+    public static final String CSV_GZIP = "dataAccess.csvGzip"; //$NON-NLS-1$
+    public static final String PARQUET_ROW_GROUP_SIZE = "dataAccess.parquetRowGroupSize"; //$NON-NLS-1$
+    public static final String PARQUET_COMPRESSION = "dataAccess.parquetCompression"; //$NON-NLS-1$
 
     //Azure server connectivity
     public static final String AZURE_URI = "azure.uri";
     public static final String AZURE_CONTAINER = "azure.container";
+    /**
+     * No longer used: blob writers upload blocks of {@link #AZURE_BLOCK_SIZE} bytes.
+     */
     public static final String AZURE_UPLOAD_LINES = "azure.uploadLines";
+    /**
+     * Size in bytes of the blocks a blob writer uploads. A blob has at most 50,000 blocks.
+     */
+    public static final String AZURE_BLOCK_SIZE = "azure.blockSize";
+    /**
+     * Number of blocks a blob writer uploads at once.
+     */
+    public static final String AZURE_UPLOAD_THREADS = "azure.uploadThreads";
 
     //Incremental export vars
     public static final String INCREMENTAL_EXPORT = "incremental.export";
@@ -316,16 +360,30 @@ public class Config {
         setValue(ASSIGNMENT_RULE, ""); //$NON-NLS-1$
         setValue(INSERT_NULLS, false);
         setValue(ENABLE_EXTRACT_STATUS_OUTPUT, false);
+        setValue(ASYNC_STATUS_OUTPUT, false);
         setValue(ENABLE_LAST_RUN_OUTPUT, true);
+        setValue(LAST_RUN_SYNC_MILLIS, DEFAULT_LAST_RUN_SYNC_MILLIS);
         setValue(RESET_URL_ON_LOGIN, true);
         setValue(EXTRACT_REQUEST_SIZE, DEFAULT_EXTRACT_REQUEST_SIZE);
         setValue(DAO_WRITE_BATCH_SIZE, DEFAULT_DAO_WRITE_BATCH_SIZE);
+        setValue(DAO_WRITE_THREADS, 0);
+        setValue(DAO_WRITE_COMMIT_INTERVAL, DEFAULT_DAO_WRITE_BATCH_SIZE);
         setValue(DAO_READ_BATCH_SIZE, DEFAULT_DAO_READ_BATCH_SIZE);
+        setValue(DAO_READ_FETCH_SIZE, 0);
+        setValue(DAO_READ_SPOOL, false);
+        setValue(CSV_READ_MAPPED, false);
+        setValue(CSV_READ_THREADS, 1);
+        setValue(CSV_ROW_INDEX, false);
+        setValue(CSV_WRITE_QUOTE_ALL, true);
+        setValue(CSV_GZIP, false);
+        setValue(PARQUET_ROW_GROUP_SIZE, DEFAULT_PARQUET_ROW_GROUP_SIZE);
+        setValue(PARQUET_COMPRESSION, "gzip"); //$NON-NLS-1$
         setValue(TRUNCATE_FIELDS, true);
         // TODO: When we're ready, make Bulk API turned on by default.
         setValue(BULK_API_ENABLED, useBulkApiByDefault());
         setValue(BULK_API_SERIAL_MODE, false);
         setValue(BULK_API_ZIP_CONTENT, false);
+        setValue(BULK_API_REATTACH_JOB, false);
         setValue(BULK_API_CHECK_STATUS_INTERVAL, DEFAULT_BULK_API_CHECK_STATUS_INTERVAL);
         setValue(WIRE_OUTPUT,false);
         setValue(TIMEZONE, TimeZone.getDefault().getID());
@@ -344,6 +402,8 @@ public class Config {
         setValue(AZURE_URI, DEFAULT_ENDPOINT_URL);
         setValue(AZURE_CONTAINER, STRING_DEFAULT);
         setValue(AZURE_UPLOAD_LINES, DEFAULT_UPLOAD_LINES);
+        setValue(AZURE_BLOCK_SIZE, DEFAULT_AZURE_BLOCK_SIZE);
+        setValue(AZURE_UPLOAD_THREADS, DEFAULT_AZURE_UPLOAD_THREADS);
 
         //Incremental export
         setValue(INCREMENTAL_EXPORT, BOOLEAN_DEFAULT);
@@ -518,6 +578,10 @@ public class Config {
 
     public int getUploadLines() throws ParameterLoadException { return getInt(AZURE_UPLOAD_LINES); }
 
+    public int getBlockSize() throws ParameterLoadException { return getInt(AZURE_BLOCK_SIZE); }
+
+    public int getUploadThreads() throws ParameterLoadException { return getInt(AZURE_UPLOAD_THREADS); }
+
     public TimeZone getTimeZone() {
         return TimeZone.getTimeZone(getString(TIMEZONE));
     }
@@ -884,6 +948,27 @@ public class Config {
         lastRun.save();
     }
 
+    /**
+     * Save that a load batch has been processed, by appending it to the last run journal rather than saving all the
+     * statistics from the last run. How often the journal is forced to disk is set by {@link #LAST_RUN_SYNC_MILLIS}.
+     *
+     * @param firstRow
+     *            number of rows processed before the batch
+     * @param rows
+     *            number of rows in the batch
+     * @throws IOException
+     */
+    public void checkpointLastRun(int firstRow, int rows) throws IOException {
+        long syncMillis;
+        try {
+            syncMillis = getLong(LAST_RUN_SYNC_MILLIS);
+        } catch (ParameterLoadException e) {
+            syncMillis = DEFAULT_LAST_RUN_SYNC_MILLIS;
+        }
+        setValue(LastRun.LAST_LOAD_BATCH_ROW, firstRow + rows);
+        lastRun.checkpoint(firstRow, rows, syncMillis);
+    }
+
     /**
      * @param propName
      *            name of the property
@@ -26,6 +26,7 @@
 package com.salesforce.dataloader.config;
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 import org.apache.log4j.Logger;
@@ -53,6 +54,7 @@ public class LastRun extends Properties {
     private String filePath;
     private String filename;
     private boolean outputEnabled;
+    private CheckpointJournal journal;
 
     /**
      * Initialize lastRun with filename, this is needed if last run output is not enabled (yet)
@@ -72,6 +74,7 @@ public class LastRun extends Properties {
     public void init(String filePath, boolean outputEnabled) {
         this.filePath = filePath;
         this.outputEnabled = outputEnabled;
+        this.journal = filePath == null ? null : new CheckpointJournal(new File(filePath, filename + ".journal"));
 
         paramNames.put(LAST_RUN_DATE,"");
         paramNames.put(LAST_LOAD_BATCH_ROW,"");
@@ -103,6 +106,11 @@ public class LastRun extends Properties {
         } finally {
             in.close();
         }
+        // batches processed after the file was last saved
+        CheckpointJournal.Entry lastBatch = journal.readLast();
+        if (lastBatch != null) {
+            setProperty(LAST_LOAD_BATCH_ROW, String.valueOf(lastBatch.getLastRow()));
+        }
     }
 
     public void save() throws IOException {
@@ -113,12 +121,45 @@ public class LastRun extends Properties {
             throw new IOException(Messages.getString("LastRun.fileMissing")); //$NON-NLS-1$
         }
 
-        final FileOutputStream out = new FileOutputStream(new File(filePath, filename));
+        // write a new file and move it in place, so that a crash can't leave a partly written file behind
+        final File lastRunFile = new File(filePath, filename);
+        final File tempFile = new File(filePath, filename + ".tmp");
+        final FileOutputStream out = new FileOutputStream(tempFile);
         try {
             store(out, "Last Run Config"); //$NON-NLS-1$
+            out.getChannel().force(false);
         } finally {
             out.close();
         }
+        try {
+            Files.move(tempFile.toPath(), lastRunFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), lastRunFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        journal.clear();
+    }
+
+    /**
+     * Records that a load batch has been processed, by appending it to the checkpoint journal instead of saving the
+     * whole file. {@link #LAST_LOAD_BATCH_ROW} is expected to be set to the row following the batch already. The
+     * journal is read back by {@link #load()} and emptied by {@link #save()}.
+     *
+     * @param firstRow
+     *            number of rows processed before the batch
+     * @param rows
+     *            number of rows in the batch
+     * @param syncIntervalMillis
+     *            how often the journal is forced to disk: 0 for every batch, negative for only when it is closed
+     */
+    public synchronized void checkpoint(int firstRow, int rows, long syncIntervalMillis) throws IOException {
+        if(! outputEnabled) {
+            return;
+        }
+        if (filePath == null) {
+            throw new IOException(Messages.getString("LastRun.fileMissing")); //$NON-NLS-1$
+        }
+        journal.append(firstRow, rows, syncIntervalMillis);
     }
 
     public boolean hasParameter(String paramName) {
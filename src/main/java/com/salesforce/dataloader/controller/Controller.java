@@ -42,6 +42,7 @@ import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.dao.DataAccessObject;
 import com.salesforce.dataloader.dao.DataAccessObjectFactory;
+import com.salesforce.dataloader.dao.SpooledDataReader;
 import com.salesforce.dataloader.exception.*;
 import com.salesforce.dataloader.mapping.*;
 import com.salesforce.dataloader.ui.LoaderWindow;
@@ -181,6 +182,7 @@ public class Controller {
     public void createDao() throws DataAccessObjectInitializationException {
         try {
             config.getStringRequired(Config.DAO_NAME); // verify required param exists: dao name
+            if (dao instanceof SpooledDataReader) ((SpooledDataReader)dao).deleteSpool();
             dao = daoFactory.getDaoInstance(config.getStringRequired(Config.DAO_TYPE), config);
         } catch (Exception e) {
             logger.fatal(Messages.getString("Controller.errorDAOCreate"), e); //$NON-NLS-1$
@@ -467,15 +469,16 @@ public class Controller {
         Date currentTime = new Date();
         SimpleDateFormat format = new SimpleDateFormat("MMddyyhhmmssSSS"); //$NON-NLS-1$
         String timestamp = format.format(currentTime);
+        String extension = config.getBoolean(Config.CSV_GZIP) ? ".csv.gz" : ".csv"; //$NON-NLS-1$ //$NON-NLS-2$
 
         // if status files are not specified, generate the files automatically
         String successPath = config.getString(Config.OUTPUT_SUCCESS);
         if (generateFiles || successPath == null || successPath.length() == 0) {
-            successPath = new File(statusDir, "success" + timestamp + ".csv").getAbsolutePath(); //$NON-NLS-1$ //$NON-NLS-2$
+            successPath = new File(statusDir, "success" + timestamp + extension).getAbsolutePath(); //$NON-NLS-1$
         }
         String errorPath = config.getString(Config.OUTPUT_ERROR);
         if (generateFiles || errorPath == null || errorPath.length() == 0) {
-            errorPath = new File(statusDir, "error" + timestamp + ".csv").getAbsolutePath(); //$NON-NLS-1$ //$NON-NLS-2$
+            errorPath = new File(statusDir, "error" + timestamp + extension).getAbsolutePath(); //$NON-NLS-1$
         }
 
         // next validate the error and success csv
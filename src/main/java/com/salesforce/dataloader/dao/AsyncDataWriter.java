@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * Writes rows through another data writer on a thread of its own, so that callers only wait for the writes when the
+ * queue of rows is full or when they {@link #flush()}. Rows are handed to the other writer in lists of up to
+ * {@link #MAX_ROWS_PER_WRITE}. An error while writing is thrown from the next call to write or flush. Until the writer
+ * is opened, rows are written straight through.
+ * <p>
+ * Rows must not be changed once they have been written.
+ *
+ * @since 35.0
+ */
+public class AsyncDataWriter implements DataWriter {
+
+    private static final Logger logger = Logger.getLogger(AsyncDataWriter.class);
+
+    public static final int DEFAULT_QUEUE_ROWS = 10000;
+    static final int MAX_ROWS_PER_WRITE = 500;
+    private static final long POLL_MILLIS = 100;
+
+    private final DataWriter writer;
+    private final String name;
+    private final BlockingQueue<Row> queue;
+    private final Object lock = new Object();
+
+    private Thread thread;
+    // guarded by lock
+    private long queuedRows;
+    private long writtenRows;
+    private DataAccessObjectException error;
+
+    public AsyncDataWriter(DataWriter writer, String name) {
+        this(writer, name, DEFAULT_QUEUE_ROWS);
+    }
+
+    public AsyncDataWriter(DataWriter writer, String name, int queueRows) {
+        this.writer = writer;
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<Row>(queueRows);
+    }
+
+    @Override
+    public void open() throws DataAccessObjectInitializationException {
+        stop();
+        this.writer.open();
+        synchronized (this.lock) {
+            this.queuedRows = 0;
+            this.writtenRows = 0;
+            this.error = null;
+        }
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, this.name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void checkConnection() throws DataAccessObjectInitializationException {
+        this.writer.checkConnection();
+    }
+
+    @Override
+    public void setColumnNames(List<String> columnNames) throws DataAccessObjectInitializationException {
+        // the header is written before any row
+        this.writer.setColumnNames(columnNames);
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return this.writer.getColumnNames();
+    }
+
+    @Override
+    public boolean writeRow(Row row) throws DataAccessObjectException {
+        if (this.thread == null) return this.writer.writeRow(row);
+        synchronized (this.lock) {
+            checkError();
+            this.queuedRows++;
+        }
+        try {
+            while (!this.queue.offer(row, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                synchronized (this.lock) {
+                    checkError();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessObjectException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean writeRowList(List<Row> rows) throws DataAccessObjectException {
+        for (Row row : rows) {
+            writeRow(row);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until every row written so far has been written by the other writer.
+     *
+     * @throws DataAccessObjectException
+     *             if a row could not be written
+     */
+    public void flush() throws DataAccessObjectException {
+        synchronized (this.lock) {
+            while (this.writtenRows < this.queuedRows && this.error == null && this.thread != null
+                    && this.thread.isAlive()) {
+                try {
+                    this.lock.wait(POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DataAccessObjectException(e);
+                }
+            }
+            checkError();
+        }
+    }
+
+    /**
+     * Writes the rows still queued and closes the other writer. Errors are only logged, call {@link #flush()} first to
+     * get them.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } catch (DataAccessObjectException e) {
+            logger.error("Failed to write all rows to " + this.name, e);
+        }
+        stop();
+        this.writer.close();
+    }
+
+    @Override
+    public int getCurrentRowNumber() {
+        synchronized (this.lock) {
+            return (int)this.queuedRows;
+        }
+    }
+
+    private void stop() {
+        if (this.thread == null) return;
+        this.thread.interrupt();
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.thread = null;
+        this.queue.clear();
+    }
+
+    private void checkError() throws DataAccessObjectException {
+        if (this.error != null) throw this.error;
+    }
+
+    private void drain() {
+        final List<Row> rows = new ArrayList<Row>(MAX_ROWS_PER_WRITE);
+        try {
+            while (true) {
+                rows.add(this.queue.take());
+                this.queue.drainTo(rows, MAX_ROWS_PER_WRITE - 1);
+                this.writer.writeRowList(rows);
+                synchronized (this.lock) {
+                    this.writtenRows += rows.size();
+                    this.lock.notifyAll();
+                }
+                rows.clear();
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        } catch (DataAccessObjectException e) {
+            failed(e);
+        } catch (RuntimeException e) {
+            failed(new DataAccessObjectException(e));
+        }
+    }
+
+    private void failed(DataAccessObjectException e) {
+        synchronized (this.lock) {
+            this.error = e;
+            this.lock.notifyAll();
+        }
+    }
+}
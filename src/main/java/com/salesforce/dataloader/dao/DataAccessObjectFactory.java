@@ -31,8 +31,15 @@ import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.dao.csv.CSVFileReader;
 import com.salesforce.dataloader.dao.csv.CSVFileWriter;
+import com.salesforce.dataloader.dao.csv.CSVStreamReader;
+import com.salesforce.dataloader.dao.csv.CSVStreamWriter;
 import com.salesforce.dataloader.dao.database.DatabaseReader;
 import com.salesforce.dataloader.dao.database.DatabaseWriter;
+import com.salesforce.dataloader.dao.database.ParallelDatabaseWriter;
+import com.salesforce.dataloader.dao.jsonl.JsonLinesReader;
+import com.salesforce.dataloader.dao.jsonl.JsonLinesWriter;
+import com.salesforce.dataloader.dao.parquet.ParquetFileReader;
+import com.salesforce.dataloader.dao.parquet.ParquetFileWriter;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
 import com.salesforce.dataloader.exception.UnsupportedDataAccessObjectException;
 
@@ -41,6 +48,12 @@ public class DataAccessObjectFactory {
 
     static public final String CSV_READ_TYPE = "csvRead";
     static public final String CSV_WRITE_TYPE = "csvWrite";
+    static public final String CSV_STREAM_READ_TYPE = "csvStreamRead";
+    static public final String CSV_STREAM_WRITE_TYPE = "csvStreamWrite";
+    static public final String PARQUET_READ_TYPE = "parquetRead";
+    static public final String PARQUET_WRITE_TYPE = "parquetWrite";
+    static public final String JSONL_READ_TYPE = "jsonlRead";
+    static public final String JSONL_WRITE_TYPE = "jsonlWrite";
     static public final String DATABASE_READ_TYPE = "databaseRead";
     static public final String DATABASE_WRITE_TYPE = "databaseWrite";
     static public final String BLOB_WRITE_TYPE = "blobWrite";
@@ -54,10 +67,23 @@ public class DataAccessObjectFactory {
             dao = new CSVFileReader(config);
         } else if (CSV_WRITE_TYPE.equalsIgnoreCase(daoType)) {
             dao = new CSVFileWriter(config.getString(Config.DAO_NAME), config);
+        } else if (CSV_STREAM_READ_TYPE.equalsIgnoreCase(daoType)) {
+            dao = new CSVStreamReader(config);
+        } else if (CSV_STREAM_WRITE_TYPE.equalsIgnoreCase(daoType)) {
+            dao = new CSVStreamWriter(config);
+        } else if (PARQUET_READ_TYPE.equalsIgnoreCase(daoType)) {
+            dao = new ParquetFileReader(config);
+        } else if (PARQUET_WRITE_TYPE.equalsIgnoreCase(daoType)) {
+            dao = new ParquetFileWriter(config.getString(Config.DAO_NAME), config);
+        } else if (JSONL_READ_TYPE.equalsIgnoreCase(daoType)) {
+            dao = new JsonLinesReader(config);
+        } else if (JSONL_WRITE_TYPE.equalsIgnoreCase(daoType)) {
+            dao = new JsonLinesWriter(config.getString(Config.DAO_NAME), config);
         } else if (DATABASE_READ_TYPE.equalsIgnoreCase(daoType)) {
             dao = new DatabaseReader(config);
         } else if (DATABASE_WRITE_TYPE.equalsIgnoreCase(daoType)) {
-            dao = new DatabaseWriter(config);
+            dao = ParallelDatabaseWriter.isEnabled(config) ? new ParallelDatabaseWriter(config)
+                    : new DatabaseWriter(config);
         } else if (BLOB_WRITE_TYPE.equalsIgnoreCase(daoType)) {
             dao = new BlobWriter(config.getString(Config.DAO_NAME), config);
         } else {
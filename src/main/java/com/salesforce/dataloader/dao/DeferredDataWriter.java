@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao;
+
+import java.util.List;
+
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * A data writer that finishes writing rows after the calls to write them return. Writing rows only hands them over,
+ * and {@link #getResults(boolean)} tells which rows have since been written and which failed.
+ *
+ * @since 35.0
+ */
+public interface DeferredDataWriter extends DataWriter {
+
+    /**
+     * Rows that have been written, or that failed to be written with the same error.
+     */
+    final class Result {
+        private final List<Row> rows;
+        private final String errorMessage;
+
+        public Result(List<Row> rows, String errorMessage) {
+            this.rows = rows;
+            this.errorMessage = errorMessage;
+        }
+
+        public List<Row> getRows() {
+            return this.rows;
+        }
+
+        public boolean isSuccess() {
+            return this.errorMessage == null;
+        }
+
+        /**
+         * @return why the rows were not written, or null if they were
+         */
+        public String getErrorMessage() {
+            return this.errorMessage;
+        }
+    }
+
+    /**
+     * @param waitForAll true to finish writing all the rows handed over so far first
+     * @return the results of the rows finished since the last call
+     * @throws DataAccessObjectException
+     */
+    List<Result> getResults(boolean waitForAll) throws DataAccessObjectException;
+}
@@ -23,68 +23,19 @@
  * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
  * POSSIBILITY OF SUCH DAMAGE.
  */
-
-package com.salesforce.dataloader.dao.csv;
-
-import java.io.IOException;
-import java.io.Writer;
-
-import org.apache.log4j.Logger;
+package com.salesforce.dataloader.dao;
 
 /**
- * Describe your class here.
+ * A data reader that keeps a local copy of the rows it reads, so that it can read them again after it is reopened.
+ * The copy outlives {@link #close()} and is deleted by {@link #deleteSpool()} once the operation is done with the
+ * reader.
  *
- * @author Lexi Viripaeff
- * @since 6.0
+ * @since 35.0
  */
-public class CSVColumnVisitor {
-
-    private boolean first = true;
-
-    private static final char QUOTE = '"';
-    private static final char COMMA = ',';
-
-    private Writer writer;
-
-    //logger
-    private static Logger logger = Logger.getLogger(CSVColumnVisitor.class);
-
-    public CSVColumnVisitor(Writer writer) {
-        this.writer = writer;
-    }
-
-    public void newRow() {
-        first = true;
-    }
-
-    public void visit(String column) throws IOException {
-        // prevent failure on nulls -- treat nulls as blanks
-        if (column == null) {
-            column = "";
-        }
-        try {
-            if (!first)
-                writer.write(COMMA);
-            else
-                first = false;
-
-                writer.write(QUOTE);
-
-                for (int i = 0, len = column.length(); i < len; i++) {
-                    char c = column.charAt(i);
-                if (c == QUOTE)
-                    writer.write("\"\"");
-                else
-                    writer.write(c);
-            }
-
-            writer.write(QUOTE);
-
-        } catch (IOException e) {
-            logger.error(e);
-            throw e;
-        }
-
-    }
+public interface SpooledDataReader extends DataReader {
 
+    /**
+     * Deletes the local copy of the rows. Reading again after a reopen starts over on the data source.
+     */
+    void deleteSpool();
 }
@@ -29,7 +29,6 @@ package com.salesforce.dataloader.dao.blob;
 import java.util.List;
 
 import com.salesforce.dataloader.model.Row;
-import org.apache.log4j.Logger;
 
 /**
  * Describe your class here.
@@ -40,14 +39,15 @@ import org.apache.log4j.Logger;
 public class BlobColumnVisitor {
 
 /*
-An engine to put quotes and commas in the correct places and to concatenate strings.
+An engine to put quotes and commas in the correct places. The first value of a row is written as is, the others are
+quoted, and line feeds in values are replaced with spaces.
  */
 
-    private boolean first = true;
-    private String concat = "";
-
-    public String visitHeader(List<String> columnNames, boolean capitalization){
-
+    /**
+     * Appends the header row to the text.
+     */
+    public void visitHeader(List<String> columnNames, boolean capitalization, StringBuilder out) {
+        boolean first = true;
         for (String colName : columnNames) {
             String outColName;
             if (colName != null) {
@@ -60,32 +60,37 @@ An engine to put quotes and commas in the correct places and to concatenate stri
                 outColName = "";
             }
 
-            wrap(outColName);
+            wrap(out, outColName, first);
+            first = false;
         }
 
-        concat += "\n"; //Insert new line to separate rows
-        return concat;
+        out.append('\n'); //Insert new line to separate rows
     }
 
-    public String visit(List<String> columnNames, Row inputRow){
+    /**
+     * Appends the values of the row to the text.
+     */
+    public void visit(List<String> columnNames, Row inputRow, StringBuilder out) {
+        boolean first = true;
         for (String colName : columnNames) {
             Object colVal = inputRow.get(colName);
-            colName = (colVal != null ? colVal.toString() : "");
-            String colNameEdit = colName.replace("\n", " "); //Removes new lines and replaces with spaces
-            wrap(colNameEdit);
+            wrap(out, colVal != null ? colVal.toString() : "", first);
+            first = false;
         }
 
-        concat += "\n"; //Insert new line to separate rows
-        return concat;
+        out.append('\n'); //Insert new line to separate rows
     }
 
-    private void wrap(String s){
-        if(first){
-            concat += s;
-            first = false;
-        }else{
-            concat += ",";
-            concat = concat + "\"" + s + "\"";
+    private static void wrap(StringBuilder out, String s, boolean first) {
+        if (!first) {
+            out.append(",\"");
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            out.append(c == '\n' ? ' ' : c); //Removes new lines and replaces with spaces
+        }
+        if (!first) {
+            out.append('"');
         }
     }
 
@@ -31,24 +31,34 @@ import com.salesforce.dataloader.config.Messages;
 import com.salesforce.dataloader.dao.DataWriter;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
-import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.model.Row;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.microsoft.azure.storage.*;
 import com.microsoft.azure.storage.blob.*;
 
 /**
+ * Writes rows to a block blob. The rows are collected in blocks of {@link Config#AZURE_BLOCK_SIZE} bytes, which are
+ * uploaded on {@link Config#AZURE_UPLOAD_THREADS} threads while the next blocks are filled, and committed as the
+ * content of the blob by {@link #close()}, which throws a {@link BlobWriteException} if the blob could not be
+ * written. The URI can be any storage connection string, such as
+ * <code>UseDevelopmentStorage=true</code> for the local Azurite emulator.
+ *
  * @author Kevin Ulrich
  */
 public class BlobWriter implements DataWriter {
@@ -56,30 +66,46 @@ public class BlobWriter implements DataWriter {
     //logger
     private static Logger logger = Logger.getLogger(BlobWriter.class);
 
+    /**
+     * Thrown by {@link BlobWriter#close()} when the blocks could not be uploaded or committed, so the content of the
+     * blob was not replaced.
+     */
+    public static class BlobWriteException extends RuntimeException {
+        public BlobWriteException(String msg, Throwable e) {
+            super(msg, e);
+        }
+    }
+
     private List<String> columnNames = new ArrayList<>();
 
     //Blob objects
-    private CloudAppendBlob appendBlob;
-
-    //Blob storage
-    private CloudStorageAccount account;
-    private CloudBlobClient client;
-    private CloudBlobContainer container;
-
-    //URI
-    private String uri;
+    private CloudBlockBlob blockBlob;
 
     //Class objects
     private final String fileName;
-    private String containerName;
     private Config config;
-    private int uploadLines;
-    private int linesToBeUploaded;
     private final boolean capitalizedHeadings;
     private int currentRowNumber = 0;
+    private final BlobColumnVisitor visitor = new BlobColumnVisitor();
+    // the text of a row, reused for every row
+    private final StringBuilder line = new StringBuilder();
+
+    //Block staging
+    private int blockSize;
+    private int uploadThreads;
+    private ExecutorService uploader;
+    // block buffers that are not being filled or uploaded, at most one more than the uploading threads are allocated
+    private BlockingQueue<byte[]> freeBuffers;
+    private int allocatedBuffers;
+    private byte[] block;
+    private int blockLength;
+    private final List<String> blockIds = new ArrayList<>();
+    // uploads that may still be running
+    private final List<Future<?>> uploads = new ArrayList<>();
+    private volatile Exception uploadError;
+    // the upload error has been thrown by a write
+    private boolean uploadErrorReported;
     private boolean hasWritten = false;
-    private String uploadString;
-    private int records;
 
     //T/F connection is open
     private boolean open = false;
@@ -100,108 +126,191 @@ public class BlobWriter implements DataWriter {
     public void open() throws DataAccessObjectInitializationException {
         try {
             //Setup
-            uri = getURI();
-            account = CloudStorageAccount.parse(uri);
-            client = account.createCloudBlobClient();
-            containerName = getContainerName();
-            container = client.getContainerReference(containerName);
+            CloudStorageAccount account = CloudStorageAccount.parse(getURI());
+            CloudBlobClient client = account.createCloudBlobClient();
+            CloudBlobContainer container = client.getContainerReference(getContainerName());
             container.createIfNotExists();
-            uploadLines = getUploadLines();
-            linesToBeUploaded=0;
-            uploadString="";
-            records=0;
-
-            open = true;
+            blockBlob = container.getBlockBlobReference(fileName);
+            blockSize = Math.max(1, config.getBlockSize());
+            uploadThreads = Math.max(1, config.getUploadThreads());
         } catch (Exception e) {
-            String errMsg = Messages.getString("BlobWriter.openWriting"); // TODO: 12/22/2015 implement 
+            String errMsg = Messages.getFormattedString("BlobWriter.openWriting", new String[] { fileName,
+                    e.getMessage() });
             logger.error(errMsg, e);
+            throw new DataAccessObjectInitializationException(errMsg, e);
         }
+        final AtomicInteger threadNumber = new AtomicInteger();
+        uploader = Executors.newFixedThreadPool(uploadThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BlobWriter-" + fileName + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        freeBuffers = new ArrayBlockingQueue<>(uploadThreads + 1);
+        allocatedBuffers = 0;
+        block = null;
+        blockLength = 0;
+        blockIds.clear();
+        uploads.clear();
+        uploadError = null;
+        uploadErrorReported = false;
+        hasWritten = false;
+        currentRowNumber = 0;
+        open = true;
     }
 
+    /**
+     * Uploads the rest of the rows and commits the blocks as the content of the blob, which replaces the blob.
+     *
+     * @throws BlobWriteException
+     *             if a block could not be uploaded or the blocks could not be committed, unless a write has already
+     *             thrown the upload error
+     */
     @Override
     public void close() {
+        if (!open) return;
+        open = false;
+        Exception error = null;
         try {
-            linesToBeUploaded=0;
-            uploadString="";
-            open = false;
-        } catch (Exception e) {
-            String errMsg = Messages.getString("BlobWriter.closeWriting"); // TODO: 12/22/2015 implement 
-            logger.error(errMsg, e);
+            if (blockLength > 0) {
+                stageBlock();
+            }
+            for (Future<?> upload : uploads) {
+                upload.get();
+            }
+            // uploads that finished before are no longer in the list, but a failed one has left its error
+            if (uploadError == null && hasWritten) {
+                List<BlockEntry> blocks = new ArrayList<>(blockIds.size());
+                for (String blockId : blockIds) {
+                    blocks.add(new BlockEntry(blockId, BlockSearchMode.UNCOMMITTED));
+                }
+                blockBlob.commitBlockList(blocks);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+        } catch (ExecutionException | StorageException e) {
+            error = e;
+        } finally {
+            uploader.shutdownNow();
+            uploads.clear();
+            block = null;
+            freeBuffers = null;
+        }
+        final Exception cause = uploadError != null ? uploadError : error;
+        if (cause == null) return;
+        String errMsg = Messages.getFormattedString("BlobWriter.closeWriting", new String[] { fileName,
+                String.valueOf(cause.getMessage()) });
+        logger.error(errMsg, cause);
+        if (cause != uploadError || !uploadErrorReported) {
+            throw new BlobWriteException(errMsg, cause);
         }
     }
 
     private void writeHeaderRow() throws DataAccessObjectException {
-        try {
-
-            uploadHeaderColumns(this.columnNames);
-
-        } catch (Exception e) {
-            String errMsg = Messages.getString("BlobWriter.errorWriting"); // TODO: 12/23/2015 implement 
-            logger.error(errMsg, e);
-            throw new DataAccessObjectInitializationException(errMsg, e);
-        }
-
+        line.setLength(0);
+        visitor.visitHeader(this.columnNames, capitalizedHeadings, line);
+        append(line);
     }
 
     @Override
     public boolean writeRow(Row inputRow) throws DataAccessObjectException {
-        try {
-            uploadColumns(columnNames, inputRow);
+        line.setLength(0);
+        visitor.visit(columnNames, inputRow, line);
+        append(line);
+        currentRowNumber++;
+        return true;
+    }
 
-            currentRowNumber++; //What is this for?
-            return true;
-        } catch (Exception e) {
-            String errMsg = Messages.getString("BlobWriter.errorWriting"); // TODO: 12/22/2015 implement
-            logger.error(errMsg, e);
-            return false;
+    /**
+     * Adds the text to the block being filled, and uploads the block once the text doesn't fit.
+     */
+    private void append(CharSequence text) throws DataAccessObjectException {
+        if (!open) {
+            throw new DataAccessObjectException(Messages.getFormattedString("BlobWriter.errorNotOpen", fileName));
+        }
+        checkUploads();
+        final byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        hasWritten = true;
+        try {
+            if (blockLength > 0 && blockLength + bytes.length > blockSize) {
+                stageBlock();
+            }
+            if (bytes.length > blockSize) {
+                // a row bigger than a block is a block of its own
+                stageBlock(bytes, bytes.length);
+                return;
+            }
+            if (block == null) {
+                block = takeBuffer();
+            }
+            System.arraycopy(bytes, 0, block, blockLength, bytes.length);
+            blockLength += bytes.length;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessObjectException(Messages.getFormattedString("BlobWriter.errorWriting", new String[] {
+                    fileName, e.toString() }), e);
         }
     }
 
-    private void uploadHeaderColumns(List<String> columnNames) throws IOException {
-        BlobColumnVisitor visitor = new BlobColumnVisitor();
-
-        uploadToAzure(visitor.visitHeader(columnNames, capitalizedHeadings));
+    private void stageBlock() {
+        stageBlock(block, blockLength);
+        block = null;
+        blockLength = 0;
     }
 
-    private void uploadColumns(List<String> columnNames, Row inputRow) throws IOException {
-        BlobColumnVisitor visitor = new BlobColumnVisitor();
-
-        uploadString += visitor.visit(columnNames, inputRow);
-        linesToBeUploaded++;
-
-        //We check if we have accumulated enough lines, if so then we upload to Azure, with an alternative limit of
-        //the number of records we have, in case we can't fulfill uploadLines
-        if(linesToBeUploaded==uploadLines || linesToBeUploaded==records) {
-            uploadToAzure(uploadString);
-            linesToBeUploaded=0;
+    /**
+     * Uploads the block on an uploading thread, and gives its buffer back once it is uploaded.
+     */
+    private void stageBlock(final byte[] data, final int length) {
+        final String blockId = Base64.getEncoder().encodeToString(
+                String.format("%010d", blockIds.size()).getBytes(StandardCharsets.US_ASCII));
+        blockIds.add(blockId);
+        // a failed upload leaves its error in uploadError, so finished ones needn't be kept
+        for (Iterator<Future<?>> it = uploads.iterator(); it.hasNext();) {
+            if (it.next().isDone()) it.remove();
         }
+        final BlockingQueue<byte[]> buffers = freeBuffers;
+        uploads.add(uploader.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blockBlob.uploadBlock(blockId, new ByteArrayInputStream(data, 0, length), length);
+                } catch (Exception e) {
+                    uploadError = e;
+                    throw new RuntimeException(e);
+                } finally {
+                    if (data.length == blockSize) {
+                        buffers.offer(data);
+                    }
+                }
+            }
+        }));
     }
 
-    private boolean uploadToAzure(String s) {
-        try {
-            //Open connection to Azure server
-            appendBlob = container.getAppendBlobReference(fileName);
-
-            if (!BlobExistsOnCloud() || BlobExistsOnCloud() && !hasWritten)
-                appendBlob.createOrReplace();
-                hasWritten = true;
-
-            appendBlob.appendText(s);
-
-            return true;
-        } catch (Exception e) {
-            logger.error(e.getMessage(), e);
-            return false; //An error occured and we did not upload to the server
+    private byte[] takeBuffer() throws InterruptedException {
+        byte[] buffer = freeBuffers.poll();
+        if (buffer == null) {
+            if (allocatedBuffers <= uploadThreads) {
+                allocatedBuffers++;
+                return new byte[blockSize];
+            }
+            // all the buffers are being uploaded
+            buffer = freeBuffers.take();
         }
+        return buffer;
     }
 
-    private boolean BlobExistsOnCloud() throws StorageException {
-        try {
-            return client.getContainerReference(containerName).getBlockBlobReference(fileName).exists();
-        } catch (Exception e) {
-            logger.error(e.getMessage());
-            throw new StorageException("Storage Exception", e.getMessage(),
-                    -1, new StorageExtendedErrorInformation(), e); //Not sure how to simplify this, is generic right now
+    private void checkUploads() throws DataAccessObjectException {
+        final Exception e = uploadError;
+        if (e != null) {
+            String errMsg = Messages.getFormattedString("BlobWriter.errorWriting", new String[] { fileName,
+                    e.getMessage() });
+            logger.error(errMsg, e);
+            uploadErrorReported = true;
+            throw new DataAccessObjectException(errMsg, e);
         }
     }
 
@@ -216,22 +325,20 @@ public class BlobWriter implements DataWriter {
         return config.getContainerName();
     }
 
-    private int getUploadLines() throws ParameterLoadException { return config.getUploadLines(); }
-
     @Override
     public void setColumnNames(List<String> columnNames) throws DataAccessObjectInitializationException {
-        try {
-            if (columnNames == null || columnNames.isEmpty()) {
-                String errMsg = Messages.getString("BlobFileDAO.errorOpenNoHeaderRow");
-                logger.error(errMsg);
-                throw new DataAccessObjectInitializationException(errMsg);
-            }
-            // save column names
-            this.columnNames = columnNames;
+        if (columnNames == null || columnNames.isEmpty()) {
+            String errMsg = Messages.getString("BlobFileDAO.errorOpenNoHeaderRow");
+            logger.error(errMsg);
+            throw new DataAccessObjectInitializationException(errMsg);
+        }
+        // save column names
+        this.columnNames = columnNames;
 
+        try {
             writeHeaderRow();
-        } catch (Exception e) {
-            logger.error(e.getMessage());
+        } catch (DataAccessObjectException e) {
+            throw new DataAccessObjectInitializationException(e.getMessage(), e);
         }
     }
 
@@ -239,8 +346,6 @@ public class BlobWriter implements DataWriter {
     public boolean writeRowList(List<Row> inputRowList) throws DataAccessObjectException {
         boolean success = true; //priming
 
-        records = inputRowList.size();
-
         for (Row row : inputRowList)
             success = writeRow(row);
 
@@ -266,9 +371,4 @@ public class BlobWriter implements DataWriter {
     public boolean isOpen() {
         return open;
     }
-
-    //We don't use this cause it's static and therefore stupid
-    static private void visitColumns(List<String> columnNames, Row inputRow, BlobColumnVisitor visitor) throws IOException {
-
-    }
 }
@@ -30,9 +30,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
@@ -44,25 +47,43 @@ import com.salesforce.dataloader.dao.DataReader;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
 import com.salesforce.dataloader.exception.DataAccessRowException;
+import com.salesforce.dataloader.exception.ParameterLoadException;
 import com.salesforce.dataloader.model.Row;
 import com.salesforce.dataloader.util.DAORowUtil;
 import com.sforce.async.CSVReader;
 
 /**
- * Wrapper around {@link CSVReader} that allows to read CSV files
+ * Wrapper around {@link CSVReader} that allows to read CSV files. With {@link Config#CSV_READ_MAPPED} set, the file is
+ * read through {@link MappedCSVReader} instead, and with {@link Config#CSV_READ_THREADS} above one it is parsed on that
+ * many threads by {@link ParallelCSVReader}. Rows come back in file order either way.
+ * <p>
+ * Gzip-compressed files are recognized by their first bytes and decompressed as they are read. They are always read as
+ * a stream, and their rows are not indexed.
  *
  * @author Federico Recio
  */
 public class CSVFileReader implements DataReader {
 
     private static final Logger LOGGER = Logger.getLogger(CSVFileReader.class);
+    static final int GZIP_BUFFER_BYTES = 256 * 1024;
     private final Object lock = new Object();
     private File file;
-    private FileInputStream input;
+    private FileInputStream fileInput;
+    // fileInput, or the decompressed stream of a gzip file
+    private InputStream input;
     private int totalRows;
+    private CSVRowIndex rowIndex;
     private CSVReader csvReader;
+    private MappedCSVReader mappedReader;
+    private ParallelCSVReader parallelReader;
     private int currentRowNumber;
     private boolean forceUTF8;
+    private boolean isUTF8;
+    private boolean isGzip;
+    private Charset charset;
+    private boolean readMapped;
+    private int readThreads;
+    private boolean saveRowIndex;
     private List<String> headerRow;
     private boolean isOpen;
 
@@ -77,6 +98,13 @@ public class CSVFileReader implements DataReader {
     public CSVFileReader(File file, Config config) {
         this.file = file;
         forceUTF8 = config.getBoolean(Config.READ_UTF8);
+        readMapped = config.getBoolean(Config.CSV_READ_MAPPED);
+        saveRowIndex = config.getBoolean(Config.CSV_ROW_INDEX);
+        try {
+            readThreads = config.getInt(Config.CSV_READ_THREADS);
+        } catch (ParameterLoadException e) {
+            readThreads = 1;
+        }
     }
 
     @Override
@@ -103,25 +131,50 @@ public class CSVFileReader implements DataReader {
     public void close() {
         try {
             IOUtils.closeQuietly(input);
+            IOUtils.closeQuietly(fileInput);
+            IOUtils.closeQuietly(mappedReader);
+            IOUtils.closeQuietly(parallelReader);
         } finally {
             input = null;
+            fileInput = null;
             csvReader = null;
+            mappedReader = null;
+            parallelReader = null;
             isOpen = false;
         }
     }
 
+    /**
+     * Checks the Bytes for the gzip header, 0x1f 0x8b
+     */
+    private static boolean isGzipFile(File file) {
+        FileInputStream stream = null;
+        try {
+            stream = new FileInputStream(file);
+            return stream.read() == 0x1f && stream.read() == 0x8b;
+        } catch (IOException e) {
+            // reported when the file is opened
+            return false;
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
     /**
      * Checks the Bytes for the UTF-8 BOM if found, returns true, else false
      */
     private boolean isUTF8File(File file) {
 
-        FileInputStream stream = null;
+        InputStream stream = null;
 
         // UTF-8 BOM is 0xEE 0xBB OxBf
         // or 239 187 191
 
         try {
             stream = new FileInputStream(file);
+            if (isGzip) {
+                stream = new GZIPInputStream(stream);
+            }
 
             if (stream.read() == 239) {
                 if (stream.read() == 187) {
@@ -169,7 +222,7 @@ public class CSVFileReader implements DataReader {
         List<String> record;
         synchronized (lock) {
             try {
-                record = csvReader.nextRecord();
+                record = nextRecord();
             } catch (IOException e) {
                 throw new DataAccessObjectException(e);
             }
@@ -179,9 +232,18 @@ public class CSVFileReader implements DataReader {
             return null;
         }
 
+        Row row = toRow(headerRow, record, currentRowNumber);
+        currentRowNumber++;
+        return row;
+    }
+
+    /**
+     * @return the record as a row with the columns of the header
+     */
+    static Row toRow(List<String> headerRow, List<String> record, int rowNumber) throws DataAccessRowException {
         if (record.size() > headerRow.size()) {
             String errMsg = Messages.getFormattedString("CSVFileDAO.errorRowTooLarge", new String[]{
-                    String.valueOf(currentRowNumber), String.valueOf(record.size()), String.valueOf(headerRow.size())});
+                    String.valueOf(rowNumber), String.valueOf(record.size()), String.valueOf(headerRow.size())});
             throw new DataAccessRowException(errMsg);
         }
 
@@ -194,7 +256,6 @@ public class CSVFileReader implements DataReader {
             }
             row.put(headerRow.get(i), value);
         }
-        currentRowNumber++;
         return row;
     }
 
@@ -207,7 +268,9 @@ public class CSVFileReader implements DataReader {
     }
 
     /*
-     * Returns the number of rows in the file. <i>Side effect:</i> Moves the row pointer to the first row
+     * Returns the number of rows in the file. The rows are counted by scanning the file for record boundaries with
+     * {@link CSVRecordCounter}, which leaves the row pointer where it is. For compressed files and encodings it does not
+     * support, the rows are read instead. <i>Side effect:</i> In that case the row pointer is moved to the first row
      */
     @Override
     public int getTotalRows() throws DataAccessObjectException {
@@ -215,11 +278,80 @@ public class CSVFileReader implements DataReader {
             if (!isOpen) {
                 throw new IllegalStateException("File is not open");
             }
-            totalRows = DAORowUtil.calculateTotalRows(this);
+            final CSVRowIndex index = getRowIndex();
+            if (index != null) {
+                totalRows = (int)Math.min(Integer.MAX_VALUE, index.getRowCount());
+            } else {
+                totalRows = DAORowUtil.calculateTotalRows(this);
+            }
         }
         return totalRows;
     }
 
+    /**
+     * Moves ahead to the closest indexed row at or before the given row number, without reading the rows in between.
+     * Every few thousand rows are indexed when the rows are first counted, see {@link #getTotalRows()}. Stays on the
+     * current row if no indexed row is closer, or if the file is compressed or its encoding does not allow indexing.
+     */
+    public void skipToRow(int row) throws DataAccessObjectException {
+        if (!isOpen) {
+            open();
+        }
+        final CSVRowIndex index = getRowIndex();
+        if (index == null) return;
+        final long closestRow = index.getClosestRow(row);
+        if (closestRow <= currentRowNumber) return;
+        final long offset = index.getOffset(closestRow);
+        synchronized (lock) {
+            try {
+                if (parallelReader != null) {
+                    parallelReader.seek(offset);
+                } else if (mappedReader != null) {
+                    mappedReader.seek(offset);
+                } else {
+                    fileInput.getChannel().position(offset);
+                    csvReader = createCSVReader();
+                }
+            } catch (IOException e) {
+                throw new DataAccessObjectException(e);
+            }
+        }
+        LOGGER.debug("Skipped to row " + closestRow + " at offset " + offset + " of " + file);
+        currentRowNumber = (int)closestRow;
+    }
+
+    /**
+     * @return the row index of the file, counting its rows if needed, or null if the encoding does not allow one
+     */
+    private CSVRowIndex getRowIndex() throws DataAccessObjectException {
+        if (isGzip || !MappedCSVReader.supports(charset)) return null;
+        if (rowIndex != null && rowIndex.isCurrent(file)) return rowIndex;
+        rowIndex = null;
+        if (saveRowIndex) {
+            try {
+                rowIndex = CSVRowIndex.read(file);
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the row index of " + file + ", counting the rows again", e);
+            }
+        }
+        if (rowIndex == null) {
+            try {
+                rowIndex = CSVRecordCounter.index(file, charset, CSVRowIndex.DEFAULT_INTERVAL);
+            } catch (IOException e) {
+                LOGGER.error(Messages.getString("RowUtil.error"), e);
+                throw new DataAccessObjectException(Messages.getString("RowUtil.error"), e);
+            }
+            if (saveRowIndex) {
+                try {
+                    rowIndex.write(file);
+                } catch (IOException e) {
+                    LOGGER.warn("Could not save the row index of " + file, e);
+                }
+            }
+        }
+        return rowIndex;
+    }
+
     /**
      * @return Current record number that has been read
      */
@@ -231,7 +363,7 @@ public class CSVFileReader implements DataReader {
     private void readHeaderRow() throws DataAccessObjectInitializationException {
         try {
             synchronized (lock) {
-                headerRow = csvReader.nextRecord();
+                headerRow = nextRecord();
             }
             if (headerRow == null) {
                 LOGGER.error(Messages.getString("CSVFileDAO.errorHeaderRow"));
@@ -245,20 +377,46 @@ public class CSVFileReader implements DataReader {
             // if there's a problem getting header row, the stream needs to be closed
             if (headerRow == null) {
                 IOUtils.closeQuietly(input);
+                IOUtils.closeQuietly(fileInput);
+                IOUtils.closeQuietly(mappedReader);
+                IOUtils.closeQuietly(parallelReader);
             }
         }
     }
 
+    private List<String> nextRecord() throws IOException {
+        if (parallelReader != null) return parallelReader.nextRecord();
+        return mappedReader != null ? mappedReader.nextRecord() : csvReader.nextRecord();
+    }
+
     private void initalizeInput() throws DataAccessObjectInitializationException {
-        try {
-            input = new FileInputStream(file);
-            if (forceUTF8 || isUTF8File(file)) {
-                csvReader = new CSVReader(input, "UTF-8", new char[]{',', '\t'});
-            } else {
-                csvReader = new CSVReader(input, new char[]{',', '\t'});
+        isGzip = isGzipFile(file);
+        isUTF8 = forceUTF8 || isUTF8File(file);
+        charset = isUTF8 ? Charset.forName("UTF-8") : Charset.defaultCharset();
+        if ((readMapped || readThreads > 1) && isGzip) {
+            LOGGER.info("Memory-mapped reading does not support compressed files, reading " + file + " as a stream");
+        } else if (readMapped || readThreads > 1) {
+            if (MappedCSVReader.supports(charset)) {
+                try {
+                    if (readThreads > 1) {
+                        parallelReader = new ParallelCSVReader(file, charset, readThreads);
+                    } else {
+                        mappedReader = new MappedCSVReader(file, charset);
+                    }
+                    return;
+                } catch (IOException e) {
+                    String errMsg = Messages.getFormattedString("CSVFileDAO.errorOpen", file.getAbsolutePath());
+                    LOGGER.error(errMsg, e);
+                    throw new DataAccessObjectInitializationException(errMsg, e);
+                }
             }
-            csvReader.setMaxRowsInFile(Integer.MAX_VALUE);
-            csvReader.setMaxCharsInFile(Integer.MAX_VALUE);
+            LOGGER.info("Memory-mapped reading does not support the " + charset + " encoding, reading " + file
+                    + " as a stream");
+        }
+        try {
+            fileInput = new FileInputStream(file);
+            input = isGzip ? new GZIPInputStream(fileInput, GZIP_BUFFER_BYTES) : fileInput;
+            csvReader = createCSVReader();
         } catch (FileNotFoundException e) {
             String errMsg = Messages.getFormattedString("CSVFileDAO.errorOpen", file.getAbsolutePath());
             LOGGER.error(errMsg, e);
@@ -267,10 +425,30 @@ public class CSVFileReader implements DataReader {
             String errMsg = Messages.getString("CSVFileDAO.errorUnsupportedEncoding");
             LOGGER.error(errMsg, e);
             throw new DataAccessObjectInitializationException(errMsg, e);
+        } catch (IOException e) {
+            String errMsg = Messages.getFormattedString("CSVFileDAO.errorOpen", file.getAbsolutePath());
+            LOGGER.error(errMsg, e);
+            throw new DataAccessObjectInitializationException(errMsg, e);
         } finally {
             if(csvReader == null) {
-                IOUtils.closeQuietly(input);
+                IOUtils.closeQuietly(fileInput);
             }
         }
     }
+
+    private CSVReader createCSVReader() throws UnsupportedEncodingException {
+        return createCSVReader(input, isUTF8);
+    }
+
+    static CSVReader createCSVReader(InputStream input, boolean isUTF8) throws UnsupportedEncodingException {
+        final CSVReader reader;
+        if (isUTF8) {
+            reader = new CSVReader(input, "UTF-8", new char[]{',', '\t'});
+        } else {
+            reader = new CSVReader(input, new char[]{',', '\t'});
+        }
+        reader.setMaxRowsInFile(Integer.MAX_VALUE);
+        reader.setMaxCharsInFile(Integer.MAX_VALUE);
+        return reader;
+    }
 }
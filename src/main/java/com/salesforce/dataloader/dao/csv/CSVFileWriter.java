@@ -23,14 +23,18 @@
  * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
  * POSSIBILITY OF SUCH DAMAGE.
  */
-
 package com.salesforce.dataloader.dao.csv;
 
-import java.io.BufferedWriter;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -44,7 +48,12 @@ import com.salesforce.dataloader.exception.DataAccessObjectInitializationExcepti
 import com.salesforce.dataloader.model.Row;
 
 /**
- * Writes csv files.
+ * Writes csv files. Rows are escaped into a character buffer, which is encoded and written to the file whenever it
+ * fills up. Values are quoted, unless {@link Config#CSV_WRITE_QUOTE_ALL} is turned off, in which case only values that
+ * contain a delimiter, quote or line break are.
+ * <p>
+ * Files whose name ends in <code>.gz</code>, and all files with {@link Config#CSV_GZIP} set, are gzip-compressed on a
+ * background thread by {@link GzipOutputStream}.
  *
  * @author Lexi Viripaeff
  * @since 6.0
@@ -54,9 +63,22 @@ public class CSVFileWriter implements DataWriter {
     //logger
     private static Logger logger = Logger.getLogger(CSVFileWriter.class);
 
+    private static final int BUFFER_CHARS = 64 * 1024;
+    private static final char QUOTE = '"';
+    private static final char COMMA = ',';
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    static final String GZIP_EXTENSION = ".gz";
+
     private final String fileName;
-    private BufferedWriter fileOut;
+    private OutputStream fileOut;
+    // null when compressing or not writing to a file
+    private FileChannel channel;
+    private CharsetEncoder encoder;
+    private CharBuffer chars;
+    private ByteBuffer bytes;
     private List<String> columnNames = new ArrayList<String>();
+    // column names in output order, looked up in each row
+    private String[] columns = new String[0];
     private int currentRowNumber = 0;
 
     /**
@@ -74,10 +96,23 @@ public class CSVFileWriter implements DataWriter {
      */
     private final boolean capitalizedHeadings;
 
+    /**
+     * If <code>quoteAll</code> is false, only values that need quotes get them
+     */
+    private final boolean quoteAll;
+
+    /**
+     * If <code>gzip</code> is true, the output is gzip-compressed
+     */
+    private final boolean gzip;
+
     public CSVFileWriter(String fileName, Config config) {
         this.fileName = fileName;
         this.capitalizedHeadings = true;
         encoding = config.getCsvWriteEncoding();
+        quoteAll = !config.contains(Config.CSV_WRITE_QUOTE_ALL) || config.getBoolean(Config.CSV_WRITE_QUOTE_ALL);
+        gzip = config.getBoolean(Config.CSV_GZIP)
+                || (fileName != null && fileName.toLowerCase().endsWith(GZIP_EXTENSION));
     }
 
     /**
@@ -97,10 +132,19 @@ public class CSVFileWriter implements DataWriter {
     @Override
     public void open() throws DataAccessObjectInitializationException {
         try {
-            if (this.encoding != null) {
-                fileOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.fileName), this.encoding));
+            final Charset charset = this.encoding != null ? Charset.forName(this.encoding) : Charset.defaultCharset();
+            // like OutputStreamWriter, replace what the charset can't encode
+            encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chars = CharBuffer.allocate(BUFFER_CHARS);
+            bytes = ByteBuffer.allocate((int)Math.ceil(BUFFER_CHARS * encoder.maxBytesPerChar()));
+            final OutputStream out = openOutput();
+            if (this.gzip) {
+                fileOut = new GzipOutputStream(out, "gzip " + this.fileName);
+                channel = null;
             } else {
-                fileOut = new BufferedWriter(new FileWriter(this.fileName));
+                fileOut = out;
+                channel = out instanceof FileOutputStream ? ((FileOutputStream)out).getChannel() : null;
             }
             currentRowNumber = 0;
             setOpen(true);
@@ -108,9 +152,21 @@ public class CSVFileWriter implements DataWriter {
             String errMsg = Messages.getFormattedString("CSVWriter.errorOpening", this.fileName);
             logger.error(errMsg, e);
             throw new DataAccessObjectInitializationException(errMsg, e);
+        } catch (IllegalArgumentException e) {
+            // unsupported or illegal charset name
+            String errMsg = Messages.getFormattedString("CSVWriter.errorOpening", this.fileName);
+            logger.error(errMsg, e);
+            throw new DataAccessObjectInitializationException(errMsg, e);
         }
     }
 
+    /**
+     * @return the stream to write the file to, closed with the writer
+     */
+    protected OutputStream openOutput() throws IOException {
+        return new FileOutputStream(this.fileName);
+    }
+
     /*
      * (non-Javadoc)
      * @see com.salesforce.dataloader.dao.csv.Writer#close()
@@ -119,11 +175,18 @@ public class CSVFileWriter implements DataWriter {
     public void close() {
 
         if (fileOut != null) {
+            try {
+                flush(true);
+            } catch (IOException e) {
+                logger.error(Messages.getString("CSVWriter.errorWriting"), e); //$NON-NLS-1$
+            }
             try {
                 fileOut.close();
             } catch (IOException e) {
                 logger.error(Messages.getString("CSVWriter.errorClosing"), e); //$NON-NLS-1$
             }
+            fileOut = null;
+            channel = null;
             if (! columnNames.isEmpty()) {
                 columnNames.clear();
             }
@@ -131,11 +194,17 @@ public class CSVFileWriter implements DataWriter {
     }
 
     private void writeHeaderRow() throws DataAccessObjectInitializationException {
-        CSVColumnVisitor visitor = new CSVColumnVisitor(fileOut);
         try {
-            visitHeaderColumns(this.columnNames, visitor);
-            fileOut.newLine();
-            visitor.newRow();
+            for (int i = 0; i < this.columns.length; i++) {
+                String colName = this.columns[i];
+                if (colName == null) {
+                    colName = "";
+                } else if (this.capitalizedHeadings) {
+                    colName = colName.toUpperCase();
+                }
+                writeValue(i, colName);
+            }
+            append(LINE_SEPARATOR, 0, LINE_SEPARATOR.length());
         } catch (IOException e) {
             String errMsg = Messages.getString("CSVWriter.errorWriting");
             logger.error(errMsg, e);
@@ -149,11 +218,12 @@ public class CSVFileWriter implements DataWriter {
      */
     @Override
     public boolean writeRow(Row row) throws DataAccessObjectException {
-        CSVColumnVisitor visitor = new CSVColumnVisitor(fileOut);
         try {
-            visitColumns(columnNames, row, visitor);
-            fileOut.newLine();
-            visitor.newRow();
+            for (int i = 0; i < this.columns.length; i++) {
+                final Object colVal = row.get(this.columns[i]);
+                writeValue(i, colVal != null ? colVal.toString() : "");
+            }
+            append(LINE_SEPARATOR, 0, LINE_SEPARATOR.length());
             currentRowNumber++;
             return true; // success unless there's an exception
         } catch (IOException e) {
@@ -169,34 +239,90 @@ public class CSVFileWriter implements DataWriter {
     @Override
     public boolean writeRowList(List<Row> rows) throws DataAccessObjectException {
         boolean success = true;
-        // return the last result, should be same as others
+        // return the last result, should be same as others; the rows share the buffer, which is written out when full
         for (Row row : rows) {
             success = writeRow(row);
         }
         return success;
     }
 
-    private void visitHeaderColumns(List<String> columnNames, CSVColumnVisitor visitor) throws IOException {
-        for (String colName : columnNames) {
-            String outColName;
-            if(colName != null) {
-                if(this.capitalizedHeadings) {
-                    outColName = colName.toUpperCase();
-                } else {
-                    outColName = colName;
-                }
+    private void writeValue(int column, String value) throws IOException {
+        if (column > 0) append(COMMA);
+        if (!this.quoteAll && !needsQuotes(value)) {
+            append(value, 0, value.length());
+            return;
+        }
+        append(QUOTE);
+        int start = 0;
+        // write each quote twice: once at the end of a run, and again at the start of the next one
+        for (int quote = value.indexOf(QUOTE); quote >= 0; quote = value.indexOf(QUOTE, quote + 1)) {
+            append(value, start, quote + 1);
+            start = quote;
+        }
+        append(value, start, value.length());
+        append(QUOTE);
+    }
+
+    /* CSVFileReader also takes tabs as delimiters */
+    private static boolean needsQuotes(String value) {
+        for (int i = 0, len = value.length(); i < len; i++) {
+            final char c = value.charAt(i);
+            if (c == QUOTE || c == COMMA || c == '\t' || c == '\r' || c == '\n') return true;
+        }
+        return false;
+    }
+
+    private void append(char c) throws IOException {
+        if (!this.chars.hasRemaining()) flush(false);
+        this.chars.put(c);
+    }
+
+    private void append(String s, int start, int end) throws IOException {
+        while (start < end) {
+            if (!this.chars.hasRemaining()) flush(false);
+            final int n = Math.min(end - start, this.chars.remaining());
+            s.getChars(start, start + n, this.chars.array(), this.chars.arrayOffset() + this.chars.position());
+            this.chars.position(this.chars.position() + n);
+            start += n;
+        }
+    }
+
+    /**
+     * Encodes the buffered characters and writes them to the file. Unless it is the end of the output, a high surrogate
+     * at the end of the buffer is kept until its low surrogate follows.
+     */
+    private void flush(boolean endOfOutput) throws IOException {
+        this.chars.flip();
+        while (true) {
+            final CoderResult result = this.encoder.encode(this.chars, this.bytes, endOfOutput);
+            if (result.isOverflow()) {
+                writeBytes();
+            } else if (result.isUnderflow()) {
+                break;
             } else {
-                outColName = "";
+                result.throwException();
+            }
+        }
+        if (endOfOutput) {
+            while (this.encoder.flush(this.bytes).isOverflow()) {
+                writeBytes();
             }
-            visitor.visit(outColName);
+            this.encoder.reset();
         }
+        writeBytes();
+        this.chars.compact();
     }
 
-    static private void visitColumns(List<String> columnNames, Row row, CSVColumnVisitor visitor) throws IOException {
-        for (String colName : columnNames) {
-            Object colVal = row.get(colName);
-            visitor.visit(colVal != null ? colVal.toString() : "");
+    private void writeBytes() throws IOException {
+        this.bytes.flip();
+        if (this.channel == null) {
+            this.fileOut.write(this.bytes.array(), this.bytes.arrayOffset(), this.bytes.limit());
+        } else {
+            while (this.bytes.hasRemaining()) {
+                this.channel.write(this.bytes);
+            }
         }
+        this.bytes.clear();
     }
 
     @Override
@@ -217,6 +343,7 @@ public class CSVFileWriter implements DataWriter {
         }
         // save column names
         this.columnNames = columnNames;
+        this.columns = columnNames.toArray(new String[columnNames.size()]);
 
         writeHeaderRow();
     }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Counts the records of a CSV file without parsing them, by scanning the mapped file for line breaks outside quoted
+ * values. Blank records, which {@link MappedCSVReader} and {@link com.sforce.async.CSVReader} skip, are not counted:
+ * an empty line or one that only holds an empty quoted value.
+ * <p>
+ * Like {@link ParallelCSVReader}, the scan relies on a position being inside a quoted value exactly when an odd number
+ * of quotes come before it, so the count is only exact for well formed files. A malformed record is still reported
+ * when it is read. The same charsets as {@link MappedCSVReader#supports(Charset)} are supported.
+ * <p>
+ * While counting, the offsets where rows start are kept at regular intervals in a {@link CSVRowIndex}.
+ *
+ * @since 35.0
+ */
+final class CSVRecordCounter {
+
+    private static final int WINDOW_BYTES = MappedCSVReader.DEFAULT_WINDOW_BYTES;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final int interval;
+    private long[] offsets = new long[16];
+    private int offsetCount;
+    private boolean offsetDue;
+
+    private long records;
+    private boolean inQuotes;
+    private boolean afterCR;
+    // bytes seen so far in the current record, and how many of its first two bytes are quotes
+    private long recordBytes;
+    private int leadingQuotes;
+
+    private CSVRecordCounter(int interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * @return the index of the file's rows, which are the non-blank records after the header record
+     */
+    static CSVRowIndex index(File file, Charset charset, int interval) throws IOException {
+        final CSVRecordCounter counter = new CSVRecordCounter(interval);
+        final byte[] buffer = new byte[BUFFER_BYTES];
+        final long lastModified = file.lastModified();
+        final FileInputStream input = new FileInputStream(file);
+        final long size;
+        try {
+            final FileChannel channel = input.getChannel();
+            size = channel.size();
+            for (long offset = 0; offset < size; offset += WINDOW_BYTES) {
+                final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(WINDOW_BYTES, size - offset));
+                try {
+                    if (offset == 0 && "UTF-8".equals(charset.name()) && hasByteOrderMark(window)) {
+                        window.position(3);
+                    }
+                    while (window.hasRemaining()) {
+                        final long position = offset + window.position();
+                        final int len = Math.min(buffer.length, window.remaining());
+                        window.get(buffer, 0, len);
+                        counter.scan(buffer, len, position);
+                    }
+                } finally {
+                    MappedCSVReader.unmap(window);
+                }
+            }
+        } finally {
+            input.close();
+        }
+        counter.endRecord();
+        return new CSVRowIndex(size, lastModified, Math.max(0, counter.records - 1), interval,
+                Arrays.copyOf(counter.offsets, counter.offsetCount));
+    }
+
+    private static boolean hasByteOrderMark(MappedByteBuffer window) {
+        return window.limit() >= 3 && window.get(0) == (byte)0xEF && window.get(1) == (byte)0xBB
+                && window.get(2) == (byte)0xBF;
+    }
+
+    private void scan(byte[] bytes, int len, long position) {
+        for (int i = 0; i < len; i++) {
+            final byte c = bytes[i];
+            if (this.afterCR) {
+                this.afterCR = false;
+                // the LF of a CRLF that ended the record
+                if (c == LF) continue;
+            }
+            if (this.offsetDue) {
+                this.offsetDue = false;
+                addOffset(position + i);
+            }
+            if (!this.inQuotes && (c == CR || c == LF)) {
+                endRecord();
+                this.afterCR = c == CR;
+                continue;
+            }
+            if (c == QUOTE) {
+                this.inQuotes = !this.inQuotes;
+                if (this.recordBytes < 2) this.leadingQuotes++;
+            }
+            this.recordBytes++;
+        }
+    }
+
+    private void endRecord() {
+        final boolean blank = this.recordBytes == 0 || this.recordBytes == 2 && this.leadingQuotes == 2;
+        if (!blank) {
+            this.records++;
+            // the header is not a row
+            this.offsetDue = this.records > 1 && (this.records - 1) % this.interval == 0;
+        }
+        this.recordBytes = 0;
+        this.leadingQuotes = 0;
+    }
+
+    private void addOffset(long offset) {
+        if (this.offsetCount == this.offsets.length) this.offsets = Arrays.copyOf(this.offsets, this.offsetCount * 2);
+        this.offsets[this.offsetCount++] = offset;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Sparse index from row numbers to byte offsets in a CSV file, built by {@link CSVRecordCounter} while it counts the
+ * rows. Every {@link #DEFAULT_INTERVAL} rows the offset where the next row starts is kept, so a reader can seek to the
+ * closest one instead of reading all the rows before it.
+ * <p>
+ * The index can be saved next to the file and read back as long as the file's length and modification time are
+ * unchanged.
+ *
+ * @since 35.0
+ */
+final class CSVRowIndex {
+
+    static final int DEFAULT_INTERVAL = 10000;
+    static final String FILE_EXTENSION = ".rowidx";
+
+    private static final int FORMAT = 1;
+
+    private final long fileLength;
+    private final long lastModified;
+    private final long rowCount;
+    private final int interval;
+    // offsets[i] is where the row after the first (i + 1) * interval rows starts
+    private final long[] offsets;
+
+    CSVRowIndex(long fileLength, long lastModified, long rowCount, int interval, long[] offsets) {
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.rowCount = rowCount;
+        this.interval = interval;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @return the number of rows in the file, not counting the header
+     */
+    long getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * @return the largest number of rows, at most the given one, that can be skipped with {@link #getOffset(long)}
+     */
+    long getClosestRow(long row) {
+        return Math.min(row / this.interval, this.offsets.length) * this.interval;
+    }
+
+    /**
+     * @param rows
+     *            a row count returned by {@link #getClosestRow(long)}, above zero
+     * @return the offset of the row following that many rows
+     */
+    long getOffset(long rows) {
+        return this.offsets[(int)(rows / this.interval) - 1];
+    }
+
+    /**
+     * @return true if the file has not changed since the index was built
+     */
+    boolean isCurrent(File file) {
+        return file.length() == this.fileLength && file.lastModified() == this.lastModified;
+    }
+
+    static File getIndexFile(File file) {
+        return new File(file.getPath() + FILE_EXTENSION);
+    }
+
+    /**
+     * @return the index saved for the file, or null if there is none or the file changed since it was saved
+     */
+    static CSVRowIndex read(File file) throws IOException {
+        final File indexFile = getIndexFile(file);
+        if (!indexFile.isFile()) return null;
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            if (in.readInt() != FORMAT) return null;
+            final long fileLength = in.readLong();
+            final long lastModified = in.readLong();
+            final long rowCount = in.readLong();
+            final int interval = in.readInt();
+            final long[] offsets = new long[in.readInt()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+            }
+            final CSVRowIndex index = new CSVRowIndex(fileLength, lastModified, rowCount, interval, offsets);
+            return index.isCurrent(file) ? index : null;
+        } finally {
+            in.close();
+        }
+    }
+
+    void write(File file) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                getIndexFile(file))));
+        try {
+            out.writeInt(FORMAT);
+            out.writeLong(this.fileLength);
+            out.writeLong(this.lastModified);
+            out.writeLong(this.rowCount);
+            out.writeInt(this.interval);
+            out.writeInt(this.offsets.length);
+            for (long offset : this.offsets) {
+                out.writeLong(offset);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
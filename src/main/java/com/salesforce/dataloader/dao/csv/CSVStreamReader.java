@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.log4j.Logger;
+
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.dao.SpooledDataReader;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.model.Row;
+import com.sforce.async.CSVReader;
+
+/**
+ * Reads CSV from standard input, or from a named pipe or other file that can only be read once. The input is read in a
+ * single pass, so the rows are not counted and {@link #getTotalRows()} returns 0.
+ * <p>
+ * The Bulk API reads the rows a second time to match them with the results. With the Bulk API enabled, the input is
+ * copied to a local spool file as it is read, and once the reader has been closed it is opened on the spool file. Without
+ * it, the reader can't be opened again after rows have been read. The spool file is deleted by {@link #deleteSpool()}.
+ *
+ * @since 35.0
+ */
+public class CSVStreamReader implements SpooledDataReader {
+
+    private static final Logger LOGGER = Logger.getLogger(CSVStreamReader.class);
+
+    /**
+     * Name that stands for standard input and output
+     */
+    public static final String STANDARD_STREAM = "-";
+
+    private final Config config;
+    private final String name;
+    private final boolean forceUTF8;
+    private final boolean spool;
+    private InputStream input;
+    // input, copied to the spool file
+    private InputStream teeInput;
+    // input as read by csvReader, decompressed if needed
+    private InputStream recordInput;
+    private OutputStream spoolOutput;
+    private File spoolFile;
+    private CSVReader csvReader;
+    // reads the spool file once the input has been read
+    private CSVFileReader spoolReader;
+    private boolean inputClosed;
+    private List<String> headerRow;
+    private int currentRowNumber;
+
+    public CSVStreamReader(Config config) {
+        this.config = config;
+        final String daoName = config.getString(Config.DAO_NAME);
+        this.name = daoName == null || daoName.length() == 0 ? STANDARD_STREAM : daoName;
+        this.forceUTF8 = config.getBoolean(Config.READ_UTF8);
+        this.spool = config.isBulkAPIEnabled();
+    }
+
+    /**
+     * Reads the header row. The input can't be opened twice, so unlike other readers this leaves it open.
+     */
+    @Override
+    public void checkConnection() throws DataAccessObjectInitializationException {
+        open();
+    }
+
+    /**
+     * Starts reading the input, or, once the input has been read, starts over on the spool file. Does nothing while no
+     * row has been read from the input yet.
+     */
+    @Override
+    public void open() throws DataAccessObjectInitializationException {
+        if (this.spoolReader != null) {
+            this.spoolReader.open();
+            this.currentRowNumber = 0;
+            return;
+        }
+        if (this.csvReader != null && this.currentRowNumber == 0) return;
+        if (this.csvReader != null || this.inputClosed) {
+            close();
+            if (this.spoolFile == null) {
+                String errMsg = Messages.getFormattedString("CSVStreamDAO.errorReopen", this.name);
+                LOGGER.error(errMsg);
+                throw new DataAccessObjectInitializationException(errMsg);
+            }
+            this.spoolReader = new CSVFileReader(this.spoolFile, this.config);
+            this.spoolReader.open();
+            this.currentRowNumber = 0;
+            return;
+        }
+        openInput();
+    }
+
+    /**
+     * Stops reading the input. With a spool file, the rest of the input is copied to it first.
+     */
+    @Override
+    public void close() {
+        if (this.spoolReader != null) {
+            this.spoolReader.close();
+            return;
+        }
+        if (this.inputClosed) return;
+        boolean spoolFailed = false;
+        try {
+            if (this.spoolOutput != null && this.teeInput != null) {
+                // the rest of the input goes to the spool file
+                IOUtils.copy(this.teeInput, NullOutputStream.NULL_OUTPUT_STREAM);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to copy " + this.name + " to " + this.spoolFile, e);
+            spoolFailed = true;
+        } finally {
+            IOUtils.closeQuietly(this.recordInput);
+            IOUtils.closeQuietly(this.input);
+            try {
+                if (this.spoolOutput != null) this.spoolOutput.close();
+            } catch (IOException e) {
+                LOGGER.error("Failed to write " + this.spoolFile, e);
+                spoolFailed = true;
+            }
+            if (spoolFailed) deleteSpoolFile();
+            this.input = null;
+            this.teeInput = null;
+            this.recordInput = null;
+            this.spoolOutput = null;
+            this.csvReader = null;
+            this.inputClosed = true;
+        }
+    }
+
+    /**
+     * Closes the reader and deletes the spool file, after which it can't be opened again.
+     */
+    @Override
+    public void deleteSpool() {
+        close();
+        this.spoolReader = null;
+        deleteSpoolFile();
+    }
+
+    private void deleteSpoolFile() {
+        if (this.spoolFile != null) {
+            if (!this.spoolFile.delete() && this.spoolFile.exists()) {
+                LOGGER.warn("Failed to delete " + this.spoolFile);
+            }
+            this.spoolFile = null;
+        }
+    }
+
+    @Override
+    public Row readRow() throws DataAccessObjectException {
+        if (this.spoolReader != null) {
+            final Row row = this.spoolReader.readRow();
+            if (row != null) this.currentRowNumber++;
+            return row;
+        }
+        if (this.csvReader == null) open();
+        final List<String> record;
+        try {
+            record = this.csvReader.nextRecord();
+        } catch (IOException e) {
+            throw new DataAccessObjectException(e);
+        }
+        if (record == null) return null;
+        final Row row = CSVFileReader.toRow(this.headerRow, record, this.currentRowNumber);
+        this.currentRowNumber++;
+        return row;
+    }
+
+    @Override
+    public List<Row> readRowList(int maxRows) throws DataAccessObjectException {
+        final List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < maxRows; i++) {
+            final Row row = readRow();
+            if (row == null) break;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * @return 0, the rows are not counted
+     */
+    @Override
+    public int getTotalRows() {
+        return 0;
+    }
+
+    @Override
+    public int getCurrentRowNumber() {
+        return this.currentRowNumber;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return this.headerRow;
+    }
+
+    private void openInput() throws DataAccessObjectInitializationException {
+        try {
+            final InputStream source = STANDARD_STREAM.equals(this.name) ? new CloseShieldInputStream(System.in)
+                    : new FileInputStream(this.name);
+            this.input = new BufferedInputStream(source, CSVFileReader.GZIP_BUFFER_BYTES);
+            // look at the first bytes before they are read, they can't be read again
+            this.input.mark(3);
+            final int b0 = this.input.read(), b1 = this.input.read(), b2 = this.input.read();
+            this.input.reset();
+            final boolean isGzip = b0 == 0x1f && b1 == 0x8b;
+            InputStream in = this.input;
+            if (this.spool) {
+                this.spoolFile = File.createTempFile("dataloader", ".csv");
+                this.spoolOutput = new BufferedOutputStream(new FileOutputStream(this.spoolFile),
+                        CSVFileReader.GZIP_BUFFER_BYTES);
+                in = this.teeInput = new TeeInputStream(in, this.spoolOutput);
+                LOGGER.info("Copying " + this.name + " to " + this.spoolFile + " to read it again later");
+            }
+            boolean isUTF8 = this.forceUTF8 || b0 == 239 && b1 == 187 && b2 == 191;
+            if (isGzip) {
+                in = new GZIPInputStream(in, CSVFileReader.GZIP_BUFFER_BYTES);
+                if (!isUTF8) {
+                    in = new BufferedInputStream(in);
+                    in.mark(3);
+                    isUTF8 = in.read() == 239 && in.read() == 187 && in.read() == 191;
+                    in.reset();
+                }
+            }
+            this.recordInput = in;
+            this.csvReader = CSVFileReader.createCSVReader(in, isUTF8);
+            this.headerRow = this.csvReader.nextRecord();
+        } catch (IOException e) {
+            String errMsg = Messages.getFormattedString("CSVFileDAO.errorOpen", this.name);
+            LOGGER.error(errMsg, e);
+            close();
+            throw new DataAccessObjectInitializationException(errMsg, e);
+        }
+        if (this.headerRow == null) {
+            LOGGER.error(Messages.getString("CSVFileDAO.errorHeaderRow"));
+            close();
+            throw new DataAccessObjectInitializationException(Messages.getString("CSVFileDAO.errorHeaderRow"));
+        }
+        this.currentRowNumber = 0;
+    }
+}
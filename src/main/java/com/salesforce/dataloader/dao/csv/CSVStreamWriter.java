@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.salesforce.dataloader.config.Config;
+
+/**
+ * Writes CSV to standard output, or to a named pipe or other file that can only be opened once. Unlike
+ * {@link CSVFileWriter}, checking the connection does not open the output, so a reader on the other end of a pipe only
+ * sees the actual output.
+ * <p>
+ * Standard output is written directly, not through {@link System#out}. Log appenders that write to standard output,
+ * such as the console appender of the built-in log configuration, are moved to standard error when it is opened, so that
+ * the output holds nothing but CSV.
+ *
+ * @since 35.0
+ */
+public class CSVStreamWriter extends CSVFileWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(CSVStreamWriter.class);
+
+    private final String name;
+
+    public CSVStreamWriter(Config config) {
+        this(config.getString(Config.DAO_NAME), config);
+    }
+
+    public CSVStreamWriter(String name, Config config) {
+        super(name == null || name.length() == 0 ? CSVStreamReader.STANDARD_STREAM : name, config);
+        this.name = name == null || name.length() == 0 ? CSVStreamReader.STANDARD_STREAM : name;
+    }
+
+    @Override
+    public void checkConnection() {
+        // opening the output would end it for whoever reads it
+    }
+
+    @Override
+    protected OutputStream openOutput() throws IOException {
+        if (!CSVStreamReader.STANDARD_STREAM.equals(this.name)) return super.openOutput();
+        moveConsoleLogging();
+        // anything already printed comes first
+        System.out.flush();
+        return new CloseShieldOutputStream(new FileOutputStream(FileDescriptor.out));
+    }
+
+    /**
+     * Points the console appenders that write to standard output at standard error instead.
+     */
+    static void moveConsoleLogging() {
+        final List<Logger> loggers = new ArrayList<Logger>();
+        loggers.add(LogManager.getRootLogger());
+        for (Enumeration<?> e = LogManager.getCurrentLoggers(); e.hasMoreElements();) {
+            loggers.add((Logger)e.nextElement());
+        }
+        boolean moved = false;
+        for (Logger logger : loggers) {
+            for (Enumeration<?> e = logger.getAllAppenders(); e.hasMoreElements();) {
+                final Object appender = e.nextElement();
+                if (appender instanceof ConsoleAppender
+                        && ConsoleAppender.SYSTEM_OUT.equals(((ConsoleAppender)appender).getTarget())) {
+                    ((ConsoleAppender)appender).setTarget(ConsoleAppender.SYSTEM_ERR);
+                    ((ConsoleAppender)appender).activateOptions();
+                    moved = true;
+                }
+            }
+        }
+        if (moved) LOGGER.info("Console logging moved to standard error while CSV is written to standard output");
+    }
+}
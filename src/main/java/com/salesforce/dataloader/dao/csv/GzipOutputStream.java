@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream that compresses on a thread of its own. Bytes are collected in large buffers, and each full buffer
+ * is handed to the compressing thread while the caller goes on filling the next one. Callers only wait when all the
+ * buffers are waiting to be compressed. An error while compressing or writing is thrown from the next call to write or
+ * close.
+ * <p>
+ * The stream is not thread safe: one thread writes, the other compresses.
+ *
+ * @since 35.0
+ */
+final class GzipOutputStream extends OutputStream {
+
+    static final int BUFFER_BYTES = 1024 * 1024;
+    static final int BUFFERS = 4;
+    private static final int DEFLATE_BUFFER_BYTES = 64 * 1024;
+    private static final long POLL_MILLIS = 100;
+    // handed to the compressing thread after the last buffer
+    private static final Buffer END = new Buffer(0);
+
+    private static final class Buffer {
+        final byte[] bytes;
+        int length;
+
+        Buffer(int size) {
+            this.bytes = new byte[size];
+        }
+    }
+
+    private final OutputStream out;
+    private final BlockingQueue<Buffer> full = new ArrayBlockingQueue<Buffer>(BUFFERS + 1);
+    private final BlockingQueue<Buffer> free = new ArrayBlockingQueue<Buffer>(BUFFERS);
+    private final Thread thread;
+    private Buffer buffer;
+    private volatile IOException error;
+    private boolean closed;
+
+    /**
+     * @param out
+     *            stream to write the compressed bytes to, closed with this stream
+     * @param name
+     *            name of the compressing thread
+     */
+    GzipOutputStream(OutputStream out, String name) {
+        this.out = out;
+        for (int i = 1; i < BUFFERS; i++) {
+            this.free.add(new Buffer(BUFFER_BYTES));
+        }
+        this.buffer = new Buffer(BUFFER_BYTES);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                compress();
+            }
+        }, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (this.buffer.length == this.buffer.bytes.length) handOff();
+        this.buffer.bytes[this.buffer.length++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (this.buffer.length == this.buffer.bytes.length) handOff();
+            final int n = Math.min(len, this.buffer.bytes.length - this.buffer.length);
+            System.arraycopy(b, off, this.buffer.bytes, this.buffer.length, n);
+            this.buffer.length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Compresses the bytes still buffered, finishes the gzip stream and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) return;
+        this.closed = true;
+        try {
+            if (this.error == null) {
+                if (this.buffer.length > 0) put(this.buffer);
+                put(END);
+                this.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            if (this.thread.isAlive()) {
+                this.thread.interrupt();
+            }
+            this.buffer = null;
+        }
+        checkError();
+    }
+
+    private void handOff() throws IOException {
+        checkError();
+        put(this.buffer);
+        try {
+            Buffer next;
+            while ((next = this.free.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                checkError();
+            }
+            next.length = 0;
+            this.buffer = next;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private void put(Buffer b) throws IOException {
+        try {
+            while (!this.full.offer(b, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkError();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (this.error != null) throw this.error;
+    }
+
+    private void compress() {
+        GZIPOutputStream gzip = null;
+        try {
+            gzip = new GZIPOutputStream(this.out, DEFLATE_BUFFER_BYTES);
+            for (Buffer b = this.full.take(); b != END; b = this.full.take()) {
+                gzip.write(b.bytes, 0, b.length);
+                this.free.put(b);
+            }
+            gzip.finish();
+        } catch (InterruptedException e) {
+            // abandoned
+        } catch (IOException e) {
+            this.error = e;
+        } finally {
+            try {
+                this.out.close();
+            } catch (IOException e) {
+                if (this.error == null) this.error = e;
+            }
+        }
+    }
+}
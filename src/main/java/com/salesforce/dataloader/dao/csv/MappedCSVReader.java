@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sforce.async.CSVReader;
+
+/**
+ * Reads CSV records straight from a memory-mapped file. Records are read by the same rules as {@link CSVReader} with
+ * ',' and tab as delimiters, so the two can be swapped, except that a UTF-8 byte order mark is not returned as part of
+ * the first column name. Fields are only decoded once their record has been parsed, directly from the mapped bytes.
+ * <p>
+ * Parsing works on the encoded bytes, so only charsets where delimiters, quotes and line breaks are always single
+ * ASCII bytes are supported, see {@link #supports(Charset)}.
+ * <p>
+ * Mapped windows are released as soon as the reader moves past them or is closed, rather than when they are garbage
+ * collected, since Windows does not let a file that is still mapped be deleted or replaced.
+ *
+ * @since 35.0
+ */
+class MappedCSVReader implements Closeable {
+
+    // same limits as CSVReader, except the row and file size limits which CSVFileReader turns off
+    private static final int MAX_COLUMNS_PER_ROW = 5000;
+    private static final int MAX_ROW_SIZE_IN_CHARACTERS = 400000;
+    private static final int MAX_SIZE_OF_INDIVIDUAL_CELL = 32000;
+
+    /** bytes mapped at a time; files larger than this are read through a sliding window */
+    static final int DEFAULT_WINDOW_BYTES = 1 << 30;
+
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte COMMA = ',';
+    private static final byte TAB = '\t';
+    private static final String STRUCTURAL_CHARS = ",\t\"\r\n";
+
+    private static final int NO_VALUE = -1;
+    private static final int ESCAPED_QUOTES = 1;
+    private static final int LINE_BREAKS = 2;
+
+    // sun.misc.Unsafe.invokeCleaner(ByteBuffer) on Java 9 and later, which has no public way to unmap a buffer
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Exception e) {
+            // Java 8, where the cleaner of the buffer is called instead
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final FileInputStream input;
+    private final FileChannel channel;
+    private final long endOffset;
+    private final Charset charset;
+    private int windowBytes;
+
+    private ByteBuffer window;
+    private ByteBuffer view;
+    private long windowStart;
+    private int pos;
+    private int lineNumber = 1;
+    private boolean atEOF;
+
+    // value slots of the record being parsed, as offsets into the current window
+    private int[] valueStart = new int[64];
+    private int[] valueEnd = new int[64];
+    private int[] valueFlags = new int[64];
+    private int valueCount;
+    private byte[] scratch = new byte[1024];
+
+    MappedCSVReader(File file, Charset charset) throws IOException {
+        this(file, charset, DEFAULT_WINDOW_BYTES);
+    }
+
+    MappedCSVReader(File file, Charset charset, int windowBytes) throws IOException {
+        this.input = new FileInputStream(file);
+        try {
+            this.channel = this.input.getChannel();
+            this.endOffset = this.channel.size();
+            this.charset = charset;
+            this.windowBytes = windowBytes;
+            start(0);
+        } catch (IOException e) {
+            this.input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the records between two record boundaries of an already open file, treating the end offset as the end of
+     * the file. Closing the reader leaves the channel open.
+     */
+    MappedCSVReader(FileChannel channel, long startOffset, long endOffset, Charset charset) throws IOException {
+        this.input = null;
+        this.channel = channel;
+        this.endOffset = endOffset;
+        this.charset = charset;
+        this.windowBytes = DEFAULT_WINDOW_BYTES;
+        start(startOffset);
+    }
+
+    private void start(long offset) throws IOException {
+        map(offset);
+        if (offset == 0 && "UTF-8".equals(this.charset.name()) && this.window.limit() >= 3
+                && this.window.get(0) == (byte)0xEF && this.window.get(1) == (byte)0xBB
+                && this.window.get(2) == (byte)0xBF) {
+            this.pos = 3;
+        }
+    }
+
+    /**
+     * @return true if delimiters, quotes and line breaks are single ASCII bytes in the charset, and those bytes can't
+     *         be part of any other character
+     */
+    static boolean supports(Charset charset) {
+        if ("UTF-8".equals(charset.name())) return true;
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) return false;
+        final byte[] ascii = { COMMA, TAB, QUOTE, CR, LF };
+        return Arrays.equals(ascii, STRUCTURAL_CHARS.getBytes(charset))
+                && STRUCTURAL_CHARS.equals(new String(ascii, charset));
+    }
+
+    /**
+     * @return the next non-blank record, or null at the end of the file
+     */
+    List<String> nextRecord() throws IOException {
+        String[] record = nextRecordLocal();
+        while (record != null && (record.length == 0 || record.length == 1 && (record[0] == null || record[0].isEmpty()))) {
+            record = nextRecordLocal();
+        }
+        if (record == null) return null;
+        int rowSize = 0;
+        for (String value : record) {
+            if (value != null) rowSize += value.length();
+        }
+        if (rowSize > MAX_ROW_SIZE_IN_CHARACTERS) {
+            throw new IOException("Exceeded max length for one record: " + rowSize
+                    + ". Max length for one record should be less than or equal to " + MAX_ROW_SIZE_IN_CHARACTERS);
+        }
+        return Arrays.asList(record);
+    }
+
+    /**
+     * Continues reading at the given offset, which has to be where a record starts.
+     */
+    void seek(long offset) throws IOException {
+        this.atEOF = false;
+        start(offset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        unmap(this.window);
+        this.window = null;
+        this.view = null;
+        if (this.input != null) this.input.close();
+    }
+
+    /**
+     * Releases a mapped buffer right away. The buffer and every view of it must not be used afterwards. If the JVM
+     * offers no way to do so, the mapping is released when the buffer is garbage collected.
+     */
+    static void unmap(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) return;
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // left to the garbage collector
+        }
+    }
+
+    private String[] nextRecordLocal() throws IOException {
+        if (this.atEOF) return null;
+        while (true) {
+            final int recordStart = this.pos;
+            final int recordLine = this.lineNumber;
+            if (parseRecord()) break;
+            // the record runs past the end of the window: map again starting at the record, and parse it again
+            if (recordStart == 0) this.windowBytes = (int)Math.min(Integer.MAX_VALUE, 2L * this.windowBytes);
+            map(this.windowStart + recordStart);
+            this.lineNumber = recordLine;
+        }
+        final String[] record = new String[this.valueCount];
+        for (int i = 0; i < record.length; i++) {
+            record[i] = decode(this.valueStart[i], this.valueEnd[i], this.valueFlags[i]);
+        }
+        return record;
+    }
+
+    /**
+     * Finds the values of the record starting at pos.
+     *
+     * @return false if the window ends before the record does
+     */
+    private boolean parseRecord() throws IOException {
+        final ByteBuffer b = this.window;
+        final int limit = b.limit();
+        final boolean lastWindow = this.windowStart + limit == this.endOffset;
+        this.valueCount = 0;
+        int start = NO_VALUE;
+        int end = NO_VALUE;
+        int flags = 0;
+        int p = this.pos;
+        while (true) {
+            if (p == limit) {
+                if (!lastWindow) return false;
+                addValue(start, end, flags);
+                this.atEOF = true;
+                this.pos = p;
+                return true;
+            }
+            byte c = b.get(p);
+            if (c == CR || c == LF) {
+                if (c == CR && p + 1 == limit && !lastWindow) return false;
+                p += (c == CR && p + 1 < limit && b.get(p + 1) == LF) ? 2 : 1;
+                this.lineNumber++;
+                addValue(start, end, flags);
+                this.pos = p;
+                return true;
+            }
+            if (c == COMMA || c == TAB) {
+                addValue(start, end, flags);
+                start = NO_VALUE;
+                flags = 0;
+                p++;
+            } else if (c == QUOTE) {
+                if (start != NO_VALUE)
+                    throw new IOException("Found unescaped quote. A value with quote should be within a quote");
+                final int quotedStart = ++p;
+                int runStart = p;
+                while (true) {
+                    if (p == limit) {
+                        if (!lastWindow) return false;
+                        this.atEOF = true;
+                        throw new IOException("EOF reached before closing an opened quote");
+                    }
+                    c = b.get(p);
+                    if (c == QUOTE || c == CR || c == LF || c == COMMA || c == TAB) {
+                        if ((c == QUOTE || c == CR) && p + 1 == limit && !lastWindow) return false;
+                        checkCellSize(runStart, p);
+                        if (c == QUOTE) {
+                            if (p + 1 < limit && b.get(p + 1) == QUOTE) {
+                                flags |= ESCAPED_QUOTES;
+                                p += 2;
+                            } else {
+                                end = p++;
+                                if (p < limit && !isStructural(b.get(p)))
+                                    throw new IOException("Not expecting more text after end quote");
+                                break;
+                            }
+                        } else if (c == CR || c == LF) {
+                            flags |= LINE_BREAKS;
+                            p += (c == CR && p + 1 < limit && b.get(p + 1) == LF) ? 2 : 1;
+                            this.lineNumber++;
+                        } else {
+                            p++;
+                        }
+                        runStart = p;
+                    } else {
+                        p++;
+                    }
+                }
+                // like CSVReader, an empty quoted value is read as no value at all
+                if (end > quotedStart) {
+                    start = quotedStart;
+                } else {
+                    start = NO_VALUE;
+                    flags = 0;
+                }
+            } else {
+                start = p;
+                while (p < limit && !isStructural(b.get(p))) {
+                    p++;
+                }
+                if (p < limit && b.get(p) == QUOTE)
+                    throw new IOException("Found unescaped quote. A value with quote should be within a quote");
+                end = p;
+            }
+        }
+    }
+
+    private static boolean isStructural(byte c) {
+        return c == COMMA || c == TAB || c == QUOTE || c == CR || c == LF;
+    }
+
+    /* CSVReader limits each run of text between delimiters, quotes and line breaks inside a quoted value */
+    private void checkCellSize(int runStart, int runEnd) throws IOException {
+        if (runEnd - runStart <= MAX_SIZE_OF_INDIVIDUAL_CELL) return;
+        final int chars = decode(runStart, runEnd, 0).length();
+        if (chars > MAX_SIZE_OF_INDIVIDUAL_CELL) throw new IOException("Exceeded max field size: " + chars);
+    }
+
+    private void addValue(int start, int end, int flags) throws IOException {
+        if (this.valueCount == MAX_COLUMNS_PER_ROW)
+            throw new IOException("Exceeded max number of columns per record : " + MAX_COLUMNS_PER_ROW);
+        if (this.valueCount == this.valueStart.length) {
+            final int size = this.valueCount * 2;
+            this.valueStart = Arrays.copyOf(this.valueStart, size);
+            this.valueEnd = Arrays.copyOf(this.valueEnd, size);
+            this.valueFlags = Arrays.copyOf(this.valueFlags, size);
+        }
+        this.valueStart[this.valueCount] = start;
+        this.valueEnd[this.valueCount] = end;
+        this.valueFlags[this.valueCount] = flags;
+        this.valueCount++;
+    }
+
+    private String decode(int start, int end, int flags) {
+        if (start == NO_VALUE) return null;
+        int len = end - start;
+        if (this.scratch.length < len) this.scratch = new byte[Math.max(len, this.scratch.length * 2)];
+        final byte[] bytes = this.scratch;
+        this.view.position(start);
+        this.view.get(bytes, 0, len);
+        if (flags != 0) len = unescape(bytes, len);
+        return new String(bytes, 0, len, this.charset);
+    }
+
+    /* Turns doubled quotes into single ones and, like CSVReader, every line break inside quotes into a '\n' */
+    private static int unescape(byte[] bytes, int len) {
+        int w = 0;
+        for (int r = 0; r < len; r++) {
+            final byte c = bytes[r];
+            if (c == QUOTE) {
+                r++;
+            } else if (c == CR && r + 1 < len && bytes[r + 1] == LF) {
+                r++;
+            }
+            bytes[w++] = c == CR ? LF : c;
+        }
+        return w;
+    }
+
+    private void map(long offset) throws IOException {
+        final long size = Math.min(this.windowBytes, this.endOffset - offset);
+        final ByteBuffer previous = this.window;
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        unmap(previous);
+        this.view = this.window.duplicate();
+        this.windowStart = offset;
+        this.pos = 0;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parses a CSV file on several threads and returns its records in file order, the same records {@link MappedCSVReader}
+ * would return.
+ * <p>
+ * The file is cut into fixed size chunks, which are moved to record boundaries before they are parsed. Quotes can
+ * only appear as the start or end of a quoted value or doubled inside one, so a position is inside a quoted value
+ * exactly when an odd number of quotes come before it. Each chunk counts its quotes in parallel, and a running parity
+ * gives every chunk the quote state at its start, so the first line break outside quotes after that is where its
+ * first record starts.
+ * <p>
+ * Only a few chunks are parsed ahead of the caller, which keeps memory use bounded on large files. A malformed
+ * record, such as one with an unescaped quote, is reported when the records before it have been returned.
+ *
+ * @since 35.0
+ */
+class ParallelCSVReader implements Closeable {
+
+    static final long DEFAULT_CHUNK_BYTES = 8L << 20;
+
+    // chunks are scanned with plain reads, only parsing maps them
+    private static final ThreadLocal<byte[]> SCAN_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[64 * 1024];
+        }
+    };
+
+    private final FileInputStream input;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final Charset charset;
+    private final long chunkBytes;
+    private final int maxChunksAhead;
+    private final ForkJoinPool pool;
+
+    private final ArrayDeque<CompletableFuture<Chunk>> pending = new ArrayDeque<CompletableFuture<Chunk>>();
+    private long firstRecordStart;
+    private long nextChunkStart;
+    private CompletableFuture<Boolean> nextChunkStartsInQuotes = CompletableFuture.completedFuture(false);
+
+    private Iterator<List<String>> records = Collections.<List<String>> emptyList().iterator();
+    private IOException error;
+
+    /** Records parsed from one chunk, and the error that stopped the parse, if any */
+    private static class Chunk {
+        final List<List<String>> records;
+        final IOException error;
+
+        Chunk(List<List<String>> records, IOException error) {
+            this.records = records;
+            this.error = error;
+        }
+    }
+
+    ParallelCSVReader(File file, Charset charset, int threads) throws IOException {
+        this(file, charset, threads, DEFAULT_CHUNK_BYTES);
+    }
+
+    ParallelCSVReader(File file, Charset charset, int threads, long chunkBytes) throws IOException {
+        this.input = new FileInputStream(file);
+        this.channel = this.input.getChannel();
+        this.fileSize = this.channel.size();
+        this.charset = charset;
+        this.chunkBytes = chunkBytes;
+        this.maxChunksAhead = threads * 2;
+        this.pool = new ForkJoinPool(threads);
+        scheduleChunks();
+    }
+
+    /**
+     * @return the next non-blank record, or null at the end of the file
+     */
+    List<String> nextRecord() throws IOException {
+        while (!this.records.hasNext()) {
+            if (this.error != null) throw this.error;
+            final CompletableFuture<Chunk> next = this.pending.poll();
+            if (next == null) return null;
+            scheduleChunks();
+            final Chunk chunk;
+            try {
+                chunk = next.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException)e.getCause()).getCause();
+                throw e;
+            }
+            this.records = chunk.records.iterator();
+            this.error = chunk.error;
+        }
+        return this.records.next();
+    }
+
+    /**
+     * Continues reading at the given offset, which has to be where a record starts. Chunks parsed ahead are dropped.
+     */
+    void seek(long offset) {
+        for (CompletableFuture<Chunk> chunk : this.pending) {
+            chunk.cancel(false);
+        }
+        this.pending.clear();
+        this.records = Collections.<List<String>> emptyList().iterator();
+        this.error = null;
+        this.firstRecordStart = offset;
+        this.nextChunkStart = offset;
+        this.nextChunkStartsInQuotes = CompletableFuture.completedFuture(false);
+        scheduleChunks();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.pool.shutdownNow();
+        this.pending.clear();
+        this.input.close();
+    }
+
+    private void scheduleChunks() {
+        while (this.pending.size() < this.maxChunksAhead && this.nextChunkStart < this.fileSize) {
+            final long start = this.nextChunkStart;
+            final long end = Math.min(this.fileSize, start + this.chunkBytes);
+            final CompletableFuture<Boolean> startsInQuotes = this.nextChunkStartsInQuotes;
+            final CompletableFuture<Boolean> hasOddQuotes = CompletableFuture.supplyAsync(() -> hasOddQuotes(start, end),
+                    this.pool);
+            final CompletableFuture<Boolean> endsInQuotes = startsInQuotes.thenCombine(hasOddQuotes, (a, b) -> a ^ b);
+            this.pending.add(startsInQuotes.thenCombineAsync(endsInQuotes,
+                    (startQuoted, endQuoted) -> parseChunk(start, startQuoted, end, endQuoted), this.pool));
+            this.nextChunkStart = end;
+            this.nextChunkStartsInQuotes = endsInQuotes;
+        }
+    }
+
+    private Chunk parseChunk(long start, boolean startsInQuotes, long end, boolean endsInQuotes) {
+        final List<List<String>> chunkRecords = new ArrayList<List<String>>();
+        try {
+            final long recordStart = findRecordStart(start, startsInQuotes);
+            final long recordEnd = findRecordStart(end, endsInQuotes);
+            if (recordStart < recordEnd) {
+                final MappedCSVReader reader = new MappedCSVReader(this.channel, recordStart, recordEnd, this.charset);
+                try {
+                    for (List<String> record = reader.nextRecord(); record != null; record = reader.nextRecord()) {
+                        chunkRecords.add(record);
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+            return new Chunk(chunkRecords, null);
+        } catch (IOException e) {
+            return new Chunk(chunkRecords, e);
+        }
+    }
+
+    private boolean hasOddQuotes(long start, long end) {
+        try {
+            final byte[] bytes = SCAN_BUFFER.get();
+            boolean odd = false;
+            for (long offset = start; offset < end;) {
+                final int len = read(bytes, offset, end);
+                for (int i = 0; i < len; i++) {
+                    if (bytes[i] == '"') odd = !odd;
+                }
+                offset += len;
+            }
+            return odd;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return offset of the first record that starts at or after the given offset, given the quote state there
+     */
+    private long findRecordStart(long offset, boolean inQuotes) throws IOException {
+        if (offset == this.firstRecordStart || offset == this.fileSize) return offset;
+        final byte[] bytes = SCAN_BUFFER.get();
+        while (offset < this.fileSize) {
+            final int len = read(bytes, offset, this.fileSize);
+            for (int i = 0; i < len; i++) {
+                final byte c = bytes[i];
+                if (c == '"') {
+                    inQuotes = !inQuotes;
+                } else if (!inQuotes && (c == '\n' || c == '\r')) {
+                    final long next = offset + i + 1;
+                    if (c == '\r' && next < this.fileSize) {
+                        final boolean lf = i + 1 < len ? bytes[i + 1] == '\n' : read(bytes, next, next + 1) == 1
+                                && bytes[0] == '\n';
+                        if (lf) return next + 1;
+                    }
+                    return next;
+                }
+            }
+            offset += len;
+        }
+        return this.fileSize;
+    }
+
+    /* Reads up to a buffer full of bytes at the offset, without going past end; the channel is read positionally */
+    private int read(byte[] bytes, long offset, long end) throws IOException {
+        final ByteBuffer b = ByteBuffer.wrap(bytes, 0, (int)Math.min(bytes.length, end - offset));
+        while (b.hasRemaining()) {
+            if (this.channel.read(b, offset + b.position()) < 0) break;
+        }
+        return b.position();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A database's own fast path for loading rows, such as PostgreSQL's <code>COPY</code>, used by the database writers in
+ * place of batches of the insert statement. It is set on the {@link SqlConfig} bean of an insert, for example:
+ *
+ * <pre>
+ * &lt;property name="bulkLoadStrategy"&gt;
+ *     &lt;bean class="com.salesforce.dataloader.dao.database.PostgresCopyStrategy"/&gt;
+ * &lt;/property&gt;
+ * </pre>
+ *
+ * The insert statement has to be of the form <code>INSERT INTO table (columns) VALUES (@params@)</code>, with a
+ * parameter for each column. When the strategy does not support the connection, or a load fails, the rows are written
+ * with batches of the insert statement instead.
+ *
+ * @see CsvBulkLoadStrategy
+ * @since 35.0
+ */
+public interface BulkLoadStrategy {
+
+    /**
+     * @return true if rows can be loaded through the connection
+     * @throws SQLException
+     */
+    boolean supports(Connection connection) throws SQLException;
+
+    /**
+     * Loads rows into the columns of the table, in the current transaction of the connection.
+     *
+     * @param values
+     *            the values of each row, in the order of the columns. Dates are {@link java.sql.Date},
+     *            {@link java.sql.Time} or {@link java.sql.Timestamp} values, as they are for the insert statement
+     * @throws SQLException
+     */
+    void load(Connection connection, String table, List<String> columns, List<Object[]> values) throws SQLException;
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.exception.ParameterLoadException;
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * Loads the rows of an insert statement with the {@link BulkLoadStrategy} of its {@link SqlConfig}.
+ *
+ * @since 35.0
+ */
+class BulkLoader {
+
+    private static final Logger logger = Logger.getLogger(BulkLoader.class);
+
+    private final BulkLoadStrategy strategy;
+    private final SqlConfig sqlConfig;
+    private final InsertStatement insert;
+
+    private BulkLoader(BulkLoadStrategy strategy, SqlConfig sqlConfig, InsertStatement insert) {
+        this.strategy = strategy;
+        this.sqlConfig = sqlConfig;
+        this.insert = insert;
+    }
+
+    /**
+     * @return a loader for the insert statement of the configuration, or null if it has no bulk load strategy, or
+     *         one that can't be used with the statement or the connection
+     */
+    static BulkLoader create(SqlConfig sqlConfig, Connection connection, String dbConfigName) {
+        final BulkLoadStrategy strategy = sqlConfig.getBulkLoadStrategy();
+        if (strategy == null) return null;
+        if (sqlConfig.isMerge()) {
+            logger.warn(Messages.getFormattedString("DatabaseDAO.errorBulkLoadMerge", dbConfigName));
+            return null;
+        }
+        final InsertStatement insert = InsertStatement.parse(sqlConfig.getSqlString());
+        if (insert == null) {
+            logger.warn(Messages.getFormattedString("DatabaseDAO.errorBulkLoadStatement", dbConfigName));
+            return null;
+        }
+        try {
+            if (!strategy.supports(connection)) {
+                logger.warn(Messages.getFormattedString("DatabaseDAO.errorBulkLoadNotSupported", new String[] {
+                        dbConfigName, strategy.getClass().getName() }));
+                return null;
+            }
+        } catch (SQLException e) {
+            logger.warn(Messages.getFormattedString("DatabaseDAO.errorBulkLoadNotSupported", new String[] {
+                    dbConfigName, strategy.getClass().getName() }), e);
+            return null;
+        }
+        logger.info(Messages.getFormattedString("DatabaseDAO.bulkLoadInfo", new String[] { dbConfigName,
+                strategy.getClass().getName() }));
+        return new BulkLoader(strategy, sqlConfig, insert);
+    }
+
+    /**
+     * Loads the rows in the current transaction of the connection. Values are converted as they are for the insert
+     * statement.
+     */
+    void load(Connection connection, DatabaseContext context, Config config, List<Row> rows) throws SQLException,
+    ParameterLoadException {
+        final List<String> params = insert.getParams();
+        final List<Object[]> values = new ArrayList<Object[]>(rows.size());
+        for (Row row : rows) {
+            final Object[] rowValues = new Object[params.size()];
+            for (int i = 0; i < rowValues.length; i++) {
+                final String param = params.get(i);
+                if (!row.containsKey(param)) {
+                    // left to the insert statement, which can take it from the configuration
+                    throw new ParameterLoadException(Messages.getFormattedString("DatabaseDAO.errorParamMissing",
+                            new String[] { param, context.getDbConfigName() }));
+                }
+                final String type = sqlConfig.getSqlParams() == null ? null : sqlConfig.getSqlParams().get(param);
+                rowValues[i] = type == null ? row.get(param) : context.mapParamToDbType(config, row.get(param), type);
+            }
+            values.add(rowValues);
+        }
+        strategy.load(connection, insert.getTable(), insert.getColumns(), values);
+    }
+}
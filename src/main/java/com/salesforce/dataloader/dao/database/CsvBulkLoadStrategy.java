@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Base class of the bulk load strategies that load rows as CSV text. Text values are always quoted, so that empty
+ * strings and null values can be told apart.
+ *
+ * @since 35.0
+ */
+public abstract class CsvBulkLoadStrategy implements BulkLoadStrategy {
+
+    /**
+     * @param nullValue
+     *            the unquoted text of null values
+     * @param header
+     *            true to start with a row of the column names
+     * @return the rows as CSV text, with a line feed after each row
+     */
+    protected static String toCsv(List<String> columns, List<Object[]> values, String nullValue, boolean header) {
+        final StringBuilder csv = new StringBuilder(values.size() * columns.size() * 16);
+        if (header) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) csv.append(',');
+                appendQuoted(csv, columns.get(i));
+            }
+            csv.append('\n');
+        }
+        for (Object[] row : values) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) csv.append(',');
+                appendValue(csv, row[i], nullValue);
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * @return the column names separated with commas
+     */
+    protected static String join(List<String> columns) {
+        final StringBuilder text = new StringBuilder();
+        for (String column : columns) {
+            if (text.length() > 0) text.append(", ");
+            text.append(column);
+        }
+        return text.toString();
+    }
+
+    private static void appendValue(StringBuilder csv, Object value, String nullValue) {
+        if (value == null) {
+            csv.append(nullValue);
+        } else if (value instanceof BigDecimal) {
+            csv.append(((BigDecimal)value).toPlainString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            csv.append(value);
+        } else if (value instanceof Calendar) {
+            // the insert statement would bind it as a timestamp
+            csv.append(new java.sql.Timestamp(((Calendar)value).getTimeInMillis()));
+        } else {
+            // java.sql dates are written in the formats of SQL literals
+            appendQuoted(csv, value.toString());
+        }
+    }
+
+    private static void appendQuoted(StringBuilder csv, String text) {
+        csv.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"') csv.append('"');
+            csv.append(c);
+        }
+        csv.append('"');
+    }
+}
@@ -25,27 +25,186 @@
  */
 package com.salesforce.dataloader.dao.database;
 
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.log4j.Logger;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
 import org.springframework.beans.factory.xml.XmlBeanFactory;
 import org.springframework.core.io.FileSystemResource;
 
 public class DatabaseConfig {
+
+    private static final Logger logger = Logger.getLogger(DatabaseConfig.class);
+
+    private static final String POOL_PREPARED_STATEMENTS = "poolPreparedStatements";
+
+    /**
+     * The beans of a configuration file, kept until the file changes.
+     */
+    private static class CachedFactory {
+        final XmlBeanFactory factory;
+        final String fileName;
+        final long lastModified;
+        final Map<String, DatabaseConfig> configs = new HashMap<String, DatabaseConfig>();
+        // readers and writers with connections of the data sources open
+        int users;
+        boolean closed;
+
+        CachedFactory(XmlBeanFactory factory, String fileName, long lastModified) {
+            this.factory = factory;
+            this.fileName = fileName;
+            this.lastModified = lastModified;
+        }
+    }
+
+    // by absolute file name
+    private static final Map<String, CachedFactory> factories = new HashMap<String, CachedFactory>();
+    // replaced by newer versions of their files, their data sources are still in use
+    private static final List<CachedFactory> staleFactories = new ArrayList<CachedFactory>();
+    private static boolean shutdownHookAdded = false;
+
     private BasicDataSource dataSource;
     private SqlConfig sqlConfig;
+    private CachedFactory cachedFactory;
+    private String name;
 
     public DatabaseConfig() {
     }
 
     /**
-     * Factory method
+     * Factory method. The configuration files are read once, and their beans are shared, so the data access objects
+     * of a configuration file share its connection pools. When the file changes it is read again, and the pools of
+     * the previous version are closed once no reader or writer uses them, see {@link #acquire()}. The other pools are
+     * closed when the JVM exits, see {@link #closeAll()}.
      *
      * @param dbConfigFilename
      * @param dbConnectionName
      * @return instance of database configuration
      */
-    public static DatabaseConfig getInstance (String dbConfigFilename, String dbConnectionName) {
-        XmlBeanFactory configFactory = new XmlBeanFactory(new FileSystemResource(dbConfigFilename));
-        return (DatabaseConfig)configFactory.getBean(dbConnectionName);
+    public static synchronized DatabaseConfig getInstance (String dbConfigFilename, String dbConnectionName) {
+        final File file = new File(dbConfigFilename).getAbsoluteFile();
+        CachedFactory cached = factories.get(file.getPath());
+        if (cached == null || cached.lastModified != file.lastModified()) {
+            if (cached != null) {
+                if (cached.users > 0) {
+                    staleFactories.add(cached);
+                } else {
+                    close(cached);
+                }
+            }
+            cached = new CachedFactory(new XmlBeanFactory(new FileSystemResource(file)), file.getPath(),
+                    file.lastModified());
+            factories.put(file.getPath(), cached);
+            addShutdownHook();
+        }
+        DatabaseConfig dbConfig = cached.configs.get(dbConnectionName);
+        if (dbConfig == null) {
+            dbConfig = (DatabaseConfig)cached.factory.getBean(dbConnectionName);
+            // statements are prepared again for each batch and each open
+            if (dbConfig.getDataSource() != null
+                    && !isPoolPreparedStatementsSet(cached.factory, dbConnectionName, dbConfig.getDataSource())) {
+                dbConfig.getDataSource().setPoolPreparedStatements(true);
+            }
+            dbConfig.cachedFactory = cached;
+            dbConfig.name = dbConnectionName;
+            cached.configs.put(dbConnectionName, dbConfig);
+        }
+        return dbConfig;
+    }
+
+    /**
+     * @return true if the bean of the data source gives its poolPreparedStatements property
+     */
+    private static boolean isPoolPreparedStatementsSet(XmlBeanFactory factory, String dbConnectionName,
+            BasicDataSource dataSource) {
+        for (String beanName : factory.getBeanNamesForType(BasicDataSource.class)) {
+            if (factory.getBean(beanName) == dataSource) {
+                return factory.getBeanDefinition(beanName).getPropertyValues().contains(POOL_PREPARED_STATEMENTS);
+            }
+        }
+        // a data source declared inside the configuration bean
+        final PropertyValue value = factory.getBeanDefinition(dbConnectionName).getPropertyValues()
+                .getPropertyValue("dataSource");
+        return value != null && value.getValue() instanceof BeanDefinitionHolder
+                && ((BeanDefinitionHolder)value.getValue()).getBeanDefinition().getPropertyValues()
+                .contains(POOL_PREPARED_STATEMENTS);
+    }
+
+    /**
+     * Counts a reader or writer that opens connections of the data source, until it calls {@link #release()}.
+     *
+     * @return this configuration, or the current configuration of the same name if the data source of this one was
+     *         closed after its file changed
+     */
+    public DatabaseConfig acquire() {
+        synchronized (DatabaseConfig.class) {
+            if (cachedFactory == null) return this;
+            final DatabaseConfig dbConfig = cachedFactory.closed ? getInstance(cachedFactory.fileName, name) : this;
+            dbConfig.cachedFactory.users++;
+            return dbConfig;
+        }
+    }
+
+    /**
+     * Stops counting a reader or writer counted by {@link #acquire()}. The data sources of a file that changed are
+     * closed when the last one stops.
+     */
+    public void release() {
+        synchronized (DatabaseConfig.class) {
+            if (cachedFactory == null || cachedFactory.users == 0) return;
+            cachedFactory.users--;
+            if (cachedFactory.users == 0 && staleFactories.remove(cachedFactory)) {
+                close(cachedFactory);
+            }
+        }
+    }
+
+    /**
+     * Closes the data sources of all the configuration files that were read. The next
+     * {@link #getInstance(String, String)} reads its configuration file again.
+     */
+    public static synchronized void closeAll() {
+        final List<CachedFactory> all = new ArrayList<CachedFactory>(staleFactories);
+        all.addAll(factories.values());
+        factories.clear();
+        staleFactories.clear();
+        for (CachedFactory cached : all) {
+            close(cached);
+        }
+    }
+
+    private static void close(CachedFactory cached) {
+        cached.closed = true;
+        try {
+            // calls the destroy methods
+            cached.factory.destroySingletons();
+            // for the data sources without destroy-method="close"
+            for (DatabaseConfig dbConfig : cached.configs.values()) {
+                if (dbConfig.getDataSource() != null) {
+                    dbConfig.getDataSource().close();
+                }
+            }
+        } catch (RuntimeException | SQLException e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    private static void addShutdownHook() {
+        if (shutdownHookAdded) return;
+        Runtime.getRuntime().addShutdownHook(new Thread("DatabaseConfig-close") {
+            @Override
+            public void run() {
+                closeAll();
+            }
+        });
+        shutdownHookAdded = true;
     }
 
     public BasicDataSource getDataSource() {
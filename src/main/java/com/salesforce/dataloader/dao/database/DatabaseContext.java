@@ -54,6 +54,7 @@ public class DatabaseContext {
     private List<String> currentSqlParamNames;
     private String currentSqlString;
     private boolean open = false;
+    private ParamBinder paramBinder;
     public static final String DEFAULT_CONFIG_FILENAME = "database-conf.xml";
 
     // logger
@@ -137,11 +138,159 @@ public class DatabaseContext {
         // save the output
         currentSqlString = sqlStringReplace;
         currentSqlParamNames = paramNames;
+        paramBinder = null;
+    }
+
+    /**
+     * The parameters of a statement, looked up once so that binding the values of a row only converts them and calls
+     * the setters.
+     */
+    private final class ParamBinder {
+
+        private final class Param {
+            final String name;
+            final String type;
+            // Types.DATE, TIMESTAMP or TIME for the values converted to dates, 0 for the others
+            final int dateType;
+            final Object configValue;
+            // thrown when a row doesn't have the value and it can't be taken from the config
+            final ParameterLoadException configError;
+            final int nullType;
+            final UnsupportedOperationException nullTypeError;
+
+            Param(String name, String type) {
+                this.name = name;
+                this.type = type;
+                this.dateType = getDateType(type);
+                Object value = null;
+                ParameterLoadException error = null;
+                if (!config.contains(name)) {
+                    String errMsg = Messages.getFormattedString("DatabaseDAO.errorParamMissing", new String[] { name,
+                            dbConfigName });
+                    error = new ParameterLoadException(errMsg);
+                } else {
+                    try {
+                        value = toDbType(getConfigValue(config, name, type));
+                        logger.info(Messages.getFormattedString("DatabaseDAO.sqlParamInfo", new String[] { name,
+                                String.valueOf(value) }));
+                    } catch (ParameterLoadException e) {
+                        error = e;
+                    }
+                }
+                this.configValue = value;
+                this.configError = error;
+                int sqlType = 0;
+                UnsupportedOperationException typeError = null;
+                try {
+                    sqlType = getSqlType(type);
+                } catch (UnsupportedOperationException e) {
+                    typeError = e;
+                }
+                this.nullType = sqlType;
+                this.nullTypeError = typeError;
+            }
+
+            Object toDbType(Object paramValue) throws ParameterLoadException {
+                if (paramValue == null || dateType == 0) return paramValue;
+                try {
+                    return toSqlDate(getTimeInMillis(paramValue), dateType);
+                } catch (Exception e) {
+                    String errMsg = Messages.getFormattedString("DatabaseDAO.errorParamMapping", new String[] {
+                            paramValue.toString(), paramValue.getClass().getName(), type, e.getMessage() });
+                    logger.error(errMsg, e);
+                    throw new ParameterLoadException(errMsg, e);
+                }
+            }
+
+            private long getTimeInMillis(Object paramValue) {
+                if (paramValue instanceof String) {
+                    Calendar cal = (Calendar)dateConverter.convert(java.util.Calendar.class, paramValue);
+                    return cal.getTimeInMillis();
+                }
+                return DatabaseContext.this.getTimeInMillis(timeZone, paramValue);
+            }
+        }
+
+        private final SqlConfig sqlConfig;
+        private final Config config;
+        private final List<String> sqlParamNames;
+        private final TimeZone timeZone;
+        private final DateConverter dateConverter;
+        private final Param[] params;
+        // the parameter of each statement index, null if it has no type
+        private final Param[] statementParams;
+
+        ParamBinder(SqlConfig sqlConfig, Config config, List<String> sqlParamNames) {
+            this.sqlConfig = sqlConfig;
+            this.config = config;
+            this.sqlParamNames = sqlParamNames;
+            this.timeZone = config.getTimeZone();
+            this.dateConverter = new DateConverter(timeZone);
+            final Map<String, Param> byName = new HashMap<String, Param>();
+            for (Map.Entry<String, String> entry : sqlConfig.getSqlParams().entrySet()) {
+                byName.put(entry.getKey(), new Param(entry.getKey(), entry.getValue()));
+            }
+            this.params = byName.values().toArray(new Param[byName.size()]);
+            this.statementParams = new Param[sqlParamNames.size()];
+            for (int i = 0; i < statementParams.length; i++) {
+                statementParams[i] = byName.get(sqlParamNames.get(i));
+            }
+        }
+
+        boolean isFor(SqlConfig sqlConfig, Config config, List<String> sqlParamNames) {
+            return this.sqlConfig == sqlConfig && this.config == config && this.sqlParamNames == sqlParamNames
+                    && this.sqlConfig.getSqlParams() != null && this.params.length == sqlConfig.getSqlParams().size();
+        }
+
+        void bind(Map<String, Object> paramValues) throws ParameterLoadException {
+            for (Param param : params) {
+                if (paramValues.containsKey(param.name)) {
+                    final Object value = paramValues.get(param.name);
+                    final Object sqlValue = param.toDbType(value);
+                    if (sqlValue != value) {
+                        paramValues.put(param.name, sqlValue);
+                    }
+                } else if (param.configError != null) {
+                    logger.fatal(param.configError.getMessage());
+                    throw param.configError;
+                } else {
+                    paramValues.put(param.name, param.configValue);
+                }
+            }
+
+            for (int i = 0; i < statementParams.length; i++) {
+                final Param param = statementParams[i];
+                final String paramName = sqlParamNames.get(i);
+                final Object sqlValue = paramValues.get(paramName);
+                try {
+                    if (sqlValue == null) {
+                        if (param == null) throw new UnsupportedOperationException("Type not supported: null");
+                        if (param.nullTypeError != null) throw param.nullTypeError;
+                        dataStatement.setNull(i + 1, param.nullType);
+                    } else if (param == null || param.dateType == 0) {
+                        dataStatement.setObject(i + 1, sqlValue);
+                    } else if (param.dateType == Types.TIMESTAMP) {
+                        dataStatement.setTimestamp(i + 1, (Timestamp)sqlValue);
+                    } else if (param.dateType == Types.DATE) {
+                        dataStatement.setDate(i + 1, (java.sql.Date)sqlValue);
+                    } else {
+                        dataStatement.setTime(i + 1, (Time)sqlValue);
+                    }
+                } catch (SQLException sqe) {
+                    String valueString = String.valueOf(sqlValue);
+                    String valueClass = String.valueOf(sqlValue == null ? null : sqlValue.getClass());
+                    String errMsg = Messages.getFormattedString("DatabaseDAO.sqlExceptionParamReplace",
+                            new String[] { dbConfigName, paramName, valueString, valueClass, sqe.getMessage() });
+                    logger.error(errMsg, sqe);
+                    throw new ParameterLoadException(errMsg, sqe);
+                }
+            }
+        }
     }
 
     /**
      * Private helper method to replace the params in the query with the values passed in from the Map. It sets the
-     * parameters with the param values.
+     * parameters with the param values. The values are converted to the types of the parameters in the map.
      * 
      * @param paramValues
      *            Values for the parameter replacement
@@ -156,50 +305,33 @@ public class DatabaseContext {
             paramValues = new HashMap<String, Object>();
         }
 
-        for (String paramName : sqlConfig.getSqlParams().keySet()) {
-            String type = sqlConfig.getSqlParams().get(paramName);
-            if (paramValues.containsKey(paramName)) {
-                Object sqlValue = mapParamToDbType(config, paramValues.get(paramName), type);
-                paramValues.put(paramName, sqlValue);
-            } else {
-                // look in the config if the parameter value is not passed in
-                if (config.contains(paramName)) {
-                    Object configValue = getConfigValue(config, paramName, type);
-                    Object sqlValue = mapParamToDbType(config, configValue, type);
-                    logger.info(Messages.getFormattedString("DatabaseDAO.sqlParamInfo", new String[] { paramName,
-                            sqlValue.toString() }));
-                    paramValues.put(paramName, sqlValue);
-                } else {
-                    String errMsg = Messages.getFormattedString("DatabaseDAO.errorParamMissing", new String[] {
-                            paramName, dbConfigName });
-                    logger.fatal(errMsg);
-                    throw new ParameterLoadException(errMsg);
-                }
-            }
+        // the parameters are looked up for the first row of the statement
+        if (paramBinder == null || !paramBinder.isFor(sqlConfig, config, currentSqlParamNames)) {
+            paramBinder = new ParamBinder(sqlConfig, config, currentSqlParamNames);
         }
+        paramBinder.bind(paramValues);
+    }
 
-        // Set the parameters for all the replaced params
-        // Set the params in the Map
-        int index = 1;
-        for (String paramName : currentSqlParamNames) {
-            Object sqlValue = paramValues.get(paramName);
-            try {
-                if (sqlValue != null)
-                    dataStatement.setObject(index, sqlValue);
-                else {
-                    dataStatement.setNull(index, getSqlType(sqlConfig.getSqlParams().get(paramName)));
-                }
-            } catch (SQLException sqe) {
-                String valueString = String.valueOf(sqlValue);
-                String valueClass = String.valueOf(sqlValue == null ? null : sqlValue.getClass());
-                String errMsg = Messages.getFormattedString("DatabaseDAO.sqlExceptionParamReplace", new String[] {
-                        this.dbConfigName, paramName, valueString, valueClass, sqe.getMessage() });
-                logger.error(errMsg, sqe);
-                throw new ParameterLoadException(errMsg, sqe);
-            }
-            index++;
+    private static int getDateType(String type) {
+        if (type.equals(java.sql.Date.class.getName())) {
+            return Types.DATE;
+        } else if (type.equals(Timestamp.class.getName())) {
+            return Types.TIMESTAMP;
+        } else if (type.equals(Time.class.getName())) {
+            return Types.TIME;
         }
+        return 0;
+    }
 
+    private static Object toSqlDate(long millis, int dateType) {
+        switch (dateType) {
+        case Types.DATE:
+            return new java.sql.Date(millis);
+        case Types.TIMESTAMP:
+            return new Timestamp(millis);
+        default:
+            return new Time(millis);
+        }
     }
 
     private int getSqlType(String type) {
@@ -256,18 +388,15 @@ public class DatabaseContext {
      * @return An object of type usable as a replacement in a Sql statement
      * @throws ParameterLoadException
      */
-    private Object mapParamToDbType(Config cfg, Object paramValue, String type) throws ParameterLoadException {
+    Object mapParamToDbType(Config cfg, Object paramValue, String type) throws ParameterLoadException {
         Object sqlValue;
         if(paramValue == null) {
             return paramValue;
         }
         try {
-            if (type.equals(java.sql.Date.class.getName())) {
-                sqlValue = new java.sql.Date(getTimeInMillis(cfg.getTimeZone(), paramValue));
-            } else if (type.equals(Timestamp.class.getName())) {
-                sqlValue = new Timestamp(getTimeInMillis(cfg.getTimeZone(), paramValue));
-            } else if (type.equals(Time.class.getName())) {
-                sqlValue = new Time(getTimeInMillis(cfg.getTimeZone(), paramValue));
+            int dateType = getDateType(type);
+            if (dateType != 0) {
+                sqlValue = toSqlDate(getTimeInMillis(cfg.getTimeZone(), paramValue), dateType);
             } else {
                 sqlValue = paramValue;
             }
@@ -362,6 +491,7 @@ public class DatabaseContext {
 
     public void setCurrentSqlParamNames(List<String> currentSqlParamNames) {
         this.currentSqlParamNames = currentSqlParamNames;
+        this.paramBinder = null;
     }
 
     public String getCurrentSqlString() {
@@ -26,6 +26,7 @@
 package com.salesforce.dataloader.dao.database;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 
@@ -35,7 +36,7 @@ import org.apache.log4j.Logger;
 
 import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.config.Messages;
-import com.salesforce.dataloader.dao.DataReader;
+import com.salesforce.dataloader.dao.SpooledDataReader;
 import com.salesforce.dataloader.exception.*;
 import com.salesforce.dataloader.util.DAORowUtil;
 
@@ -44,21 +45,34 @@ import com.salesforce.dataloader.util.DAORowUtil;
  * class with all of the queries being passed in from the application layer.
  * <p>
  * Most of the SQL calls are derived from the information found in the configuration file.
+ * <p>
+ * A query with a partition column is read in parallel ranges of that column, see {@link PartitionedQuery}.
+ * <p>
+ * With {@link Config#DAO_READ_SPOOL}, the rows are kept in a {@link RowSpool} as they are read, and reading them again
+ * after a reopen with the same parameters replays them from it. The spool is deleted by {@link #deleteSpool()}.
  *
  * @author Alex Warshavsky
  */
-public class DatabaseReader implements DataReader {
+public class DatabaseReader implements SpooledDataReader {
 
     // logger
     private static Logger logger = Logger.getLogger(DatabaseReader.class);
 
-    private final BasicDataSource dataSource;
+    private DatabaseConfig dbConfig;
+    private boolean dbConfigAcquired = false;
+    private BasicDataSource dataSource;
     private final Config config;
     private List<String> columnNames = new ArrayList<String>();
+    private int[] columnIndexes = new int[0];
     private int totalRows = 0;
     private int currentRowNumber = 0;
-    private final SqlConfig sqlConfig;
+    private SqlConfig sqlConfig;
     private final DatabaseContext dbContext;
+    private Map<String,Object> queryParams;
+    private PartitionedQuery partitionedQuery;
+    private RowSpool spool;
+    private Map<String,Object> spoolParams;
+    private boolean replaying = false;
 
     /**
      * Get an instance of database reader for the data access object name from configuration
@@ -80,7 +94,7 @@ public class DatabaseReader implements DataReader {
         if(! (new File(dbConfigFilename).exists())) {
             throw new DataAccessObjectInitializationException(Messages.getFormattedString("DatabaseDAO.errorConfigFileExists", dbConfigFilename)); //$NON-NLS-1$
         }
-        DatabaseConfig dbConfig = DatabaseConfig.getInstance(dbConfigFilename, dbConfigName);
+        this.dbConfig = DatabaseConfig.getInstance(dbConfigFilename, dbConfigName);
         this.dataSource = dbConfig.getDataSource();
         this.sqlConfig = dbConfig.getSqlConfig();
         this.dbContext = new DatabaseContext(dbConfigName);
@@ -106,9 +120,20 @@ public class DatabaseReader implements DataReader {
      * @throws DataAccessObjectInitializationException
      */
     public void open(Map<String,Object> params) throws DataAccessObjectInitializationException {
+        acquireConfig();
         currentRowNumber = 0;
+        // the parameters may select other rows than before
+        totalRows = 0;
+        queryParams = params;
+        if (replaySpool(params)) {
+            dbContext.setOpen(true);
+            return;
+        }
         try {
+            // copied before the query converts the values in the map
+            Map<String,Object> spooledParams = params == null ? null : new HashMap<String,Object>(params);
             setupQuery(params);
+            startSpool(spooledParams);
         } catch (DataAccessObjectInitializationException e) {
             throw e;
         } catch (Exception e) {
@@ -117,7 +142,82 @@ public class DatabaseReader implements DataReader {
         dbContext.setOpen(true);
     }
 
+    /**
+     * @return true if the rows are read from the spool of the rows read before
+     */
+    private boolean replaySpool(Map<String,Object> params) {
+        if (spool == null || !spool.isComplete() || !isSpoolEnabled()
+                || !(params == null ? spoolParams == null : params.equals(spoolParams))) {
+            return false;
+        }
+        close();
+        try {
+            spool.startReading();
+        } catch (IOException e) {
+            logger.warn(Messages.getFormattedString("DatabaseDAO.errorSpool", new String[] {
+                    dbContext.getDbConfigName(), e.getMessage() }), e);
+            deleteSpool();
+            return false;
+        }
+        replaying = true;
+        totalRows = spool.getRowCount();
+        logger.info(Messages.getFormattedString("DatabaseDAO.spoolReplayInfo", new String[] {
+                dbContext.getDbConfigName(), String.valueOf(totalRows) }));
+        return true;
+    }
+
+    private void startSpool(Map<String,Object> params) {
+        deleteSpool();
+        if (!isSpoolEnabled()) return;
+        try {
+            spool = new RowSpool(columnNames, dbContext.getDbConfigName());
+            spoolParams = params;
+        } catch (IOException e) {
+            logger.warn(Messages.getFormattedString("DatabaseDAO.errorSpool", new String[] {
+                    dbContext.getDbConfigName(), e.getMessage() }), e);
+        }
+    }
+
+    @Override
+    public void deleteSpool() {
+        if (spool != null) {
+            spool.delete();
+            spool = null;
+            spoolParams = null;
+            replaying = false;
+        }
+    }
+
+    private boolean isSpoolEnabled() {
+        return config.getBoolean(Config.DAO_READ_SPOOL);
+    }
+
+    /**
+     * Keeps the row read from the query in the spool, or ends the spool after the last row. Reading goes on without
+     * a spool if it can't be written.
+     */
+    private void spoolRow(Row row) {
+        if (spool == null || !spool.isWriting()) return;
+        try {
+            if (row != null) {
+                spool.write(row);
+            } else {
+                spool.finishWriting();
+            }
+        } catch (IOException e) {
+            logger.warn(Messages.getFormattedString("DatabaseDAO.errorSpool", new String[] {
+                    dbContext.getDbConfigName(), e.getMessage() }), e);
+            deleteSpool();
+        }
+    }
+
     private void setupQuery(Map<String,Object> params) throws DataAccessObjectInitializationException, ParameterLoadException, IllegalArgumentException {
+        if (sqlConfig.isPartitioned()) {
+            close();
+            partitionedQuery = PartitionedQuery.open(dataSource, sqlConfig, config, params, columnNames,
+                    getFetchSize(), dbContext.getDbConfigName());
+            return;
+        }
         try {
             dbContext.initConnection(dataSource);
             dbContext.replaceSqlParams(sqlConfig.getSqlString());
@@ -126,23 +226,17 @@ public class DatabaseReader implements DataReader {
             // for every put call
             dbContext.setSqlParamValues(sqlConfig, config, params);
 
-            // set the query fetch size
-            int fetchSize;
-            try {
-                fetchSize = config.getInt(Config.DAO_READ_BATCH_SIZE);
-                if(fetchSize > Config.MAX_DAO_READ_BATCH_SIZE) {
-                    fetchSize = Config.MAX_DAO_READ_BATCH_SIZE;
-                }
-            } catch (ParameterLoadException e) {
-                // warn about getting batch size parameter, otherwise continue w/ default
-                logger.warn(Messages.getFormattedString("DatabaseDAO.errorGettingBatchSize", new String[] {
-                        String.valueOf(Config.DEFAULT_DAO_READ_BATCH_SIZE), e.getMessage() }));
-                fetchSize = Config.DEFAULT_DAO_READ_BATCH_SIZE;
-            }
-            statement.setFetchSize(fetchSize);
+            statement.setFetchSize(getFetchSize());
 
             // execute the query and save the result set
-            dbContext.setDataResultSet(statement.executeQuery());
+            ResultSet rs = statement.executeQuery();
+            dbContext.setDataResultSet(rs);
+
+            // look up the columns by name once, and read them by position
+            columnIndexes = new int[columnNames.size()];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                columnIndexes[i] = rs.findColumn(columnNames.get(i));
+            }
         } catch (SQLException sqe) {
             String errMsg = Messages.getFormattedString("DatabaseDAO.sqlExceptionSetup", new String[] {dbContext.getDbConfigName(), sqe.getMessage()});
             logger.error(errMsg, sqe);
@@ -151,6 +245,32 @@ public class DatabaseReader implements DataReader {
         }
     }
 
+    /**
+     * @return the fetch size set with {@link Config#DAO_READ_FETCH_SIZE}, or else the read batch size up to
+     *         {@link Config#MAX_DAO_READ_BATCH_SIZE}
+     */
+    private int getFetchSize() {
+        try {
+            int fetchSize = config.getInt(Config.DAO_READ_FETCH_SIZE);
+            if (fetchSize < 0) {
+                // streaming result sets, such as those of MySQL drivers
+                return Integer.MIN_VALUE;
+            } else if (fetchSize > 0) {
+                return fetchSize;
+            }
+            fetchSize = config.getInt(Config.DAO_READ_BATCH_SIZE);
+            if(fetchSize > Config.MAX_DAO_READ_BATCH_SIZE) {
+                fetchSize = Config.MAX_DAO_READ_BATCH_SIZE;
+            }
+            return fetchSize;
+        } catch (ParameterLoadException e) {
+            // warn about getting batch size parameter, otherwise continue w/ default
+            logger.warn(Messages.getFormattedString("DatabaseDAO.errorGettingBatchSize", new String[] {
+                    String.valueOf(Config.DEFAULT_DAO_READ_BATCH_SIZE), e.getMessage() }));
+            return Config.DEFAULT_DAO_READ_BATCH_SIZE;
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see com.salesforce.dataloader.dao.DataReader#readRowList(int)
@@ -179,19 +299,51 @@ public class DatabaseReader implements DataReader {
             open();
         }
 
+        if (replaying) {
+            try {
+                row = spool.read();
+            } catch (IOException e) {
+                String errMsg = Messages.getFormattedString("DatabaseDAO.errorSpoolRead", new String[] {
+                        String.valueOf(currentRowNumber + 1), dbContext.getDbConfigName(), e.getMessage() });
+                logger.error(errMsg, e);
+                close();
+                deleteSpool();
+                throw new DataAccessObjectException(errMsg, e);
+            }
+            if (row != null) {
+                currentRowNumber++;
+            }
+            return row;
+        }
+
+        if (partitionedQuery != null) {
+            try {
+                row = partitionedQuery.next();
+            } catch (DataAccessObjectException e) {
+                close();
+                throw e;
+            }
+            if (row != null) {
+                currentRowNumber++;
+            }
+            spoolRow(row);
+            return row;
+        }
+
         String currentColumnName = "";
         try {
             ResultSet rs = dbContext.getDataResultSet();
             if (rs != null && rs.next()) {
                 row = new Row(columnNames.size());
 
-                for (String columnName : columnNames) {
-                    currentColumnName = columnName;
-                    Object value = rs.getObject(columnName);
-                    row.put(columnName, value);
+                for (int i = 0; i < columnIndexes.length; i++) {
+                    currentColumnName = columnNames.get(i);
+                    Object value = rs.getObject(columnIndexes[i]);
+                    row.put(currentColumnName, value);
                 }
                 currentRowNumber++;
             }
+            spoolRow(row);
             return row;
         } catch (SQLException sqe) {
             String errMsg = Messages.getFormattedString("DatabaseDAO.sqlExceptionReadRow", new String[] {
@@ -219,12 +371,42 @@ public class DatabaseReader implements DataReader {
     		return 0;
 
     	if (totalRows == 0) {
-    		totalRows = DAORowUtil.calculateTotalRows(this);
+    		totalRows = countRows();
     	}
 
     	return totalRows;
     }
 
+    /**
+     * Counts the rows of the query with <code>SELECT COUNT(*)</code> on a connection of its own, with the same parameters
+     * as the query. If the database can't count them that way, the rows are read and counted, and the query reopened.
+     */
+    private int countRows() throws DataAccessObjectException {
+        String sql = sqlConfig.getSqlString().trim();
+        if (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1);
+        }
+        DatabaseContext countContext = new DatabaseContext(dbContext.getDbConfigName());
+        try {
+            countContext.initConnection(dataSource);
+            countContext.replaceSqlParams("SELECT COUNT(*) FROM (" + sql + ") dl_count");
+            PreparedStatement statement = countContext.prepareStatement();
+            countContext.setSqlParamValues(sqlConfig, config,
+                    queryParams == null ? null : new HashMap<String,Object>(queryParams));
+            ResultSet rs = statement.executeQuery();
+            countContext.setDataResultSet(rs);
+            if (rs.next()) {
+                return (int)Math.min(Integer.MAX_VALUE, rs.getLong(1));
+            }
+        } catch (SQLException | DataAccessObjectInitializationException | ParameterLoadException e) {
+            logger.warn(Messages.getFormattedString("DatabaseDAO.sqlExceptionCountRows", new String[] {
+                    dbContext.getDbConfigName(), e.getMessage() }));
+        } finally {
+            countContext.close();
+        }
+        return DAORowUtil.calculateTotalRows(this);
+    }
+
     @Override
     public int getCurrentRowNumber() {
         return currentRowNumber;
@@ -241,7 +423,29 @@ public class DatabaseReader implements DataReader {
      */
     @Override
     public void checkConnection() throws DataAccessObjectInitializationException {
-        dbContext.checkConnection(dataSource);
+        acquireConfig();
+        try {
+            dbContext.checkConnection(dataSource);
+        } finally {
+            if (!dbContext.isOpen()) releaseConfig();
+        }
+    }
+
+    /**
+     * Keeps the data source from being closed while this reader uses it, see {@link DatabaseConfig#acquire()}.
+     */
+    private void acquireConfig() {
+        if (dbConfigAcquired) return;
+        dbConfig = dbConfig.acquire();
+        dataSource = dbConfig.getDataSource();
+        sqlConfig = dbConfig.getSqlConfig();
+        dbConfigAcquired = true;
+    }
+
+    private void releaseConfig() {
+        if (!dbConfigAcquired) return;
+        dbConfig.release();
+        dbConfigAcquired = false;
     }
 
     /*
@@ -250,6 +454,18 @@ public class DatabaseReader implements DataReader {
      */
     @Override
     public void close() {
+        if (replaying) {
+            spool.closeReading();
+            replaying = false;
+        } else if (spool != null && !spool.isComplete()) {
+            // only some of the rows were read
+            deleteSpool();
+        }
+        if (partitionedQuery != null) {
+            partitionedQuery.close();
+            partitionedQuery = null;
+        }
         dbContext.close();
+        releaseConfig();
     }
 }
@@ -49,11 +49,14 @@ public class DatabaseWriter implements DataWriter {
     // logger
     private static Logger logger = Logger.getLogger(DatabaseReader.class);
 
-    private final BasicDataSource dataSource;
+    private DatabaseConfig dbConfig;
+    private boolean dbConfigAcquired = false;
+    private BasicDataSource dataSource;
     private final Config config;
     private int currentRowNumber = 0;
-    private final SqlConfig sqlConfig;
+    private SqlConfig sqlConfig;
     private final DatabaseContext dbContext;
+    private BulkLoader bulkLoader;
 
     public DatabaseWriter(Config config) throws DataAccessObjectInitializationException {
         this(config, config.getString(Config.DAO_NAME));
@@ -72,7 +75,7 @@ public class DatabaseWriter implements DataWriter {
         if (!(new File(dbConfigFilename).exists())) { throw new DataAccessObjectInitializationException(
                 Messages.getFormattedString("DatabaseDAO.errorConfigFileExists", dbConfigFilename)); //$NON-NLS-1$
         }
-        DatabaseConfig dbConfig = DatabaseConfig.getInstance(dbConfigFilename, dbConfigName);
+        dbConfig = DatabaseConfig.getInstance(dbConfigFilename, dbConfigName);
         dataSource = dbConfig.getDataSource();
         sqlConfig = dbConfig.getSqlConfig();
         dbContext = new DatabaseContext(dbConfigName);
@@ -91,7 +94,12 @@ public class DatabaseWriter implements DataWriter {
      */
     @Override
     public void checkConnection() throws DataAccessObjectInitializationException {
-        dbContext.checkConnection(dataSource);
+        acquireConfig();
+        try {
+            dbContext.checkConnection(dataSource);
+        } finally {
+            if (!dbContext.isOpen()) releaseConfig();
+        }
     }
 
     /*
@@ -100,6 +108,7 @@ public class DatabaseWriter implements DataWriter {
      */
     @Override
     public void open() throws DataAccessObjectInitializationException {
+        acquireConfig();
         setupUpdate(); // setup for writing
         dbContext.setOpen(true);
     }
@@ -111,12 +120,32 @@ public class DatabaseWriter implements DataWriter {
     @Override
     public void close() {
         dbContext.close();
+        releaseConfig();
+    }
+
+    /**
+     * Keeps the data source from being closed while this writer uses it, see {@link DatabaseConfig#acquire()}.
+     */
+    private void acquireConfig() {
+        if (dbConfig == null || dbConfigAcquired) return;
+        dbConfig = dbConfig.acquire();
+        dataSource = dbConfig.getDataSource();
+        sqlConfig = dbConfig.getSqlConfig();
+        dbConfigAcquired = true;
+    }
+
+    private void releaseConfig() {
+        if (!dbConfigAcquired) return;
+        dbConfig.release();
+        dbConfigAcquired = false;
     }
 
     private void setupUpdate() throws DataAccessObjectInitializationException {
         dbContext.initConnection(dataSource);
-        dbContext.replaceSqlParams(sqlConfig.getSqlString());
+        dbContext.replaceSqlParams(MergeStatement.getSqlString(sqlConfig, dbContext.getDataConnection(),
+                dbContext.getDbConfigName()));
         dbContext.prepareStatement();
+        bulkLoader = BulkLoader.create(sqlConfig, dbContext.getDataConnection(), dbContext.getDbConfigName());
     }
 
     /*
@@ -130,6 +159,11 @@ public class DatabaseWriter implements DataWriter {
         if (!dbContext.isOpen()) { throw new DataAccessObjectInitializationException(Messages
                 .getString("DatabaseDAO.errorUpdateNotOpen")); }
 
+        if (bulkLoader != null && inputRowList.size() > 1 && bulkLoad(inputRowList)) {
+            currentRowNumber += inputRowList.size();
+            return true;
+        }
+
         boolean success = true;
         int startingRowNumber = currentRowNumber;
 
@@ -225,6 +259,24 @@ public class DatabaseWriter implements DataWriter {
         return success;
     }
 
+    /**
+     * Loads the rows with the bulk load strategy of the insert statement.
+     * 
+     * @return false if the rows were not loaded and need to be written with the insert statement
+     */
+    private boolean bulkLoad(List<Row> inputRowList) {
+        try {
+            bulkLoader.load(dbContext.getDataConnection(), dbContext, config, inputRowList);
+            dbContext.getDataConnection().commit();
+            return true;
+        } catch (SQLException | ParameterLoadException | RuntimeException e) {
+            logger.warn(Messages.getFormattedString("DatabaseDAO.sqlExceptionBulkLoad", new String[] {
+                    String.valueOf(inputRowList.size()), dbContext.getDbConfigName(), e.getMessage() }), e);
+            endException(inputRowList.size());
+            return false;
+        }
+    }
+
     /**
      * @param inputRow
      * @return Any output values resulting from the write
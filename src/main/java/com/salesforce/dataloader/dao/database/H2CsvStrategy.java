@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads rows into H2 with <code>INSERT ... SELECT * FROM CSVREAD(...)</code> from a temporary file. The file must be
+ * readable by the database, so this only works with embedded or local H2 databases.
+ *
+ * @since 35.0
+ */
+public class H2CsvStrategy extends CsvBulkLoadStrategy {
+
+    @Override
+    public boolean supports(Connection connection) throws SQLException {
+        return "H2".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+    }
+
+    @Override
+    public void load(Connection connection, String table, List<String> columns, List<Object[]> values)
+            throws SQLException {
+        final List<String> csvColumns = new ArrayList<String>(columns.size());
+        for (int i = 1; i <= columns.size(); i++) {
+            csvColumns.add("C" + i);
+        }
+        final String select = getSelectList(connection, table, columns);
+        File file = null;
+        try {
+            file = File.createTempFile("dataloader", ".csv");
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+            try {
+                writer.write(toCsv(csvColumns, values, "", true));
+            } finally {
+                writer.close();
+            }
+            final Statement stmt = connection.createStatement();
+            try {
+                stmt.executeUpdate("INSERT INTO " + table + " (" + join(columns) + ") SELECT " + select
+                        + " FROM CSVREAD('" + file.getAbsolutePath().replace("'", "''") + "', NULL, 'UTF-8')");
+            } finally {
+                stmt.close();
+            }
+        } catch (IOException e) {
+            throw new SQLException(e);
+        } finally {
+            if (file != null) file.delete();
+        }
+    }
+
+    /**
+     * CSVREAD returns text columns, and H2 can't convert timestamp text to the other date types, so values of date
+     * and time columns are converted to timestamps first.
+     */
+    private static String getSelectList(Connection connection, String table, List<String> columns)
+            throws SQLException {
+        final Statement stmt = connection.createStatement();
+        try {
+            final ResultSetMetaData metaData = stmt.executeQuery(
+                    "SELECT " + join(columns) + " FROM " + table + " WHERE 1 = 0").getMetaData();
+            final StringBuilder select = new StringBuilder();
+            for (int i = 1; i <= columns.size(); i++) {
+                if (i > 1) select.append(", ");
+                switch (metaData.getColumnType(i)) {
+                case Types.DATE:
+                    select.append("CAST(CAST(C").append(i).append(" AS TIMESTAMP) AS DATE)");
+                    break;
+                case Types.TIME:
+                    select.append("CAST(CAST(C").append(i).append(" AS TIMESTAMP) AS TIME)");
+                    break;
+                default:
+                    select.append('C').append(i);
+                }
+            }
+            return select.toString();
+        } finally {
+            stmt.close();
+        }
+    }
+}
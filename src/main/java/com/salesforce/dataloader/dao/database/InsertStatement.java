@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The parts of an <code>INSERT INTO table (columns) VALUES (@params@)</code> statement, from which other ways of
+ * writing the same rows are made.
+ *
+ * @since 35.0
+ */
+class InsertStatement {
+
+    private static final Pattern INSERT = Pattern.compile(
+            "\\s*INSERT\\s+INTO\\s+([^\\s(]+)\\s*\\(([^)]*)\\)\\s*VALUES\\s*\\(([^)]*)\\)\\s*;?\\s*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern PARAM = Pattern.compile("@([^@\\s]+)@");
+
+    private final String table;
+    private final List<String> columns;
+    private final List<String> params;
+
+    private InsertStatement(String table, List<String> columns, List<String> params) {
+        this.table = table;
+        this.columns = Collections.unmodifiableList(columns);
+        this.params = Collections.unmodifiableList(params);
+    }
+
+    /**
+     * @return the parts of the statement, or null if it is not an insert of one parameter per column
+     */
+    static InsertStatement parse(String sqlString) {
+        final Matcher insert = INSERT.matcher(sqlString);
+        if (!insert.matches()) return null;
+        final List<String> columns = new ArrayList<String>();
+        for (String column : insert.group(2).split(",")) {
+            columns.add(column.trim());
+        }
+        final List<String> params = new ArrayList<String>();
+        for (String value : insert.group(3).split(",")) {
+            final Matcher param = PARAM.matcher(value.trim());
+            if (!param.matches()) return null;
+            params.add(param.group(1));
+        }
+        if (columns.isEmpty() || columns.size() != params.size()) return null;
+        return new InsertStatement(insert.group(1), columns, params);
+    }
+
+    String getTable() {
+        return table;
+    }
+
+    List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the parameter names, without the @ signs, in the order of the columns
+     */
+    List<String> getParams() {
+        return params;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+
+/**
+ * Makes the statement that inserts the rows of an insert statement, or updates the rows with the same key columns,
+ * in the dialect of the database:
+ * <ul>
+ * <li>PostgreSQL: <code>INSERT ... ON CONFLICT (keys) DO UPDATE</code>, which needs a unique index on the keys</li>
+ * <li>MySQL and MariaDB: <code>INSERT ... ON DUPLICATE KEY UPDATE</code>, which needs a unique index on the keys</li>
+ * <li>H2: <code>MERGE INTO ... KEY (keys)</code></li>
+ * <li>Oracle and SQL Server: <code>MERGE INTO ... USING (SELECT ...)</code></li>
+ * <li>other databases: the standard <code>MERGE INTO ... USING (VALUES ...)</code></li>
+ * </ul>
+ *
+ * @since 35.0
+ */
+class MergeStatement {
+
+    private static final Logger logger = Logger.getLogger(MergeStatement.class);
+
+    /**
+     * @return the statement to write the rows with: the configured one, or the merge statement made from it if the
+     *         configuration has key columns
+     */
+    static String getSqlString(SqlConfig sqlConfig, Connection connection, String dbConfigName)
+            throws DataAccessObjectInitializationException {
+        if (!sqlConfig.isMerge()) return sqlConfig.getSqlString();
+        final InsertStatement insert = InsertStatement.parse(sqlConfig.getSqlString());
+        if (insert == null) {
+            throw new DataAccessObjectInitializationException(Messages.getFormattedString(
+                    "DatabaseDAO.errorMergeStatement", dbConfigName));
+        }
+        final List<String> keys = new ArrayList<String>();
+        for (String key : sqlConfig.getKeyColumns()) {
+            keys.add(key.trim());
+            if (indexOf(insert.getColumns(), key.trim()) < 0) {
+                throw new DataAccessObjectInitializationException(Messages.getFormattedString(
+                        "DatabaseDAO.errorMergeKey", new String[] { dbConfigName, key }));
+            }
+        }
+        final String productName;
+        try {
+            productName = connection.getMetaData().getDatabaseProductName();
+        } catch (SQLException sqe) {
+            String errMsg = Messages.getFormattedString("DatabaseDAO.sqlExceptionSetup", new String[] {
+                    dbConfigName, sqe.getMessage() });
+            logger.error(errMsg, sqe);
+            throw new DataAccessObjectInitializationException(errMsg, sqe);
+        }
+        final String sql = create(insert, keys, productName);
+        logger.info(Messages.getFormattedString("DatabaseDAO.mergeInfo", new String[] { dbConfigName, sql }));
+        return sql;
+    }
+
+    static String create(InsertStatement insert, List<String> keys, String productName) {
+        final String product = productName == null ? "" : productName.toLowerCase();
+        if (product.contains("postgres")) {
+            return createOnConflict(insert, keys);
+        } else if (product.contains("mysql") || product.contains("mariadb")) {
+            return createOnDuplicateKey(insert, keys);
+        } else if (product.equals("h2")) {
+            return "MERGE INTO " + insert.getTable() + " (" + join(insert.getColumns(), "", "") + ") KEY ("
+                    + join(keys, "", "") + ") VALUES (" + join(insert.getParams(), "@", "@") + ")";
+        } else if (product.contains("oracle")) {
+            return createMerge(insert, keys, "SELECT " + selectList(insert) + " FROM DUAL", "src", "");
+        } else if (product.contains("sql server")) {
+            return createMerge(insert, keys, "SELECT " + selectList(insert), "src", ";");
+        }
+        return createMerge(insert, keys, "VALUES (" + join(insert.getParams(), "@", "@") + ")",
+                "src (" + join(insert.getColumns(), "", "") + ")", "");
+    }
+
+    private static String createOnConflict(InsertStatement insert, List<String> keys) {
+        final StringBuilder sql = insertInto(insert);
+        sql.append(" ON CONFLICT (").append(join(keys, "", "")).append(")");
+        final List<String> updated = getUpdatedColumns(insert, keys);
+        if (updated.isEmpty()) return sql.append(" DO NOTHING").toString();
+        sql.append(" DO UPDATE SET ");
+        for (int i = 0; i < updated.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(updated.get(i)).append(" = EXCLUDED.").append(updated.get(i));
+        }
+        return sql.toString();
+    }
+
+    private static String createOnDuplicateKey(InsertStatement insert, List<String> keys) {
+        final StringBuilder sql = insertInto(insert);
+        sql.append(" ON DUPLICATE KEY UPDATE ");
+        final List<String> updated = getUpdatedColumns(insert, keys);
+        if (updated.isEmpty()) {
+            // nothing to change, but the statement needs an update
+            return sql.append(keys.get(0)).append(" = ").append(keys.get(0)).toString();
+        }
+        for (int i = 0; i < updated.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(updated.get(i)).append(" = VALUES(").append(updated.get(i)).append(")");
+        }
+        return sql.toString();
+    }
+
+    private static String createMerge(InsertStatement insert, List<String> keys, String source, String alias,
+            String end) {
+        final StringBuilder sql = new StringBuilder("MERGE INTO ").append(insert.getTable()).append(" dst USING (")
+                .append(source).append(") ").append(alias).append(" ON (");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) sql.append(" AND ");
+            sql.append("dst.").append(keys.get(i)).append(" = src.").append(keys.get(i));
+        }
+        sql.append(")");
+        final List<String> updated = getUpdatedColumns(insert, keys);
+        if (!updated.isEmpty()) {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ");
+            for (int i = 0; i < updated.size(); i++) {
+                if (i > 0) sql.append(", ");
+                sql.append("dst.").append(updated.get(i)).append(" = src.").append(updated.get(i));
+            }
+        }
+        sql.append(" WHEN NOT MATCHED THEN INSERT (").append(join(insert.getColumns(), "", ""))
+        .append(") VALUES (").append(join(insert.getColumns(), "src.", "")).append(")");
+        return sql.append(end).toString();
+    }
+
+    private static StringBuilder insertInto(InsertStatement insert) {
+        return new StringBuilder("INSERT INTO ").append(insert.getTable()).append(" (")
+                .append(join(insert.getColumns(), "", "")).append(") VALUES (")
+                .append(join(insert.getParams(), "@", "@")).append(")");
+    }
+
+    private static String selectList(InsertStatement insert) {
+        final StringBuilder select = new StringBuilder();
+        for (int i = 0; i < insert.getColumns().size(); i++) {
+            if (i > 0) select.append(", ");
+            select.append('@').append(insert.getParams().get(i)).append("@ AS ").append(insert.getColumns().get(i));
+        }
+        return select.toString();
+    }
+
+    private static List<String> getUpdatedColumns(InsertStatement insert, List<String> keys) {
+        final List<String> updated = new ArrayList<String>();
+        for (String column : insert.getColumns()) {
+            if (indexOf(keys, column) < 0) {
+                updated.add(column);
+            }
+        }
+        return updated;
+    }
+
+    private static int indexOf(List<String> names, String name) {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equalsIgnoreCase(name)) return i;
+        }
+        return -1;
+    }
+
+    private static String join(List<String> names, String prefix, String suffix) {
+        final StringBuilder text = new StringBuilder();
+        for (String name : names) {
+            if (text.length() > 0) text.append(", ");
+            text.append(prefix).append(name).append(suffix);
+        }
+        return text.toString();
+    }
+}
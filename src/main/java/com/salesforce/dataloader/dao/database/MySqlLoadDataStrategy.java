@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Loads rows into MySQL with <code>LOAD DATA LOCAL INFILE</code>, giving the rows to the MySQL JDBC driver as the
+ * contents of the file. The data source needs the <code>allowLoadLocalInfile=true</code> connection property.
+ *
+ * @since 35.0
+ */
+public class MySqlLoadDataStrategy extends CsvBulkLoadStrategy {
+
+    private static final String[] MYSQL_STATEMENTS = { "com.mysql.cj.jdbc.JdbcStatement",
+    "com.mysql.jdbc.Statement" };
+
+    @Override
+    public boolean supports(Connection connection) throws SQLException {
+        final Statement stmt = connection.createStatement();
+        try {
+            return getStatementClass(stmt) != null;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Override
+    public void load(Connection connection, String table, List<String> columns, List<Object[]> values)
+            throws SQLException {
+        final String sql = "LOAD DATA LOCAL INFILE 'rows.csv' INTO TABLE " + table
+                + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''"
+                + " LINES TERMINATED BY '\\n' (" + join(columns) + ")";
+        final byte[] csv = toCsv(columns, values, "NULL", false).getBytes(StandardCharsets.UTF_8);
+        final Statement stmt = connection.createStatement();
+        try {
+            final Class<?> statementClass = getStatementClass(stmt);
+            if (statementClass == null) throw new SQLException("Not a MySQL statement: " + stmt.getClass().getName());
+            final Object mysqlStmt = stmt.unwrap(statementClass);
+            try {
+                statementClass.getMethod("setLocalInfileInputStream", InputStream.class).invoke(mysqlStmt,
+                        new ByteArrayInputStream(csv));
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException) throw (SQLException)e.getCause();
+                throw new SQLException(e.getCause());
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new SQLException(e);
+            }
+            final int loaded = stmt.executeUpdate(sql);
+            // MySQL skips or truncates bad values with a warning, the rows are then written with the insert statement
+            if (loaded < values.size() || stmt.getWarnings() != null) {
+                throw new SQLException("LOAD DATA loaded " + loaded + " of " + values.size() + " rows",
+                        stmt.getWarnings());
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static Class<?> getStatementClass(Statement stmt) throws SQLException {
+        for (String className : MYSQL_STATEMENTS) {
+            try {
+                final Class<?> statementClass = Class.forName(className);
+                if (stmt.isWrapperFor(statementClass)) return statementClass;
+            } catch (ClassNotFoundException e) {
+                // an other version of the driver
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.io.File;
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.log4j.Logger;
+
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.dao.DeferredDataWriter;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.exception.ParameterLoadException;
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * Writes rows to a database on {@link Config#DAO_WRITE_THREADS} connections at once, each on a thread of its own. The
+ * lists of rows handed to {@link #writeRowList(List)} are executed as JDBC batches by whichever connection is free,
+ * and each connection commits once it has written {@link Config#DAO_WRITE_COMMIT_INTERVAL} rows since its last commit.
+ * <p>
+ * Rows are reported written once they have been committed. When a batch fails, its transaction is rolled back, the rows
+ * that the {@link BatchUpdateException} shows failed are reported with its error, and the other rows of the transaction
+ * are written again.
+ *
+ * @since 35.0
+ */
+public class ParallelDatabaseWriter implements DeferredDataWriter {
+
+    private static final Logger logger = Logger.getLogger(ParallelDatabaseWriter.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    private final class Worker implements Runnable {
+        private final DatabaseContext context;
+        private final Thread thread;
+        // written and not yet committed
+        private final List<Row> uncommitted = new ArrayList<Row>();
+        private BulkLoader bulkLoader;
+        // what stopped the thread before the writer was closed, null while it runs
+        private volatile Throwable error;
+
+        Worker(int number) {
+            this.context = new DatabaseContext(dbConfigName);
+            this.thread = new Thread(this, "DatabaseWriter-" + dbConfigName + "-" + number);
+            this.thread.setDaemon(true);
+        }
+
+        void open() throws DataAccessObjectInitializationException {
+            context.initConnection(dataSource);
+            context.replaceSqlParams(MergeStatement.getSqlString(sqlConfig, context.getDataConnection(),
+                    dbConfigName));
+            context.prepareStatement();
+            bulkLoader = BulkLoader.create(sqlConfig, context.getDataConnection(), dbConfigName);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final List<Row> rows = batches.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (rows != null) {
+                        write(rows);
+                    }
+                    if (uncommitted.size() >= commitInterval
+                            || (rows == null && (flushing || closing) && !uncommitted.isEmpty())) {
+                        commit();
+                    }
+                    if (rows == null && closing && batches.isEmpty()) break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error e) {
+                logger.error(Messages.getFormattedString("DatabaseDAO.errorWriterFailed", new String[] {
+                        thread.getName(), String.valueOf(e.getMessage()) }), e);
+                error = e;
+            } finally {
+                if (!uncommitted.isEmpty()) {
+                    fail(uncommitted, Messages.getString("DatabaseDAO.errorWriterClosed"));
+                }
+                context.close();
+            }
+        }
+
+        /**
+         * Writes the rows, and writes the uncommitted rows again along with the rest of the rows if some of them fail.
+         */
+        private void write(List<Row> rows) {
+            if (bulkLoader != null && rows.size() > 1) {
+                try {
+                    bulkLoader.load(context.getDataConnection(), context, config, rows);
+                    uncommitted.addAll(rows);
+                    return;
+                } catch (SQLException | ParameterLoadException | RuntimeException e) {
+                    rollback();
+                    logger.warn(Messages.getFormattedString("DatabaseDAO.sqlExceptionBulkLoad", new String[] {
+                            String.valueOf(rows.size()), dbConfigName, e.getMessage() }), e);
+                    final List<Row> retry = new ArrayList<Row>(uncommitted);
+                    retry.addAll(rows);
+                    uncommitted.clear();
+                    rows = retry;
+                }
+            }
+            while (!rows.isEmpty()) {
+                final List<Row> executed = new ArrayList<Row>(rows.size());
+                boolean executing = false;
+                try {
+                    final PreparedStatement statement = context.getDataStatement();
+                    statement.clearBatch();
+                    for (Row row : rows) {
+                        try {
+                            context.setSqlParamValues(sqlConfig, config, row);
+                            statement.addBatch();
+                        } catch (ParameterLoadException | RuntimeException e) {
+                            // e.g. a null for a parameter whose type has no SQL type
+                            fail(Collections.singletonList(row), e.getMessage());
+                            continue;
+                        }
+                        executed.add(row);
+                    }
+                    executing = true;
+                    if (!executed.isEmpty()) {
+                        statement.executeBatch();
+                    }
+                    uncommitted.addAll(executed);
+                    return;
+                } catch (SQLException e) {
+                    rollback();
+                    logger.warn(Messages.getFormattedString("DatabaseDAO.sqlExceptionWriteRows", new String[] {
+                            String.valueOf(rows.size()), dbConfigName, e.getMessage() }), e);
+                    final List<Row> retry = new ArrayList<Row>(uncommitted);
+                    uncommitted.clear();
+                    if (!executing) {
+                        // the batch could not be prepared
+                        fail(rows, e.getMessage());
+                    } else {
+                        final boolean[] failed = getFailedRows(e, executed.size());
+                        final List<Row> failedRows = new ArrayList<Row>();
+                        for (int i = 0; i < executed.size(); i++) {
+                            (failed[i] ? failedRows : retry).add(executed.get(i));
+                        }
+                        fail(failedRows, e.getMessage());
+                    }
+                    rows = retry;
+                } catch (RuntimeException e) {
+                    // a driver error that doesn't say which rows failed, so none of them is written
+                    rollback();
+                    logger.error(Messages.getFormattedString("DatabaseDAO.sqlExceptionWriteRows", new String[] {
+                            String.valueOf(rows.size()), dbConfigName, String.valueOf(e.getMessage()) }), e);
+                    fail(uncommitted, e.getMessage());
+                    uncommitted.clear();
+                    fail(executing ? executed : rows, e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        private void commit() {
+            try {
+                context.getDataConnection().commit();
+                succeed(uncommitted);
+            } catch (SQLException e) {
+                logger.error(Messages.getFormattedString("DatabaseDAO.sqlExceptionCommit", new String[] {
+                        String.valueOf(uncommitted.size()), dbConfigName, e.getMessage() }), e);
+                rollback();
+                fail(uncommitted, e.getMessage());
+            }
+            uncommitted.clear();
+        }
+
+        private void rollback() {
+            try {
+                context.getDataConnection().rollback();
+            } catch (SQLException e) {
+                logger.error(Messages.getFormattedString("DatabaseDAO.sqlExceptionRollbackRows", new String[] {
+                        dbConfigName, e.getMessage() }), e);
+            }
+        }
+    }
+
+    private DatabaseConfig dbConfig;
+    private boolean dbConfigAcquired;
+    private BasicDataSource dataSource;
+    private final Config config;
+    private SqlConfig sqlConfig;
+    private final String dbConfigName;
+    private final int threads;
+    private final int commitInterval;
+    private final List<Worker> workers = new ArrayList<Worker>();
+    private BlockingQueue<List<Row>> batches;
+    private final BlockingQueue<Result> results = new LinkedBlockingQueue<Result>();
+    private final AtomicInteger unfinishedRows = new AtomicInteger();
+    private volatile boolean flushing;
+    private volatile boolean closing;
+    private int currentRowNumber;
+
+    public ParallelDatabaseWriter(Config config) throws DataAccessObjectInitializationException {
+        this(config, config.getString(Config.DAO_NAME));
+    }
+
+    ParallelDatabaseWriter(Config config, String dbConfigName) throws DataAccessObjectInitializationException {
+        String dbConfigFilename = config.constructConfigFilePath(DatabaseContext.DEFAULT_CONFIG_FILENAME);
+        if (!(new File(dbConfigFilename).exists())) {
+            throw new DataAccessObjectInitializationException(Messages.getFormattedString(
+                    "DatabaseDAO.errorConfigFileExists", dbConfigFilename)); //$NON-NLS-1$
+        }
+        this.dbConfig = DatabaseConfig.getInstance(dbConfigFilename, dbConfigName);
+        this.config = config;
+        this.dataSource = dbConfig.getDataSource();
+        this.sqlConfig = dbConfig.getSqlConfig();
+        this.dbConfigName = dbConfigName;
+        this.threads = Math.max(1, getInt(config, Config.DAO_WRITE_THREADS));
+        this.commitInterval = Math.max(1, getInt(config, Config.DAO_WRITE_COMMIT_INTERVAL));
+    }
+
+    /**
+     * @return true if rows are to be written by a {@link ParallelDatabaseWriter}
+     */
+    public static boolean isEnabled(Config config) {
+        return getInt(config, Config.DAO_WRITE_THREADS) > 0;
+    }
+
+    private static int getInt(Config config, String name) {
+        try {
+            return config.getInt(name);
+        } catch (ParameterLoadException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void checkConnection() throws DataAccessObjectInitializationException {
+        acquireConfig();
+        try {
+            new DatabaseContext(dbConfigName).checkConnection(dataSource);
+        } finally {
+            if (workers.isEmpty()) releaseConfig();
+        }
+    }
+
+    /**
+     * Opens the connections and starts the threads that write to them.
+     */
+    @Override
+    public void open() throws DataAccessObjectInitializationException {
+        close();
+        acquireConfig();
+        this.flushing = false;
+        this.closing = false;
+        this.batches = new ArrayBlockingQueue<List<Row>>(2 * threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                final Worker worker = new Worker(i + 1);
+                workers.add(worker);
+                worker.open();
+            }
+        } catch (DataAccessObjectInitializationException e) {
+            for (Worker worker : workers) {
+                worker.context.close();
+            }
+            workers.clear();
+            releaseConfig();
+            throw e;
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+        this.currentRowNumber = 0;
+    }
+
+    /**
+     * Writes the rows handed over so far, and closes the connections.
+     */
+    @Override
+    public void close() {
+        if (!workers.isEmpty()) {
+            closing = true;
+            for (Worker worker : workers) {
+                try {
+                    worker.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            workers.clear();
+        }
+        releaseConfig();
+    }
+
+    /**
+     * Keeps the data source from being closed while the threads use it, see {@link DatabaseConfig#acquire()}.
+     */
+    private void acquireConfig() {
+        if (dbConfigAcquired) return;
+        dbConfig = dbConfig.acquire();
+        dataSource = dbConfig.getDataSource();
+        sqlConfig = dbConfig.getSqlConfig();
+        dbConfigAcquired = true;
+    }
+
+    private void releaseConfig() {
+        if (!dbConfigAcquired) return;
+        dbConfig.release();
+        dbConfigAcquired = false;
+    }
+
+    @Override
+    public boolean writeRowList(List<Row> rows) throws DataAccessObjectException {
+        if (workers.isEmpty() || closing) {
+            throw new DataAccessObjectInitializationException(Messages.getString("DatabaseDAO.errorUpdateNotOpen"));
+        }
+        if (rows.isEmpty()) return true;
+        checkWorkers();
+        final List<Row> batch = new ArrayList<Row>(rows);
+        unfinishedRows.addAndGet(rows.size());
+        try {
+            while (!batches.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                // nothing takes the rows off the queue once the threads have stopped
+                try {
+                    checkWorkers();
+                } catch (DataAccessObjectException e) {
+                    unfinishedRows.addAndGet(-rows.size());
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            unfinishedRows.addAndGet(-rows.size());
+            Thread.currentThread().interrupt();
+            throw new DataAccessObjectException(e.getMessage(), e);
+        }
+        currentRowNumber += rows.size();
+        return true;
+    }
+
+    @Override
+    public boolean writeRow(Row row) throws DataAccessObjectException {
+        return writeRowList(Collections.singletonList(row));
+    }
+
+    @Override
+    public List<Result> getResults(boolean waitForAll) throws DataAccessObjectException {
+        final List<Result> finished = new ArrayList<Result>();
+        if (waitForAll) {
+            flushing = true;
+            try {
+                while (unfinishedRows.get() > 0) {
+                    final Result result = results.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (result != null) {
+                        finished.add(result);
+                    } else {
+                        checkWorkers();
+                        if (!isWriting()) break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataAccessObjectException(e.getMessage(), e);
+            } finally {
+                flushing = false;
+            }
+        }
+        results.drainTo(finished);
+        return finished;
+    }
+
+    /**
+     * @throws DataAccessObjectException
+     *             if a thread has stopped on an error, since the rows it held will never be reported
+     */
+    private void checkWorkers() throws DataAccessObjectException {
+        for (Worker worker : workers) {
+            final Throwable error = worker.error;
+            if (error != null) {
+                throw new DataAccessObjectException(Messages.getFormattedString("DatabaseDAO.errorWriterFailed",
+                        new String[] { worker.thread.getName(), String.valueOf(error.getMessage()) }), error);
+            }
+        }
+    }
+
+    private boolean isWriting() {
+        for (Worker worker : workers) {
+            if (worker.thread.isAlive()) return true;
+        }
+        return false;
+    }
+
+    private void succeed(List<Row> rows) {
+        if (rows.isEmpty()) return;
+        final List<Row> written = new ArrayList<Row>(rows);
+        logger.debug(Messages.getFormattedString("DatabaseDAO.updatedStatus", new String[] {
+                String.valueOf(written.size()), String.valueOf(currentRowNumber) }));
+        results.add(new Result(written, null));
+        unfinishedRows.addAndGet(-written.size());
+    }
+
+    private void fail(List<Row> rows, String errorMessage) {
+        if (rows.isEmpty()) return;
+        results.add(new Result(new ArrayList<Row>(rows), errorMessage == null ? "" : errorMessage));
+        unfinishedRows.addAndGet(-rows.size());
+    }
+
+    /**
+     * @return the rows of a batch that failed: those the driver marks as failed, or else the first one it did not
+     *         execute. All the rows if the error does not tell which failed.
+     */
+    static boolean[] getFailedRows(SQLException e, int rows) {
+        final boolean[] failed = new boolean[rows];
+        boolean found = false;
+        if (e instanceof BatchUpdateException) {
+            final int[] counts = ((BatchUpdateException)e).getUpdateCounts();
+            if (counts != null) {
+                for (int i = 0; i < counts.length && i < rows; i++) {
+                    if (counts[i] == Statement.EXECUTE_FAILED) {
+                        failed[i] = found = true;
+                    }
+                }
+                if (!found && counts.length < rows) {
+                    // the driver stopped at the failed row
+                    failed[counts.length] = found = true;
+                }
+            }
+        }
+        if (!found) {
+            for (int i = 0; i < rows; i++) {
+                failed[i] = true;
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return new ArrayList<String>();
+    }
+
+    @Override
+    public void setColumnNames(List<String> columnNames) {
+        // the columns are those of the SQL parameters
+    }
+
+    @Override
+    public int getCurrentRowNumber() {
+        return currentRowNumber;
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.log4j.Logger;
+
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.exception.ParameterLoadException;
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * The query of a {@link DatabaseReader} split into ranges of its partition column, see
+ * {@link SqlConfig#setPartitionColumn(String)}. Each range is queried on a connection and thread of its own, and the
+ * rows are taken from the ranges in turn, one at a time. Each range is sorted on the partition column and then the
+ * columns of {@link SqlConfig#setPartitionOrderColumns(List)}: the query is wrapped in a derived table, which keeps
+ * no order and which some databases reject an ORDER BY in, so the ORDER BY that ends the query is left out. The rows
+ * therefore come in the same order on every run, as long as those columns identify them, and row numbers stay valid
+ * for restarts.
+ *
+ * @since 35.0
+ */
+class PartitionedQuery {
+
+    private static final Logger logger = Logger.getLogger(PartitionedQuery.class);
+
+    private static final int QUEUE_SIZE = 1000;
+    private static final long JOIN_TIMEOUT_MILLIS = 30 * 1000;
+    private static final Row END = new Row();
+    private static final Pattern ORDER_BY = Pattern.compile("ORDER\\s+BY\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ROW_LIMIT = Pattern.compile("\\b(LIMIT|OFFSET|FETCH)\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * A range of the partition column, with the values of the parameters in its condition.
+     */
+    private static final class Range {
+        final String condition;
+        final List<Object> values;
+
+        Range(String condition, List<Object> values) {
+            this.condition = condition;
+            this.values = values;
+        }
+    }
+
+    private final class Partition implements Runnable {
+        final int number;
+        final DatabaseContext context;
+        final BlockingQueue<Row> rows = new ArrayBlockingQueue<Row>(QUEUE_SIZE);
+        final Thread thread;
+        volatile Exception error;
+
+        Partition(int number, DatabaseContext context) {
+            this.number = number;
+            this.context = context;
+            this.thread = new Thread(this, "DatabaseReader-" + context.getDbConfigName() + "-partition-" + number);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                final ResultSet rs = context.getDataStatement().executeQuery();
+                context.setDataResultSet(rs);
+                final int[] columnIndexes = new int[columnNames.size()];
+                for (int i = 0; i < columnIndexes.length; i++) {
+                    columnIndexes[i] = rs.findColumn(columnNames.get(i));
+                }
+                while (!closed && rs.next()) {
+                    final Row row = new Row(columnIndexes.length);
+                    for (int i = 0; i < columnIndexes.length; i++) {
+                        row.put(columnNames.get(i), rs.getObject(columnIndexes[i]));
+                    }
+                    put(row);
+                }
+            } catch (Exception e) {
+                if (!closed) this.error = e;
+            } finally {
+                context.close();
+                put(END);
+            }
+        }
+
+        private void put(Row row) {
+            try {
+                while (!closed) {
+                    if (rows.offer(row, 100, TimeUnit.MILLISECONDS)) return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final String dbConfigName;
+    private final List<String> columnNames;
+    private final List<Partition> partitions = new ArrayList<Partition>();
+    private final List<Partition> active = new ArrayList<Partition>();
+    private int next;
+    private volatile boolean closed;
+
+    private PartitionedQuery(String dbConfigName, List<String> columnNames) {
+        this.dbConfigName = dbConfigName;
+        this.columnNames = columnNames;
+    }
+
+    /**
+     * Prepares the query of each partition on a connection of its own, and starts running them.
+     */
+    static PartitionedQuery open(BasicDataSource dataSource, SqlConfig sqlConfig, Config config,
+            Map<String, Object> params, List<String> columnNames, int fetchSize, String dbConfigName)
+            throws DataAccessObjectInitializationException {
+        final PartitionedQuery query = new PartitionedQuery(dbConfigName, columnNames);
+        final String sql = withoutOrderBy(sqlConfig.getSqlString().trim().replaceAll(";$", ""));
+        try {
+            final List<Range> ranges = getRanges(dataSource, sqlConfig, config, params, sql, dbConfigName);
+            for (Range range : ranges) {
+                final DatabaseContext context = new DatabaseContext(dbConfigName);
+                // the partition closes its context, or the query does if the partition never starts
+                query.partitions.add(query.new Partition(query.partitions.size() + 1, context));
+                context.initConnection(dataSource);
+                context.replaceSqlParams(getRangeSql(sql, sqlConfig, range.condition));
+                final PreparedStatement statement = context.prepareStatement();
+                context.setSqlParamValues(sqlConfig, config, copy(params));
+                int index = context.getCurrentSqlParamNames().size();
+                for (Object value : range.values) {
+                    statement.setObject(++index, value);
+                }
+                statement.setFetchSize(fetchSize);
+            }
+        } catch (SQLException e) {
+            query.closeContexts();
+            final String errMsg = Messages.getFormattedString("DatabaseDAO.sqlExceptionPartition", new String[] {
+                    dbConfigName, e.getMessage() });
+            logger.error(errMsg, e);
+            throw new DataAccessObjectInitializationException(errMsg, e);
+        } catch (ParameterLoadException e) {
+            query.closeContexts();
+            throw new DataAccessObjectInitializationException(e.getMessage(), e);
+        } catch (DataAccessObjectInitializationException e) {
+            query.closeContexts();
+            throw e;
+        }
+        logger.info("Reading " + query.partitions.size() + " partitions of " + dbConfigName + " in parallel");
+        for (Partition partition : query.partitions) {
+            query.active.add(partition);
+            partition.thread.start();
+        }
+        return query;
+    }
+
+    /**
+     * @return the next row, taking the partitions in turn, or null when all the partitions have been read
+     */
+    Row next() throws DataAccessObjectException {
+        while (!active.isEmpty()) {
+            if (next >= active.size()) next = 0;
+            final Partition partition = active.get(next);
+            final Row row;
+            try {
+                row = partition.rows.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataAccessObjectException(e.getMessage(), e);
+            }
+            if (row != END) {
+                next++;
+                return row;
+            }
+            active.remove(next);
+            if (partition.error != null) {
+                final String errMsg = Messages.getFormattedString("DatabaseDAO.errorPartitionRead", new String[] {
+                        String.valueOf(partition.number), dbConfigName, partition.error.getMessage() });
+                logger.error(errMsg, partition.error);
+                throw new DataAccessObjectException(errMsg, partition.error);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stops the queries that are still running.
+     */
+    void close() {
+        closed = true;
+        for (Partition partition : partitions) {
+            if (!partition.thread.isAlive()) continue;
+            try {
+                final PreparedStatement statement = partition.context.getDataStatement();
+                if (statement != null) statement.cancel();
+            } catch (SQLException e) {
+                logger.debug("Error canceling the query of partition " + partition.number, e);
+            }
+        }
+        for (Partition partition : partitions) {
+            try {
+                partition.thread.join(JOIN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (partition.thread.isAlive()) {
+                logger.warn("The query of partition " + partition.number + " of " + dbConfigName
+                        + " is still running, it will close its connection when it ends");
+            }
+        }
+        active.clear();
+    }
+
+    private void closeContexts() {
+        for (Partition partition : partitions) {
+            partition.context.close();
+        }
+    }
+
+    private static Map<String, Object> copy(Map<String, Object> params) {
+        // the parameters are converted in place
+        return params == null ? null : new HashMap<String, Object>(params);
+    }
+
+    private static List<Range> getRanges(BasicDataSource dataSource, SqlConfig sqlConfig, Config config,
+            Map<String, Object> params, String sql, String dbConfigName)
+            throws DataAccessObjectInitializationException, ParameterLoadException, SQLException {
+        final String column = sqlConfig.getPartitionColumn();
+        final List<Range> ranges = new ArrayList<Range>();
+        final List<String> bounds = sqlConfig.getPartitionBounds();
+        if (bounds != null && !bounds.isEmpty()) {
+            for (int i = 0; i <= bounds.size(); i++) {
+                ranges.add(new Range(getCondition(column, i == 0 ? null : bounds.get(i - 1),
+                        i == bounds.size() ? null : bounds.get(i)), Collections.emptyList()));
+            }
+            checkConnections(dataSource, ranges.size(), dbConfigName);
+            return ranges;
+        }
+
+        int count = sqlConfig.getPartitionCount();
+        if (dataSource.getMaxActive() > 0 && count > dataSource.getMaxActive() - 1) {
+            count = Math.max(1, dataSource.getMaxActive() - 1);
+            logger.info("Reading " + dbConfigName + " in " + count + " partitions, as the data source has "
+                    + dataSource.getMaxActive() + " connections");
+        }
+        final Object[] range = getValueRange(dataSource, sqlConfig, config, params, sql, dbConfigName);
+        final List<Object> values = splitRange(range[0], range[1], count, dbConfigName, column);
+        if (values.isEmpty()) {
+            ranges.add(new Range(null, Collections.emptyList()));
+            return ranges;
+        }
+        for (int i = 0; i <= values.size(); i++) {
+            final List<Object> rangeValues = new ArrayList<Object>(2);
+            if (i > 0) rangeValues.add(values.get(i - 1));
+            if (i < values.size()) rangeValues.add(values.get(i));
+            ranges.add(new Range(getCondition(column, i == 0 ? null : "?", i == values.size() ? null : "?"),
+                    rangeValues));
+        }
+        return ranges;
+    }
+
+    /**
+     * @return the query of a range, sorted on the outer query
+     */
+    static String getRangeSql(String sql, SqlConfig sqlConfig, String condition) {
+        final StringBuilder rangeSql = new StringBuilder("SELECT * FROM (").append(sql).append(") dl_part");
+        if (condition != null) rangeSql.append(" WHERE ").append(condition);
+        rangeSql.append(" ORDER BY ").append(sqlConfig.getPartitionColumn());
+        if (sqlConfig.getPartitionOrderColumns() != null) {
+            for (String column : sqlConfig.getPartitionOrderColumns()) {
+                rangeSql.append(", ").append(column);
+            }
+        }
+        return rangeSql.toString();
+    }
+
+    /**
+     * @return the query without the ORDER BY that ends it, unless the order decides which rows a limit keeps
+     */
+    static String withoutOrderBy(String sql) {
+        int orderBy = -1;
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && (i == 0 || !Character.isJavaIdentifierPart(sql.charAt(i - 1)))
+                    && ORDER_BY.matcher(sql).region(i, sql.length()).lookingAt()) {
+                orderBy = i;
+            }
+        }
+        if (orderBy < 0 || ROW_LIMIT.matcher(sql.substring(orderBy)).find()) return sql;
+        return sql.substring(0, orderBy).trim();
+    }
+
+    private static String getCondition(String column, String from, String to) {
+        if (from == null) return "(" + column + " < " + to + " OR " + column + " IS NULL)";
+        if (to == null) return column + " >= " + from;
+        return column + " >= " + from + " AND " + column + " < " + to;
+    }
+
+    private static void checkConnections(BasicDataSource dataSource, int partitions, String dbConfigName)
+            throws DataAccessObjectInitializationException {
+        // one more connection counts the rows while the partitions are read
+        if (dataSource.getMaxActive() > 0 && partitions > dataSource.getMaxActive() - 1) {
+            final String errMsg = Messages.getFormattedString("DatabaseDAO.errorPartitionCount", new String[] {
+                    dbConfigName, String.valueOf(partitions), String.valueOf(dataSource.getMaxActive()) });
+            logger.error(errMsg);
+            throw new DataAccessObjectInitializationException(errMsg);
+        }
+    }
+
+    /**
+     * @return the smallest and largest value of the partition column
+     */
+    private static Object[] getValueRange(BasicDataSource dataSource, SqlConfig sqlConfig, Config config,
+            Map<String, Object> params, String sql, String dbConfigName)
+            throws DataAccessObjectInitializationException, ParameterLoadException, SQLException {
+        final String column = sqlConfig.getPartitionColumn();
+        final DatabaseContext context = new DatabaseContext(dbConfigName);
+        try {
+            context.initConnection(dataSource);
+            context.replaceSqlParams("SELECT MIN(" + column + "), MAX(" + column + ") FROM (" + sql + ") dl_range");
+            final PreparedStatement statement = context.prepareStatement();
+            context.setSqlParamValues(sqlConfig, config, copy(params));
+            final ResultSet rs = statement.executeQuery();
+            context.setDataResultSet(rs);
+            if (!rs.next()) return new Object[2];
+            return new Object[] { rs.getObject(1), rs.getObject(2) };
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * @return the values that start each partition after the first, of the type to bind them with
+     */
+    static List<Object> splitRange(Object min, Object max, int count, String dbConfigName, String column)
+            throws DataAccessObjectInitializationException {
+        final List<Object> bounds = new ArrayList<Object>();
+        if (min == null || max == null || count < 2) return bounds;
+        final boolean isDate = min instanceof java.util.Date && max instanceof java.util.Date;
+        if (!isDate && !(min instanceof Number && max instanceof Number)) {
+            final String errMsg = Messages.getFormattedString("DatabaseDAO.errorPartitionType", new String[] {
+                    dbConfigName, column, min.getClass().getName() });
+            logger.error(errMsg);
+            throw new DataAccessObjectInitializationException(errMsg);
+        }
+        final BigDecimal low = isDate ? BigDecimal.valueOf(((java.util.Date)min).getTime()) : toDecimal(min);
+        final BigDecimal high = isDate ? BigDecimal.valueOf(((java.util.Date)max).getTime()) : toDecimal(max);
+        final boolean integral = isDate || (isIntegral(low) && isIntegral(high));
+        final BigDecimal step;
+        if (integral) {
+            step = high.subtract(low).add(BigDecimal.ONE).divide(BigDecimal.valueOf(count), 0, RoundingMode.CEILING);
+        } else {
+            step = high.subtract(low).divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+        }
+        if (step.signum() <= 0) return bounds;
+        BigDecimal previous = low;
+        for (int i = 1; i < count; i++) {
+            final BigDecimal bound = low.add(step.multiply(BigDecimal.valueOf(i)));
+            if (bound.compareTo(high) > 0 || bound.compareTo(previous) <= 0) break;
+            bounds.add(isDate ? new Timestamp(bound.longValue()) : bound);
+            previous = bound;
+        }
+        return bounds;
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        return value instanceof BigDecimal ? (BigDecimal)value : new BigDecimal(value.toString());
+    }
+
+    private static boolean isIntegral(BigDecimal value) {
+        return value.signum() == 0 || value.stripTrailingZeros().scale() <= 0;
+    }
+}
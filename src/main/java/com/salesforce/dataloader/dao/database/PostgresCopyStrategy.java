@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Loads rows into PostgreSQL with <code>COPY ... FROM STDIN</code> through the copy API of the PostgreSQL JDBC driver.
+ *
+ * @since 35.0
+ */
+public class PostgresCopyStrategy extends CsvBulkLoadStrategy {
+
+    private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+
+    @Override
+    public boolean supports(Connection connection) throws SQLException {
+        try {
+            return connection.isWrapperFor(Class.forName(PG_CONNECTION));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void load(Connection connection, String table, List<String> columns, List<Object[]> values)
+            throws SQLException {
+        final String sql = "COPY " + table + " (" + join(columns) + ") FROM STDIN WITH CSV";
+        try {
+            // the driver is only on the class path of the data sources that use it
+            final Class<?> pgConnectionClass = Class.forName(PG_CONNECTION);
+            final Object pgConnection = connection.unwrap(pgConnectionClass);
+            final Object copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(pgConnection);
+            final Method copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+            copyIn.invoke(copyManager, sql, new StringReader(toCsv(columns, values, "", false)));
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) throw (SQLException)e.getCause();
+            throw new SQLException(e.getCause());
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new SQLException(e);
+        }
+    }
+}
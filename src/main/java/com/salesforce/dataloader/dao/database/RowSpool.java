@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * A local file with the rows read by a {@link DatabaseReader}, so that reading them again does not run the query
+ * again. Values are written in a compact binary form, in the order of the column names.
+ *
+ * @since 35.0
+ */
+class RowSpool {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte END = 0;
+    private static final byte ROW = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte DECIMAL = 9;
+    private static final byte BIG_INTEGER = 10;
+    private static final byte TIMESTAMP = 11;
+    private static final byte SQL_DATE = 12;
+    private static final byte TIME = 13;
+    private static final byte DATE = 14;
+    private static final byte BYTES = 15;
+    private static final byte SERIALIZED = 16;
+
+    private final List<String> columnNames;
+    private final File file;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private boolean complete = false;
+    private int rowCount = 0;
+
+    /**
+     * Creates the spool file and starts writing to it.
+     */
+    RowSpool(List<String> columnNames, String dbConfigName) throws IOException {
+        this.columnNames = columnNames;
+        this.file = File.createTempFile("dataloader-" + dbConfigName.replaceAll("\\W", "_") + "-", ".spool");
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * @return true once all the rows of the query were written
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    boolean isWriting() {
+        return out != null;
+    }
+
+    void write(Row row) throws IOException {
+        out.writeByte(ROW);
+        for (String columnName : columnNames) {
+            writeValue(row.get(columnName));
+        }
+        rowCount++;
+    }
+
+    /**
+     * Ends the spool after the last row of the query.
+     */
+    void finishWriting() throws IOException {
+        out.writeByte(END);
+        out.close();
+        out = null;
+        complete = true;
+    }
+
+    /**
+     * Starts reading the rows from the first one.
+     */
+    void startReading() throws IOException {
+        closeReading();
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    }
+
+    /**
+     * @return the next row, or null after the last one
+     */
+    Row read() throws IOException {
+        if (in == null || in.readByte() == END) return null;
+        final Row row = new Row(columnNames.size());
+        for (String columnName : columnNames) {
+            row.put(columnName, readValue());
+        }
+        return row;
+    }
+
+    void closeReading() {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // only read from
+            }
+            in = null;
+        }
+    }
+
+    /**
+     * Stops using the spool and deletes its file.
+     */
+    void delete() {
+        closeReading();
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // deleted anyway
+            }
+            out = null;
+        }
+        complete = false;
+        file.delete();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(((String)value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer)value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long)value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double)value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float)value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short)value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte)value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            out.writeInt(((BigDecimal)value).scale());
+            writeBytes(((BigDecimal)value).unscaledValue().toByteArray());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(((BigInteger)value).toByteArray());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp)value).getTime());
+            out.writeInt(((Timestamp)value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(SQL_DATE);
+            out.writeLong(((Date)value).getTime());
+        } else if (value instanceof Time) {
+            out.writeByte(TIME);
+            out.writeLong(((Date)value).getTime());
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(DATE);
+            out.writeLong(((Date)value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes((byte[])value);
+        } else if (value instanceof Clob || value instanceof Blob) {
+            // only readable while the result set is open
+            writeLob(value);
+        } else if (value instanceof Serializable) {
+            out.writeByte(SERIALIZED);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+            objectOut.writeObject(value);
+            objectOut.close();
+            writeBytes(bytes.toByteArray());
+        } else {
+            writeValue(value.toString());
+        }
+    }
+
+    private void writeLob(Object value) throws IOException {
+        try {
+            if (value instanceof Clob) {
+                final Clob clob = (Clob)value;
+                writeValue(clob.getSubString(1, (int)clob.length()));
+            } else {
+                final Blob blob = (Blob)value;
+                writeValue(blob.getBytes(1, (int)blob.length()));
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private Object readValue() throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+        case NULL:
+            return null;
+        case STRING:
+            return new String(readBytes(), StandardCharsets.UTF_8);
+        case INTEGER:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case DOUBLE:
+            return in.readDouble();
+        case FLOAT:
+            return in.readFloat();
+        case SHORT:
+            return in.readShort();
+        case BYTE:
+            return in.readByte();
+        case BOOLEAN:
+            return in.readBoolean();
+        case DECIMAL:
+            final int scale = in.readInt();
+            return new BigDecimal(new BigInteger(readBytes()), scale);
+        case BIG_INTEGER:
+            return new BigInteger(readBytes());
+        case TIMESTAMP:
+            final Timestamp timestamp = new Timestamp(in.readLong());
+            timestamp.setNanos(in.readInt());
+            return timestamp;
+        case SQL_DATE:
+            return new java.sql.Date(in.readLong());
+        case TIME:
+            return new Time(in.readLong());
+        case DATE:
+            return new Date(in.readLong());
+        case BYTES:
+            return readBytes();
+        case SERIALIZED:
+            final ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(readBytes()));
+            try {
+                return objectIn.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            } finally {
+                objectIn.close();
+            }
+        default:
+            throw new IOException("Unknown value type " + type + " in " + file);
+        }
+    }
+
+    private byte[] readBytes() throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
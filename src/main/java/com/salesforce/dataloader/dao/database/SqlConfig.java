@@ -32,6 +32,12 @@ public class SqlConfig {
     HashMap<String,String> sqlParams;
     String sqlString;
     List<String> generatedKeysColumnNames = new ArrayList<String>();
+    String partitionColumn;
+    int partitionCount;
+    List<String> partitionBounds = new ArrayList<String>();
+    List<String> partitionOrderColumns = new ArrayList<String>();
+    BulkLoadStrategy bulkLoadStrategy;
+    List<String> keyColumns = new ArrayList<String>();
 
     public SqlConfig() {
     }
@@ -71,4 +77,84 @@ public class SqlConfig {
     public boolean hasGeneratedKeys() {
         return !getGeneratedKeysColumnNames().isEmpty();
     }
+
+    public String getPartitionColumn() {
+        return partitionColumn;
+    }
+
+    /**
+     * Sets the column of the query that splits it into partitions, which are read in parallel. The partitions are
+     * either given by {@link #setPartitionBounds(List)} or are {@link #setPartitionCount(int)} equal ranges between
+     * the smallest and largest value of the column.
+     */
+    public void setPartitionColumn(String partitionColumn) {
+        this.partitionColumn = partitionColumn;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Sets the number of partitions of a number or date partition column.
+     */
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = partitionCount;
+    }
+
+    public List<String> getPartitionBounds() {
+        return partitionBounds;
+    }
+
+    /**
+     * Sets the values that start each partition after the first, as SQL expressions such as <code>1000</code> or
+     * <code>'M'</code>, in ascending order. Rows with no value in the partition column are in the first partition.
+     */
+    public void setPartitionBounds(List<String> partitionBounds) {
+        this.partitionBounds = partitionBounds;
+    }
+
+    public List<String> getPartitionOrderColumns() {
+        return partitionOrderColumns;
+    }
+
+    /**
+     * Sets the columns that order the rows of each partition after the partition column, such as the primary key.
+     * Rows then come in the same order on every run even when they share a partition column value.
+     */
+    public void setPartitionOrderColumns(List<String> partitionOrderColumns) {
+        this.partitionOrderColumns = partitionOrderColumns;
+    }
+
+    public BulkLoadStrategy getBulkLoadStrategy() {
+        return bulkLoadStrategy;
+    }
+
+    /**
+     * Sets the database's own way of loading the rows of this insert statement, see {@link BulkLoadStrategy}.
+     */
+    public void setBulkLoadStrategy(BulkLoadStrategy bulkLoadStrategy) {
+        this.bulkLoadStrategy = bulkLoadStrategy;
+    }
+
+    public List<String> getKeyColumns() {
+        return keyColumns;
+    }
+
+    /**
+     * Sets the columns that identify the rows of an insert statement. The rows are then merged: rows with the same
+     * keys as existing rows update them, and the other rows are inserted.
+     */
+    public void setKeyColumns(List<String> keyColumns) {
+        this.keyColumns = keyColumns;
+    }
+
+    public boolean isMerge() {
+        return keyColumns != null && !keyColumns.isEmpty();
+    }
+
+    public boolean isPartitioned() {
+        return partitionColumn != null && partitionColumn.length() > 0
+                && (partitionCount > 1 || (partitionBounds != null && !partitionBounds.isEmpty()));
+    }
 }
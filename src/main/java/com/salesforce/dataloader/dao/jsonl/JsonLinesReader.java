@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.jsonl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.dao.DataReader;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * Reads JSON Lines files: one JSON object per line, in UTF-8. Nested objects are flattened to dotted column names,
+ * such as <code>Account.Name</code>, the way relationship fields are named in a SOQL query. Arrays are read as their
+ * JSON text, and values that are null or missing from a record are read as empty strings, like empty CSV values.
+ * <p>
+ * Since records don't need to have the same fields, the file is parsed once when it is opened to find all the columns
+ * and count the records. Rows are then parsed one at a time as they are read.
+ *
+ * @since 35.0
+ */
+public class JsonLinesReader implements DataReader {
+
+    private static final Logger logger = Logger.getLogger(JsonLinesReader.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private JsonReader jsonReader;
+    private List<String> columnNames = new ArrayList<String>();
+    private int totalRows;
+    private int currentRowNumber;
+
+    public JsonLinesReader(Config config) {
+        this(new File(config.getString(Config.DAO_NAME)));
+    }
+
+    public JsonLinesReader(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void checkConnection() throws DataAccessObjectInitializationException {
+        open();
+        close();
+    }
+
+    /**
+     * Finds the columns and the number of records, and goes to the first record.
+     */
+    @Override
+    public void open() throws DataAccessObjectInitializationException {
+        close();
+        final Set<String> columns = new LinkedHashSet<String>();
+        int records = 0;
+        try {
+            this.jsonReader = createJsonReader();
+            while (this.jsonReader.peek() != JsonToken.END_DOCUMENT) {
+                scanRecord(columns);
+                records++;
+            }
+            this.jsonReader.close();
+            this.jsonReader = createJsonReader();
+        } catch (IOException | IllegalStateException e) {
+            // the reader throws IllegalStateException when a record is not an object
+            final String errMsg = Messages.getFormattedString("JsonLinesDAO.errorOpen", new String[] {
+                    this.file.getAbsolutePath(), String.valueOf(records + 1), e.getMessage() });
+            logger.error(errMsg, e);
+            close();
+            throw new DataAccessObjectInitializationException(errMsg, e);
+        }
+        this.columnNames = new ArrayList<String>(columns);
+        this.totalRows = records;
+        this.currentRowNumber = 0;
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(this.jsonReader);
+        this.jsonReader = null;
+    }
+
+    @Override
+    public Row readRow() throws DataAccessObjectException {
+        if (this.jsonReader == null) open();
+        try {
+            if (this.jsonReader.peek() == JsonToken.END_DOCUMENT) return null;
+            final Row row = new Row(this.columnNames.size());
+            for (String column : this.columnNames) {
+                row.put(column, "");
+            }
+            readObject(row, "");
+            this.currentRowNumber++;
+            return row;
+        } catch (IOException | IllegalStateException e) {
+            final String errMsg = Messages.getFormattedString("JsonLinesDAO.errorRead", new String[] {
+                    String.valueOf(this.currentRowNumber + 1), this.file.getAbsolutePath(), e.getMessage() });
+            logger.error(errMsg, e);
+            throw new DataAccessObjectException(errMsg, e);
+        }
+    }
+
+    @Override
+    public List<Row> readRowList(int maxRows) throws DataAccessObjectException {
+        final List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < maxRows; i++) {
+            final Row row = readRow();
+            if (row == null) break;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the number of records counted when the file was opened
+     */
+    @Override
+    public int getTotalRows() throws DataAccessObjectException {
+        if (this.jsonReader == null) open();
+        return this.totalRows;
+    }
+
+    @Override
+    public int getCurrentRowNumber() {
+        return this.currentRowNumber;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return this.columnNames;
+    }
+
+    private JsonReader createJsonReader() throws IOException {
+        final Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file),
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+        final JsonReader json = new JsonReader(reader);
+        // lenient, so that the reader takes one top level value after another
+        json.setLenient(true);
+        return json;
+    }
+
+    /**
+     * Adds the column names of the next record, skipping over its values.
+     */
+    private void scanRecord(Set<String> columns) throws IOException {
+        scanObject(columns, "");
+    }
+
+    private void scanObject(Set<String> columns, String prefix) throws IOException {
+        this.jsonReader.beginObject();
+        while (this.jsonReader.hasNext()) {
+            final String name = prefix + this.jsonReader.nextName();
+            if (this.jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                scanObject(columns, name + ".");
+            } else {
+                columns.add(name);
+                this.jsonReader.skipValue();
+            }
+        }
+        this.jsonReader.endObject();
+    }
+
+    /**
+     * Puts the values of the next object in the row, prefixing the column names of nested objects with their names.
+     */
+    private void readObject(Row row, String prefix) throws IOException {
+        this.jsonReader.beginObject();
+        while (this.jsonReader.hasNext()) {
+            final String name = prefix + this.jsonReader.nextName();
+            switch (this.jsonReader.peek()) {
+            case BEGIN_OBJECT:
+                readObject(row, name + ".");
+                break;
+            case BEGIN_ARRAY:
+                row.put(name, readArrayText());
+                break;
+            case NULL:
+                this.jsonReader.nextNull();
+                row.put(name, "");
+                break;
+            case BOOLEAN:
+                row.put(name, String.valueOf(this.jsonReader.nextBoolean()));
+                break;
+            default:
+                // numbers keep the text they have in the file
+                row.put(name, this.jsonReader.nextString());
+                break;
+            }
+        }
+        this.jsonReader.endObject();
+    }
+
+    private String readArrayText() throws IOException {
+        final StringWriter text = new StringWriter();
+        final JsonWriter writer = new JsonWriter(text);
+        copyValue(writer);
+        writer.close();
+        return text.toString();
+    }
+
+    private void copyValue(JsonWriter writer) throws IOException {
+        switch (this.jsonReader.peek()) {
+        case BEGIN_ARRAY:
+            this.jsonReader.beginArray();
+            writer.beginArray();
+            while (this.jsonReader.hasNext()) {
+                copyValue(writer);
+            }
+            this.jsonReader.endArray();
+            writer.endArray();
+            break;
+        case BEGIN_OBJECT:
+            this.jsonReader.beginObject();
+            writer.beginObject();
+            while (this.jsonReader.hasNext()) {
+                writer.name(this.jsonReader.nextName());
+                copyValue(writer);
+            }
+            this.jsonReader.endObject();
+            writer.endObject();
+            break;
+        case NULL:
+            this.jsonReader.nextNull();
+            writer.nullValue();
+            break;
+        case BOOLEAN:
+            writer.value(this.jsonReader.nextBoolean());
+            break;
+        case NUMBER:
+            writer.value(new JsonNumber(this.jsonReader.nextString()));
+            break;
+        default:
+            writer.value(this.jsonReader.nextString());
+            break;
+        }
+    }
+
+    /**
+     * A number written with the text it was read with.
+     */
+    static final class JsonNumber extends Number {
+        private static final long serialVersionUID = 1L;
+        private final String text;
+
+        JsonNumber(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int intValue() {
+            return (int)doubleValue();
+        }
+
+        @Override
+        public long longValue() {
+            return (long)doubleValue();
+        }
+
+        @Override
+        public float floatValue() {
+            return (float)doubleValue();
+        }
+
+        @Override
+        public double doubleValue() {
+            return Double.parseDouble(this.text);
+        }
+
+        @Override
+        public String toString() {
+            return this.text;
+        }
+    }
+}
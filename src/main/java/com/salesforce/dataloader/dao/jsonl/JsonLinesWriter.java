@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.jsonl;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.google.gson.stream.JsonWriter;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * Writes JSON Lines files: one JSON object per line, in UTF-8. Dotted column names, such as the
+ * <code>Account.Name</code> of a relationship field in a SOQL query, are written as nested objects, so that
+ * {@link JsonLinesReader} reads them back as the same columns. A column is written under its full name instead if
+ * another column is named after part of it. Null values are written as JSON nulls and other values as strings.
+ * <p>
+ * Records are encoded straight to the file with a streaming {@link JsonWriter}.
+ *
+ * @since 35.0
+ */
+public class JsonLinesWriter implements DataWriter {
+
+    private static final Logger logger = Logger.getLogger(JsonLinesWriter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A property of the written objects: either a column, or an object holding other properties.
+     */
+    private static final class Property {
+        final String name;
+        final String column;
+        final List<Property> properties;
+
+        Property(String name, String column) {
+            this.name = name;
+            this.column = column;
+            this.properties = column == null ? new ArrayList<Property>() : null;
+        }
+
+        Property getObject(String name) {
+            for (Property property : this.properties) {
+                if (property.column == null && property.name.equals(name)) return property;
+            }
+            final Property object = new Property(name, null);
+            this.properties.add(object);
+            return object;
+        }
+    }
+
+    private final String fileName;
+    private Writer writer;
+    private JsonWriter jsonWriter;
+    private List<String> columnNames = Collections.emptyList();
+    private Property record = new Property(null, null);
+    private int currentRowNumber;
+
+    public JsonLinesWriter(String fileName, Config config) {
+        this.fileName = fileName;
+    }
+
+    @Override
+    public void checkConnection() throws DataAccessObjectInitializationException {
+        open();
+        close();
+    }
+
+    @Override
+    public void open() throws DataAccessObjectInitializationException {
+        close();
+        try {
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.fileName),
+                    StandardCharsets.UTF_8), BUFFER_SIZE);
+        } catch (IOException e) {
+            String errMsg = Messages.getFormattedString("JsonLinesDAO.errorOpening", this.fileName);
+            logger.error(errMsg, e);
+            throw new DataAccessObjectInitializationException(errMsg, e);
+        }
+        this.jsonWriter = new JsonWriter(this.writer);
+        // lenient, so that the writer takes one top level value after another
+        this.jsonWriter.setLenient(true);
+        this.currentRowNumber = 0;
+    }
+
+    @Override
+    public void close() {
+        if (this.jsonWriter == null) return;
+        try {
+            // closed directly, as the JSON writer refuses to close before a record is written
+            this.writer.close();
+        } catch (IOException e) {
+            logger.error(Messages.getString("JsonLinesDAO.errorClosing"), e);
+        }
+        this.jsonWriter = null;
+        this.writer = null;
+    }
+
+    @Override
+    public void setColumnNames(List<String> columnNames) throws DataAccessObjectInitializationException {
+        if (columnNames == null || columnNames.isEmpty()) {
+            String errMsg = Messages.getString("JsonLinesDAO.errorNoColumns");
+            logger.error(errMsg);
+            throw new DataAccessObjectInitializationException(errMsg);
+        }
+        this.columnNames = new ArrayList<String>(columnNames);
+        final Set<String> names = new HashSet<String>(columnNames);
+        final Property root = new Property(null, null);
+        for (String column : columnNames) {
+            final String[] path = column.split("\\.", -1);
+            if (!isNestable(path, names)) {
+                root.properties.add(new Property(column, column));
+                continue;
+            }
+            Property object = root;
+            for (int i = 0; i < path.length - 1; i++) {
+                object = object.getObject(path[i]);
+            }
+            object.properties.add(new Property(path[path.length - 1], column));
+        }
+        this.record = root;
+    }
+
+    /**
+     * @return true if the column can be written in nested objects, with no empty part in its name and no other column
+     *         named after one of the objects
+     */
+    private static boolean isNestable(String[] path, Set<String> columnNames) {
+        final StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < path.length; i++) {
+            if (path[i].length() == 0) return false;
+            if (i == path.length - 1) break;
+            if (i > 0) prefix.append('.');
+            prefix.append(path[i]);
+            if (columnNames.contains(prefix.toString())) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return this.columnNames;
+    }
+
+    @Override
+    public boolean writeRow(Row row) throws DataAccessObjectException {
+        try {
+            writeObject(this.record, row);
+            this.writer.write('\n');
+        } catch (IOException e) {
+            String errMsg = Messages.getFormattedString("JsonLinesDAO.errorWriting",
+                    String.valueOf(this.currentRowNumber + 1));
+            logger.error(errMsg, e);
+            throw new DataAccessObjectException(errMsg, e);
+        }
+        this.currentRowNumber++;
+        return true;
+    }
+
+    @Override
+    public boolean writeRowList(List<Row> rows) throws DataAccessObjectException {
+        for (Row row : rows) {
+            writeRow(row);
+        }
+        return true;
+    }
+
+    @Override
+    public int getCurrentRowNumber() {
+        return this.currentRowNumber;
+    }
+
+    private void writeObject(Property object, Row row) throws IOException {
+        this.jsonWriter.beginObject();
+        for (Property property : object.properties) {
+            this.jsonWriter.name(property.name);
+            if (property.column == null) {
+                writeObject(property, row);
+            } else {
+                final Object value = row.get(property.column);
+                this.jsonWriter.value(value == null ? null : value.toString());
+            }
+        }
+        this.jsonWriter.endObject();
+    }
+}
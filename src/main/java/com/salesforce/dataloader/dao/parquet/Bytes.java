@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.parquet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte array for the pages being written, with the little-endian and variable-length encodings Parquet uses.
+ *
+ * @since 35.0
+ */
+final class Bytes {
+
+    private byte[] bytes;
+    private int size;
+
+    Bytes(int capacity) {
+        this.bytes = new byte[capacity];
+    }
+
+    void write(int b) {
+        ensureCapacity(1);
+        this.bytes[this.size++] = (byte)b;
+    }
+
+    void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, off, this.bytes, this.size, len);
+        this.size += len;
+    }
+
+    void write(Bytes b) {
+        write(b.bytes, 0, b.size);
+    }
+
+    void writeIntLE(int value) {
+        ensureCapacity(4);
+        this.bytes[this.size++] = (byte)value;
+        this.bytes[this.size++] = (byte)(value >>> 8);
+        this.bytes[this.size++] = (byte)(value >>> 16);
+        this.bytes[this.size++] = (byte)(value >>> 24);
+    }
+
+    void writeLongLE(long value) {
+        writeIntLE((int)value);
+        writeIntLE((int)(value >>> 32));
+    }
+
+    /**
+     * Writes an unsigned value in 7-bit groups, lowest first
+     */
+    void writeVarLong(long value) {
+        while ((value & ~0x7fL) != 0) {
+            write((int)(value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        write((int)value);
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    byte[] array() {
+        return this.bytes;
+    }
+
+    void reset() {
+        this.size = 0;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(this.bytes, 0, this.size);
+    }
+
+    private void ensureCapacity(int more) {
+        if (this.size + more > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + more));
+        }
+    }
+}
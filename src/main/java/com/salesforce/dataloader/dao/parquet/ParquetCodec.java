@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.parquet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression codecs of Parquet pages. Pages are written uncompressed or with gzip. Snappy, the codec most other
+ * writers use, can be read.
+ *
+ * @since 35.0
+ */
+enum ParquetCodec {
+
+    UNCOMPRESSED(0), SNAPPY(1), GZIP(2);
+
+    final int id;
+
+    private ParquetCodec(int id) {
+        this.id = id;
+    }
+
+    static ParquetCodec forId(int id) throws IOException {
+        for (ParquetCodec codec : values()) {
+            if (codec.id == id) return codec;
+        }
+        throw new IOException("Unsupported compression codec " + id);
+    }
+
+    /**
+     * @return the codec with the given name, ignoring case
+     * @throws IllegalArgumentException
+     *             if there is no such codec, or if it can't be written
+     */
+    static ParquetCodec forWriting(String name) {
+        final ParquetCodec codec = valueOf(name.trim().toUpperCase());
+        if (codec == SNAPPY) throw new IllegalArgumentException("Snappy compression can only be read");
+        return codec;
+    }
+
+    void compress(Bytes in, final Bytes out) throws IOException {
+        if (this == UNCOMPRESSED) {
+            out.write(in);
+            return;
+        }
+        final GZIPOutputStream gzip = new GZIPOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                out.write(b, off, len);
+            }
+        }, 64 * 1024);
+        gzip.write(in.array(), 0, in.size());
+        gzip.close();
+    }
+
+    byte[] decompress(byte[] in, int offset, int length, int uncompressedLength) throws IOException {
+        final byte[] out = new byte[uncompressedLength];
+        switch (this) {
+        case UNCOMPRESSED:
+            if (length != uncompressedLength) throw new IOException("Uncompressed page sizes differ");
+            System.arraycopy(in, offset, out, 0, length);
+            break;
+        case GZIP:
+            final InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(in, offset, length), 64 * 1024);
+            try {
+                int n = 0;
+                while (n < out.length) {
+                    final int read = gzip.read(out, n, out.length - n);
+                    if (read < 0) throw new IOException("Compressed page is too short");
+                    n += read;
+                }
+            } finally {
+                gzip.close();
+            }
+            break;
+        case SNAPPY:
+            unsnappy(in, offset, offset + length, out);
+            break;
+        }
+        return out;
+    }
+
+    private static void unsnappy(byte[] in, int pos, int end, byte[] out) throws IOException {
+        try {
+            // the uncompressed length comes first
+            long length = 0;
+            for (int shift = 0;; shift += 7) {
+                final int b = in[pos++] & 0xff;
+                length |= (long)(b & 0x7f) << shift;
+                if ((b & 0x80) == 0) break;
+            }
+            if (length != out.length) throw new IOException("Uncompressed page sizes differ");
+            int o = 0;
+            while (pos < end) {
+                final int tag = in[pos++] & 0xff;
+                int len;
+                int offset;
+                switch (tag & 3) {
+                case 0:
+                    // literal, with its length in the tag or in the 1 to 4 bytes after it
+                    len = tag >>> 2;
+                    if (len >= 60) {
+                        final int bytes = len - 59;
+                        len = 0;
+                        for (int i = 0; i < bytes; i++) {
+                            len |= (in[pos++] & 0xff) << (8 * i);
+                        }
+                    }
+                    len++;
+                    System.arraycopy(in, pos, out, o, len);
+                    pos += len;
+                    o += len;
+                    continue;
+                case 1:
+                    len = 4 + ((tag >>> 2) & 7);
+                    offset = (tag >>> 5) << 8 | in[pos++] & 0xff;
+                    break;
+                case 2:
+                    len = (tag >>> 2) + 1;
+                    offset = in[pos] & 0xff | (in[pos + 1] & 0xff) << 8;
+                    pos += 2;
+                    break;
+                default:
+                    len = (tag >>> 2) + 1;
+                    offset = in[pos] & 0xff | (in[pos + 1] & 0xff) << 8 | (in[pos + 2] & 0xff) << 16
+                            | (in[pos + 3] & 0xff) << 24;
+                    pos += 4;
+                    break;
+                }
+                if (offset <= 0 || offset > o) throw new IOException("Invalid Snappy copy offset");
+                // copies may overlap what they write
+                for (int i = 0; i < len; i++, o++) {
+                    out[o] = out[o - offset];
+                }
+            }
+            if (o != out.length) throw new IOException("Snappy data is too short");
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Invalid Snappy data", e);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.parquet;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Reads the values of one column chunk of a Parquet row group as the strings a CSV file would hold: dates as
+ * yyyy-MM-dd, timestamps as yyyy-MM-ddTHH:mm:ss.SSSZ in UTC, and nulls as null. Pages are decompressed one at a time.
+ * <p>
+ * Data pages of both versions are supported, with PLAIN or dictionary encoded values, and RLE encoded booleans.
+ *
+ * @since 35.0
+ */
+final class ParquetColumnReader {
+
+    private static final int PAGE_DATA = 0;
+    private static final int PAGE_DICTIONARY = 2;
+    private static final int PAGE_DATA_V2 = 3;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_PLAIN_DICTIONARY = 2;
+    private static final int ENCODING_RLE = 3;
+    private static final int ENCODING_RLE_DICTIONARY = 8;
+
+    private static final int KIND_NONE = 0;
+    private static final int KIND_DATE = 1;
+    private static final int KIND_TIMESTAMP = 2;
+    private static final int KIND_TIME = 3;
+    private static final int KIND_DECIMAL = 4;
+
+    private static final long JULIAN_DAY_OF_EPOCH = 2440588;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS'Z'");
+
+    /**
+     * A column of a flat schema
+     */
+    static final class Column {
+        final String name;
+        final int physicalType;
+        final int typeLength;
+        final int maxDefinitionLevel;
+        final int kind;
+        final int scale;
+        // units of a time or timestamp per millisecond
+        final long unitsPerMilli;
+
+        /**
+         * @param element
+         *            the SchemaElement of the column
+         */
+        Column(ThriftReader.Struct element) throws IOException {
+            this.name = element.getString(4);
+            if (element.getInt(5, 0) > 0) throw new IOException("Nested column " + this.name + " is not supported");
+            final int repetition = element.getInt(3, 0);
+            if (repetition == 2) throw new IOException("Repeated column " + this.name + " is not supported");
+            this.maxDefinitionLevel = repetition;
+            this.physicalType = element.getInt(1);
+            this.typeLength = element.getInt(2, 0);
+            final ThriftReader.Struct logicalType = element.findStruct(10);
+            final ThriftReader.Struct timeType = logicalType == null ? null : logicalType.has(8) ? logicalType
+                    .getStruct(8) : logicalType.findStruct(7);
+            switch (element.getInt(6, -1)) {
+            case ParquetType.CONVERTED_DATE:
+                this.kind = KIND_DATE;
+                this.unitsPerMilli = 1;
+                break;
+            case ParquetType.TIMESTAMP_MILLIS:
+            case ParquetType.TIMESTAMP_MICROS:
+                this.kind = KIND_TIMESTAMP;
+                this.unitsPerMilli = element.getInt(6) == ParquetType.TIMESTAMP_MILLIS ? 1 : 1000;
+                break;
+            case ParquetType.TIME_MILLIS:
+            case ParquetType.TIME_MICROS:
+                this.kind = KIND_TIME;
+                this.unitsPerMilli = element.getInt(6) == ParquetType.TIME_MILLIS ? 1 : 1000;
+                break;
+            case ParquetType.CONVERTED_DECIMAL:
+                this.kind = KIND_DECIMAL;
+                this.unitsPerMilli = 1;
+                break;
+            default:
+                if (logicalType != null && logicalType.has(6)) {
+                    this.kind = KIND_DATE;
+                    this.unitsPerMilli = 1;
+                } else if (timeType != null) {
+                    // nanoseconds only have a logical type
+                    this.kind = logicalType.has(8) ? KIND_TIMESTAMP : KIND_TIME;
+                    final ThriftReader.Struct unit = timeType.getStruct(2);
+                    this.unitsPerMilli = unit.has(1) ? 1 : unit.has(2) ? 1000 : 1000000;
+                } else if (logicalType != null && logicalType.has(5)) {
+                    this.kind = KIND_DECIMAL;
+                    this.unitsPerMilli = 1;
+                } else {
+                    this.kind = this.physicalType == ParquetType.INT96 ? KIND_TIMESTAMP : KIND_NONE;
+                    this.unitsPerMilli = 1;
+                }
+                break;
+            }
+            if (this.kind != KIND_DECIMAL) {
+                this.scale = 0;
+            } else if (element.has(7)) {
+                this.scale = element.getInt(7);
+            } else {
+                this.scale = logicalType.getStruct(5).getInt(1);
+            }
+        }
+    }
+
+    private final Column column;
+    private final ParquetCodec codec;
+    private final byte[] chunk;
+    private int position;
+    private final int end;
+
+    private String[] dictionary;
+    private int pageValues;
+    private Hybrid levels;
+    private int encoding;
+    private Hybrid indices;
+    private byte[] values;
+    private int valuePosition;
+    private int bitIndex;
+
+    ParquetColumnReader(Column column, ParquetCodec codec, byte[] chunk, int offset, int length) {
+        this.column = column;
+        this.codec = codec;
+        this.chunk = chunk;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * @return the next value, or null
+     */
+    String next() throws IOException {
+        while (this.pageValues == 0) {
+            readPage();
+        }
+        this.pageValues--;
+        if (this.levels != null && this.levels.next() < this.column.maxDefinitionLevel) return null;
+        switch (this.encoding) {
+        case ENCODING_PLAIN:
+            return readPlain();
+        case ENCODING_RLE:
+            return this.indices.next() != 0 ? "true" : "false";
+        default:
+            final int index = this.indices.next();
+            if (index < 0 || index >= this.dictionary.length) throw new IOException("Invalid dictionary index");
+            return this.dictionary[index];
+        }
+    }
+
+    private void readPage() throws IOException {
+        if (this.position >= this.end) throw new IOException("Column " + this.column.name + " has too few values");
+        final ThriftReader thrift = new ThriftReader(this.chunk, this.position, this.end - this.position);
+        final ThriftReader.Struct header = thrift.readStruct();
+        final int pageType = header.getInt(1);
+        final int uncompressedSize = header.getInt(2);
+        final int compressedSize = header.getInt(3);
+        final int start = thrift.getPosition();
+        if (compressedSize < 0 || compressedSize > this.end - start) throw new IOException("Invalid page size");
+        this.position = start + compressedSize;
+        switch (pageType) {
+        case PAGE_DICTIONARY:
+            final int size = header.getStruct(7).getInt(1);
+            this.values = this.codec.decompress(this.chunk, start, compressedSize, uncompressedSize);
+            this.valuePosition = 0;
+            this.bitIndex = 0;
+            this.dictionary = new String[size];
+            for (int i = 0; i < size; i++) {
+                this.dictionary[i] = readPlain();
+            }
+            break;
+        case PAGE_DATA:
+            final ThriftReader.Struct dataHeader = header.getStruct(5);
+            final byte[] data = this.codec.decompress(this.chunk, start, compressedSize, uncompressedSize);
+            int p = 0;
+            this.levels = null;
+            if (this.column.maxDefinitionLevel > 0) {
+                if (dataHeader.getInt(3) != ENCODING_RLE) throw new IOException("Unsupported definition levels");
+                final int length = readIntLE(data, p);
+                this.levels = new Hybrid(data, p + 4, p + 4 + length, 1);
+                p += 4 + length;
+            }
+            startValues(dataHeader.getInt(2), data, p);
+            this.pageValues = dataHeader.getInt(1);
+            break;
+        case PAGE_DATA_V2:
+            final ThriftReader.Struct v2Header = header.getStruct(8);
+            final int repetitionLength = v2Header.getInt(6);
+            final int definitionLength = v2Header.getInt(5);
+            final int levelsEnd = start + repetitionLength + definitionLength;
+            // levels are never compressed
+            this.levels = this.column.maxDefinitionLevel > 0 ? new Hybrid(this.chunk, start + repetitionLength,
+                    levelsEnd, 1) : null;
+            final int valuesLength = compressedSize - repetitionLength - definitionLength;
+            final byte[] valueData = v2Header.getBoolean(7, true) ? this.codec.decompress(this.chunk, levelsEnd,
+                    valuesLength, uncompressedSize - repetitionLength - definitionLength) : Arrays.copyOfRange(
+                    this.chunk, levelsEnd, levelsEnd + valuesLength);
+            startValues(v2Header.getInt(4), valueData, 0);
+            this.pageValues = v2Header.getInt(1);
+            break;
+        default:
+            // index pages are skipped
+            break;
+        }
+    }
+
+    private void startValues(int valueEncoding, byte[] data, int p) throws IOException {
+        this.encoding = valueEncoding;
+        switch (valueEncoding) {
+        case ENCODING_PLAIN:
+            this.values = data;
+            this.valuePosition = p;
+            this.bitIndex = 0;
+            break;
+        case ENCODING_PLAIN_DICTIONARY:
+        case ENCODING_RLE_DICTIONARY:
+            if (this.dictionary == null) throw new IOException("Column " + this.column.name + " has no dictionary");
+            this.indices = new Hybrid(data, p + 1, data.length, data[p] & 0xff);
+            break;
+        case ENCODING_RLE:
+            if (this.column.physicalType != ParquetType.PHYSICAL_BOOLEAN) {
+                throw new IOException("Unsupported encoding " + valueEncoding + " of column " + this.column.name);
+            }
+            this.indices = new Hybrid(data, p + 4, p + 4 + readIntLE(data, p), 1);
+            break;
+        default:
+            throw new IOException("Unsupported encoding " + valueEncoding + " of column " + this.column.name);
+        }
+    }
+
+    private String readPlain() throws IOException {
+        try {
+            switch (this.column.physicalType) {
+            case ParquetType.PHYSICAL_BOOLEAN:
+                final boolean b = (this.values[this.valuePosition] >>> this.bitIndex & 1) != 0;
+                if (++this.bitIndex == 8) {
+                    this.bitIndex = 0;
+                    this.valuePosition++;
+                }
+                return b ? "true" : "false";
+            case ParquetType.INT32:
+                final int i = readIntLE(this.values, this.valuePosition);
+                this.valuePosition += 4;
+                return format(i);
+            case ParquetType.INT64:
+                final long l = readLongLE(this.values, this.valuePosition);
+                this.valuePosition += 8;
+                return format(l);
+            case ParquetType.INT96:
+                final long nanos = readLongLE(this.values, this.valuePosition);
+                final long julianDay = readIntLE(this.values, this.valuePosition + 8);
+                this.valuePosition += 12;
+                return ParquetType.formatDatetime((julianDay - JULIAN_DAY_OF_EPOCH) * MILLIS_PER_DAY + nanos / 1000000);
+            case ParquetType.FLOAT:
+                final float f = Float.intBitsToFloat(readIntLE(this.values, this.valuePosition));
+                this.valuePosition += 4;
+                return Float.isNaN(f) || Float.isInfinite(f) ? Float.toString(f) : new BigDecimal(Float.toString(f))
+                        .toPlainString();
+            case ParquetType.PHYSICAL_DOUBLE:
+                final double d = Double.longBitsToDouble(readLongLE(this.values, this.valuePosition));
+                this.valuePosition += 8;
+                return Double.isNaN(d) || Double.isInfinite(d) ? Double.toString(d) : BigDecimal.valueOf(d)
+                        .toPlainString();
+            case ParquetType.BYTE_ARRAY:
+                final int length = readIntLE(this.values, this.valuePosition);
+                this.valuePosition += 4;
+                return readBytes(length);
+            case ParquetType.FIXED_LEN_BYTE_ARRAY:
+                return readBytes(this.column.typeLength);
+            default:
+                throw new IOException("Unsupported type " + this.column.physicalType + " of column "
+                        + this.column.name);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Column " + this.column.name + " has too few values", e);
+        }
+    }
+
+    private String readBytes(int length) {
+        if (length < 0 || length > this.values.length - this.valuePosition) {
+            throw new IndexOutOfBoundsException();
+        }
+        final String value;
+        if (this.column.kind == KIND_DECIMAL) {
+            final byte[] unscaled = new byte[length];
+            System.arraycopy(this.values, this.valuePosition, unscaled, 0, length);
+            value = length == 0 ? "0" : new BigDecimal(new BigInteger(unscaled), this.column.scale).toPlainString();
+        } else {
+            value = new String(this.values, this.valuePosition, length, StandardCharsets.UTF_8);
+        }
+        this.valuePosition += length;
+        return value;
+    }
+
+    private String format(long value) {
+        switch (this.column.kind) {
+        case KIND_DATE:
+            return LocalDate.ofEpochDay(value).toString();
+        case KIND_TIMESTAMP:
+            return ParquetType.formatDatetime(Math.floorDiv(value, this.column.unitsPerMilli));
+        case KIND_TIME:
+            return LocalTime.ofNanoOfDay(value * (1000000 / this.column.unitsPerMilli)).format(TIME_FORMAT);
+        case KIND_DECIMAL:
+            return BigDecimal.valueOf(value, this.column.scale).toPlainString();
+        default:
+            return Long.toString(value);
+        }
+    }
+
+    static int readIntLE(byte[] b, int p) {
+        return b[p] & 0xff | (b[p + 1] & 0xff) << 8 | (b[p + 2] & 0xff) << 16 | (b[p + 3] & 0xff) << 24;
+    }
+
+    private static long readLongLE(byte[] b, int p) {
+        return readIntLE(b, p) & 0xffffffffL | (long)readIntLE(b, p + 4) << 32;
+    }
+
+    /**
+     * Decodes the RLE / bit-packing hybrid encoding of levels, dictionary indices and booleans
+     */
+    private static final class Hybrid {
+        private final byte[] data;
+        private int position;
+        private final int end;
+        private final int bitWidth;
+        private int remaining;
+        private boolean packed;
+        private int value;
+        // bit-packed run
+        private int packedStart;
+        private int packedIndex;
+
+        Hybrid(byte[] data, int position, int end, int bitWidth) throws IOException {
+            if (end > data.length || position > end || bitWidth > 32) throw new IOException("Invalid encoded data");
+            this.data = data;
+            this.position = position;
+            this.end = end;
+            this.bitWidth = bitWidth;
+        }
+
+        int next() throws IOException {
+            while (this.remaining == 0) {
+                readRun();
+            }
+            this.remaining--;
+            if (!this.packed) return this.value;
+            final long bit = (long)this.packedIndex++ * this.bitWidth;
+            int p = this.packedStart + (int)(bit >>> 3);
+            long bits = 0;
+            for (int shift = 0; shift < this.bitWidth + 8; shift += 8, p++) {
+                // a short last group reads as zeros
+                if (p < this.end) bits |= (long)(this.data[p] & 0xff) << shift;
+            }
+            return (int)(bits >>> (bit & 7) & ((1L << this.bitWidth) - 1));
+        }
+
+        private void readRun() throws IOException {
+            long header = 0;
+            for (int shift = 0;; shift += 7) {
+                if (this.position >= this.end || shift > 35) throw new IOException("Too few encoded values");
+                final int b = this.data[this.position++] & 0xff;
+                header |= (long)(b & 0x7f) << shift;
+                if ((b & 0x80) == 0) break;
+            }
+            if ((header & 1) != 0) {
+                this.packed = true;
+                this.remaining = (int)(header >>> 1) * 8;
+                this.packedStart = this.position;
+                this.packedIndex = 0;
+                this.position += (int)(header >>> 1) * this.bitWidth;
+            } else {
+                this.packed = false;
+                this.remaining = (int)(header >>> 1);
+                this.value = 0;
+                for (int i = 0; i < (this.bitWidth + 7) / 8; i++) {
+                    if (this.position >= this.end) throw new IOException("Too few encoded values");
+                    this.value |= (this.data[this.position++] & 0xff) << (8 * i);
+                }
+            }
+        }
+    }
+}
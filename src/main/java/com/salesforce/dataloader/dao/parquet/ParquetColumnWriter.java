@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.parquet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffers the values of one column of a Parquet row group. Values are PLAIN-encoded into data pages of about
+ * {@link #PAGE_SIZE} bytes, which are compressed as soon as they are full, so that a row group is held in memory
+ * compressed. Every column is optional; empty values are written as nulls through run-length encoded definition levels.
+ *
+ * @since 35.0
+ */
+final class ParquetColumnWriter {
+
+    static final int PAGE_SIZE = 1024 * 1024;
+
+    static final int ENCODING_PLAIN = 0;
+    static final int ENCODING_RLE = 3;
+    static final int PAGE_DATA = 0;
+
+    /**
+     * Where a column chunk was written and how big it is
+     */
+    static final class Chunk {
+        final long offset;
+        final long values;
+        final long uncompressedSize;
+        final long compressedSize;
+
+        Chunk(long offset, long values, long uncompressedSize, long compressedSize) {
+            this.offset = offset;
+            this.values = values;
+            this.uncompressedSize = uncompressedSize;
+            this.compressedSize = compressedSize;
+        }
+    }
+
+    final String name;
+    final ParquetType type;
+    // digits and decimal places of a DECIMAL column
+    final int precision;
+    final int scale;
+    private final ParquetCodec codec;
+
+    // definition levels of the current page: 0 for null, 1 for a value
+    private final Bytes levels = new Bytes(1024);
+    private int runLevel = -1;
+    private int runLength;
+    // values of the current page
+    private final Bytes values = new Bytes(64 * 1024);
+    private int bits;
+    private int bitCount;
+    private int pageValues;
+    private final Bytes page = new Bytes(64 * 1024);
+    private final Bytes compressed = new Bytes(64 * 1024);
+    // finished pages of the column chunk, with their headers
+    private final Bytes chunk = new Bytes(64 * 1024);
+    private final ThriftWriter chunkThrift = new ThriftWriter(this.chunk);
+    private long chunkValues;
+    private long chunkUncompressedSize;
+
+    ParquetColumnWriter(String name, ParquetType type, int precision, int scale, ParquetCodec codec) {
+        this.name = name;
+        this.type = type;
+        this.precision = Math.max(precision, scale);
+        this.scale = scale;
+        this.codec = codec;
+    }
+
+    /**
+     * @return the value as written by {@link #add(Object)}: null for an empty value, a byte array for a string or a
+     *         decimal, and a boxed primitive for other types
+     * @throws RuntimeException
+     *             if the value is not of the column's type
+     */
+    Object parse(String value) {
+        if (value == null || value.length() == 0) return null;
+        switch (this.type) {
+        case BOOLEAN:
+            return ParquetType.parseBoolean(value.trim());
+        case INT:
+            return ParquetType.parseInt(value.trim());
+        case DECIMAL:
+            return ParquetType.parseDecimal(value.trim(), this.precision, this.scale);
+        case DATE:
+            return ParquetType.parseDate(value.trim());
+        case DATETIME:
+            return ParquetType.parseDatetime(value.trim());
+        default:
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    void add(Object value) throws IOException {
+        if (value == null) {
+            level(0);
+        } else {
+            level(1);
+            switch (this.type) {
+            case BOOLEAN:
+                if ((Boolean)value) this.bits |= 1 << this.bitCount;
+                if (++this.bitCount == 8) flushBits();
+                break;
+            case INT:
+            case DATE:
+                this.values.writeIntLE((Integer)value);
+                break;
+            case DATETIME:
+                this.values.writeLongLE((Long)value);
+                break;
+            default:
+                final byte[] bytes = (byte[])value;
+                this.values.writeIntLE(bytes.length);
+                this.values.write(bytes, 0, bytes.length);
+                break;
+            }
+        }
+        this.pageValues++;
+        if (this.values.size() + this.levels.size() >= PAGE_SIZE) finishPage();
+    }
+
+    /**
+     * @return bytes held for the row group being written
+     */
+    long getBufferedSize() {
+        return this.chunk.size() + this.values.size() + this.levels.size();
+    }
+
+    /**
+     * Writes the pages of the row group being written and starts the next one.
+     *
+     * @param offset
+     *            position of the output in the file
+     */
+    Chunk writeChunk(OutputStream out, long offset) throws IOException {
+        finishPage();
+        this.chunk.writeTo(out);
+        final Chunk written = new Chunk(offset, this.chunkValues, this.chunkUncompressedSize, this.chunk.size());
+        this.chunk.reset();
+        this.chunkValues = 0;
+        this.chunkUncompressedSize = 0;
+        return written;
+    }
+
+    private void level(int level) {
+        if (level == this.runLevel) {
+            this.runLength++;
+        } else {
+            flushRun();
+            this.runLevel = level;
+            this.runLength = 1;
+        }
+    }
+
+    private void flushRun() {
+        if (this.runLength == 0) return;
+        // an RLE run of the hybrid encoding, with a bit width of 1 the level takes a byte
+        this.levels.writeVarLong((long)this.runLength << 1);
+        this.levels.write(this.runLevel);
+        this.runLength = 0;
+        this.runLevel = -1;
+    }
+
+    private void flushBits() {
+        this.values.write(this.bits);
+        this.bits = 0;
+        this.bitCount = 0;
+    }
+
+    private void finishPage() throws IOException {
+        if (this.pageValues == 0) return;
+        flushRun();
+        if (this.bitCount > 0) flushBits();
+        this.page.reset();
+        this.page.writeIntLE(this.levels.size());
+        this.page.write(this.levels);
+        this.page.write(this.values);
+        this.compressed.reset();
+        this.codec.compress(this.page, this.compressed);
+
+        final int headerStart = this.chunk.size();
+        this.chunkThrift.beginStruct()
+                .fieldI32(1, PAGE_DATA)
+                .fieldI32(2, this.page.size())
+                .fieldI32(3, this.compressed.size())
+                .beginStruct(5)
+                .fieldI32(1, this.pageValues)
+                .fieldI32(2, ENCODING_PLAIN)
+                .fieldI32(3, ENCODING_RLE)
+                .fieldI32(4, ENCODING_RLE)
+                .endStruct()
+                .endStruct();
+        this.chunkUncompressedSize += this.chunk.size() - headerStart + this.page.size();
+        this.chunk.write(this.compressed);
+        this.chunkValues += this.pageValues;
+
+        this.levels.reset();
+        this.values.reset();
+        this.pageValues = 0;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.parquet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.dao.DataReader;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.model.Row;
+
+/**
+ * Reads Parquet files with a flat schema, such as those written by {@link ParquetFileWriter}. Values are read as the
+ * strings a CSV file would hold, see {@link ParquetColumnReader}. The rows are counted from the file metadata, and the
+ * column chunks of one row group at a time are held in memory.
+ *
+ * @since 35.0
+ */
+public class ParquetFileReader implements DataReader {
+
+    private static final Logger logger = Logger.getLogger(ParquetFileReader.class);
+
+    private final File file;
+    private RandomAccessFile input;
+    private List<ParquetColumnReader.Column> columns = Collections.emptyList();
+    private List<String> columnNames = Collections.emptyList();
+    private List<Object> rowGroups = Collections.emptyList();
+    private long totalRows;
+    private int nextRowGroup;
+    private long rowGroupRemaining;
+    private ParquetColumnReader[] readers;
+    private int currentRowNumber;
+
+    public ParquetFileReader(Config config) {
+        this(new File(config.getString(Config.DAO_NAME)));
+    }
+
+    public ParquetFileReader(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void checkConnection() throws DataAccessObjectInitializationException {
+        open();
+        close();
+    }
+
+    /**
+     * Reads the file metadata and goes to the first row.
+     */
+    @Override
+    public void open() throws DataAccessObjectInitializationException {
+        close();
+        try {
+            this.input = new RandomAccessFile(this.file, "r");
+            readFooter();
+        } catch (IOException e) {
+            final String errMsg = Messages.getFormattedString("ParquetDAO.errorOpen", new String[] {
+                    this.file.getAbsolutePath(), e.getMessage() });
+            logger.error(errMsg, e);
+            close();
+            throw new DataAccessObjectInitializationException(errMsg, e);
+        }
+        this.nextRowGroup = 0;
+        this.rowGroupRemaining = 0;
+        this.readers = null;
+        this.currentRowNumber = 0;
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(this.input);
+        this.input = null;
+        this.readers = null;
+    }
+
+    @Override
+    public Row readRow() throws DataAccessObjectException {
+        if (this.input == null) open();
+        try {
+            while (this.rowGroupRemaining == 0) {
+                if (this.nextRowGroup >= this.rowGroups.size()) return null;
+                readRowGroup((ThriftReader.Struct)this.rowGroups.get(this.nextRowGroup++));
+            }
+            final Row row = new Row(this.readers.length);
+            for (int i = 0; i < this.readers.length; i++) {
+                final String value = this.readers[i].next();
+                row.put(this.columnNames.get(i), value == null ? "" : value);
+            }
+            this.rowGroupRemaining--;
+            this.currentRowNumber++;
+            return row;
+        } catch (IOException e) {
+            final String errMsg = Messages.getFormattedString("ParquetDAO.errorRead", new String[] {
+                    String.valueOf(this.currentRowNumber + 1), this.file.getAbsolutePath(), e.getMessage() });
+            logger.error(errMsg, e);
+            throw new DataAccessObjectException(errMsg, e);
+        }
+    }
+
+    @Override
+    public List<Row> readRowList(int maxRows) throws DataAccessObjectException {
+        final List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < maxRows; i++) {
+            final Row row = readRow();
+            if (row == null) break;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the number of rows in the file metadata
+     */
+    @Override
+    public int getTotalRows() {
+        return (int)Math.min(Integer.MAX_VALUE, this.totalRows);
+    }
+
+    @Override
+    public int getCurrentRowNumber() {
+        return this.currentRowNumber;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return this.columnNames;
+    }
+
+    /**
+     * Reads the FileMetaData struct at the end of the file.
+     */
+    private void readFooter() throws IOException {
+        final long length = this.input.length();
+        final int magicLength = ParquetFileWriter.MAGIC.length;
+        if (length < 2 * magicLength + 4) throw new IOException("Not a Parquet file");
+        final byte[] trailer = new byte[4 + magicLength];
+        this.input.seek(length - trailer.length);
+        this.input.readFully(trailer);
+        final int footerLength = ParquetColumnReader.readIntLE(trailer, 0);
+        if (!Arrays.equals(ParquetFileWriter.MAGIC, Arrays.copyOfRange(trailer, 4, trailer.length))
+                || footerLength <= 0 || footerLength > length - trailer.length - magicLength) {
+            throw new IOException("Not a Parquet file");
+        }
+        final byte[] footer = new byte[footerLength];
+        this.input.seek(length - trailer.length - footerLength);
+        this.input.readFully(footer);
+        final ThriftReader.Struct metadata = new ThriftReader(footer, 0, footerLength).readStruct();
+
+        final List<Object> schema = metadata.getList(2);
+        final List<ParquetColumnReader.Column> fileColumns = new ArrayList<ParquetColumnReader.Column>();
+        final List<String> names = new ArrayList<String>();
+        // the root comes first
+        for (int i = 1; i < schema.size(); i++) {
+            final ParquetColumnReader.Column column = new ParquetColumnReader.Column((ThriftReader.Struct)schema.get(i));
+            fileColumns.add(column);
+            names.add(column.name);
+        }
+        this.columns = fileColumns;
+        this.columnNames = names;
+        this.totalRows = metadata.getLong(3);
+        this.rowGroups = metadata.getList(4);
+    }
+
+    /**
+     * Reads the column chunks of a row group.
+     */
+    private void readRowGroup(ThriftReader.Struct rowGroup) throws IOException {
+        final List<Object> chunks = rowGroup.getList(1);
+        if (chunks.size() != this.columns.size()) throw new IOException("Row group columns differ from the schema");
+        this.readers = new ParquetColumnReader[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            final ThriftReader.Struct chunk = (ThriftReader.Struct)chunks.get(i);
+            if (chunk.has(1)) throw new IOException("Column chunks in other files are not supported");
+            final ThriftReader.Struct metadata = chunk.getStruct(3);
+            long start = metadata.getLong(9);
+            if (metadata.has(11) && metadata.getLong(11) > 0 && metadata.getLong(11) < start) {
+                start = metadata.getLong(11);
+            }
+            final long size = metadata.getLong(7);
+            if (size < 0 || size > Integer.MAX_VALUE || start < 0 || start + size > this.input.length()) {
+                throw new IOException("Invalid column chunk");
+            }
+            final byte[] data = new byte[(int)size];
+            this.input.seek(start);
+            this.input.readFully(data);
+            this.readers[i] = new ParquetColumnReader(this.columns.get(i), ParquetCodec.forId(metadata.getInt(4)),
+                    data, 0, data.length);
+        }
+        this.rowGroupRemaining = rowGroup.getLong(3);
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.parquet;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.config.Messages;
+import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
+import com.salesforce.dataloader.exception.ParameterLoadException;
+import com.salesforce.dataloader.model.Row;
+import com.sforce.soap.partner.Field;
+
+/**
+ * Writes Parquet files that can be read locally by any Parquet reader. Column types come from the Salesforce fields
+ * set with {@link #setColumnFields(Map)}, so numbers, dates and booleans keep their types; other columns are
+ * strings. Rows are buffered one row group at a time, and a row group is written once its compressed pages reach
+ * {@link Config#PARQUET_ROW_GROUP_SIZE} bytes. Pages are compressed with {@link Config#PARQUET_COMPRESSION}.
+ *
+ * @since 35.0
+ */
+public class ParquetFileWriter implements DataWriter {
+
+    private static final Logger logger = Logger.getLogger(ParquetFileWriter.class);
+
+    static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    private static final int REPETITION_OPTIONAL = 1;
+    private static final String CREATED_BY = "Salesforce Data Loader";
+
+    private static final class RowGroup {
+        final List<ParquetColumnWriter.Chunk> chunks;
+        final long rows;
+
+        RowGroup(List<ParquetColumnWriter.Chunk> chunks, long rows) {
+            this.chunks = chunks;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Thrown by {@link ParquetFileWriter#close()} when the last row group or the file metadata could not be written.
+     */
+    public static class ParquetWriteException extends RuntimeException {
+        public ParquetWriteException(String msg, Throwable e) {
+            super(msg, e);
+        }
+    }
+
+    private final String fileName;
+    private final long rowGroupSize;
+    private final String compression;
+    private final Map<String, Field> columnFields = new TreeMap<String, Field>(String.CASE_INSENSITIVE_ORDER);
+    private List<String> columnNames = Collections.emptyList();
+    private ParquetColumnWriter[] columns = new ParquetColumnWriter[0];
+    private Object[] parsedValues = new Object[0];
+    private ParquetCodec codec;
+    private OutputStream out;
+    private long position;
+    private final List<RowGroup> rowGroups = new ArrayList<RowGroup>();
+    private int rowGroupRows;
+    private int currentRowNumber;
+
+    public ParquetFileWriter(String fileName, Config config) {
+        this.fileName = fileName;
+        long size;
+        try {
+            size = config.getLong(Config.PARQUET_ROW_GROUP_SIZE);
+        } catch (ParameterLoadException e) {
+            size = Config.DEFAULT_PARQUET_ROW_GROUP_SIZE;
+        }
+        this.rowGroupSize = size > 0 ? size : Config.DEFAULT_PARQUET_ROW_GROUP_SIZE;
+        final String codecName = config.getString(Config.PARQUET_COMPRESSION);
+        this.compression = codecName == null || codecName.length() == 0 ? ParquetCodec.GZIP.name() : codecName;
+    }
+
+    /**
+     * Sets the Salesforce fields of the columns, whose types decide those of the columns. Columns without one are
+     * written as strings.
+     */
+    public void setColumnFields(Map<String, Field> fields) {
+        this.columnFields.clear();
+        this.columnFields.putAll(fields);
+    }
+
+    @Override
+    public void checkConnection() throws DataAccessObjectInitializationException {
+        open();
+        close();
+    }
+
+    @Override
+    public void open() throws DataAccessObjectInitializationException {
+        close();
+        try {
+            this.codec = ParquetCodec.forWriting(this.compression);
+        } catch (IllegalArgumentException e) {
+            String errMsg = Messages.getFormattedString("ParquetDAO.errorCompression", this.compression);
+            logger.error(errMsg, e);
+            throw new DataAccessObjectInitializationException(errMsg, e);
+        }
+        try {
+            this.out = new BufferedOutputStream(new FileOutputStream(this.fileName), 256 * 1024);
+            this.out.write(MAGIC);
+        } catch (IOException e) {
+            String errMsg = Messages.getFormattedString("ParquetDAO.errorOpening", this.fileName);
+            logger.error(errMsg, e);
+            IOUtils.closeQuietly(this.out);
+            this.out = null;
+            throw new DataAccessObjectInitializationException(errMsg, e);
+        }
+        this.position = MAGIC.length;
+        this.rowGroups.clear();
+        this.rowGroupRows = 0;
+        this.currentRowNumber = 0;
+        createColumns();
+    }
+
+    /**
+     * Writes the rows still buffered and the file metadata.
+     *
+     * @throws ParquetWriteException
+     *             if they could not be written, which leaves a file no reader can open
+     */
+    @Override
+    public void close() {
+        if (this.out == null) return;
+        IOException error = null;
+        try {
+            writeRowGroup();
+            writeFooter();
+        } catch (IOException e) {
+            error = e;
+        }
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            } else {
+                error.addSuppressed(e);
+            }
+        }
+        this.out = null;
+        if (error == null) return;
+        String errMsg = Messages.getFormattedString("ParquetDAO.errorClosing", new String[] { this.fileName,
+                String.valueOf(error.getMessage()) });
+        logger.error(errMsg, error);
+        throw new ParquetWriteException(errMsg, error);
+    }
+
+    @Override
+    public void setColumnNames(List<String> columnNames) throws DataAccessObjectInitializationException {
+        if (columnNames == null || columnNames.isEmpty()) {
+            String errMsg = Messages.getString("ParquetDAO.errorNoColumns");
+            logger.error(errMsg);
+            throw new DataAccessObjectInitializationException(errMsg);
+        }
+        this.columnNames = new ArrayList<String>(columnNames);
+        createColumns();
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return this.columnNames;
+    }
+
+    @Override
+    public boolean writeRow(Row row) throws DataAccessObjectException {
+        // parse the whole row first, so that a bad value leaves no column a value ahead
+        for (int i = 0; i < this.columns.length; i++) {
+            final Object value = row.get(this.columns[i].name);
+            final String s = value == null ? null : value.toString();
+            try {
+                this.parsedValues[i] = this.columns[i].parse(s);
+            } catch (RuntimeException e) {
+                String errMsg = Messages.getFormattedString("ParquetDAO.errorValue", new String[] {
+                        String.valueOf(this.currentRowNumber + 1), this.columns[i].name, s,
+                        this.columns[i].type.name().toLowerCase() });
+                logger.error(errMsg, e);
+                throw new DataAccessObjectException(errMsg, e);
+            }
+        }
+        try {
+            for (int i = 0; i < this.columns.length; i++) {
+                this.columns[i].add(this.parsedValues[i]);
+            }
+            this.rowGroupRows++;
+            this.currentRowNumber++;
+            if (getBufferedSize() >= this.rowGroupSize) {
+                writeRowGroup();
+            }
+        } catch (IOException e) {
+            logger.error(Messages.getString("ParquetDAO.errorWriting"), e);
+            throw new DataAccessObjectException(Messages.getString("ParquetDAO.errorWriting"), e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean writeRowList(List<Row> rows) throws DataAccessObjectException {
+        for (Row row : rows) {
+            writeRow(row);
+        }
+        return true;
+    }
+
+    @Override
+    public int getCurrentRowNumber() {
+        return this.currentRowNumber;
+    }
+
+    private void createColumns() {
+        if (this.rowGroupRows > 0 || !this.rowGroups.isEmpty()) {
+            throw new IllegalStateException("Columns can't be changed after rows have been written");
+        }
+        final ParquetCodec columnCodec = this.codec != null ? this.codec : ParquetCodec.UNCOMPRESSED;
+        this.columns = new ParquetColumnWriter[this.columnNames.size()];
+        for (int i = 0; i < this.columns.length; i++) {
+            final String name = this.columnNames.get(i);
+            final Field field = this.columnFields.get(name);
+            final ParquetType type = ParquetType.forField(field);
+            this.columns[i] = type == ParquetType.DECIMAL ? new ParquetColumnWriter(name, type,
+                    field.getPrecision(), field.getScale(), columnCodec) : new ParquetColumnWriter(name, type, 0, 0,
+                    columnCodec);
+        }
+        this.parsedValues = new Object[this.columns.length];
+    }
+
+    private long getBufferedSize() {
+        long size = 0;
+        for (ParquetColumnWriter column : this.columns) {
+            size += column.getBufferedSize();
+        }
+        return size;
+    }
+
+    private void writeRowGroup() throws IOException {
+        if (this.rowGroupRows == 0) return;
+        final List<ParquetColumnWriter.Chunk> chunks = new ArrayList<ParquetColumnWriter.Chunk>(this.columns.length);
+        for (ParquetColumnWriter column : this.columns) {
+            final ParquetColumnWriter.Chunk chunk = column.writeChunk(this.out, this.position);
+            this.position += chunk.compressedSize;
+            chunks.add(chunk);
+        }
+        this.rowGroups.add(new RowGroup(chunks, this.rowGroupRows));
+        logger.debug("Wrote a row group of " + this.rowGroupRows + " rows to " + this.fileName);
+        this.rowGroupRows = 0;
+    }
+
+    /**
+     * Writes the FileMetaData struct, its length and the closing magic number.
+     */
+    private void writeFooter() throws IOException {
+        long totalRows = 0;
+        for (RowGroup rowGroup : this.rowGroups) {
+            totalRows += rowGroup.rows;
+        }
+        final Bytes footer = new Bytes(4096);
+        final ThriftWriter thrift = new ThriftWriter(footer);
+        thrift.beginStruct().fieldI32(1, 1);
+        // schema: the root, then a field for each column
+        thrift.beginList(2, ThriftWriter.TYPE_STRUCT, this.columns.length + 1);
+        thrift.beginStruct().fieldString(4, "schema").fieldI32(5, this.columns.length).endStruct();
+        for (ParquetColumnWriter column : this.columns) {
+            thrift.beginStruct()
+                    .fieldI32(1, column.type.physicalType)
+                    .fieldI32(3, REPETITION_OPTIONAL)
+                    .fieldString(4, column.name);
+            if (column.type.convertedType >= 0) thrift.fieldI32(6, column.type.convertedType);
+            if (column.type == ParquetType.DECIMAL) thrift.fieldI32(7, column.scale).fieldI32(8, column.precision);
+            thrift.endStruct();
+        }
+        thrift.fieldI64(3, totalRows);
+        thrift.beginList(4, ThriftWriter.TYPE_STRUCT, this.rowGroups.size());
+        for (RowGroup rowGroup : this.rowGroups) {
+            long totalSize = 0;
+            thrift.beginStruct().beginList(1, ThriftWriter.TYPE_STRUCT, rowGroup.chunks.size());
+            for (int i = 0; i < this.columns.length; i++) {
+                final ParquetColumnWriter.Chunk chunk = rowGroup.chunks.get(i);
+                totalSize += chunk.uncompressedSize;
+                thrift.beginStruct().fieldI64(2, chunk.offset).beginStruct(3)
+                        .fieldI32(1, this.columns[i].type.physicalType)
+                        .beginList(2, ThriftWriter.TYPE_I32, 2)
+                        .listI32(ParquetColumnWriter.ENCODING_PLAIN)
+                        .listI32(ParquetColumnWriter.ENCODING_RLE)
+                        .beginList(3, ThriftWriter.TYPE_BINARY, 1)
+                        .listString(this.columns[i].name)
+                        .fieldI32(4, this.codec.id)
+                        .fieldI64(5, chunk.values)
+                        .fieldI64(6, chunk.uncompressedSize)
+                        .fieldI64(7, chunk.compressedSize)
+                        .fieldI64(9, chunk.offset)
+                        .endStruct()
+                        .endStruct();
+            }
+            thrift.fieldI64(2, totalSize).fieldI64(3, rowGroup.rows).endStruct();
+        }
+        thrift.fieldString(6, CREATED_BY).endStruct();
+
+        footer.writeTo(this.out);
+        final Bytes trailer = new Bytes(8);
+        trailer.writeIntLE(footer.size());
+        trailer.write(MAGIC, 0, MAGIC.length);
+        trailer.writeTo(this.out);
+    }
+}
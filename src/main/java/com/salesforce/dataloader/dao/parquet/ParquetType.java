@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.parquet;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import com.sforce.soap.partner.Field;
+import com.sforce.soap.partner.FieldType;
+
+/**
+ * Types of the columns written to Parquet files, chosen from the Salesforce field types so that numbers, dates and
+ * booleans keep their types. Decimal numbers are stored exactly, with the precision and scale of the field. Everything
+ * else is written as a UTF-8 string. Values are parsed from the strings the query visitors put in the rows.
+ *
+ * @since 35.0
+ */
+enum ParquetType {
+
+    STRING(ParquetType.BYTE_ARRAY, ParquetType.UTF8),
+    BOOLEAN(ParquetType.PHYSICAL_BOOLEAN, -1),
+    INT(ParquetType.INT32, -1),
+    DECIMAL(ParquetType.BYTE_ARRAY, ParquetType.CONVERTED_DECIMAL),
+    DATE(ParquetType.INT32, ParquetType.CONVERTED_DATE),
+    DATETIME(ParquetType.INT64, ParquetType.TIMESTAMP_MILLIS);
+
+    // physical types
+    static final int PHYSICAL_BOOLEAN = 0;
+    static final int INT32 = 1;
+    static final int INT64 = 2;
+    static final int INT96 = 3;
+    static final int FLOAT = 4;
+    static final int PHYSICAL_DOUBLE = 5;
+    static final int BYTE_ARRAY = 6;
+    static final int FIXED_LEN_BYTE_ARRAY = 7;
+
+    // converted types
+    static final int UTF8 = 0;
+    static final int CONVERTED_DECIMAL = 5;
+    static final int CONVERTED_DATE = 6;
+    static final int TIME_MILLIS = 7;
+    static final int TIME_MICROS = 8;
+    static final int TIMESTAMP_MILLIS = 9;
+    static final int TIMESTAMP_MICROS = 10;
+
+    private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern(
+            "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    // offsets without a colon, as in 2015-01-01T00:00:00.000+0000
+    private static final DateTimeFormatter OFFSET_DATETIME_FORMAT = DateTimeFormatter
+            .ofPattern("uuuu-MM-dd'T'HH:mm:ss[.SSS]xx");
+
+    final int physicalType;
+    // -1 if none
+    final int convertedType;
+
+    private ParquetType(int physicalType, int convertedType) {
+        this.physicalType = physicalType;
+        this.convertedType = convertedType;
+    }
+
+    static ParquetType forField(Field field) {
+        final FieldType fieldType = field == null ? null : field.getType();
+        if (fieldType == null) return STRING;
+        switch (fieldType) {
+        case _boolean:
+            return BOOLEAN;
+        case _int:
+            return INT;
+        case _double:
+        case currency:
+        case percent:
+            // a double would round the values, so they stay strings when the precision isn't known
+            return field.getPrecision() > 0 ? DECIMAL : STRING;
+        case date:
+            return DATE;
+        case datetime:
+            return DATETIME;
+        default:
+            return STRING;
+        }
+    }
+
+    static boolean parseBoolean(String value) {
+        if ("true".equalsIgnoreCase(value) || "1".equals(value)) return true;
+        if ("false".equalsIgnoreCase(value) || "0".equals(value)) return false;
+        throw new IllegalArgumentException(value);
+    }
+
+    static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            // whole numbers are sometimes returned with decimals
+            return new BigDecimal(value).intValueExact();
+        }
+    }
+
+    /**
+     * @return the unscaled value of a decimal number as a big-endian two's complement integer
+     * @throws ArithmeticException
+     *             if the number has more decimal places than the scale
+     * @throws IllegalArgumentException
+     *             if the number has more digits than the precision
+     */
+    static byte[] parseDecimal(String value, int precision, int scale) {
+        final BigDecimal decimal = new BigDecimal(value).setScale(scale);
+        if (decimal.precision() > precision) throw new IllegalArgumentException(value);
+        return decimal.unscaledValue().toByteArray();
+    }
+
+    /**
+     * @return days since 1970-01-01 of a date in the yyyy-MM-dd form, possibly followed by a time
+     */
+    static int parseDate(String value) {
+        return (int)LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value).toEpochDay();
+    }
+
+    /**
+     * @return milliseconds since 1970-01-01T00:00:00Z of an ISO 8601 date and time with an offset
+     */
+    static long parseDatetime(String value) {
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return OffsetDateTime.parse(value, OFFSET_DATETIME_FORMAT).toInstant().toEpochMilli();
+        }
+    }
+
+    /**
+     * @return the date and time in the form query results use
+     */
+    static String formatDatetime(long millis) {
+        return DATETIME_FORMAT.format(Instant.ofEpochMilli(millis));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.parquet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads Thrift compact protocol structs, such as Parquet page headers and file metadata, without knowing their
+ * definitions: fields are kept by id and the caller picks the ones it knows. Integers come back as longs, binaries as
+ * byte arrays, lists and sets as lists, and maps as lists of alternating keys and values.
+ *
+ * @since 35.0
+ */
+final class ThriftReader {
+
+    /**
+     * Fields of a struct by id
+     */
+    static final class Struct {
+        private final Map<Integer, Object> fields = new HashMap<Integer, Object>();
+
+        boolean has(int id) {
+            return this.fields.containsKey(id);
+        }
+
+        long getLong(int id) throws IOException {
+            return (Long)get(id);
+        }
+
+        int getInt(int id) throws IOException {
+            return (int)getLong(id);
+        }
+
+        int getInt(int id, int defaultValue) throws IOException {
+            return has(id) ? getInt(id) : defaultValue;
+        }
+
+        boolean getBoolean(int id, boolean defaultValue) throws IOException {
+            return has(id) ? (Boolean)get(id) : defaultValue;
+        }
+
+        String getString(int id) throws IOException {
+            return new String((byte[])get(id), StandardCharsets.UTF_8);
+        }
+
+        Struct getStruct(int id) throws IOException {
+            return (Struct)get(id);
+        }
+
+        /**
+         * @return the struct field, or null if it is not set
+         */
+        Struct findStruct(int id) {
+            return (Struct)this.fields.get(id);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object> getList(int id) throws IOException {
+            return (List<Object>)get(id);
+        }
+
+        private Object get(int id) throws IOException {
+            final Object value = this.fields.get(id);
+            if (value == null) throw new IOException("Missing required field " + id);
+            return value;
+        }
+    }
+
+    private final byte[] bytes;
+    private int position;
+    private final int limit;
+
+    ThriftReader(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    int getPosition() {
+        return this.position;
+    }
+
+    Struct readStruct() throws IOException {
+        final Struct struct = new Struct();
+        int fieldId = 0;
+        while (true) {
+            final int header = readByte();
+            final int type = header & 0x0f;
+            if (type == 0) return struct;
+            final int delta = header >>> 4;
+            fieldId = delta != 0 ? fieldId + delta : (int)unzigzag(readVarLong());
+            if (type == 1 || type == 2) {
+                struct.fields.put(fieldId, type == 1);
+            } else {
+                struct.fields.put(fieldId, readValue(type));
+            }
+        }
+    }
+
+    private Object readValue(int type) throws IOException {
+        switch (type) {
+        case 1:
+        case 2:
+            // booleans in lists take a byte
+            return readByte() == 1;
+        case 3:
+            return (long)(byte)readByte();
+        case 4:
+        case 5:
+        case 6:
+            return unzigzag(readVarLong());
+        case 7:
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits |= (long)readByte() << (8 * i);
+            }
+            return Double.longBitsToDouble(bits);
+        case 8:
+            final int length = (int)readVarLong();
+            if (length < 0 || length > this.limit - this.position) throw new IOException("Invalid binary length");
+            final byte[] value = new byte[length];
+            System.arraycopy(this.bytes, this.position, value, 0, length);
+            this.position += length;
+            return value;
+        case 9:
+        case 10:
+            final int listHeader = readByte();
+            final int elementType = listHeader & 0x0f;
+            final int size = (listHeader >>> 4) == 15 ? (int)readVarLong() : listHeader >>> 4;
+            final List<Object> list = new ArrayList<Object>(Math.min(size, 1024));
+            for (int i = 0; i < size; i++) {
+                list.add(readValue(elementType));
+            }
+            return list;
+        case 11:
+            final int entries = (int)readVarLong();
+            final List<Object> map = new ArrayList<Object>();
+            if (entries > 0) {
+                final int types = readByte();
+                for (int i = 0; i < entries; i++) {
+                    map.add(readValue(types >>> 4));
+                    map.add(readValue(types & 0x0f));
+                }
+            }
+            return map;
+        case 12:
+            return readStruct();
+        default:
+            throw new IOException("Invalid Thrift type " + type);
+        }
+    }
+
+    private int readByte() throws IOException {
+        if (this.position >= this.limit) throw new IOException("Unexpected end of Thrift data");
+        return this.bytes[this.position++] & 0xff;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = readByte();
+            value |= (long)(b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Invalid variable-length integer");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.parquet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writes the Thrift compact protocol, in which the Parquet page headers and file metadata are encoded. Only the parts
+ * Parquet needs are there: integer, binary, list and struct fields.
+ *
+ * @since 35.0
+ */
+final class ThriftWriter {
+
+    static final int TYPE_I32 = 5;
+    static final int TYPE_I64 = 6;
+    static final int TYPE_BINARY = 8;
+    static final int TYPE_LIST = 9;
+    static final int TYPE_STRUCT = 12;
+    private static final int TYPE_BOOLEAN_TRUE = 1;
+    private static final int TYPE_BOOLEAN_FALSE = 2;
+
+    private final Bytes out;
+    private final Deque<Integer> lastFieldIds = new ArrayDeque<Integer>();
+    private int lastFieldId;
+
+    ThriftWriter(Bytes out) {
+        this.out = out;
+    }
+
+    ThriftWriter fieldI32(int id, int value) {
+        fieldHeader(id, TYPE_I32);
+        this.out.writeVarLong(zigzag(value));
+        return this;
+    }
+
+    ThriftWriter fieldI64(int id, long value) {
+        fieldHeader(id, TYPE_I64);
+        this.out.writeVarLong(zigzag(value));
+        return this;
+    }
+
+    ThriftWriter fieldBoolean(int id, boolean value) {
+        fieldHeader(id, value ? TYPE_BOOLEAN_TRUE : TYPE_BOOLEAN_FALSE);
+        return this;
+    }
+
+    ThriftWriter fieldString(int id, String value) {
+        fieldHeader(id, TYPE_BINARY);
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * Starts a struct field, ended by {@link #endStruct()}.
+     */
+    ThriftWriter beginStruct(int id) {
+        fieldHeader(id, TYPE_STRUCT);
+        return beginStruct();
+    }
+
+    /**
+     * Starts a struct in a list of structs, or the outermost struct.
+     */
+    ThriftWriter beginStruct() {
+        this.lastFieldIds.push(this.lastFieldId);
+        this.lastFieldId = 0;
+        return this;
+    }
+
+    ThriftWriter endStruct() {
+        this.out.write(0);
+        this.lastFieldId = this.lastFieldIds.pop();
+        return this;
+    }
+
+    /**
+     * Starts a list field, followed by its elements.
+     */
+    ThriftWriter beginList(int id, int elementType, int size) {
+        fieldHeader(id, TYPE_LIST);
+        if (size < 15) {
+            this.out.write(size << 4 | elementType);
+        } else {
+            this.out.write(0xf0 | elementType);
+            this.out.writeVarLong(size);
+        }
+        return this;
+    }
+
+    ThriftWriter listI32(int value) {
+        this.out.writeVarLong(zigzag(value));
+        return this;
+    }
+
+    ThriftWriter listString(String value) {
+        writeString(value);
+        return this;
+    }
+
+    private void writeString(String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.out.writeVarLong(bytes.length);
+        this.out.write(bytes, 0, bytes.length);
+    }
+
+    private void fieldHeader(int id, int type) {
+        final int delta = id - this.lastFieldId;
+        if (delta > 0 && delta <= 15) {
+            this.out.write(delta << 4 | type);
+        } else {
+            this.out.write(type);
+            this.out.writeVarLong(zigzag(id));
+        }
+        this.lastFieldId = id;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
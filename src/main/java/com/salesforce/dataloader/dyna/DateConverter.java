@@ -27,7 +27,17 @@
 package com.salesforce.dataloader.dyna;
 
 import java.text.*;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.time.zone.ZoneRules;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.salesforce.dataloader.model.NACalendarValue;
 import com.salesforce.dataloader.model.NATextValue;
@@ -41,6 +51,44 @@ public final class DateConverter implements Converter {
     private static final List<String> supportedEuropeanPatterns = getSupportedPatterns(true);
     private static final List<String> supportedRegularPatterns = getSupportedPatterns(false);
 
+    /*
+     * The full parse chain, flattened once per date style so that convert() doesn't rebuild the pattern variants for
+     * every value. Order is the same as the original nested loops, so the first match still wins.
+     */
+    private static final List<ParseAttempt> europeanLocalAttempts = getParseAttempts(true, false);
+    private static final List<ParseAttempt> europeanGmtAttempts = getParseAttempts(true, true);
+    private static final List<ParseAttempt> regularLocalAttempts = getParseAttempts(false, false);
+    private static final List<ParseAttempt> regularGmtAttempts = getParseAttempts(false, true);
+
+    /*
+     * Precompiled, thread-safe parsers for the ISO 8601 forms that make up the bulk of real data (exports from
+     * Salesforce and most databases). Anything they reject goes through the full fallback chain.
+     */
+    private static final DateTimeFormatter ISO_T_FORMAT = isoFormatter("uuuu-MM-dd'T'HH:mm:ss[.SSS]");
+    private static final DateTimeFormatter ISO_SPACE_FORMAT = isoFormatter("uuuu-MM-dd HH:mm:ss[.SSS]");
+    private static final DateTimeFormatter ISO_OFFSET_FORMAT = isoFormatter("uuuu-MM-dd'T'HH:mm:ss[.SSS]xx");
+    private static final DateTimeFormatter ISO_DATE_FORMAT = isoFormatter("uuuu-MM-dd");
+
+    /*
+     * java.time is proleptic Gregorian while GregorianCalendar switches to Julian at the 1582 cutover, so anything up
+     * to and including the cutover day (which straddles it in zones east of GMT) is left to the Calendar based chain.
+     */
+    private static final LocalDate FIRST_GREGORIAN_DATE = LocalDate.of(1582, 10, 16);
+
+    /** upper bound on remembered value shapes, so that free-form input can't grow the memo without limit */
+    private static final int MAX_REMEMBERED_SHAPES = 256;
+
+    /*
+     * Formatters aren't thread safe and are expensive to build, so each thread keeps its own instance per pattern.
+     * The time zone is reset before every parse because parsing a zone name changes it.
+     */
+    private static final ThreadLocal<Map<String, DateFormat>> formatCache = new ThreadLocal<Map<String, DateFormat>>() {
+        @Override
+        protected Map<String, DateFormat> initialValue() {
+            return new HashMap<String, DateFormat>();
+        }
+    };
+
     static Logger logger = Logger.getLogger(DateConverter.class);
     /**
      * The default value specified to our Constructor, if any.
@@ -53,6 +101,13 @@ public final class DateConverter implements Converter {
     private final boolean useDefault;
     private final boolean useEuroDates;
     private final TimeZone timeZone;
+    private final ZoneRules zoneRules;
+
+    /**
+     * Last successful parse attempt for each value shape (the value with all digits replaced by '0'). A column
+     * normally sticks to a single format, so its values go straight to the pattern that matched before.
+     */
+    private final ConcurrentMap<String, ParseAttempt> lastAttemptByShape = new ConcurrentHashMap<String, ParseAttempt>();
 
 
 
@@ -74,6 +129,7 @@ public final class DateConverter implements Converter {
         this.defaultValue = defaultValue;
         this.useDefault = useDefault;
         this.useEuroDates = useEuroDateFormat;
+        this.zoneRules = getZoneRules(tz);
     }
 
     public DateConverter(TimeZone tz, Object defaultValue) {
@@ -81,7 +137,12 @@ public final class DateConverter implements Converter {
     }
 
     private Calendar parseDate(TimeZone tz, String dateString, String pattern) {
-        final DateFormat df = new SimpleDateFormat(pattern);
+        Map<String, DateFormat> formats = formatCache.get();
+        DateFormat df = formats.get(pattern);
+        if (df == null) {
+            df = new SimpleDateFormat(pattern);
+            formats.put(pattern, df);
+        }
         df.setTimeZone(tz);
         return parseDate(dateString, df);
     }
@@ -98,24 +159,66 @@ public final class DateConverter implements Converter {
         return null;
     }
 
+    private Calendar parseDate(String dateString, String gmtDateString, ParseAttempt attempt) {
+        if (attempt.isGmt) return parseDate(GMT_TZ, gmtDateString, attempt.pattern);
+        return parseDate(this.timeZone, dateString, attempt.pattern);
+    }
+
     /**
-     * Attempts to parse a date string using the given formatting patterns
+     * Parses the common ISO 8601 forms without going through the SimpleDateFormat chain. Only values that are valid
+     * under strict resolution are accepted here, so the result is the same as the first match in the chain would be.
      * 
-     * @param dateString
-     *            The date string to parse
-     * @param patterns
-     *            Patterns to try. These will be used in the constructor for SimpleDateFormat
-     * @return A Calendar object representing the given date string
+     * @return the parsed Calendar, or null if the value should go through the full chain
      */
-    private Calendar tryParse(TimeZone tz, String dateString, String... patterns) {
-        if (patterns == null) return null;
-        for (String pattern : patterns) {
-            Calendar cal = parseDate(tz, dateString, pattern);
-            if (cal != null) return cal;
+    private Calendar parseIsoDate(String dateString) {
+        final int len = dateString.length();
+        if (len < 10 || dateString.charAt(4) != '-' || dateString.charAt(7) != '-') return null;
+        if (len != 10 && (len < 19 || dateString.charAt(13) != ':' || dateString.charAt(16) != ':')) return null;
+        final char sep = len == 10 ? 0 : dateString.charAt(10);
+        final char last = dateString.charAt(len - 1);
+        try {
+            if (len == 10) {
+                return toCalendar(LocalDate.parse(dateString, ISO_DATE_FORMAT).atStartOfDay());
+            } else if (sep == 'T' && (last == 'Z' || last == 'z')) {
+                LocalDateTime ldt = LocalDateTime.parse(dateString.substring(0, len - 1), ISO_T_FORMAT);
+                if (ldt.toLocalDate().isBefore(FIRST_GREGORIAN_DATE)) return null;
+                return toCalendar(ldt.toInstant(ZoneOffset.UTC).toEpochMilli());
+            } else if (sep == 'T' && len > 19 && (dateString.charAt(len - 5) == '+' || dateString.charAt(len - 5) == '-')) {
+                OffsetDateTime odt = OffsetDateTime.parse(dateString, ISO_OFFSET_FORMAT);
+                if (odt.toLocalDate().isBefore(FIRST_GREGORIAN_DATE)) return null;
+                return toCalendar(odt.toInstant().toEpochMilli());
+            } else if (Character.isDigit(last)) {
+                return toCalendar(LocalDateTime.parse(dateString, sep == 'T' ? ISO_T_FORMAT : ISO_SPACE_FORMAT));
+            }
+        } catch (DateTimeException e) {
+            // not a strictly valid ISO value, fall through to the lenient chain
         }
         return null;
     }
 
+    private Calendar toCalendar(LocalDateTime ldt) {
+        // leave DST gaps and overlaps to the Calendar based chain, which resolves them its own way
+        if (this.zoneRules == null || this.zoneRules.getValidOffsets(ldt).size() != 1) return null;
+        if (ldt.toLocalDate().isBefore(FIRST_GREGORIAN_DATE)) return null;
+        final ZoneOffset offset = this.zoneRules.getOffset(ldt);
+        final long millis = ldt.toInstant(offset).toEpochMilli();
+        // TimeZone uses the standard offset where ZoneRules has local mean time (before ~1900 in most zones)
+        if (this.timeZone.getOffset(millis) != offset.getTotalSeconds() * 1000) return null;
+        return toCalendar(millis);
+    }
+
+    private Calendar toCalendar(long millis) {
+        Calendar cal = Calendar.getInstance(this.timeZone);
+        cal.setTimeInMillis(millis);
+        return cal;
+    }
+
+    private void rememberAttempt(String shape, ParseAttempt attempt) {
+        if (this.lastAttemptByShape.size() >= MAX_REMEMBERED_SHAPES) {
+            this.lastAttemptByShape.clear();
+        }
+        this.lastAttemptByShape.put(shape, attempt);
+    }
 
     @Override
     public Object convert(Class type, Object value) {
@@ -141,40 +244,35 @@ public final class DateConverter implements Converter {
 
         if (len == 0) return null;
 
+        cal = parseIsoDate(dateString);
+        if (cal != null) return cal;
+
         String gmtDateString = null;
         if ("z".equalsIgnoreCase(dateString.substring(len - 1)))
             gmtDateString = dateString.substring(0, len - 1);
 
-        for (String basePattern : useEuroDates ? supportedEuropeanPatterns : supportedRegularPatterns) {
-            if (gmtDateString != null)
-                cal = tryParse(GMT_TZ, gmtDateString, basePattern);
-            else
-                cal = tryParse(this.timeZone, dateString, basePattern, basePattern + "'Z'Z", basePattern + "'z'Z",
-                        basePattern + "z");
+        // try whatever worked last time for a value that looks like this one
+        final String shape = getShape(dateString);
+        final ParseAttempt lastAttempt = shape != null ? this.lastAttemptByShape.get(shape) : null;
+        if (lastAttempt != null) {
+            cal = parseDate(dateString, gmtDateString, lastAttempt);
             if (cal != null) return cal;
         }
 
-        // FIXME -- BUG: this format is picked up as a mistake instead of MM-dd-yyyy or dd-MM-yyyy
-        cal = parseDate(this.timeZone, dateString, "yyyy-MM-dd");
-        if (cal != null) return cal;
-
+        final List<ParseAttempt> attempts;
         if (useEuroDates) {
-            cal = tryParse(this.timeZone, dateString, "dd/MM/yyyy HH:mm:ss", "dd/MM/yyyy");
-
-            // FIXME -- Warning: this never gets picked up because of yyyy-MM-dd
-            /*
-             * Calendar cal = parseDate("dd-MM-yyyy", dateString); if (cal != null) return cal;
-             */
+            attempts = gmtDateString != null ? europeanGmtAttempts : europeanLocalAttempts;
         } else {
-            cal = tryParse(this.timeZone, dateString, "MM/dd/yyyy HH:mm:ss", "MM/dd/yyyy");
-
-            //FIXME -- Warning: this never gets picked up because of yyyy-MM-dd
-            /*
-             * Calendar cal = parseDate("MM-dd-yyyy", dateString); if (cal != null) return cal;
-             */
+            attempts = gmtDateString != null ? regularGmtAttempts : regularLocalAttempts;
+        }
+        for (ParseAttempt attempt : attempts) {
+            if (attempt == lastAttempt) continue;
+            cal = parseDate(dateString, gmtDateString, attempt);
+            if (cal != null) {
+                if (shape != null) rememberAttempt(shape, attempt);
+                return cal;
+            }
         }
-
-        if (cal != null) return cal;
 
         DateFormat df = DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT);
         df.setLenient(true);
@@ -195,6 +293,90 @@ public final class DateConverter implements Converter {
         }
     }
 
+    /**
+     * A value's shape is the value with every digit replaced by '0', e.g. 12/31/2015 becomes 00/00/0000. Values of the
+     * same shape match the same pattern, except when they end in something that can be read as a numeric time zone
+     * offset: whether that parses depends on the digits, so those values always go through the whole chain.
+     * 
+     * @return the shape of the value, or null if the value can't use the memo
+     */
+    private static String getShape(String dateString) {
+        final char[] shape = dateString.toCharArray();
+        boolean numericTail = false;
+        for (int i = 0; i < shape.length; i++) {
+            final char c = shape[i];
+            if (c >= '0' && c <= '9') {
+                shape[i] = '0';
+            } else if (c == '+' || c == '-') {
+                numericTail = true;
+            } else if (c != ':') {
+                numericTail = false;
+            }
+        }
+        return numericTail ? null : new String(shape);
+    }
+
+    private static ZoneRules getZoneRules(TimeZone tz) {
+        try {
+            return tz.toZoneId().getRules();
+        } catch (DateTimeException e) {
+            // custom time zone ids without java.time rules: always use the Calendar based chain
+            return null;
+        }
+    }
+
+    private static DateTimeFormatter isoFormatter(String pattern) {
+        return DateTimeFormatter.ofPattern(pattern).withResolverStyle(ResolverStyle.STRICT);
+    }
+
+    /* One step of the fallback chain: a SimpleDateFormat pattern and whether it applies to the value without its Z */
+    private static final class ParseAttempt {
+        final String pattern;
+        final boolean isGmt;
+
+        ParseAttempt(String pattern, boolean isGmt) {
+            this.pattern = pattern;
+            this.isGmt = isGmt;
+        }
+    }
+
+    /* Helper function to produce the ordered parse chain for values with or without a trailing Z */
+    private static List<ParseAttempt> getParseAttempts(boolean europeanDates, boolean gmtValue) {
+        List<ParseAttempt> attempts = new ArrayList<ParseAttempt>();
+        for (String basePattern : europeanDates ? supportedEuropeanPatterns : supportedRegularPatterns) {
+            if (gmtValue) {
+                attempts.add(new ParseAttempt(basePattern, true));
+            } else {
+                attempts.add(new ParseAttempt(basePattern, false));
+                attempts.add(new ParseAttempt(basePattern + "'Z'Z", false));
+                attempts.add(new ParseAttempt(basePattern + "'z'Z", false));
+                attempts.add(new ParseAttempt(basePattern + "z", false));
+            }
+        }
+
+        // FIXME -- BUG: this format is picked up as a mistake instead of MM-dd-yyyy or dd-MM-yyyy
+        attempts.add(new ParseAttempt("yyyy-MM-dd", false));
+
+        if (europeanDates) {
+            attempts.add(new ParseAttempt("dd/MM/yyyy HH:mm:ss", false));
+            attempts.add(new ParseAttempt("dd/MM/yyyy", false));
+
+            // FIXME -- Warning: this never gets picked up because of yyyy-MM-dd
+            /*
+             * Calendar cal = parseDate("dd-MM-yyyy", dateString); if (cal != null) return cal;
+             */
+        } else {
+            attempts.add(new ParseAttempt("MM/dd/yyyy HH:mm:ss", false));
+            attempts.add(new ParseAttempt("MM/dd/yyyy", false));
+
+            //FIXME -- Warning: this never gets picked up because of yyyy-MM-dd
+            /*
+             * Calendar cal = parseDate("MM-dd-yyyy", dateString); if (cal != null) return cal;
+             */
+        }
+        return Collections.unmodifiableList(attempts);
+    }
+
     /* Helper function to produce all the patterns that DL supports */
     private static List<String> getSupportedPatterns(boolean europeanDates) {
 
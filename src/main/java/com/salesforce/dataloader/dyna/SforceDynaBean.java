@@ -25,6 +25,7 @@
  */
 package com.salesforce.dataloader.dyna;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 
@@ -224,31 +225,10 @@ public class SforceDynaBean {
     }
 
     /**
-     * Set all the fields specified in the dynaBean to null on the sObj
-     * 
-     * @param sObj
-     * @param dynaBean
-     */
-    static public void insertNullArray(Controller controller, SObject sObj, DynaBean dynaBean) {
-        final List<String> fieldsToNull = new LinkedList<String>();
-        for (String sfdcField : controller.getMapper().getDestColumns()) {
-            handleNull(sfdcField, dynaBean, fieldsToNull, controller);
-        }
-        for (Map.Entry<String, String> constantEntry : controller.getMapper().getConstantsMap().entrySet()) {
-            handleNull(constantEntry.getKey(), dynaBean, fieldsToNull, controller);
-        }
-        if (fieldsToNull.size() > 0) sObj.setFieldsToNull(fieldsToNull.toArray(new String[fieldsToNull.size()]));
-    }
-
-    private static void handleNull(final String fieldName, final DynaBean dynaBean, final List<String> fieldsToNull,
-            final Controller controller) {
-        final Object o = dynaBean.get(fieldName);
-        if (o != null && o instanceof SObjectReference && ((SObjectReference)o).isNull())
-            fieldsToNull.add(SObjectReference.getRelationshipField(controller, fieldName));
-        else if (o == null || String.valueOf(o).length() == 0) fieldsToNull.add(fieldName);
-    }
-
-    /**
+     * Builds the SObjects for a batch straight from the converted values in the dynaBeans. Each bean is walked once,
+     * setting the fields that have a value and, if insertNulls is set, collecting the mapped fields that don't into
+     * fieldsToNull.
+     *
      * @param dynaBeans
      * @return SObject array with data from dynaBeans
      * @throws IllegalAccessException
@@ -257,19 +237,29 @@ public class SforceDynaBean {
      * @throws ParameterLoadException
      */
     static public SObject[] getSObjectArray(Controller controller, List<DynaBean> dynaBeans, String entityName, boolean insertNulls) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException, ParameterLoadException {
+        return getSObjectArray(controller, dynaBeans, entityName, insertNulls ? getNullableFields(controller) : null);
+    }
+
+    /**
+     * @param nullableFields
+     *            the fields sent as fieldsToNull when they have no value, null to send none
+     */
+    static SObject[] getSObjectArray(Controller controller, List<DynaBean> dynaBeans, String entityName,
+            Set<String> nullableFields) throws ParameterLoadException {
         SObject[] sObjects = new SObject[dynaBeans.size()];
+        final Map<String, String> relationshipFields = new HashMap<String, String>();
 
+        // all the beans of a load share one DynaClass, so its properties are only looked up when it changes
+        DynaClass dynaClass = null;
+        DynaProperty[] dynaProps = null;
         for (int j = 0; j < sObjects.length; j++) {
             DynaBean dynaBean = dynaBeans.get(j);
-
-            SObject sObj = getSObject(controller, entityName, dynaBean);
-
-            // if we are inserting nulls, build the null array
-            if (insertNulls) {
-                insertNullArray(controller, sObj, dynaBean);
+            if (dynaBean.getDynaClass() != dynaClass) {
+                dynaClass = dynaBean.getDynaClass();
+                dynaProps = dynaClass.getDynaProperties();
+                if (nullableFields != null) checkNullableFields(dynaClass, nullableFields);
             }
-
-            sObjects[j] = sObj;
+            sObjects[j] = buildSObject(controller, entityName, dynaBean, dynaProps, nullableFields, relationshipFields);
         }
         return sObjects;
     }
@@ -283,26 +273,75 @@ public class SforceDynaBean {
      * @throws NoSuchMethodException
      * @throws ParameterLoadException
      */
-    @SuppressWarnings("unchecked")
     public static SObject getSObject(Controller controller, String entityName, DynaBean dynaBean) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException, ParameterLoadException {
+        return buildSObject(controller, entityName, dynaBean, dynaBean.getDynaClass().getDynaProperties(), null,
+                null);
+    }
+
+    private static SObject buildSObject(Controller controller, String entityName, DynaBean dynaBean,
+            DynaProperty[] dynaProps, Set<String> nullableFields, Map<String, String> relationshipFields)
+                    throws ParameterLoadException {
         SObject sObj = new SObject();
         sObj.setType(entityName);
-        Map<String, Object> fieldMap = BeanUtils.describe(dynaBean);
-        for (String fName : fieldMap.keySet()) {
-            if (fieldMap.get(fName) != null) {
+        List<String> fieldsToNull = null;
+        for (DynaProperty dynaProp : dynaProps) {
+            final String fName = dynaProp.getName();
+            final Object value = dynaBean.get(fName);
+            String nullField = null;
+            if (value instanceof SObjectReference) {
                 // see if any entity foreign key references are embedded here
-                Object value = dynaBean.get(fName);
-                if (value != null && value instanceof SObjectReference) {
-                    SObjectReference sObjRef = (SObjectReference)value;
-                    if (!sObjRef.isNull()) sObjRef.addReferenceToSObject(controller, sObj, fName);
-                } else {
-                    sObj.setField(fName, dynaBean.get(fName));
+                SObjectReference sObjRef = (SObjectReference)value;
+                if (!sObjRef.isNull()) {
+                    sObjRef.addReferenceToSObject(controller, sObj, fName);
+                } else if (nullableFields != null && nullableFields.contains(fName)) {
+                    nullField = relationshipFields.get(fName);
+                    if (nullField == null) {
+                        nullField = SObjectReference.getRelationshipField(controller, fName);
+                        relationshipFields.put(fName, nullField);
+                    }
                 }
+            } else {
+                if (hasValue(value)) sObj.setField(fName, value);
+                if (nullableFields != null && !hasText(value) && nullableFields.contains(fName)) nullField = fName;
+            }
+            if (nullField != null) {
+                if (fieldsToNull == null) fieldsToNull = new ArrayList<String>();
+                fieldsToNull.add(nullField);
             }
         }
+        if (fieldsToNull != null) sObj.setFieldsToNull(fieldsToNull.toArray(new String[fieldsToNull.size()]));
         return sObj;
     }
 
+    /* The mapped fields that are sent as fieldsToNull when they have no value */
+    private static Set<String> getNullableFields(Controller controller) {
+        final Set<String> nullableFields = new HashSet<String>(controller.getMapper().getDestColumns());
+        nullableFields.addAll(controller.getMapper().getConstantsMap().keySet());
+        return nullableFields;
+    }
+
+    private static void checkNullableFields(DynaClass dynaClass, Set<String> nullableFields) {
+        for (String fieldName : nullableFields) {
+            if (dynaClass.getDynaProperty(fieldName) == null)
+                throw new IllegalArgumentException("Invalid property name '" + fieldName + "'");
+        }
+    }
+
+    /* A value is set on the SObject if its String form is not empty; for arrays that is the first element's */
+    private static boolean hasValue(Object value) {
+        if (value != null && value.getClass().isArray()) {
+            return Array.getLength(value) > 0 && hasText(Array.get(value, 0));
+        }
+        return hasText(value);
+    }
+
+    private static boolean hasText(Object value) {
+        if (value == null) return false;
+        if (value instanceof String) return !((String)value).isEmpty();
+        if (value instanceof Calendar || value instanceof Number || value instanceof Boolean) return true;
+        return String.valueOf(value).length() > 0;
+    }
+
     /**
      * Register dynabean data type converters for common java data types
      * @param useEuroDates if true, european date format will be used
@@ -67,6 +67,25 @@ public class SOQLMapper extends Mapper {
         return daoColumns;
     }
 
+    /**
+     * @return the field of each dao column selected by the query, except for aggregates
+     */
+    public Map<String, Field> getDaoColumnFields() {
+        Map<String, Field> fields = new HashMap<String, Field>();
+        for (SOQLFieldInfo fieldInfo : soqlInfo.getSelectedFields()) {
+            if (fieldInfo.isAggregate()) continue;
+            String daoColumn = getMapping(normalizeSoql(fieldInfo));
+            if (daoColumn == null) continue;
+            try {
+                Field field = lookupSfdcField(getClient().getFieldTypes(), stripEntityPrefix(fieldInfo.getFieldName()));
+                fields.put(daoColumn, field);
+            } catch (ConnectionException e) {
+                logger.warn("Could not get the type of field " + fieldInfo.getFieldName(), e);
+            }
+        }
+        return fields;
+    }
+
     public Row mapPartnerSObjectSfdcToLocal(SObject sobj) {
         Row map = new Row();
         mapPartnerSObject(map, "", sobj);
@@ -172,6 +191,11 @@ public class SOQLMapper extends Mapper {
     }
 
     private String evalSfdcField(String fieldExpr) {
+        DescribeSObjectResult describeResult = getClient().getFieldTypes();
+        return evalSfdcField(describeResult, stripEntityPrefix(fieldExpr));
+    }
+
+    private String stripEntityPrefix(String fieldExpr) {
         fieldExpr = fieldExpr.toLowerCase();
         if (this.soqlInfo != null) {
             String typePrefix = this.soqlInfo.getTableName().toLowerCase() + ".";
@@ -182,8 +206,7 @@ public class SOQLMapper extends Mapper {
                 fieldExpr = fieldExpr.substring(aliasPrefix.length());
             }
         }
-        DescribeSObjectResult describeResult = getClient().getFieldTypes();
-        return evalSfdcField(describeResult, fieldExpr);
+        return fieldExpr;
     }
 
     private String evalSfdcField(DescribeSObjectResult describeResult, String fieldExpr) {
@@ -212,6 +235,14 @@ public class SOQLMapper extends Mapper {
 
     }
 
+    private Field lookupSfdcField(DescribeSObjectResult describeResult, String fieldExpr) throws ConnectionException {
+        final int splitIdx = fieldExpr.indexOf('.');
+        if (splitIdx < 0) return getSfdcField(describeResult, fieldExpr);
+        final Field field = getReferenceField(describeResult, fieldExpr.substring(0, splitIdx));
+        final String relEntityName = field.isNamePointing() ? "Name" : field.getReferenceTo()[0];
+        return lookupSfdcField(getClient().describeSObject(relEntityName), fieldExpr.substring(splitIdx + 1));
+    }
+
     private Field getSfdcField(DescribeSObjectResult describeResult, String fieldName) {
         for (Field f : describeResult.getFields()) {
             if (f.getName().equalsIgnoreCase(fieldName)) return f;
@@ -37,6 +37,7 @@ import com.salesforce.dataloader.action.visitor.DAOSizeVisitor;
 import com.salesforce.dataloader.config.*;
 import com.salesforce.dataloader.dao.DataAccessObject;
 import com.salesforce.dataloader.dao.DataReader;
+import com.salesforce.dataloader.dao.csv.CSVFileReader;
 import com.salesforce.dataloader.exception.*;
 
 /**
@@ -161,6 +162,10 @@ public class DAORowUtil {
             return;
         }
         if (rowToStart > 0) {
+            // csv files can jump close to the starting row without reading the rows before it
+            if (daoReader instanceof CSVFileReader) {
+                ((CSVFileReader)daoReader).skipToRow(rowToStart);
+            }
             // keep skipping over rows until we run into an invalid row or we have gotten
             // to the starting row
             while (daoReader.getCurrentRowNumber() < rowToStart) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action;
+
+import com.salesforce.dataloader.TestBase;
+import com.salesforce.dataloader.dao.DataWriter;
+import com.salesforce.dataloader.dao.csv.CSVFileWriter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for closing the data access object and status writers of an operation
+ *
+ * @since 35.0
+ */
+public class CloseAllTest extends TestBase {
+
+    private class Writer extends CSVFileWriter {
+        final RuntimeException error;
+        boolean closed;
+
+        Writer(RuntimeException error) {
+            super("unused.csv", getController().getConfig());
+            this.error = error;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            if (error != null) throw error;
+        }
+    }
+
+    @Test
+    public void testWritersAreClosedWhenOneFails() {
+        RuntimeException daoError = new IllegalStateException("upload failed");
+        RuntimeException writerError = new IllegalStateException("commit failed");
+        Writer dao = new Writer(daoError);
+        Writer success = new Writer(writerError);
+        Writer error = new Writer(null);
+        try {
+            AbstractAction.closeAll(dao, success, error);
+            org.junit.Assert.fail("the failure to close was not thrown");
+        } catch (IllegalStateException e) {
+            assertSame(daoError, e);
+            assertEquals(1, e.getSuppressed().length);
+            assertSame(writerError, e.getSuppressed()[0]);
+        }
+        assertTrue(dao.closed && success.closed && error.closed);
+
+        Writer closed = new Writer(null);
+        AbstractAction.closeAll(closed, new DataWriter[0]);
+        assertTrue(closed.closed);
+    }
+}
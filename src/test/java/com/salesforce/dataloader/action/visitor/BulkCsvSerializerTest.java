@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BulkCsvSerializerTest {
+
+    private static final String NL = System.getProperty("line.separator");
+
+    @Test
+    public void testValuesAreQuotedAndEncoded() throws Exception {
+        final BulkCsvSerializer serializer = new BulkCsvSerializer(10000, 10);
+        serializer.setHeader(Arrays.asList("Name", "Owner:ExtId__c", "Description"));
+        serializer.startRow();
+        serializer.writeValue("say \"hi\"");
+        serializer.skipColumn();
+        serializer.writeValue("caf\u00e9 \u20ac \ud83d\ude00 \ud83d");
+        serializer.endRow();
+
+        assertEquals(1, serializer.getBatchRecordCount());
+        // same bytes as a UTF-8 PrintStream, which also writes unpaired surrogates as '?'
+        final String expected = "Name,Owner.ExtId__c,Description" + NL
+                + "\"say \"\"hi\"\"\",,\"caf\u00e9 \u20ac \ud83d\ude00 \ud83d\"" + NL;
+        assertTrue(Arrays.equals(expected.getBytes("UTF-8"), read(serializer.takeBatch())));
+        assertEquals(0, serializer.getRecordCount());
+    }
+
+    @Test
+    public void testTimestampsMatchSimpleDateFormat() throws Exception {
+        final SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        fmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+        final BulkCsvSerializer serializer = new BulkCsvSerializer(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        serializer.setHeader(Arrays.asList("CloseDate"));
+        final Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("America/Los_Angeles"));
+        final StringBuilder expected = new StringBuilder("CloseDate").append(NL);
+        final Random random = new Random(42);
+        final long[] fixed = { 0L, -1L, -12219292800001L, -12219292800000L, 253402300799999L, 253402300800000L,
+                -62135769600000L };
+        for (int i = 0; i < 10000 + fixed.length; i++) {
+            final long millis = i < fixed.length ? fixed[i] : (long)((random.nextDouble() - 0.3) * 1e14);
+            cal.setTimeInMillis(millis);
+            serializer.startRow();
+            serializer.writeTimestamp(cal);
+            serializer.endRow();
+            expected.append('"').append(fmt.format(cal.getTime())).append('"').append(NL);
+        }
+        assertEquals(expected.toString(), new String(read(serializer.takeBatch()), "UTF-8"));
+    }
+
+    @Test
+    public void testRowOverByteLimitStartsNextBatch() throws Exception {
+        final BulkCsvSerializer serializer = new BulkCsvSerializer(30, 100);
+        serializer.setHeader(Arrays.asList("Name"));
+        assertFalse(writeRow(serializer, "first"));
+        assertTrue(writeRow(serializer, "second row is long"));
+
+        assertEquals(1, serializer.getBatchRecordCount());
+        assertEquals("Name" + NL + "\"first\"" + NL, new String(read(serializer.takeBatch()), "UTF-8"));
+        assertEquals(1, serializer.getRecordCount());
+        assertEquals(1, serializer.getBatchRecordCount());
+        assertEquals("Name" + NL + "\"second row is long\"" + NL, new String(read(serializer.takeBatch()), "UTF-8"));
+    }
+
+    @Test
+    public void testRecordLimit() throws Exception {
+        final BulkCsvSerializer serializer = new BulkCsvSerializer(10000, 2);
+        serializer.setHeader(Arrays.asList("Name"));
+        assertFalse(writeRow(serializer, "a"));
+        assertTrue(writeRow(serializer, "b"));
+        assertEquals(2, serializer.getBatchRecordCount());
+        assertEquals("Name" + NL + "\"a\"" + NL + "\"b\"" + NL, new String(read(serializer.takeBatch()), "UTF-8"));
+
+        // a new header takes effect with the next batch
+        serializer.setHeader(Arrays.asList("Name", "Site"));
+        assertFalse(writeRow(serializer, "c"));
+        assertEquals("Name,Site" + NL + "\"c\"" + NL, new String(read(serializer.takeBatch()), "UTF-8"));
+    }
+
+    private static boolean writeRow(BulkCsvSerializer serializer, String value) {
+        serializer.startRow();
+        serializer.writeValue(value);
+        return serializer.endRow();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[4096];
+        for (int n; (n = in.read(buf)) > 0;) out.write(buf, 0, n);
+        return out.toByteArray();
+    }
+}
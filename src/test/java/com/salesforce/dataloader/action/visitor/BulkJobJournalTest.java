@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.action.visitor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class BulkJobJournalTest {
+
+    private static final String LOAD = "insert Account accounts.csv from row 0";
+
+    private File file;
+
+    @Before
+    public void createFile() throws Exception {
+        file = File.createTempFile("bulkJob", ".bulkjob");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testBatchesAreReadBackInOrder() throws Exception {
+        BulkJobJournal journal = new BulkJobJournal(file, LOAD);
+        journal.startJob("750x0000000001");
+        journal.addBatch("751x0000000001", 2000);
+        journal.addBatch("751x0000000002", 1500);
+        journal.close();
+
+        // a line cut off by a crash is ignored
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write("batch\t751x00".getBytes("UTF-8"));
+        out.close();
+
+        journal = new BulkJobJournal(file, LOAD);
+        assertEquals("750x0000000001", journal.readJobId());
+        journal.continueJob();
+        journal.addBatch("751x0000000003", 10);
+        journal.close();
+
+        List<BulkJobJournal.Batch> batches = new BulkJobJournal(file, LOAD).readBatches();
+        assertEquals(3, batches.size());
+        assertEquals("751x0000000001", batches.get(0).batchId);
+        assertEquals(2000, batches.get(0).numRows);
+        assertEquals("751x0000000002", batches.get(1).batchId);
+        assertEquals("751x0000000003", batches.get(2).batchId);
+        assertEquals(10, batches.get(2).numRows);
+    }
+
+    @Test
+    public void testJobOfAnotherLoadIsIgnored() throws Exception {
+        BulkJobJournal journal = new BulkJobJournal(file, LOAD);
+        journal.startJob("750x0000000001");
+        journal.close();
+
+        assertNull(new BulkJobJournal(file, "update Account accounts.csv from row 0").readJobId());
+        assertNull(new BulkJobJournal(file, "insert Account accounts.csv from row 10").readJobId());
+
+        journal.delete();
+        assertFalse(file.exists());
+        assertNull(new BulkJobJournal(file, LOAD).readJobId());
+    }
+}
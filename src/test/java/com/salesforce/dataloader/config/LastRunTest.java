@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LastRunTest {
+
+    private static final String FILE_NAME = "test_lastRun.properties";
+
+    private File dir;
+
+    @Before
+    public void createDir() throws Exception {
+        dir = Files.createTempDirectory("lastRun").toFile();
+    }
+
+    @After
+    public void deleteDir() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testCheckpointsAreReplayedOnLoad() throws Exception {
+        LastRun lastRun = newLastRun();
+        lastRun.setProperty(LastRun.LAST_LOAD_BATCH_ROW, "0");
+        lastRun.save();
+        lastRun.checkpoint(0, 200, 0);
+        lastRun.checkpoint(200, 200, 0);
+        lastRun.checkpoint(400, 150, -1);
+
+        // a line cut off by a crash is ignored
+        FileOutputStream out = new FileOutputStream(new File(dir, FILE_NAME + ".journal"), true);
+        out.write("4,550,2".getBytes("US-ASCII"));
+        out.close();
+
+        lastRun = newLastRun();
+        assertEquals("550", lastRun.getProperty(LastRun.LAST_LOAD_BATCH_ROW));
+        lastRun.checkpoint(550, 100, 0);
+        assertEquals("650", newLastRun().getProperty(LastRun.LAST_LOAD_BATCH_ROW));
+    }
+
+    @Test
+    public void testSaveClearsJournal() throws Exception {
+        LastRun lastRun = newLastRun();
+        lastRun.checkpoint(0, 200, 0);
+        assertTrue(new File(dir, FILE_NAME + ".journal").isFile());
+
+        lastRun.setProperty(LastRun.LAST_LOAD_BATCH_ROW, "10");
+        lastRun.save();
+        assertFalse(new File(dir, FILE_NAME + ".journal").exists());
+        assertFalse(new File(dir, FILE_NAME + ".tmp").exists());
+        assertEquals("10", newLastRun().getProperty(LastRun.LAST_LOAD_BATCH_ROW));
+    }
+
+    private LastRun newLastRun() throws Exception {
+        LastRun lastRun = new LastRun(FILE_NAME);
+        lastRun.init(dir.getAbsolutePath(), true);
+        lastRun.load();
+        return lastRun;
+    }
+}
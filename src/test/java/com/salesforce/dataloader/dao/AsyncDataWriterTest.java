@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.model.Row;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncDataWriterTest {
+
+    @Test
+    public void testRowsAreWrittenInOrderByFlush() throws Exception {
+        ListWriter listWriter = new ListWriter();
+        AsyncDataWriter writer = new AsyncDataWriter(listWriter, "testWriter", 16);
+        writer.open();
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < 5000; i++) {
+            Row row = Row.singleEntryImmutableRow("Name", "row" + i);
+            rows.add(row);
+            writer.writeRow(row);
+        }
+        writer.flush();
+
+        assertEquals(rows, listWriter.rows);
+        assertEquals(5000, writer.getCurrentRowNumber());
+        assertTrue(listWriter.maxRowsPerWrite <= AsyncDataWriter.MAX_ROWS_PER_WRITE);
+        assertNotSame(Thread.currentThread(), listWriter.writerThread);
+        writer.close();
+        assertTrue(listWriter.closed);
+    }
+
+    @Test
+    public void testWriteErrorIsThrownByFlush() throws Exception {
+        ListWriter listWriter = new ListWriter() {
+            @Override
+            public boolean writeRowList(List<Row> rows) throws DataAccessObjectException {
+                throw new DataAccessObjectException("disk full");
+            }
+        };
+        AsyncDataWriter writer = new AsyncDataWriter(listWriter, "testWriter", 16);
+        writer.open();
+        writer.writeRow(Row.singleEntryImmutableRow("Name", "row"));
+        try {
+            writer.flush();
+            fail("the write error was not thrown");
+        } catch (DataAccessObjectException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        writer.close();
+    }
+
+    /** Keeps the rows written to it */
+    private static class ListWriter implements DataWriter {
+        final List<Row> rows = Collections.synchronizedList(new ArrayList<Row>());
+        volatile int maxRowsPerWrite;
+        volatile Thread writerThread;
+        volatile boolean closed;
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void checkConnection() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public List<String> getColumnNames() {
+            return Collections.singletonList("Name");
+        }
+
+        @Override
+        public void setColumnNames(List<String> columnNames) {
+        }
+
+        @Override
+        public int getCurrentRowNumber() {
+            return rows.size();
+        }
+
+        @Override
+        public boolean writeRow(Row inputRow) throws DataAccessObjectException {
+            return writeRowList(Collections.singletonList(inputRow));
+        }
+
+        @Override
+        public boolean writeRowList(List<Row> inputRowList) throws DataAccessObjectException {
+            writerThread = Thread.currentThread();
+            maxRowsPerWrite = Math.max(maxRowsPerWrite, inputRowList.size());
+            rows.addAll(inputRowList);
+            return true;
+        }
+    }
+}
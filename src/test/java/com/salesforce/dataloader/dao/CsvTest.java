@@ -25,19 +25,34 @@
  */
 package com.salesforce.dataloader.dao;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.salesforce.dataloader.TestBase;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.controller.Controller;
 import com.salesforce.dataloader.dao.csv.CSVFileReader;
 import com.salesforce.dataloader.dao.csv.CSVFileWriter;
+import com.salesforce.dataloader.dao.csv.CSVStreamReader;
+import com.salesforce.dataloader.dao.csv.CSVStreamWriter;
+import com.salesforce.dataloader.exception.DataAccessObjectInitializationException;
 import com.salesforce.dataloader.model.Row;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class CsvTest extends TestBase {
@@ -115,6 +130,308 @@ public class CsvTest extends TestBase {
         f.delete();
     }
 
+    @Test
+    public void testCSVWriteEscapesValues() throws Exception {
+        getController().getConfig().setValue(Config.WRITE_UTF8, true);
+        String nl = System.getProperty("line.separator");
+        assertEquals("\"COL1\",\"COL2\",\"COL3\"" + nl + "\"a\"\"b\"\"\",\"x,y\",\"\"" + nl
+                + "\"tab\tvalue\",\"two\nlines\",\"caf\u00e9\"" + nl, writeEscapedValues());
+
+        getController().getConfig().setValue(Config.CSV_WRITE_QUOTE_ALL, false);
+        try {
+            assertEquals("COL1,COL2,COL3" + nl + "\"a\"\"b\"\"\",\"x,y\"," + nl
+                    + "\"tab\tvalue\",\"two\nlines\",caf\u00e9" + nl, writeEscapedValues());
+        } finally {
+            getController().getConfig().setValue(Config.CSV_WRITE_QUOTE_ALL, true);
+            getController().getConfig().setValue(Config.WRITE_UTF8, false);
+        }
+    }
+
+    @Test
+    public void testCSVWriteLargeValues() throws Exception {
+        getController().getConfig().setValue(Config.WRITE_UTF8, true);
+        getController().getConfig().setValue(Config.READ_UTF8, true);
+        File f = new File(getTestDataDir(), "csvtestTemp.csv");
+        CSVFileWriter writer = new CSVFileWriter(f.getAbsolutePath(), getController().getConfig());
+        writer.open();
+        writer.setColumnNames(writeHeader);
+        // values longer than the write buffer, with quotes and surrogate pairs falling on its boundaries
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; value.length() < 150000; i++) {
+            value.append(i % 7 == 0 ? "\"" : i % 5 == 0 ? "\ud83d\ude00" : "v");
+        }
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < 5; i++) {
+            Row row = new Row();
+            row.put("COL1", i + value.toString());
+            row.put("COL2", "row" + i);
+            rows.add(row);
+        }
+        writer.writeRowList(rows);
+        writer.close();
+
+        CSVFileReader csv = new CSVFileReader(f, getController().getConfig());
+        csv.open();
+        for (Row row : rows) {
+            Row read = csv.readRow();
+            assertEquals(row.get("COL1"), read.get("COL1"));
+            assertEquals(row.get("COL2"), read.get("COL2"));
+            assertEquals("", read.get("COL3"));
+        }
+        assertNull(csv.readRow());
+        csv.close();
+        f.delete();
+        getController().getConfig().setValue(Config.WRITE_UTF8, false);
+        getController().getConfig().setValue(Config.READ_UTF8, false);
+    }
+
+    @Test
+    public void testGzipWriteAndRead() throws Exception {
+        File f = new File(getTestDataDir(), "csvtestTemp.csv.gz");
+        // more than a few compression buffers
+        List<Row> rows = writeTestRows(f, 60000);
+        assertGzipFile(f);
+
+        getController().getConfig().setValue(Config.CSV_READ_MAPPED, true);
+        try {
+            CSVFileReader csv = new CSVFileReader(f, getController().getConfig());
+            csv.open();
+            assertEquals(rows.size(), csv.getTotalRows());
+            for (Row row : rows) {
+                Row read = csv.readRow();
+                assertEquals(row.get("COL1"), read.get("COL1"));
+                assertEquals(row.get("COL2"), read.get("COL2"));
+            }
+            assertNull(csv.readRow());
+            csv.close();
+        } finally {
+            getController().getConfig().setValue(Config.CSV_READ_MAPPED, false);
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testGzipSettingCompressesAnyFile() throws Exception {
+        File f = new File(getTestDataDir(), "csvtestTemp.csv");
+        getController().getConfig().setValue(Config.CSV_GZIP, true);
+        try {
+            writeTestRows(f, 10);
+        } finally {
+            getController().getConfig().setValue(Config.CSV_GZIP, false);
+        }
+        assertGzipFile(f);
+        CSVFileReader csv = new CSVFileReader(f, getController().getConfig());
+        csv.open();
+        assertEquals(10, csv.readRowList(100).size());
+        csv.close();
+        f.delete();
+    }
+
+    @Test
+    public void testStreamReadSpoolsInputForBulkApi() throws Exception {
+        File f = new File(getTestDataDir(), "csvtestTemp.csv.gz");
+        List<Row> rows = writeTestRows(f, 1000);
+        Config config = getController().getConfig();
+        InputStream stdin = System.in;
+        System.setIn(new ByteArrayInputStream(Files.readAllBytes(f.toPath())));
+        f.delete();
+        config.setValue(Config.DAO_NAME, CSVStreamReader.STANDARD_STREAM);
+        config.setValue(Config.BULK_API_ENABLED, true);
+        List<String> tempCsvFiles = getTempCsvFiles();
+        CSVStreamReader reader = null;
+        try {
+            reader = new CSVStreamReader(config);
+            reader.checkConnection();
+            assertEquals(writeHeader, reader.getColumnNames());
+            reader.open();
+            assertEquals(0, reader.getTotalRows());
+            // a first pass over half the rows, then two passes over all of them from the spool file
+            assertEquals(500, reader.readRowList(500).size());
+            for (int pass = 0; pass < 2; pass++) {
+                reader.close();
+                reader.open();
+                for (Row row : rows) {
+                    Row read = reader.readRow();
+                    assertEquals(row.get("COL1"), read.get("COL1"));
+                    assertEquals(row.get("COL2"), read.get("COL2"));
+                }
+                assertNull(reader.readRow());
+                assertEquals(rows.size(), reader.getCurrentRowNumber());
+            }
+            reader.close();
+
+            // the operation deletes the spool file once it is done with the reader
+            List<String> spoolFiles = getTempCsvFiles();
+            spoolFiles.removeAll(tempCsvFiles);
+            assertEquals(1, spoolFiles.size());
+            reader.deleteSpool();
+            assertFalse(new File(System.getProperty("java.io.tmpdir"), spoolFiles.get(0)).exists());
+            try {
+                reader.open();
+                org.junit.Assert.fail("opened a stream again without its spool file");
+            } catch (DataAccessObjectInitializationException e) {
+                // expected
+            }
+        } finally {
+            if (reader != null) reader.deleteSpool();
+            System.setIn(stdin);
+            config.setValue(Config.BULK_API_ENABLED, false);
+            config.setValue(Config.DAO_NAME, "");
+        }
+    }
+
+    private static List<String> getTempCsvFiles() {
+        List<String> names = new ArrayList<String>();
+        for (String name : new File(System.getProperty("java.io.tmpdir")).list()) {
+            if (name.startsWith("dataloader") && name.endsWith(".csv")) names.add(name);
+        }
+        return names;
+    }
+
+    @Test
+    public void testStreamReadIsSinglePass() throws Exception {
+        File f = new File(getTestDataDir(), "csvtestTemp.csv");
+        writeTestRows(f, 10);
+        Config config = getController().getConfig();
+        config.setValue(Config.DAO_NAME, f.getAbsolutePath());
+        try {
+            CSVStreamReader reader = new CSVStreamReader(config);
+            reader.checkConnection();
+            reader.open();
+            assertEquals(10, reader.readRowList(100).size());
+            try {
+                reader.open();
+                org.junit.Assert.fail("opened a stream twice");
+            } catch (DataAccessObjectInitializationException e) {
+                // expected
+            }
+        } finally {
+            config.setValue(Config.DAO_NAME, "");
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testStreamWriteOnlyOpensOutputOnce() throws Exception {
+        File f = new File(getTestDataDir(), "csvtestTemp.csv");
+        f.delete();
+        CSVStreamWriter writer = new CSVStreamWriter(f.getAbsolutePath(), getController().getConfig());
+        writer.checkConnection();
+        assertTrue(!f.exists());
+        writer.open();
+        writer.setColumnNames(new ArrayList<String>(writeHeader));
+        writer.writeRow(row1);
+        writer.close();
+
+        CSVFileReader csv = new CSVFileReader(f, getController().getConfig());
+        csv.open();
+        assertEquals("row1col1", csv.readRow().get("COL1"));
+        assertNull(csv.readRow());
+        csv.close();
+        f.delete();
+    }
+
+    /**
+     * Extracts to standard output in a JVM of its own, with the built-in log configuration that logs to the console.
+     */
+    @Test
+    public void testStreamWriteToStandardOutputHoldsOnlyCsv() throws Exception {
+        File f = new File(getTestDataDir(), "csvtestTemp.csv");
+        CSVFileWriter writer = new CSVFileWriter(f.getAbsolutePath(), getController().getConfig());
+        writer.open();
+        writer.setColumnNames(new ArrayList<String>(StdoutExtract.COLUMNS));
+        writer.writeRowList(StdoutExtract.getRows());
+        writer.close();
+        String expected = new String(Files.readAllBytes(f.toPath()), "UTF-8");
+        f.delete();
+
+        assertEquals(expected, runStdoutExtract(new File(System.getProperty("user.dir"))));
+
+        // a log-conf.xml that logs to standard output only gets the lines logged before the output is opened
+        File dir = new File(getTestDataDir(), "stdoutExtract");
+        dir.mkdirs();
+        File logConf = new File(dir, "log-conf.xml");
+        Files.copy(new File(getTestConfDir(), "log-conf.xml").toPath(), logConf.toPath(),
+                java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        try {
+            String output = runStdoutExtract(dir);
+            assertTrue(output, output.endsWith(expected));
+            assertTrue(output, output.substring(0, output.length() - expected.length()).contains("INFO"));
+        } finally {
+            logConf.delete();
+            dir.delete();
+        }
+    }
+
+    private String runStdoutExtract(File dir) throws Exception {
+        ProcessBuilder builder = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"), "-D" + Controller.CONFIG_DIR_PROP + "="
+                        + getTestConfDir(), StdoutExtract.class.getName());
+        builder.directory(dir);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+        byte[] output = IOUtils.toByteArray(process.getInputStream());
+        assertEquals(0, process.waitFor());
+        return new String(output, "UTF-8");
+    }
+
+    /**
+     * Writes rows to standard output the way an extract does, logging before, during and after.
+     */
+    public static class StdoutExtract {
+        static final List<String> COLUMNS = Arrays.asList("COL1", "COL2");
+
+        static List<Row> getRows() {
+            List<Row> rows = new ArrayList<Row>();
+            for (int i = 0; i < 3; i++) {
+                Row row = new Row();
+                row.put("COL1", "row " + i);
+                row.put("COL2", "line\n" + i);
+                rows.add(row);
+            }
+            return rows;
+        }
+
+        public static void main(String[] args) throws Exception {
+            Logger logger = Logger.getLogger(StdoutExtract.class);
+            Controller controller = Controller.getInstance("stdoutExtract", true);
+            logger.info("Extracting to standard output");
+            CSVStreamWriter writer = new CSVStreamWriter(CSVStreamReader.STANDARD_STREAM, controller.getConfig());
+            writer.open();
+            writer.setColumnNames(new ArrayList<String>(COLUMNS));
+            for (Row row : getRows()) {
+                writer.writeRow(row);
+                logger.info("Wrote a row");
+            }
+            writer.close();
+            logger.info("Extract done");
+            System.exit(0);
+        }
+    }
+
+    private List<Row> writeTestRows(File f, int count) throws Exception {
+        CSVFileWriter writer = new CSVFileWriter(f.getAbsolutePath(), getController().getConfig());
+        writer.open();
+        writer.setColumnNames(new ArrayList<String>(writeHeader));
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < count; i++) {
+            Row row = new Row();
+            row.put("COL1", "row " + i + ", \"value\" " + (i * 7919));
+            row.put("COL2", "line\n" + i);
+            row.put("COL3", "");
+            rows.add(row);
+        }
+        writer.writeRowList(rows);
+        writer.close();
+        return rows;
+    }
+
+    private void assertGzipFile(File f) throws Exception {
+        byte[] bytes = Files.readAllBytes(f.toPath());
+        assertEquals(0x1f, bytes[0] & 0xff);
+        assertEquals(0x8b, bytes[1] & 0xff);
+    }
+
     @Test
     public void testReadingEscapedValues() throws Exception {
         File f = new File(getTestDataDir(), "csvEscapedQuotes.csv");
@@ -143,6 +460,192 @@ public class CsvTest extends TestBase {
         assertEquals(20000, count);
     }
 
+    @Test
+    public void testMappedReadMatchesStreamRead() throws Exception {
+        assertReadMatchesStreamRead(Config.CSV_READ_MAPPED, true);
+    }
+
+    @Test
+    public void testParallelReadMatchesStreamRead() throws Exception {
+        assertReadMatchesStreamRead(Config.CSV_READ_THREADS, 4);
+    }
+
+    @Test
+    public void testMappedReadSkipsByteOrderMark() throws Exception {
+        File f = new File(getTestDataDir(), "csvBomTemp.csv");
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(new byte[] { (byte)0xEF, (byte)0xBB, (byte)0xBF });
+            out.write("column1,column2\r\n\"caf\u00e9\",\"two\r\nlines\"\r\n".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        getController().getConfig().setValue(Config.CSV_READ_MAPPED, true);
+        CSVFileReader csv = new CSVFileReader(f, getController().getConfig());
+        csv.open();
+
+        assertEquals(COLUMN_1_NAME, csv.getColumnNames().get(0));
+        Row row = csv.readRow();
+        assertEquals("caf\u00e9", row.get(COLUMN_1_NAME));
+        assertEquals("two\nlines", row.get(COLUMN_2_NAME));
+        assertNull(csv.readRow());
+
+        csv.close();
+        f.delete();
+    }
+
+    @Test
+    public void testTotalRowsCountsRecordsInPlace() throws Exception {
+        File f = new File(getTestDataDir(), "csvCountTemp.csv");
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(("column1,column2\r\n"
+                    + "one,\"quoted\r\nline break\"\r\n"
+                    + "\r\n"
+                    + "\"\"\n"
+                    + "\"\",\"\"\r"
+                    + "\"\"\"\",four\n"
+                    + "five,\"\n\"").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        CSVFileReader csv = new CSVFileReader(f, getController().getConfig());
+        csv.open();
+
+        assertEquals("one", csv.readRow().get(COLUMN_1_NAME));
+        assertEquals(4, csv.getTotalRows());
+        assertEquals(1, csv.getCurrentRowNumber());
+        int count = 1;
+        while (csv.readRow() != null) {
+            count++;
+        }
+        assertEquals(4, count);
+
+        csv.close();
+        f.delete();
+    }
+
+    @Test
+    public void testSkipToRowMatchesReadingEveryRow() throws Exception {
+        assertSkipToRowMatchesReadingEveryRow(null, null);
+        assertSkipToRowMatchesReadingEveryRow(Config.CSV_READ_MAPPED, true);
+        assertSkipToRowMatchesReadingEveryRow(Config.CSV_READ_THREADS, 4);
+    }
+
+    @Test
+    public void testRowIndexIsSavedNextToFile() throws Exception {
+        File f = new File(getTestDataDir(), "20kRows.csv");
+        File indexFile = new File(getTestDataDir(), "20kRows.csv.rowidx");
+        getController().getConfig().setValue(Config.CSV_ROW_INDEX, true);
+        try {
+            CSVFileReader csv = new CSVFileReader(f, getController().getConfig());
+            csv.open();
+            assertEquals(20000, csv.getTotalRows());
+            csv.close();
+            assertTrue(indexFile.isFile());
+
+            csv = new CSVFileReader(f, getController().getConfig());
+            csv.open();
+            assertEquals(20000, csv.getTotalRows());
+            csv.skipToRow(12345);
+            assertEquals(10000, csv.getCurrentRowNumber());
+            csv.close();
+        } finally {
+            getController().getConfig().setValue(Config.CSV_ROW_INDEX, false);
+            indexFile.delete();
+        }
+    }
+
+    /**
+     * Helper to check that skipping to a row with the given read setting continues with the same rows as reading every
+     * row up to it
+     */
+    private void assertSkipToRowMatchesReadingEveryRow(String readSetting, Object value) throws Exception {
+        File f = new File(getTestDataDir(), "20kRows.csv");
+        Config config = getController().getConfig();
+        String defaultValue = readSetting == null ? null : config.getString(readSetting);
+        if (readSetting != null) config.setValue(readSetting, String.valueOf(value));
+        CSVFileReader expected = new CSVFileReader(f, config);
+        CSVFileReader actual = new CSVFileReader(f, config);
+        if (readSetting != null) config.setValue(readSetting, defaultValue);
+        expected.open();
+        actual.open();
+
+        for (int i = 0; i < 15000; i++) {
+            expected.readRow();
+        }
+        actual.skipToRow(15000);
+        assertEquals(10000, actual.getCurrentRowNumber());
+        while (actual.getCurrentRowNumber() < 15000) {
+            actual.readRow();
+        }
+        Row row;
+        do {
+            row = expected.readRow();
+            Row actualRow = actual.readRow();
+            assertEquals(row == null ? null : new HashMap<String, Object>(row),
+                    actualRow == null ? null : new HashMap<String, Object>(actualRow));
+            assertEquals(expected.getCurrentRowNumber(), actual.getCurrentRowNumber());
+        } while (row != null);
+
+        expected.close();
+        actual.close();
+    }
+
+    /**
+     * Helper to compare what is read from the test files with the given read setting to what the default reader reads
+     */
+    private void assertReadMatchesStreamRead(String readSetting, Object value) throws Exception {
+        for (String fileName : new String[] { "csvtext.csv", "csvEscapedQuotes.csv", "20kRows.csv" }) {
+            File f = new File(getTestDataDir(), fileName);
+            Config config = getController().getConfig();
+
+            CSVFileReader streamReader = new CSVFileReader(f, config);
+            String defaultValue = config.getString(readSetting);
+            config.setValue(readSetting, String.valueOf(value));
+            CSVFileReader reader = new CSVFileReader(f, config);
+            config.setValue(readSetting, defaultValue);
+            streamReader.open();
+            reader.open();
+
+            assertEquals(fileName, streamReader.getColumnNames(), reader.getColumnNames());
+            Row expected;
+            do {
+                expected = streamReader.readRow();
+                Row actual = reader.readRow();
+                assertEquals(fileName, expected == null ? null : new HashMap<String, Object>(expected),
+                        actual == null ? null : new HashMap<String, Object>(actual));
+                assertEquals(fileName, streamReader.getCurrentRowNumber(), reader.getCurrentRowNumber());
+            } while (expected != null);
+
+            streamReader.close();
+            reader.close();
+        }
+    }
+
+    /**
+     * Helper to write values that need escaping, returning what was written
+     */
+    private String writeEscapedValues() throws Exception {
+        File f = new File(getTestDataDir(), "csvtestTemp.csv");
+        CSVFileWriter writer = new CSVFileWriter(f.getAbsolutePath(), getController().getConfig());
+        writer.open();
+        writer.setColumnNames(new ArrayList<String>(writeHeader));
+        Row row = new Row();
+        row.put("COL1", "a\"b\"");
+        row.put("COL2", "x,y");
+        writer.writeRow(row);
+        row = new Row();
+        row.put("COL1", "tab\tvalue");
+        row.put("COL2", "two\nlines");
+        row.put("COL3", "caf\u00e9");
+        writer.writeRow(row);
+        writer.close();
+        String written = new String(Files.readAllBytes(f.toPath()), getController().getConfig().getCsvWriteEncoding());
+        f.delete();
+        return written;
+    }
+
     /**
      * Helper to compare the static variables to the csv we wrote
      *
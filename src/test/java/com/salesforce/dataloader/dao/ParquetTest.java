@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.salesforce.dataloader.TestBase;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.dao.csv.CSVFileReader;
+import com.salesforce.dataloader.dao.parquet.ParquetFileReader;
+import com.salesforce.dataloader.dao.parquet.ParquetFileWriter;
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.model.Row;
+import com.sforce.soap.partner.Field;
+import com.sforce.soap.partner.FieldType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ParquetTest extends TestBase {
+
+    private static final List<String> COLUMNS = Arrays.asList("Name", "IsActive", "Count", "Amount", "Birthdate",
+            "CreatedDate");
+
+    @Test
+    public void testTypedColumnsReadBackAsWritten() throws Exception {
+        File f = new File(getTestDataDir(), "parquetTemp.parquet");
+        Config config = getController().getConfig();
+        // a row group every few hundred rows
+        config.setValue(Config.PARQUET_ROW_GROUP_SIZE, 8 * 1024);
+        List<Row> rows = new ArrayList<Row>();
+        try {
+            ParquetFileWriter writer = createWriter(f);
+            for (int i = 0; i < 2000; i++) {
+                Row row = newRow(i % 10 == 0 ? "" : "Acme \"" + i + "\", é 😀", String.valueOf(i % 3 == 0),
+                        i % 7 == 0 ? "" : String.valueOf(i - 1000), (i * 25) / 100.0 + "",
+                        i % 5 == 0 ? "" : "19" + (10 + i % 90) + "-02-28", "2015-06-" + (10 + i % 20) + "T12:34:56."
+                                + (100 + i % 900) + "Z");
+                writer.writeRow(row);
+                rows.add(row);
+            }
+            writer.close();
+        } finally {
+            config.setValue(Config.PARQUET_ROW_GROUP_SIZE, Config.DEFAULT_PARQUET_ROW_GROUP_SIZE);
+        }
+
+        ParquetFileReader reader = new ParquetFileReader(f);
+        reader.open();
+        assertEquals(COLUMNS, reader.getColumnNames());
+        assertEquals(rows.size(), reader.getTotalRows());
+        for (Row row : rows) {
+            Row read = reader.readRow();
+            for (String column : COLUMNS) {
+                Object expected = row.get(column);
+                if ("Amount".equals(column)) {
+                    assertEquals(new BigDecimal((String)expected).setScale(2).toPlainString(), read.get(column));
+                } else {
+                    assertEquals(column, expected, read.get(column));
+                }
+            }
+        }
+        assertNull(reader.readRow());
+        assertEquals(rows.size(), reader.getCurrentRowNumber());
+        reader.close();
+        f.delete();
+    }
+
+    @Test
+    public void testInvalidValueLeavesRowOut() throws Exception {
+        File f = new File(getTestDataDir(), "parquetTemp.parquet");
+        ParquetFileWriter writer = createWriter(f);
+        writer.writeRow(newRow("first", "true", "1", "1.5", "2000-01-01", "2000-01-01T00:00:00.000Z"));
+        try {
+            writer.writeRow(newRow("bad", "false", "not a number", "2.5", "2000-01-02", ""));
+            org.junit.Assert.fail("wrote an invalid number");
+        } catch (DataAccessObjectException e) {
+            // expected
+        }
+        writer.writeRow(newRow("last", "", "3", "", "", "2000-01-03T00:00:00.000+0000"));
+        writer.close();
+
+        ParquetFileReader reader = new ParquetFileReader(f);
+        reader.open();
+        assertEquals(2, reader.getTotalRows());
+        assertEquals("first", reader.readRow().get("Name"));
+        Row last = reader.readRow();
+        assertEquals("last", last.get("Name"));
+        assertEquals("", last.get("IsActive"));
+        assertEquals("3", last.get("Count"));
+        assertEquals("2000-01-03T00:00:00.000Z", last.get("CreatedDate"));
+        assertNull(reader.readRow());
+        reader.close();
+        f.delete();
+    }
+
+    @Test
+    public void testDecimalsKeepTheirDigits() throws Exception {
+        File f = new File(getTestDataDir(), "parquetTemp.parquet");
+        ParquetFileWriter writer = createWriter(f);
+        // more digits than a double holds
+        writer.writeRow(newRow("big", "", "", "1234567890123456.78", "", ""));
+        writer.writeRow(newRow("negative", "", "", "-0.1", "", ""));
+        writer.writeRow(newRow("exponent", "", "", "1.5E3", "", ""));
+        try {
+            writer.writeRow(newRow("rounded", "", "", "0.125", "", ""));
+            org.junit.Assert.fail("rounded a value to the scale of the field");
+        } catch (DataAccessObjectException e) {
+            // expected
+        }
+        try {
+            writer.writeRow(newRow("too long", "", "", "12345678901234567.89", "", ""));
+            org.junit.Assert.fail("wrote more digits than the precision of the field");
+        } catch (DataAccessObjectException e) {
+            // expected
+        }
+        writer.close();
+
+        ParquetFileReader reader = new ParquetFileReader(f);
+        reader.open();
+        assertEquals("1234567890123456.78", reader.readRow().get("Amount"));
+        assertEquals("-0.10", reader.readRow().get("Amount"));
+        assertEquals("1500.00", reader.readRow().get("Amount"));
+        assertNull(reader.readRow());
+        reader.close();
+        f.delete();
+    }
+
+    @Test
+    public void testReadsFileOfAnotherEncoder() throws Exception {
+        // written by parquetReference.py from the Parquet format specification, with dictionary and version 2 pages,
+        // Snappy, fixed length decimals and nanosecond timestamps, none of which ParquetFileWriter writes
+        ParquetFileReader reader = new ParquetFileReader(new File(getTestDataDir(), "parquetReference.parquet"));
+        Config config = getController().getConfig();
+        config.setValue(Config.READ_UTF8, true);
+        CSVFileReader expected = new CSVFileReader(new File(getTestDataDir(), "parquetReference.csv"), config);
+        config.setValue(Config.READ_UTF8, false);
+        reader.open();
+        expected.open();
+        assertEquals(expected.getColumnNames(), reader.getColumnNames());
+        assertEquals(expected.getTotalRows(), reader.getTotalRows());
+        for (Row row = expected.readRow(); row != null; row = expected.readRow()) {
+            Row read = reader.readRow();
+            for (String column : expected.getColumnNames()) {
+                assertEquals("row " + expected.getCurrentRowNumber() + " " + column, row.get(column), read.get(column));
+            }
+        }
+        assertNull(reader.readRow());
+        expected.close();
+        reader.close();
+    }
+
+    @Test
+    public void testCloseThrowsWhenTheFooterIsNotWritten() throws Exception {
+        File full = new File("/dev/full");
+        Assume.assumeTrue(full.canWrite());
+        ParquetFileWriter writer = createWriter(full);
+        writer.writeRow(newRow("first", "true", "1", "1.5", "2000-01-01", "2000-01-01T00:00:00.000Z"));
+        try {
+            writer.close();
+            org.junit.Assert.fail("closed a file whose footer could not be written");
+        } catch (ParquetFileWriter.ParquetWriteException e) {
+            // expected
+        }
+        // the stream is closed all the same
+        writer.close();
+    }
+
+    private ParquetFileWriter createWriter(File f) throws Exception {
+        Map<String, Field> fields = new HashMap<String, Field>();
+        fields.put("isactive", newField(FieldType._boolean, 0, 0));
+        fields.put("Count", newField(FieldType._int, 0, 0));
+        fields.put("Amount", newField(FieldType.currency, 18, 2));
+        fields.put("Birthdate", newField(FieldType.date, 0, 0));
+        fields.put("CreatedDate", newField(FieldType.datetime, 0, 0));
+        ParquetFileWriter writer = new ParquetFileWriter(f.getAbsolutePath(), getController().getConfig());
+        writer.setColumnFields(fields);
+        writer.open();
+        writer.setColumnNames(COLUMNS);
+        return writer;
+    }
+
+    private static Field newField(FieldType type, int precision, int scale) {
+        Field field = new Field();
+        field.setType(type);
+        field.setPrecision(precision);
+        field.setScale(scale);
+        return field;
+    }
+
+    private static Row newRow(String... values) {
+        Row row = new Row();
+        for (int i = 0; i < values.length; i++) {
+            row.put(COLUMNS.get(i), values[i]);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.blob;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.blob.BlockListingFilter;
+import com.microsoft.azure.storage.blob.CloudBlobContainer;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import com.salesforce.dataloader.TestBase;
+import com.salesforce.dataloader.config.Config;
+import com.salesforce.dataloader.model.Row;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlobWriterTest extends TestBase {
+
+    // a storage connection string such as UseDevelopmentStorage=true, for a running Azurite emulator
+    private static final String AZURITE_URI_PROPERTY = "azurite.uri";
+
+    private static final List<String> COLUMNS = Arrays.asList("Id", "Name", "Description");
+
+    @Test
+    public void testRowText() {
+        BlobColumnVisitor visitor = new BlobColumnVisitor();
+        StringBuilder text = new StringBuilder();
+        visitor.visitHeader(COLUMNS, true, text);
+        visitor.visit(COLUMNS, newRow(1), text);
+        visitor.visit(COLUMNS, newRow(2), text);
+        assertEquals("ID,\"NAME\",\"DESCRIPTION\"\n" + "001000000000001,\"Acme 1\",\"line 1 line 2 é\"\n"
+                + "001000000000002,\"Acme 2\",\"\"\n", text.toString());
+    }
+
+    @Test
+    public void testBlocksAreCommittedOnClose() throws Exception {
+        String uri = System.getProperty(AZURITE_URI_PROPERTY);
+        Assume.assumeTrue(uri != null);
+        Config config = getController().getConfig();
+        config.setValue(Config.AZURE_URI, uri);
+        config.setValue(Config.AZURE_CONTAINER, "dataloader-test");
+        config.setValue(Config.AZURE_BLOCK_SIZE, 4 * 1024);
+        StringBuilder expected = new StringBuilder();
+        BlobColumnVisitor visitor = new BlobColumnVisitor();
+        try {
+            BlobWriter writer = new BlobWriter("blobWriterTest.csv", config);
+            writer.open();
+            writer.setColumnNames(COLUMNS);
+            visitor.visitHeader(COLUMNS, true, expected);
+            for (int i = 0; i < 2000; i++) {
+                Row row = newRow(i);
+                writer.writeRow(row);
+                visitor.visit(COLUMNS, row, expected);
+            }
+            writer.close();
+            assertEquals(2000, writer.getCurrentRowNumber());
+        } finally {
+            config.setValue(Config.AZURE_BLOCK_SIZE, Config.DEFAULT_AZURE_BLOCK_SIZE);
+        }
+
+        CloudBlockBlob blob = CloudStorageAccount.parse(uri).createCloudBlobClient()
+                .getContainerReference("dataloader-test").getBlockBlobReference("blobWriterTest.csv");
+        assertTrue(blob.downloadBlockList(BlockListingFilter.COMMITTED, null, null, null).size() > 1);
+        assertEquals(expected.toString(), blob.downloadText("UTF-8", null, null, null));
+    }
+
+    @Test
+    public void testFailedUploadIsThrownOnClose() throws Exception {
+        String uri = System.getProperty(AZURITE_URI_PROPERTY);
+        Assume.assumeTrue(uri != null);
+        Config config = getController().getConfig();
+        config.setValue(Config.AZURE_URI, uri);
+        config.setValue(Config.AZURE_CONTAINER, "dataloader-test-deleted");
+        BlobWriter writer = new BlobWriter("blobWriterTest.csv", config);
+        writer.open();
+        writer.setColumnNames(COLUMNS);
+        writer.writeRow(newRow(1));
+        // the rows are still in the block being filled, which can't be uploaded without the container
+        CloudBlobContainer container = CloudStorageAccount.parse(uri).createCloudBlobClient()
+                .getContainerReference("dataloader-test-deleted");
+        container.delete();
+        try {
+            writer.close();
+            org.junit.Assert.fail("closed a blob whose blocks were not uploaded");
+        } catch (BlobWriter.BlobWriteException e) {
+            // expected
+        }
+        // the error is thrown once
+        writer.close();
+    }
+
+    private static Row newRow(int i) {
+        Row row = new Row();
+        row.put("Id", String.format("001%012d", i));
+        row.put("Name", "Acme " + i);
+        row.put("Description", i % 2 == 0 ? null : "line 1\nline 2 é");
+        return row;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dao.csv;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelCSVReaderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Cuts the file into chunks of every size from one byte up, so that chunk starts fall inside quoted values, between
+     * a CR and LF and inside multi-byte characters, and checks that the records still come back whole and in order.
+     */
+    @Test
+    public void testRecordsMatchSequentialReadForAnyChunkSize() throws Exception {
+        File f = writeTempFile("Name,Description\tId\r\n"
+                + "\"Acme, \"\"Inc\"\"\",\"two\r\nlines, with é and 😀\",1\n"
+                + "\n"
+                + "plain,\"\",2\r"
+                + "\"\",\"\"\"\",3\r\n"
+                + "last,\"no newline at the end\n\r\",4");
+        try {
+            for (int chunkBytes = 1; chunkBytes <= f.length() + 1; chunkBytes++) {
+                MappedCSVReader expected = new MappedCSVReader(f, UTF8);
+                ParallelCSVReader actual = new ParallelCSVReader(f, UTF8, 3, chunkBytes);
+                List<String> record;
+                do {
+                    record = expected.nextRecord();
+                    assertEquals("chunk size " + chunkBytes, record, actual.nextRecord());
+                } while (record != null);
+                expected.close();
+                actual.close();
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testMalformedRecordIsReportedAfterPreviousRecords() throws Exception {
+        File f = writeTempFile("Name\n\"one\"\ntwo\nthr\"ee\n\"four\"\n");
+        try {
+            for (int chunkBytes = 1; chunkBytes <= f.length(); chunkBytes++) {
+                ParallelCSVReader reader = new ParallelCSVReader(f, UTF8, 2, chunkBytes);
+                assertEquals("Name", reader.nextRecord().get(0));
+                assertEquals("one", reader.nextRecord().get(0));
+                assertEquals("two", reader.nextRecord().get(0));
+                try {
+                    reader.nextRecord();
+                    fail("unescaped quote was not reported with chunk size " + chunkBytes);
+                } catch (IOException e) {
+                    assertEquals("Found unescaped quote. A value with quote should be within a quote", e.getMessage());
+                }
+                reader.close();
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * Reads through windows of a few bytes, each released when the next one is mapped, and checks that the file can be
+     * deleted once the reader is closed, which Windows refuses while it is still mapped.
+     */
+    @Test
+    public void testWindowsAreReleased() throws Exception {
+        File f = writeTempFile("Name,Description\n\"Acme\",\"two\r\nlines\"\nplain,é 😀\n");
+        MappedCSVReader expected = new MappedCSVReader(f, UTF8);
+        MappedCSVReader actual = new MappedCSVReader(f, UTF8, 4);
+        List<String> record;
+        do {
+            record = expected.nextRecord();
+            assertEquals(record, actual.nextRecord());
+        } while (record != null);
+        expected.close();
+        actual.close();
+        assertTrue(f.delete());
+    }
+
+    private static File writeTempFile(String content) throws IOException {
+        File f = File.createTempFile("parallelCsv", ".csv");
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(content.getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+}
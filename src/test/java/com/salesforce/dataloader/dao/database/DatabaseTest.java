@@ -26,7 +26,9 @@
 package com.salesforce.dataloader.dao.database;
 
 import com.salesforce.dataloader.TestBase;
+import com.salesforce.dataloader.config.Config;
 import com.salesforce.dataloader.controller.Controller;
+import com.salesforce.dataloader.dao.DeferredDataWriter;
 import com.salesforce.dataloader.dao.database.DatabaseTestUtil.DateType;
 import com.salesforce.dataloader.exception.DataAccessObjectException;
 import com.salesforce.dataloader.model.Row;
@@ -36,15 +38,27 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FilenameFilter;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -97,6 +111,461 @@ public class DatabaseTest extends TestBase {
         verifyDbInsertOrUpdate(getController(), false, true);
     }
 
+    @Test
+    public void testDatabaseQueryWithLargeFetchSize() throws Exception {
+        DatabaseTestUtil.insertOrUpdateAccountsDb(getController(), true/* insert */, NUM_ROWS, false);
+
+        // more than the read batch size allows
+        getController().getConfig().setValue(Config.DAO_READ_FETCH_SIZE, 10 * Config.MAX_DAO_READ_BATCH_SIZE);
+        try {
+            verifyDbInsertOrUpdate(getController(), true, true);
+        } finally {
+            getController().getConfig().setValue(Config.DAO_READ_FETCH_SIZE, 0);
+        }
+    }
+
+    @Test
+    public void testDatabaseTotalRowsAreCountedWithoutReading() throws Exception {
+        DatabaseTestUtil.insertOrUpdateAccountsDb(getController(), true/* insert */, NUM_ROWS, false);
+
+        getController().getConfig().setValue(Config.DAO_SKIP_TOTAL_COUNT, false);
+        DatabaseReader reader = new DatabaseReader(getController().getConfig(), "queryAccountSince");
+        try {
+            Map<String,Object> params = new HashMap<String,Object>();
+            params.put("compare_date", new Timestamp(0));
+            reader.open(params);
+            assertEquals(NUM_ROWS, reader.getTotalRows());
+            // the query is still on its first row
+            assertEquals(NUM_ROWS, reader.readRowList(2 * NUM_ROWS).size());
+            reader.close();
+
+            params.put("compare_date", new Timestamp(System.currentTimeMillis() + 24 * 60 * 60 * 1000L));
+            reader.open(params);
+            assertEquals(0, reader.getTotalRows());
+        } finally {
+            reader.close();
+            getController().getConfig().setValue(Config.DAO_SKIP_TOTAL_COUNT, Config.DEFAULT_SKIP_TOTAL_COUNT);
+        }
+    }
+
+    @Test
+    public void testDatabasePartitionCountQuery() throws Exception {
+        DatabaseTestUtil.insertOrUpdateAccountsDb(getController(), true/* insert */, NUM_ROWS, false);
+
+        // revenue ranges [0, 3001), [3001, 6002) and [6002, 9000], taken in turn
+        List<String> expected = Arrays.asList("1-000000", "1-000004", "1-000007", "1-000001", "1-000005",
+                "1-000008", "1-000002", "1-000006", "1-000009", "1-000003");
+        assertEquals(expected, readExternalIds("queryAccountPartitioned"));
+        // the same order on every run
+        assertEquals(expected, readExternalIds("queryAccountPartitioned"));
+        verifyDbInsertOrUpdate(getController(), "queryAccountPartitioned", true, true);
+    }
+
+    @Test
+    public void testDatabasePartitionBoundsQuery() throws Exception {
+        DatabaseTestUtil.insertOrUpdateAccountsDb(getController(), true/* insert */, NUM_ROWS, false);
+
+        // external id ranges before 1-000003, before 1-000008 and the rest
+        assertEquals(Arrays.asList("1-000000", "1-000003", "1-000008", "1-000001", "1-000004", "1-000009",
+                "1-000002", "1-000005", "1-000006", "1-000007"), readExternalIds("queryAccountRanges"));
+
+        // closing stops the partitions that are still being read
+        DatabaseReader reader = new DatabaseReader(getController().getConfig(), "queryAccountRanges");
+        reader.open();
+        assertNotNull(reader.readRow());
+        reader.close();
+        assertEquals("1-000000", reader.readRow().get(DatabaseTestUtil.EXT_ID_COL));
+        reader.close();
+    }
+
+    @Test
+    public void testPartitionRangesAreSortedOnTheOuterQuery() {
+        SqlConfig sqlConfig = new SqlConfig();
+        sqlConfig.setPartitionColumn("REVENUE");
+        sqlConfig.setPartitionOrderColumns(Arrays.asList("ID", "NAME"));
+        String sql = PartitionedQuery.withoutOrderBy("SELECT ID, NAME, REVENUE FROM T WHERE NAME <> 'ORDER BY' "
+                + "AND ID IN (SELECT ID FROM U ORDER BY ID) order by\n NAME DESC");
+        assertEquals("SELECT * FROM (SELECT ID, NAME, REVENUE FROM T WHERE NAME <> 'ORDER BY' AND ID IN "
+                + "(SELECT ID FROM U ORDER BY ID)) dl_part WHERE REVENUE >= ? ORDER BY REVENUE, ID, NAME",
+                PartitionedQuery.getRangeSql(sql, sqlConfig, "REVENUE >= ?"));
+
+        // the order of a query that keeps its first rows decides which rows are kept
+        String limited = "SELECT ID FROM T ORDER BY ID LIMIT 10";
+        assertEquals(limited, PartitionedQuery.withoutOrderBy(limited));
+        assertEquals("SELECT ID FROM T", PartitionedQuery.withoutOrderBy("SELECT ID FROM T"));
+    }
+
+    @Test
+    public void testParallelDatabaseWriter() throws Exception {
+        Config config = getController().getConfig();
+        config.setValue(Config.DAO_WRITE_THREADS, 3);
+        config.setValue(Config.DAO_WRITE_COMMIT_INTERVAL, 7);
+        ParallelDatabaseWriter writer = new ParallelDatabaseWriter(config, "insertAccount");
+        List<DeferredDataWriter.Result> results = new ArrayList<DeferredDataWriter.Result>();
+        try {
+            writer.open();
+            List<Row> batch = new ArrayList<Row>();
+            for (int i = 0; i < 25; i++) {
+                Row row = DatabaseTestUtil.getInsertOrUpdateAccountRow(true, i, DatabaseTestUtil.DateType.CALENDAR);
+                if (i == 5 || i == 17) {
+                    // longer than the column
+                    row.put(DatabaseTestUtil.EXT_ID_COL, "1-00000000000000000000" + i);
+                }
+                batch.add(row);
+                if (batch.size() == 4) {
+                    writer.writeRowList(batch);
+                    batch.clear();
+                    results.addAll(writer.getResults(false));
+                }
+            }
+            writer.writeRowList(batch);
+            results.addAll(writer.getResults(true));
+            assertEquals(25, writer.getCurrentRowNumber());
+        } finally {
+            writer.close();
+            config.setValue(Config.DAO_WRITE_THREADS, 0);
+            config.setValue(Config.DAO_WRITE_COMMIT_INTERVAL, Config.DEFAULT_DAO_WRITE_BATCH_SIZE);
+        }
+
+        int written = 0;
+        List<String> failed = new ArrayList<String>();
+        for (DeferredDataWriter.Result result : results) {
+            for (Row row : result.getRows()) {
+                if (result.isSuccess()) {
+                    written++;
+                } else {
+                    assertNotNull(result.getErrorMessage());
+                    failed.add((String)row.get(DatabaseTestUtil.EXT_ID_COL));
+                }
+            }
+        }
+        Collections.sort(failed);
+        assertEquals(Arrays.asList("1-0000000000000000000017", "1-000000000000000000005"), failed);
+        assertEquals(23, written);
+        assertEquals(23, readExternalIds("queryAccountAll").size());
+    }
+
+    @Test
+    public void testParallelDatabaseWriterRowFailsToBind() throws Exception {
+        Config config = getController().getConfig();
+        config.setValue(Config.DAO_WRITE_THREADS, 1);
+        ParallelDatabaseWriter writer = new ParallelDatabaseWriter(config, "insertAccount");
+        List<DeferredDataWriter.Result> results = new ArrayList<DeferredDataWriter.Result>();
+        try {
+            writer.open();
+            for (int i = 0; i < 6; i++) {
+                Row row = DatabaseTestUtil.getInsertOrUpdateAccountRow(true, i, DatabaseTestUtil.DateType.CALENDAR);
+                if (i == 2) {
+                    // binding the row throws an unchecked exception, as a value of an unsupported type does
+                    row = new Row(row) {
+                        @Override
+                        public Object get(Object key) {
+                            if (DatabaseTestUtil.NAME_COL.equals(key)) {
+                                throw new UnsupportedOperationException("Type not supported: null");
+                            }
+                            return super.get(key);
+                        }
+                    };
+                }
+                writer.writeRowList(Collections.singletonList(row));
+            }
+            results.addAll(writer.getResults(true));
+            // the thread is still writing
+            writer.writeRow(DatabaseTestUtil.getInsertOrUpdateAccountRow(true, 6, DatabaseTestUtil.DateType.CALENDAR));
+            results.addAll(writer.getResults(true));
+        } finally {
+            writer.close();
+            config.setValue(Config.DAO_WRITE_THREADS, 0);
+        }
+
+        int written = 0;
+        List<String> failed = new ArrayList<String>();
+        for (DeferredDataWriter.Result result : results) {
+            for (Row row : result.getRows()) {
+                if (result.isSuccess()) {
+                    written++;
+                } else {
+                    assertEquals("Type not supported: null", result.getErrorMessage());
+                    failed.add((String)row.get(DatabaseTestUtil.EXT_ID_COL));
+                }
+            }
+        }
+        assertEquals(Arrays.asList("1-000002"), failed);
+        assertEquals(6, written);
+        assertEquals(6, readExternalIds("queryAccountAll").size());
+    }
+
+    @Test
+    public void testFailedBatchRows() {
+        // drivers that stop at the failed row
+        assertTrue(Arrays.equals(new boolean[] { false, false, true, false },
+                ParallelDatabaseWriter.getFailedRows(new BatchUpdateException(new int[] { 1, 1 }), 4)));
+        // drivers that go on
+        assertTrue(Arrays.equals(new boolean[] { false, true, false },
+                ParallelDatabaseWriter.getFailedRows(new BatchUpdateException(new int[] { 1,
+                        Statement.EXECUTE_FAILED, 1 }), 3)));
+        // no counts to go by
+        assertTrue(Arrays.equals(new boolean[] { true, true },
+                ParallelDatabaseWriter.getFailedRows(new SQLException("connection lost"), 2)));
+    }
+
+    @Test
+    public void testBulkLoadStrategy() throws Exception {
+        DatabaseWriter writer = new DatabaseWriter(getController().getConfig(), "insertAccountBulk");
+        try {
+            writer.open();
+            List<Row> batch = new ArrayList<Row>();
+            for (int i = 0; i < NUM_ROWS; i++) {
+                Row row = DatabaseTestUtil.getInsertOrUpdateAccountRow(true, i, DatabaseTestUtil.DateType.CALENDAR);
+                if (i == 3) {
+                    row.put(DatabaseTestUtil.NAME_COL, "\"Quoted\", name\nwith a line feed");
+                    row.put(DatabaseTestUtil.PHONE_COL, null);
+                }
+                batch.add(row);
+            }
+            assertTrue(writer.writeRowList(batch));
+            assertEquals(NUM_ROWS, writer.getCurrentRowNumber());
+        } finally {
+            writer.close();
+        }
+
+        DatabaseReader reader = new DatabaseReader(getController().getConfig(), "queryAccountAll");
+        try {
+            reader.open();
+            List<Row> rows = reader.readRowList(NUM_ROWS + 1);
+            assertEquals(NUM_ROWS, rows.size());
+            for (int i = 0; i < NUM_ROWS; i++) {
+                Row expected = DatabaseTestUtil.getInsertOrUpdateAccountRow(true, i,
+                        DatabaseTestUtil.DateType.CALENDAR);
+                Row row = rows.get(i);
+                assertEquals(expected.get(DatabaseTestUtil.EXT_ID_COL), row.get(DatabaseTestUtil.EXT_ID_COL));
+                if (i == 3) {
+                    assertEquals("\"Quoted\", name\nwith a line feed", row.get(DatabaseTestUtil.NAME_COL));
+                    assertEquals(null, row.get(DatabaseTestUtil.PHONE_COL));
+                } else {
+                    assertEquals(expected.get(DatabaseTestUtil.NAME_COL), row.get(DatabaseTestUtil.NAME_COL));
+                    assertEquals(expected.get(DatabaseTestUtil.PHONE_COL), row.get(DatabaseTestUtil.PHONE_COL));
+                }
+                assertEquals(((Number)expected.get(DatabaseTestUtil.REVENUE_COL)).doubleValue(),
+                        ((Number)row.get(DatabaseTestUtil.REVENUE_COL)).doubleValue(), 0.001);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Loads the rows and then fails, as a driver may with an unchecked exception.
+     */
+    public static class FailingBulkLoadStrategy extends H2CsvStrategy {
+        @Override
+        public void load(Connection connection, String table, List<String> columns, List<Object[]> values)
+                throws SQLException {
+            super.load(connection, table, columns, values);
+            throw new IllegalStateException("bulk load failed");
+        }
+    }
+
+    @Test
+    public void testBulkLoadFailureFallsBackToInserts() throws Exception {
+        DatabaseWriter writer = new DatabaseWriter(getController().getConfig(), "insertAccountFailingBulk");
+        try {
+            writer.open();
+            List<Row> batch = new ArrayList<Row>();
+            for (int i = 0; i < NUM_ROWS; i++) {
+                batch.add(DatabaseTestUtil.getInsertOrUpdateAccountRow(true, i, DatabaseTestUtil.DateType.CALENDAR));
+            }
+            assertTrue(writer.writeRowList(batch));
+            assertEquals(NUM_ROWS, writer.getCurrentRowNumber());
+        } finally {
+            writer.close();
+        }
+
+        // the bulk loaded rows were rolled back, so each row is there once
+        DatabaseReader reader = new DatabaseReader(getController().getConfig(), "queryAccountAll");
+        try {
+            reader.open();
+            assertEquals(NUM_ROWS, reader.readRowList(NUM_ROWS + 1).size());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testMergeOnKeyColumns() throws Exception {
+        DatabaseWriter writer = new DatabaseWriter(getController().getConfig(), "insertAccountMerge");
+        try {
+            writer.open();
+            List<Row> batch = new ArrayList<Row>();
+            for (int i = 0; i < NUM_ROWS; i++) {
+                batch.add(DatabaseTestUtil.getInsertOrUpdateAccountRow(true, i, DatabaseTestUtil.DateType.CALENDAR));
+            }
+            writer.writeRowList(batch);
+            // the same keys again with new values, and new keys
+            batch.clear();
+            for (int i = NUM_ROWS / 2; i < NUM_ROWS + 3; i++) {
+                Row row = DatabaseTestUtil.getInsertOrUpdateAccountRow(true, i, DatabaseTestUtil.DateType.CALENDAR);
+                row.put(DatabaseTestUtil.NAME_COL, "merged " + i);
+                batch.add(row);
+            }
+            writer.writeRowList(batch);
+        } finally {
+            writer.close();
+        }
+
+        DatabaseReader reader = new DatabaseReader(getController().getConfig(), "queryAccountAll");
+        try {
+            reader.open();
+            List<Row> rows = reader.readRowList(NUM_ROWS + 10);
+            assertEquals(NUM_ROWS + 3, rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals("1-" + String.format("%06d", i), rows.get(i).get(DatabaseTestUtil.EXT_ID_COL));
+                String name = i < NUM_ROWS / 2 ? "account insert#" + String.format("%06d", i) : "merged " + i;
+                assertEquals(name, rows.get(i).get(DatabaseTestUtil.NAME_COL));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testMergeStatementDialects() {
+        InsertStatement insert = InsertStatement.parse("INSERT INTO t (id, name) VALUES (@id@, @name@)");
+        List<String> keys = Collections.singletonList("id");
+        assertEquals("INSERT INTO t (id, name) VALUES (@id@, @name@) ON CONFLICT (id) DO UPDATE SET "
+                + "name = EXCLUDED.name", MergeStatement.create(insert, keys, "PostgreSQL"));
+        assertEquals("INSERT INTO t (id, name) VALUES (@id@, @name@) ON DUPLICATE KEY UPDATE name = VALUES(name)",
+                MergeStatement.create(insert, keys, "MySQL"));
+        assertEquals("MERGE INTO t (id, name) KEY (id) VALUES (@id@, @name@)",
+                MergeStatement.create(insert, keys, "H2"));
+        assertEquals("MERGE INTO t dst USING (SELECT @id@ AS id, @name@ AS name FROM DUAL) src ON (dst.id = src.id)"
+                + " WHEN MATCHED THEN UPDATE SET dst.name = src.name"
+                + " WHEN NOT MATCHED THEN INSERT (id, name) VALUES (src.id, src.name)",
+                MergeStatement.create(insert, keys, "Oracle"));
+        assertEquals("MERGE INTO t dst USING (VALUES (@id@, @name@)) src (id, name) ON (dst.id = src.id)"
+                + " WHEN MATCHED THEN UPDATE SET dst.name = src.name"
+                + " WHEN NOT MATCHED THEN INSERT (id, name) VALUES (src.id, src.name)",
+                MergeStatement.create(insert, keys, "DB2/LINUXX8664"));
+    }
+
+    @Test
+    public void testReadSpoolReplaysRows() throws Exception {
+        DatabaseTestUtil.insertOrUpdateAccountsDb(getController(), true/* insert */, NUM_ROWS, false);
+        Config config = getController().getConfig();
+        config.setValue(Config.DAO_READ_SPOOL, true);
+        config.setValue(Config.DAO_SKIP_TOTAL_COUNT, false);
+        int spoolFiles = getSpoolFiles("queryAccountAll").length;
+        DatabaseReader reader = new DatabaseReader(config, "queryAccountAll");
+        try {
+            reader.open();
+            List<Row> rows = reader.readRowList(NUM_ROWS + 1);
+            assertEquals(NUM_ROWS, rows.size());
+            reader.close();
+
+            // the rows are read from the spool, not the table
+            DatabaseTestUtil.deleteAllAccountsDb(getController());
+            reader.open();
+            assertEquals(NUM_ROWS, reader.getTotalRows());
+            List<Row> replayed = reader.readRowList(NUM_ROWS + 1);
+            assertEquals(rows.size(), replayed.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(new HashMap<String, Object>(rows.get(i)), new HashMap<String, Object>(replayed.get(i)));
+            }
+            assertEquals(NUM_ROWS, reader.getCurrentRowNumber());
+
+            // other parameters run the query again
+            reader.close();
+            DatabaseTestUtil.insertOrUpdateAccountsDb(getController(), true/* insert */, NUM_ROWS, false);
+            reader.open(new HashMap<String, Object>());
+            reader.readRowList(2);
+            reader.close();
+            // a spool of only some of the rows is not replayed
+            reader.open(new HashMap<String, Object>());
+            assertEquals(NUM_ROWS, reader.readRowList(NUM_ROWS + 1).size());
+            reader.close();
+            DatabaseTestUtil.deleteAllAccountsDb(getController());
+            reader.open(new HashMap<String, Object>());
+            assertEquals(NUM_ROWS, reader.readRowList(NUM_ROWS + 1).size());
+
+            // the operation deletes the spool once it is done with the reader
+            reader.close();
+            assertEquals(spoolFiles + 1, getSpoolFiles("queryAccountAll").length);
+            reader.deleteSpool();
+            assertEquals(spoolFiles, getSpoolFiles("queryAccountAll").length);
+            reader.open(new HashMap<String, Object>());
+            assertEquals(0, reader.readRowList(NUM_ROWS + 1).size());
+        } finally {
+            reader.close();
+            reader.deleteSpool();
+            config.setValue(Config.DAO_READ_SPOOL, false);
+            config.setValue(Config.DAO_SKIP_TOTAL_COUNT, Config.DEFAULT_SKIP_TOTAL_COUNT);
+        }
+    }
+
+    private static File[] getSpoolFiles(final String dbConfigName) {
+        return new File(System.getProperty("java.io.tmpdir")).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("dataloader-" + dbConfigName + "-") && name.endsWith(".spool");
+            }
+        });
+    }
+
+    @Test
+    public void testDatabaseConfigIsCached() throws Exception {
+        String dbConfigFilename = getController().getConfig().constructConfigFilePath(
+                DatabaseContext.DEFAULT_CONFIG_FILENAME);
+        DatabaseConfig dbConfig = DatabaseConfig.getInstance(dbConfigFilename, "queryAccountAll");
+        assertSame(dbConfig, DatabaseConfig.getInstance(dbConfigFilename, "queryAccountAll"));
+        assertSame(dbConfig.getDataSource(), DatabaseConfig.getInstance(dbConfigFilename, "insertAccount")
+                .getDataSource());
+        assertTrue(dbConfig.getDataSource().isPoolPreparedStatements());
+        // unless the data source turns it off
+        assertFalse(DatabaseConfig.getInstance(dbConfigFilename, "queryAccountUnpooledStatements").getDataSource()
+                .isPoolPreparedStatements());
+
+        // a changed file is read again, the data sources of the previous version are closed once they are not used
+        DatabaseTestUtil.insertOrUpdateAccountsDb(getController(), true/* insert */, NUM_ROWS, false);
+        DatabaseReader reader = new DatabaseReader(getController().getConfig(), "queryAccountAll");
+        reader.open();
+        File file = new File(dbConfigFilename);
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        DatabaseConfig changedConfig = DatabaseConfig.getInstance(dbConfigFilename, "queryAccountAll");
+        assertNotSame(dbConfig, changedConfig);
+        assertFalse(dbConfig.getDataSource().isClosed());
+        assertNotNull(reader.readRow());
+        reader.close();
+        assertTrue(dbConfig.getDataSource().isClosed());
+        // reopening uses the current version
+        reader.open();
+        assertNotNull(reader.readRow());
+        reader.close();
+
+        // unused versions are closed right away
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        DatabaseConfig lastConfig = DatabaseConfig.getInstance(dbConfigFilename, "queryAccountAll");
+        assertTrue(changedConfig.getDataSource().isClosed());
+
+        DatabaseConfig.closeAll();
+        assertTrue(lastConfig.getDataSource().isClosed());
+        assertNotSame(lastConfig, DatabaseConfig.getInstance(dbConfigFilename, "queryAccountAll"));
+    }
+
+    private List<String> readExternalIds(String dbConfigName) throws Exception {
+        DatabaseReader reader = new DatabaseReader(getController().getConfig(), dbConfigName);
+        try {
+            reader.open();
+            List<String> ids = new ArrayList<String>();
+            for (Row row = reader.readRow(); row != null; row = reader.readRow()) {
+                ids.add((String)row.get(DatabaseTestUtil.EXT_ID_COL));
+            }
+            assertEquals(ids.size(), reader.getCurrentRowNumber());
+            return ids;
+        } finally {
+            reader.close();
+        }
+    }
+
     @Test
     public void testDatabaseDateMappingDate() throws Exception {
         doTestDatabaseDateMapping(DatabaseTestUtil.DateType.DATE, true);
@@ -133,11 +602,16 @@ public class DatabaseTest extends TestBase {
     }
 
     private static void verifyDbInsertOrUpdate(Controller theController, boolean isInsert, boolean validateDates) throws DataAccessObjectException {
+        verifyDbInsertOrUpdate(theController, "queryAccountAll", isInsert, validateDates);
+    }
+
+    private static void verifyDbInsertOrUpdate(Controller theController, String dbConfigName, boolean isInsert,
+            boolean validateDates) throws DataAccessObjectException {
         DatabaseReader reader = null;
         logger.info("Verifying database success for '" + (isInsert ? "insert" : "update") + "' operation");
         try {
             // sort order is reverse between insert and update
-            reader = new DatabaseReader(theController.getConfig(), "queryAccountAll");
+            reader = new DatabaseReader(theController.getConfig(), dbConfigName);
             reader.open();
             int readBatchSize = 1000;
             List<Row> readRowList = reader.readRowList(readBatchSize);
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.dataloader.dao.jsonl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.salesforce.dataloader.exception.DataAccessObjectException;
+import com.salesforce.dataloader.model.Row;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class JsonLinesTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testNestedObjectsAreReadAsDottedColumns() throws Exception {
+        File f = writeTempFile("{\"Name\":\"Acme\",\"Account\":{\"Name\":\"Parent\",\"Owner\":{\"Alias\":\"jd\"}},"
+                + "\"Amount\":12.50,\"IsClosed\":false}\n"
+                + "\n"
+                + "{\"Name\":\"Gr\\u00fcn \\\"Inc\\\"\",\"Tags\":[\"a\",{\"b\":1e3}],\"Account\":null,\"Extra\":null}\r\n");
+        try {
+            JsonLinesReader reader = new JsonLinesReader(f);
+            reader.open();
+            assertEquals(Arrays.asList("Name", "Account.Name", "Account.Owner.Alias", "Amount", "IsClosed", "Tags",
+                    "Account", "Extra"), reader.getColumnNames());
+            assertEquals(2, reader.getTotalRows());
+            Row row = reader.readRow();
+            assertEquals("Acme", row.get("Name"));
+            assertEquals("Parent", row.get("Account.Name"));
+            assertEquals("jd", row.get("Account.Owner.Alias"));
+            assertEquals("12.50", row.get("Amount"));
+            assertEquals("false", row.get("IsClosed"));
+            assertEquals("", row.get("Tags"));
+            row = reader.readRow();
+            assertEquals("Gr\u00fcn \"Inc\"", row.get("Name"));
+            assertEquals("[\"a\",{\"b\":1e3}]", row.get("Tags"));
+            assertEquals("", row.get("Account.Name"));
+            assertEquals("", row.get("Account"));
+            assertNull(reader.readRow());
+            assertEquals(2, reader.getCurrentRowNumber());
+            reader.close();
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testWrittenRowsReadBack() throws Exception {
+        File f = File.createTempFile("jsonLines", ".jsonl");
+        try {
+            List<String> columns = Arrays.asList("Id", "Owner.Name", "Name", "Owner.Profile.Name", "Parent",
+                    "Parent.Id", ".Odd");
+            JsonLinesWriter writer = new JsonLinesWriter(f.getAbsolutePath(), null);
+            writer.open();
+            writer.setColumnNames(columns);
+            for (int i = 0; i < 3; i++) {
+                Row row = new Row();
+                row.put("Id", "001" + i);
+                row.put("Owner.Name", "Jos\u00e9 \"" + i + "\"\n");
+                row.put("Name", i == 1 ? null : "n" + i);
+                row.put("Owner.Profile.Name", "admin");
+                row.put("Parent", "p");
+                row.put("Parent.Id", i);
+                row.put(".Odd", "");
+                writer.writeRow(row);
+            }
+            writer.close();
+            List<String> lines = Files.readAllLines(f.toPath(), UTF8);
+            assertEquals(3, lines.size());
+            assertEquals("{\"Id\":\"0010\",\"Owner\":{\"Name\":\"Jos\u00e9 \\\"0\\\"\\n\",\"Profile\":{\"Name\":\"admin\"}},"
+                    + "\"Name\":\"n0\",\"Parent\":\"p\",\"Parent.Id\":\"0\",\".Odd\":\"\"}", lines.get(0));
+
+            JsonLinesReader reader = new JsonLinesReader(f);
+            reader.open();
+            assertEquals(Arrays.asList("Id", "Owner.Name", "Owner.Profile.Name", "Name", "Parent", "Parent.Id",
+                    ".Odd"), reader.getColumnNames());
+            for (int i = 0; i < 3; i++) {
+                Row row = reader.readRow();
+                assertEquals("Jos\u00e9 \"" + i + "\"\n", row.get("Owner.Name"));
+                assertEquals(i == 1 ? "" : "n" + i, row.get("Name"));
+                assertEquals(String.valueOf(i), row.get("Parent.Id"));
+            }
+            assertNull(reader.readRow());
+            reader.close();
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testRecordThatIsNotAnObjectIsAnError() throws Exception {
+        File f = writeTempFile("{\"Name\":\"one\"}\n[\"two\"]\n");
+        try {
+            JsonLinesReader reader = new JsonLinesReader(f);
+            try {
+                reader.open();
+                fail("opened a file with an array record");
+            } catch (DataAccessObjectException e) {
+                // expected
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    private static File writeTempFile(String content) throws IOException {
+        File f = File.createTempFile("jsonLines", ".jsonl");
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(content.getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+}
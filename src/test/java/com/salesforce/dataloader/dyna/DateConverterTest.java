@@ -29,6 +29,7 @@ import org.apache.commons.beanutils.ConversionException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -654,6 +655,71 @@ public class DateConverterTest {
         assertEquals(TimeZone.getTimeZone("Asia/Tokyo"), result.getTimeZone());
     }
 
+    /**
+     * Verify that a converter reused for many values of the same format, as it is for a column of a load, keeps
+     * giving the same results as a fresh converter does.
+     *
+     * @expectedResults Assert that every value converts to the same instant on both converters and that an invalid
+     *                  value still fails after valid ones of a similar shape.
+     */
+    @Test
+    public void testReusedConverterMatchesFreshConverter() {
+        DateConverter reused = new DateConverter(TimeZone.getTimeZone("America/Los_Angeles"));
+        String[] values = { "2011-10-15T19:08:00.000Z", "2011-10-16T03:00:00+0800", "2011-10-15 19:08:00",
+                "2011-10-15", "2011-11-06 01:30:00", "2011-03-13 02:30:00", "10/15/2011 19:08:00", "10/16/2011",
+                "2011-10-15T19:08z", "2011-10-15T16:08-0300", "2011-10-15T16:08-0200", "20111015T190000" };
+        for (int i = 0; i < 3; i++) {
+            for (String value : values) {
+                Calendar fromFresh = (Calendar)new DateConverter(TimeZone.getTimeZone("America/Los_Angeles"))
+                        .convert(null, value);
+                Calendar fromReused = (Calendar)reused.convert(null, value);
+                assertEquals(value, fromFresh.getTimeInMillis(), fromReused.getTimeInMillis());
+                assertEquals(value, fromFresh.getTimeZone(), fromReused.getTimeZone());
+            }
+        }
+        try {
+            reused.convert(null, "20A1-10-15");
+            Assert.fail("The conversion of an invalid string into a valid date occurred");
+        } catch (ConversionException c) {
+            // expected
+        }
+    }
+
+    /**
+     * Verify that historical dates resolve the way GregorianCalendar does: Julian before the 1582 cutover and the
+     * zone's standard offset rather than local mean time.
+     *
+     * @expectedResults Assert that each value converts to the same instant SimpleDateFormat gives for it.
+     */
+    @Test
+    public void testHistoricalDates() throws Exception {
+        assertHistoricalDate("1850-06-01", "America/Los_Angeles", -3773750400000L);
+        assertHistoricalDate("1700-01-01", "Europe/Berlin", -8520339600000L);
+        assertHistoricalDate("0001-01-01", "GMT", -62135769600000L);
+        for (String tz : new String[] { "GMT", "America/Los_Angeles", "Europe/Berlin", "Australia/Perth" }) {
+            for (String value : new String[] { "1500-06-15", "1582-10-10", "1582-10-15", "1582-10-16",
+                    "1500-06-15T12:30:00", "1582-10-15T23:00:00", "1850-06-01 08:00:00", "1900-01-01T00:00:00" }) {
+                assertHistoricalDate(value, tz, null);
+            }
+        }
+        assertHistoricalDate("1500-06-15T12:30:00Z", "GMT", null);
+        assertHistoricalDate("1582-10-10T12:30:00+0100", "GMT", null);
+    }
+
+    private void assertHistoricalDate(String strDate, String tzId, Long expectedMillis) throws Exception {
+        TimeZone tz = TimeZone.getTimeZone(tzId);
+        if (expectedMillis == null) {
+            String pattern = strDate.length() == 10 ? "yyyy-MM-dd" : strDate.endsWith("Z") ? "yyyy-MM-dd'T'HH:mm:ss'Z'"
+                    : strDate.indexOf('+') > 0 ? "yyyy-MM-dd'T'HH:mm:ssZ"
+                    : strDate.charAt(10) == 'T' ? "yyyy-MM-dd'T'HH:mm:ss" : "yyyy-MM-dd HH:mm:ss";
+            SimpleDateFormat fmt = new SimpleDateFormat(pattern);
+            fmt.setTimeZone(strDate.endsWith("Z") ? TimeZone.getTimeZone("GMT") : tz);
+            expectedMillis = fmt.parse(strDate).getTime();
+        }
+        Calendar cal = (Calendar)new DateConverter(tz, false).convert(null, strDate);
+        assertEquals(strDate + " in " + tzId, expectedMillis.longValue(), cal.getTimeInMillis());
+    }
+
     private void assertValidDate(String msg, String strDate, Calendar expCalDate, boolean useEuropean) {
 
         DateConverter converter = new DateConverter(TZ, useEuropean);
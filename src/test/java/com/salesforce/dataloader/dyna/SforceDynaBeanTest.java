@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.dataloader.dyna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.apache.commons.beanutils.BasicDynaClass;
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.DynaProperty;
+import org.junit.Test;
+
+import com.salesforce.dataloader.TestBase;
+import com.salesforce.dataloader.model.NACalendarValue;
+import com.sforce.soap.partner.sobject.SObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SforceDynaBeanTest extends TestBase {
+
+    private static final DynaProperty[] PROPERTIES = { new DynaProperty("Name", String.class),
+            new DynaProperty("Description", String.class), new DynaProperty("NumberOfEmployees", Integer.class),
+            new DynaProperty("AnnualRevenue", Double.class), new DynaProperty("IsPartner", Boolean.class),
+            new DynaProperty("LastActivityDate", Calendar.class), new DynaProperty("Body", byte[].class) };
+
+    // values of each property, in the order of PROPERTIES
+    private static final Object[][] VALUES = { { null, "", "Acme" },
+            { null, "", " " }, { null, 0, 42 }, { null, 0.0, 1.5 }, { null, false, true },
+            { null, Calendar.getInstance(TimeZone.getTimeZone("GMT")), NACalendarValue.getInstance() },
+            { null, new byte[0], new byte[] { 65 }, new byte[] { 0, 1 } } };
+
+    /**
+     * Verify that the SObjects built from the beans have the fields and fieldsToNull that the describe based
+     * implementation gave them, with and without insertNulls.
+     */
+    @Test
+    public void testSObjectsMatchDescribedBeans() throws Exception {
+        SforceDynaBean.registerConverters(getController().getConfig());
+        BasicDynaClass dynaClass = SforceDynaBean.getDynaBeanInstance(PROPERTIES);
+        List<DynaBean> beans = new ArrayList<DynaBean>();
+        for (int i = 0; i < 200; i++) {
+            DynaBean bean = dynaClass.newInstance();
+            for (int p = 0; p < PROPERTIES.length; p++) {
+                // a different combination of values in every bean
+                Object[] values = VALUES[p];
+                bean.set(PROPERTIES[p].getName(), values[(i / (p + 1) + p) % values.length]);
+            }
+            beans.add(bean);
+        }
+        // Description isn't mapped, so it is never nulled
+        Set<String> nullableFields = new LinkedHashSet<String>(Arrays.asList("Name", "NumberOfEmployees",
+                "AnnualRevenue", "IsPartner", "LastActivityDate", "Body"));
+
+        for (Set<String> nullable : Arrays.asList(null, nullableFields)) {
+            SObject[] sObjects = SforceDynaBean.getSObjectArray(getController(), beans, "Account", nullable);
+            assertEquals(beans.size(), sObjects.length);
+            for (int i = 0; i < sObjects.length; i++) {
+                SObject expected = getDescribedSObject(beans.get(i), nullable);
+                SObject actual = sObjects[i];
+                assertEquals("Account", actual.getType());
+                for (DynaProperty property : PROPERTIES) {
+                    String message = "bean " + i + " field " + property.getName();
+                    assertEquals(message, expected.getField(property.getName()), actual.getField(property.getName()));
+                }
+                if (expected.getFieldsToNull() == null) {
+                    assertNull("bean " + i, actual.getFieldsToNull());
+                } else {
+                    assertEquals("bean " + i, new HashSet<String>(Arrays.asList(expected.getFieldsToNull())),
+                            new HashSet<String>(Arrays.asList(actual.getFieldsToNull())));
+                }
+            }
+        }
+    }
+
+    /* the SObject as the describe based implementation built it, before the beans were walked directly */
+    private static SObject getDescribedSObject(DynaBean dynaBean, Collection<String> nullableFields)
+            throws Exception {
+        SObject sObj = new SObject();
+        sObj.setType("Account");
+        Map<String, String> fieldMap = BeanUtils.describe(dynaBean);
+        for (String fName : fieldMap.keySet()) {
+            if (fieldMap.get(fName) != null) {
+                sObj.setField(fName, dynaBean.get(fName));
+            }
+        }
+        if (nullableFields != null) {
+            List<String> fieldsToNull = new ArrayList<String>();
+            for (String fieldName : nullableFields) {
+                Object o = dynaBean.get(fieldName);
+                if (o == null || String.valueOf(o).length() == 0) fieldsToNull.add(fieldName);
+            }
+            if (fieldsToNull.size() > 0) sObj.setFieldsToNull(fieldsToNull.toArray(new String[fieldsToNull.size()]));
+        }
+        return sObj;
+    }
+}
@@ -0,0 +1,619 @@
+#!/usr/bin/env python3
+"""
+Independent Parquet encoder and decoder for the Parquet tests, written from the Parquet format specification with the
+Python standard library only, so that it shares no code with the Java reader and writer.
+
+  parquetReference.py write <file.parquet> <file.csv>
+      writes the reference file read by ParquetTest, laid out as pyarrow lays out files by default: optional columns,
+      dictionary pages, Snappy compression, statistics, logical types next to converted types, key-value metadata and
+      column orders. The first row group has version 1 data pages and the second version 2 data pages. The CSV holds
+      the values the reader is expected to return.
+
+  parquetReference.py read <file.parquet>
+      decodes a file, such as one written by ParquetFileWriter, and prints its rows as CSV, with empty values for nulls.
+"""
+
+import csv
+import datetime
+import decimal
+import gzip
+import struct
+import sys
+import zlib
+
+# Thrift compact protocol types
+T_TRUE, T_FALSE, T_BYTE, T_I16, T_I32, T_I64, T_DOUBLE, T_BINARY, T_LIST, T_SET, T_MAP, T_STRUCT = range(1, 13)
+
+BOOLEAN, INT32, INT64, INT96, FLOAT, DOUBLE, BYTE_ARRAY, FIXED_LEN_BYTE_ARRAY = range(8)
+UTF8, DATE, TIMESTAMP_MILLIS, TIMESTAMP_MICROS, DECIMAL, INT_64 = 0, 6, 9, 10, 5, 18
+PLAIN, PLAIN_DICTIONARY, RLE, RLE_DICTIONARY = 0, 2, 3, 8
+UNCOMPRESSED, SNAPPY, GZIP = 0, 1, 2
+DATA_PAGE, DICTIONARY_PAGE, DATA_PAGE_V2 = 0, 2, 3
+
+
+def varint(value):
+    out = bytearray()
+    while True:
+        b = value & 0x7f
+        value >>= 7
+        if value:
+            out.append(b | 0x80)
+        else:
+            out.append(b)
+            return bytes(out)
+
+
+def zigzag(value):
+    return (value << 1) ^ (value >> 63)
+
+
+class Struct(list):
+    """Fields of a struct, as (id, type, value) in increasing id order"""
+
+    def add(self, field_id, field_type, value):
+        if value is not None:
+            self.append((field_id, field_type, value))
+        return self
+
+
+def encode_value(field_type, value):
+    if field_type == T_BYTE:
+        return struct.pack('b', value)
+    if field_type in (T_I16, T_I32, T_I64):
+        return varint(zigzag(value))
+    if field_type == T_BINARY:
+        value = value.encode('utf-8') if isinstance(value, str) else value
+        return varint(len(value)) + value
+    if field_type == T_STRUCT:
+        return encode_struct(value)
+    if field_type == T_LIST:
+        element_type, elements = value
+        header = bytes([len(elements) << 4 | element_type]) if len(elements) < 15 \
+            else bytes([0xf0 | element_type]) + varint(len(elements))
+        return header + b''.join(encode_value(element_type, e) for e in elements)
+    raise ValueError('type %d' % field_type)
+
+
+def encode_struct(fields):
+    out = bytearray()
+    last = 0
+    for field_id, field_type, value in fields:
+        if field_type in (T_TRUE, T_FALSE):
+            field_type = T_TRUE if value else T_FALSE
+        delta = field_id - last
+        if 0 < delta <= 15:
+            out.append(delta << 4 | field_type)
+        else:
+            out.append(field_type)
+            out += varint(zigzag(field_id))
+        if field_type not in (T_TRUE, T_FALSE):
+            out += encode_value(field_type, value)
+        last = field_id
+    out.append(0)
+    return bytes(out)
+
+
+class ThriftDecoder:
+    def __init__(self, data, position=0):
+        self.data = data
+        self.position = position
+
+    def byte(self):
+        b = self.data[self.position]
+        self.position += 1
+        return b
+
+    def varint(self):
+        value, shift = 0, 0
+        while True:
+            b = self.byte()
+            value |= (b & 0x7f) << shift
+            shift += 7
+            if not b & 0x80:
+                return value
+
+    def zigzag(self):
+        value = self.varint()
+        return (value >> 1) ^ -(value & 1)
+
+    def value(self, field_type):
+        if field_type in (T_TRUE, T_FALSE):
+            return self.byte() == 1
+        if field_type == T_BYTE:
+            return struct.unpack('b', bytes([self.byte()]))[0]
+        if field_type in (T_I16, T_I32, T_I64):
+            return self.zigzag()
+        if field_type == T_DOUBLE:
+            self.position += 8
+            return struct.unpack('<d', self.data[self.position - 8:self.position])[0]
+        if field_type == T_BINARY:
+            length = self.varint()
+            self.position += length
+            return bytes(self.data[self.position - length:self.position])
+        if field_type in (T_LIST, T_SET):
+            header = self.byte()
+            size = header >> 4 if header >> 4 != 15 else self.varint()
+            return [self.value(header & 0x0f) for _ in range(size)]
+        if field_type == T_MAP:
+            size = self.varint()
+            types = self.byte() if size else 0
+            return [(self.value(types >> 4), self.value(types & 0x0f)) for _ in range(size)]
+        if field_type == T_STRUCT:
+            return self.struct()
+        raise ValueError('type %d' % field_type)
+
+    def struct(self):
+        fields = {}
+        last = 0
+        while True:
+            header = self.byte()
+            field_type = header & 0x0f
+            if field_type == 0:
+                return fields
+            last = last + (header >> 4) if header >> 4 else self.zigzag()
+            fields[last] = field_type == T_TRUE if field_type in (T_TRUE, T_FALSE) else self.value(field_type)
+
+
+def snappy_compress(data):
+    """Greedy Snappy compression with 4 byte hashes, literals and 2 byte offset copies"""
+    out = bytearray(varint(len(data)))
+    table = {}
+    literal_start = i = 0
+
+    def literal(start, end):
+        while start < end:
+            n = min(end - start, 65536)
+            if n <= 60:
+                out.append((n - 1) << 2)
+            elif n <= 256:
+                out.extend(bytes([60 << 2, n - 1]))
+            else:
+                out.extend(bytes([61 << 2]) + struct.pack('<H', n - 1))
+            out.extend(data[start:start + n])
+            start += n
+
+    while i + 4 <= len(data):
+        key = bytes(data[i:i + 4])
+        candidate = table.get(key)
+        table[key] = i
+        if candidate is None or i - candidate >= 65536:
+            i += 1
+            continue
+        length = 4
+        while i + length < len(data) and data[candidate + length] == data[i + length]:
+            length += 1
+        literal(literal_start, i)
+        offset = i - candidate
+        remaining = length
+        while remaining > 0:
+            n = min(remaining, 64)
+            if remaining - n in (1, 2, 3):
+                # copies are at least 4 bytes
+                n = remaining - 4
+            out += bytes([(n - 1) << 2 | 2]) + struct.pack('<H', offset)
+            remaining -= n
+        i += length
+        literal_start = i
+    literal(literal_start, len(data))
+    return bytes(out)
+
+
+def snappy_uncompress(data):
+    decoder = ThriftDecoder(data)
+    length = decoder.varint()
+    p = decoder.position
+    out = bytearray()
+    while p < len(data):
+        tag = data[p]
+        p += 1
+        kind = tag & 3
+        if kind == 0:
+            n = tag >> 2
+            if n >= 60:
+                extra = n - 59
+                n = int.from_bytes(data[p:p + extra], 'little')
+                p += extra
+            out += data[p:p + n + 1]
+            p += n + 1
+            continue
+        if kind == 1:
+            n = ((tag >> 2) & 7) + 4
+            offset = (tag >> 5) << 8 | data[p]
+            p += 1
+        elif kind == 2:
+            n = (tag >> 2) + 1
+            offset = int.from_bytes(data[p:p + 2], 'little')
+            p += 2
+        else:
+            n = (tag >> 2) + 1
+            offset = int.from_bytes(data[p:p + 4], 'little')
+            p += 4
+        for _ in range(n):
+            out.append(out[-offset])
+    assert len(out) == length
+    return bytes(out)
+
+
+def compress(codec, data):
+    if codec == SNAPPY:
+        return snappy_compress(data)
+    if codec == GZIP:
+        return gzip.compress(data)
+    return data
+
+
+def uncompress(codec, data):
+    if codec == SNAPPY:
+        return snappy_uncompress(data)
+    if codec == GZIP:
+        return zlib.decompress(data, 16 + zlib.MAX_WBITS)
+    return data
+
+
+def bit_width(max_value):
+    return max_value.bit_length()
+
+
+def hybrid_encode(values, width):
+    """RLE runs for 8 or more repeats, bit-packed groups of 8 for the rest"""
+    out = bytearray()
+    byte_width = (width + 7) // 8
+    i = 0
+    packed = []
+
+    def flush_packed():
+        while packed:
+            group = packed[:8 * 63]
+            del packed[:len(group)]
+            groups = (len(group) + 7) // 8
+            group = group + [0] * (groups * 8 - len(group))
+            bits = 0
+            for n, v in enumerate(group):
+                bits |= v << (n * width)
+            out.extend(varint(groups << 1 | 1))
+            out.extend(bits.to_bytes(groups * width, 'little'))
+
+    while i < len(values):
+        run = 1
+        while i + run < len(values) and values[i + run] == values[i]:
+            run += 1
+        # a bit-packed group has to be full before a run starts
+        if run >= 8 and len(packed) % 8 == 0:
+            flush_packed()
+            out.extend(varint(run << 1))
+            out.extend(values[i].to_bytes(byte_width, 'little'))
+            i += run
+        else:
+            packed.append(values[i])
+            i += 1
+    flush_packed()
+    return bytes(out)
+
+
+def hybrid_decode(data, width, count):
+    decoder = ThriftDecoder(data)
+    values = []
+    while len(values) < count:
+        header = decoder.varint()
+        if header & 1:
+            groups = header >> 1
+            start = decoder.position
+            bits = int.from_bytes(data[start:start + groups * width], 'little')
+            decoder.position += groups * width
+            values.extend(bits >> (n * width) & ((1 << width) - 1) for n in range(groups * 8))
+        else:
+            byte_width = (width + 7) // 8
+            value = int.from_bytes(data[decoder.position:decoder.position + byte_width], 'little')
+            decoder.position += byte_width
+            values.extend([value] * (header >> 1))
+    return values[:count]
+
+
+class Column:
+    def __init__(self, name, physical, encode, converted=None, logical=None, length=None, scale=None,
+                 precision=None, dictionary=True):
+        self.name = name
+        self.physical = physical
+        self.encode = encode
+        self.converted = converted
+        self.logical = logical
+        self.length = length
+        self.scale = scale
+        self.precision = precision
+        self.dictionary = dictionary
+
+    def schema_element(self):
+        return (Struct().add(1, T_I32, self.physical).add(2, T_I32, self.length).add(3, T_I32, 1)
+                .add(4, T_BINARY, self.name).add(6, T_I32, self.converted).add(7, T_I32, self.scale)
+                .add(8, T_I32, self.precision).add(10, T_STRUCT, self.logical))
+
+
+def plain(column, value):
+    if column.physical == INT32:
+        return struct.pack('<i', value)
+    if column.physical == INT64:
+        return struct.pack('<q', value)
+    if column.physical == DOUBLE:
+        return struct.pack('<d', value)
+    if column.physical == BYTE_ARRAY:
+        return struct.pack('<i', len(value)) + value
+    if column.physical == FIXED_LEN_BYTE_ARRAY:
+        return value
+    raise ValueError(column.physical)
+
+
+def timestamp(unit):
+    return Struct().add(8, T_STRUCT, Struct().add(1, T_TRUE, True).add(2, T_STRUCT, Struct().add(unit, T_STRUCT,
+                                                                                                  Struct())))
+
+
+EPOCH = datetime.datetime(1970, 1, 1)
+COLUMNS = [
+    Column('Id', INT64, lambda v: v, INT_64, Struct().add(10, T_STRUCT, Struct().add(1, T_BYTE, 64)
+                                                           .add(2, T_TRUE, True))),
+    Column('Name', BYTE_ARRAY, lambda v: v.encode('utf-8'), UTF8, Struct().add(1, T_STRUCT, Struct())),
+    Column('Amount', FIXED_LEN_BYTE_ARRAY, lambda v: int(v.scaleb(2)).to_bytes(5, 'big', signed=True), DECIMAL,
+           Struct().add(5, T_STRUCT, Struct().add(1, T_I32, 2).add(2, T_I32, 10)), length=5, scale=2, precision=10),
+    Column('IsActive', BOOLEAN, lambda v: v, dictionary=False),
+    Column('Birthdate', INT32, lambda v: (v - EPOCH.date()).days, DATE, Struct().add(6, T_STRUCT, Struct())),
+    Column('CreatedDate', INT64, lambda v: (v - EPOCH) // datetime.timedelta(milliseconds=1), TIMESTAMP_MILLIS,
+           timestamp(1)),
+    # nanoseconds only have a logical type
+    Column('LastModifiedDate', INT64, lambda v: v, None, timestamp(3)),
+    Column('Score', DOUBLE, lambda v: v),
+]
+
+
+def reference_rows():
+    names = ['Acme', 'Ünïcødé 😀', 'Globex, Inc.', 'Quote "q"']
+    rows = []
+    for i in range(60):
+        created = datetime.datetime(2015, 6, 10, 12, 34, 56, 123000) + datetime.timedelta(days=i, milliseconds=i)
+        rows.append([
+            None if i % 11 == 5 else i * 1000003 - 30000000,
+            None if i % 7 == 3 else 'Run' if 20 <= i < 32 else names[i // 3 % 4],
+            None if i % 9 == 4 else decimal.Decimal(i * i * 37 - 5000).scaleb(-2),
+            None if i % 10 == 9 else i % 3 == 0,
+            None if i % 8 == 2 else datetime.date(1950, 7, 1) + datetime.timedelta(days=i * 397),
+            None if i % 13 == 6 else created,
+            (created - EPOCH) // datetime.timedelta(microseconds=1) * 1000 + 456,
+            None if i % 6 == 1 else i * 0.25 - 3,
+        ])
+    return rows
+
+
+def expected(column, value):
+    if value is None:
+        return ''
+    if column.name == 'IsActive':
+        return 'true' if value else 'false'
+    if column.name == 'CreatedDate':
+        return value.strftime('%Y-%m-%dT%H:%M:%S.') + '%03dZ' % (value.microsecond // 1000)
+    if column.name == 'LastModifiedDate':
+        millis = value // 1000000
+        moment = EPOCH + datetime.timedelta(milliseconds=millis)
+        return moment.strftime('%Y-%m-%dT%H:%M:%S.') + '%03dZ' % (millis % 1000)
+    return str(value)
+
+
+def page_header(page_type, uncompressed, compressed, field_id, header):
+    return encode_struct(Struct().add(1, T_I32, page_type).add(2, T_I32, uncompressed).add(3, T_I32, compressed)
+                         .add(field_id, T_STRUCT, header))
+
+
+def write_chunk(column, values, version, offset):
+    """@return the bytes of a column chunk and its ColumnMetaData"""
+    levels = [0 if v is None else 1 for v in values]
+    present = [column.encode(v) for v in values if v is not None]
+    out = bytearray()
+    # page headers count in both sizes
+    uncompressed_size = 0
+    dictionary_offset = None
+    if column.dictionary:
+        distinct = []
+        for v in present:
+            if v not in distinct:
+                distinct.append(v)
+        dictionary = b''.join(plain(column, v) for v in distinct)
+        compressed = compress(SNAPPY, dictionary)
+        dictionary_offset = offset
+        header = page_header(DICTIONARY_PAGE, len(dictionary), len(compressed), 7, Struct()
+                             .add(1, T_I32, len(distinct)).add(2, T_I32, PLAIN_DICTIONARY if version == 1 else PLAIN))
+        out += header + compressed
+        uncompressed_size += len(header) + len(dictionary)
+        width = max(1, bit_width(len(distinct) - 1))
+        encoded = bytes([width]) + hybrid_encode([distinct.index(v) for v in present], width)
+        encoding = PLAIN_DICTIONARY if version == 1 else RLE_DICTIONARY
+    elif version == 1:
+        bits = 0
+        for n, v in enumerate(present):
+            bits |= int(v) << n
+        encoded = bits.to_bytes((len(present) + 7) // 8, 'little')
+        encoding = PLAIN
+    else:
+        runs = hybrid_encode([int(v) for v in present], 1)
+        encoded = struct.pack('<i', len(runs)) + runs
+        encoding = RLE
+    data_offset = offset + len(out)
+    level_bytes = hybrid_encode(levels, 1)
+    nulls = levels.count(0)
+    if version == 1:
+        page = struct.pack('<i', len(level_bytes)) + level_bytes + encoded
+        compressed = compress(SNAPPY, page)
+        header = page_header(DATA_PAGE, len(page), len(compressed), 5, Struct()
+                             .add(1, T_I32, len(values)).add(2, T_I32, encoding).add(3, T_I32, RLE).add(4, T_I32, RLE)
+                             .add(5, T_STRUCT, Struct().add(3, T_I64, nulls)))
+        out += header + compressed
+        uncompressed_size += len(header) + len(page)
+    else:
+        compressed = compress(SNAPPY, encoded)
+        header = page_header(DATA_PAGE_V2, len(level_bytes) + len(encoded), len(level_bytes) + len(compressed), 8,
+                             Struct().add(1, T_I32, len(values)).add(2, T_I32, nulls).add(3, T_I32, len(values))
+                             .add(4, T_I32, encoding).add(5, T_I32, len(level_bytes)).add(6, T_I32, 0)
+                             .add(7, T_TRUE, True).add(8, T_STRUCT, Struct().add(3, T_I64, nulls)))
+        out += header + level_bytes + compressed
+        uncompressed_size += len(header) + len(level_bytes) + len(encoded)
+    statistics = Struct().add(3, T_I64, nulls)
+    if present and column.physical in (INT32, INT64):
+        statistics.add(5, T_BINARY, plain(column, max(present))).add(6, T_BINARY, plain(column, min(present)))
+    encodings = sorted({PLAIN if version == 2 or not column.dictionary else PLAIN_DICTIONARY, RLE, encoding})
+    metadata = (Struct().add(1, T_I32, column.physical).add(2, T_LIST, (T_I32, encodings))
+                .add(3, T_LIST, (T_BINARY, [column.name])).add(4, T_I32, SNAPPY).add(5, T_I64, len(values))
+                .add(6, T_I64, uncompressed_size).add(7, T_I64, len(out)).add(9, T_I64, data_offset)
+                .add(11, T_I64, dictionary_offset).add(12, T_STRUCT, statistics))
+    return bytes(out), metadata
+
+
+def write(parquet_name, csv_name):
+    rows = reference_rows()
+    groups = [(rows[:36], 1), (rows[36:], 2)]
+    out = bytearray(b'PAR1')
+    row_groups = []
+    for group_rows, version in groups:
+        chunks = []
+        start = len(out)
+        for n, column in enumerate(COLUMNS):
+            chunk, metadata = write_chunk(column, [row[n] for row in group_rows], version, len(out))
+            chunks.append(Struct().add(2, T_I64, len(out)).add(3, T_STRUCT, metadata))
+            out += chunk
+        row_groups.append(Struct().add(1, T_LIST, (T_STRUCT, chunks)).add(2, T_I64, len(out) - start)
+                          .add(3, T_I64, len(group_rows)).add(5, T_I64, start).add(6, T_I64, len(out) - start)
+                          .add(7, T_I16, len(row_groups)))
+    schema = [Struct().add(4, T_BINARY, 'schema').add(5, T_I32, len(COLUMNS))]
+    schema += [column.schema_element() for column in COLUMNS]
+    footer = encode_struct(Struct().add(1, T_I32, 2).add(2, T_LIST, (T_STRUCT, schema)).add(3, T_I64, len(rows))
+                           .add(4, T_LIST, (T_STRUCT, row_groups))
+                           .add(5, T_LIST, (T_STRUCT, [Struct().add(1, T_BINARY, 'origin')
+                                                      .add(2, T_BINARY, 'parquetReference.py')]))
+                           .add(6, T_BINARY, 'parquetReference.py (Parquet format specification encoder)')
+                           .add(7, T_LIST, (T_STRUCT, [Struct().add(1, T_STRUCT, Struct()) for _ in COLUMNS])))
+    out += footer + struct.pack('<i', len(footer)) + b'PAR1'
+    with open(parquet_name, 'wb') as f:
+        f.write(out)
+    with open(csv_name, 'w', newline='', encoding='utf-8') as f:
+        writer = csv.writer(f, lineterminator='\n')
+        writer.writerow([column.name for column in COLUMNS])
+        for row in rows:
+            writer.writerow([expected(column, value) for column, value in zip(COLUMNS, row)])
+
+
+def format_value(element, data, p):
+    """@return the value at p as a string, and the position after it"""
+    physical = element[1]
+    converted = element.get(6)
+    if physical == BOOLEAN:
+        raise ValueError('booleans are bit-packed')
+    if physical == INT32:
+        value = struct.unpack_from('<i', data, p)[0]
+        if converted == DATE:
+            return str(EPOCH.date() + datetime.timedelta(days=value)), p + 4
+        if converted == DECIMAL:
+            return str(decimal.Decimal(value).scaleb(-element[7])), p + 4
+        return str(value), p + 4
+    if physical == INT64:
+        value = struct.unpack_from('<q', data, p)[0]
+        logical = element.get(10, {})
+        if converted in (TIMESTAMP_MILLIS, TIMESTAMP_MICROS) or 8 in logical:
+            unit = logical[8][2] if 8 in logical else {1: {}} if converted == TIMESTAMP_MILLIS else {2: {}}
+            millis = value // (1 if 1 in unit else 1000 if 2 in unit else 1000000)
+            moment = EPOCH + datetime.timedelta(milliseconds=millis)
+            return moment.strftime('%Y-%m-%dT%H:%M:%S.') + '%03dZ' % (millis % 1000), p + 8
+        if converted == DECIMAL:
+            return str(decimal.Decimal(value).scaleb(-element[7])), p + 8
+        return str(value), p + 8
+    if physical == DOUBLE:
+        return repr(struct.unpack_from('<d', data, p)[0]), p + 8
+    if physical == FLOAT:
+        return repr(struct.unpack_from('<f', data, p)[0]), p + 4
+    length = struct.unpack_from('<i', data, p)[0] if physical == BYTE_ARRAY else element[2]
+    start = p + 4 if physical == BYTE_ARRAY else p
+    raw = bytes(data[start:start + length])
+    if converted == DECIMAL:
+        return str(decimal.Decimal(int.from_bytes(raw, 'big', signed=True)).scaleb(-element[7])), start + length
+    return raw.decode('utf-8'), start + length
+
+
+def read_values(element, data, p, count, encoding, dictionary):
+    if encoding in (PLAIN_DICTIONARY, RLE_DICTIONARY):
+        return [dictionary[i] for i in hybrid_decode(data[p + 1:], data[p], count)]
+    if element[1] == BOOLEAN:
+        if encoding == RLE:
+            length = struct.unpack_from('<i', data, p)[0]
+            return ['true' if v else 'false' for v in hybrid_decode(data[p + 4:p + 4 + length], 1, count)]
+        return ['true' if data[p + n // 8] >> (n % 8) & 1 else 'false' for n in range(count)]
+    assert encoding == PLAIN, encoding
+    values = []
+    for _ in range(count):
+        value, p = format_value(element, data, p)
+        values.append(value)
+    return values
+
+
+def read(parquet_name):
+    with open(parquet_name, 'rb') as f:
+        data = f.read()
+    assert data[:4] == b'PAR1' and data[-4:] == b'PAR1', 'not a Parquet file'
+    footer_length = struct.unpack_from('<i', data, len(data) - 8)[0]
+    metadata = ThriftDecoder(data, len(data) - 8 - footer_length).struct()
+    schema = metadata[2]
+    assert schema[0].get(5) == len(schema) - 1, 'flat schema'
+    elements = schema[1:]
+    writer = csv.writer(sys.stdout, lineterminator='\n')
+    writer.writerow([e[4].decode('utf-8') for e in elements])
+    total = 0
+    for row_group in metadata[4]:
+        columns = []
+        for element, chunk in zip(elements, row_group[1]):
+            meta = chunk[3]
+            assert meta[3] == [element[4]], 'column order'
+            codec = meta[4]
+            p = min(meta[9], meta.get(11, meta[9]))
+            end = p + meta[7]
+            dictionary = None
+            values = []
+            while len(values) < meta[5]:
+                decoder = ThriftDecoder(data, p)
+                header = decoder.struct()
+                body = data[decoder.position:decoder.position + header[3]]
+                p = decoder.position + header[3]
+                assert p <= end, 'page beyond the column chunk'
+                if header[1] == DICTIONARY_PAGE:
+                    page = uncompress(codec, body)
+                    assert len(page) == header[2], 'dictionary page size'
+                    dictionary = read_values(element, page, 0, header[7][1], PLAIN, None)
+                elif header[1] == DATA_PAGE:
+                    page = uncompress(codec, body)
+                    assert len(page) == header[2], 'data page size'
+                    count = header[5][1]
+                    levels = [1] * count
+                    q = 0
+                    if element.get(3) == 1:
+                        length = struct.unpack_from('<i', page, 0)[0]
+                        levels = hybrid_decode(page[4:4 + length], 1, count)
+                        q = 4 + length
+                    present = iter(read_values(element, page, q, sum(levels), header[5][2], dictionary))
+                    values.extend(next(present) if level else None for level in levels)
+                elif header[1] == DATA_PAGE_V2:
+                    v2 = header[8]
+                    count = v2[1]
+                    levels_length = v2[5] + v2[6]
+                    levels = hybrid_decode(body[v2[6]:levels_length], 1, count) if element.get(3) == 1 \
+                        else [1] * count
+                    page = uncompress(codec, body[levels_length:]) if v2.get(7, True) else body[levels_length:]
+                    present = iter(read_values(element, page, 0, sum(levels), v2[4], dictionary))
+                    values.extend(next(present) if level else None for level in levels)
+            assert len(values) == row_group[3], 'values of a column chunk'
+            columns.append(values)
+        for row in zip(*columns):
+            writer.writerow(['' if v is None else v for v in row])
+        total += row_group[3]
+    assert total == metadata[3], 'row count'
+
+
+if __name__ == '__main__':
+    if len(sys.argv) == 4 and sys.argv[1] == 'write':
+        write(sys.argv[2], sys.argv[3])
+    elif len(sys.argv) == 3 and sys.argv[1] == 'read':
+        read(sys.argv[2])
+    else:
+        sys.exit(__doc__)